@@ -11,6 +11,7 @@ import org.bukkit.util.StringUtil;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 import com.gmail.nossr50.util.StringUtils;
 import com.gmail.nossr50.util.commands.CommandUtils;
@@ -53,8 +54,14 @@ public class McscoreboardCommand implements TabExecutor {
                         return true;
                     }
 
+                    McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
+
+                    if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                        return true;
+                    }
+
                     ScoreboardManager.setupPlayerScoreboard(player.getName());
-                    ScoreboardManager.enablePlayerStatsScoreboard(UserManager.getPlayer(player));
+                    ScoreboardManager.enablePlayerStatsScoreboard(mcMMOPlayer);
                 }
                 else if (args[0].equalsIgnoreCase("top")) {
                     if (!Config.getInstance().getMctopScoreboardEnabled()) {
@@ -125,7 +132,7 @@ public class McscoreboardCommand implements TabExecutor {
                 return StringUtil.copyPartialMatches(args[0], SCOREBOARD_TYPES, new ArrayList<String>(SCOREBOARD_TYPES.size()));
             case 2:
                 if (args[0].equalsIgnoreCase("top")) {
-                    return StringUtil.copyPartialMatches(args[1], SkillType.SKILL_NAMES, new ArrayList<String>(SkillType.SKILL_NAMES.size()));
+                    return StringUtil.copyPartialMatches(args[1], SkillType.getSkillNames(), new ArrayList<String>(SkillType.getSkillNames().size()));
                 }
                 // Fallthrough
 
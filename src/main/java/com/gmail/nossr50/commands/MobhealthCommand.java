@@ -11,6 +11,7 @@ import org.bukkit.entity.Player;
 import org.bukkit.util.StringUtil;
 
 import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
 import com.gmail.nossr50.util.commands.CommandUtils;
 import com.gmail.nossr50.util.player.UserManager;
@@ -39,7 +40,13 @@ public class MobhealthCommand implements TabExecutor {
 
         switch (args.length) {
             case 1:
-                PlayerProfile playerProfile = UserManager.getPlayer((Player) sender).getProfile();
+                McMMOPlayer mcMMOPlayer = UserManager.getPlayer((Player) sender);
+
+                if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                    return true;
+                }
+
+                PlayerProfile playerProfile = mcMMOPlayer.getProfile();
 
                 try {
                     MobHealthbarType type = MobHealthbarType.valueOf(args[0].toUpperCase().trim());
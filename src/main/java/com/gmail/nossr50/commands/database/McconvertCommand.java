@@ -0,0 +1,67 @@
+package com.gmail.nossr50.commands.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabExecutor;
+import org.bukkit.util.StringUtil;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.datatypes.database.DatabaseType;
+import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.runnables.database.DatabaseConversionTask;
+import com.gmail.nossr50.util.player.UserManager;
+
+import com.google.common.collect.ImmutableList;
+
+public class McconvertCommand implements TabExecutor {
+    private static final List<String> DATABASE_TYPES;
+
+    static {
+        ArrayList<String> types = new ArrayList<String>();
+
+        for (DatabaseType type : DatabaseType.values()) {
+            types.add(type.name().toLowerCase());
+        }
+
+        DATABASE_TYPES = ImmutableList.copyOf(types);
+    }
+
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        switch (args.length) {
+            case 1:
+                DatabaseType sourceType = DatabaseType.getDatabaseType(args[0]);
+
+                if (sourceType == null) {
+                    return false;
+                }
+
+                if (sourceType == Config.getInstance().getDatabaseType()) {
+                    sender.sendMessage(LocaleLoader.getString("Commands.mcconvert.Same", sourceType.name()));
+                    return true;
+                }
+
+                sender.sendMessage(LocaleLoader.getString("Commands.mcconvert.Start", sourceType.name()));
+                UserManager.saveAll();
+                new DatabaseConversionTask(sourceType, sender).runTaskAsynchronously(mcMMO.p);
+                return true;
+
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender sender, Command command, String alias, String[] args) {
+        switch (args.length) {
+            case 1:
+                return StringUtil.copyPartialMatches(args[0], DATABASE_TYPES, new ArrayList<String>(DATABASE_TYPES.size()));
+            default:
+                return ImmutableList.of();
+        }
+    }
+}
@@ -7,8 +7,7 @@ import org.bukkit.command.CommandSender;
 import org.bukkit.command.TabExecutor;
 
 import com.gmail.nossr50.mcMMO;
-import com.gmail.nossr50.config.Config;
-import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.runnables.database.UserPurgeTask;
 
 import com.google.common.collect.ImmutableList;
 
@@ -17,13 +16,7 @@ public class McpurgeCommand implements TabExecutor {
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         switch (args.length) {
             case 0:
-                mcMMO.getDatabaseManager().purgePowerlessUsers();
-
-                if (Config.getInstance().getOldUsersCutoff() != -1) {
-                    mcMMO.getDatabaseManager().purgeOldUsers();
-                }
-
-                sender.sendMessage(LocaleLoader.getString("Commands.mcpurge.Success"));
+                new UserPurgeTask(sender).runTaskAsynchronously(mcMMO.p);
                 return true;
 
             default:
@@ -48,6 +48,11 @@ public abstract class ExperienceCommand implements TabExecutor {
 
                 player = (Player) sender;
                 mcMMOPlayer = UserManager.getPlayer(player);
+
+                if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                    return true;
+                }
+
                 profile = mcMMOPlayer.getProfile();
 
                 editValues();
@@ -78,6 +83,10 @@ public abstract class ExperienceCommand implements TabExecutor {
                     profile.save(); // Since this is a temporary profile, we save it here.
                 }
                 else {
+                    if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                        return true;
+                    }
+
                     profile = mcMMOPlayer.getProfile();
                     player = mcMMOPlayer.getPlayer();
                     editValues();
@@ -99,7 +108,7 @@ public abstract class ExperienceCommand implements TabExecutor {
                 Set<String> playerNames = UserManager.getPlayers().keySet();
                 return StringUtil.copyPartialMatches(args[0], playerNames, new ArrayList<String>(playerNames.size()));
             case 2:
-                return StringUtil.copyPartialMatches(args[1], SkillType.SKILL_NAMES, new ArrayList<String>(SkillType.SKILL_NAMES.size()));
+                return StringUtil.copyPartialMatches(args[1], SkillType.getSkillNames(), new ArrayList<String>(SkillType.getSkillNames().size()));
             default:
                 return ImmutableList.of();
         }
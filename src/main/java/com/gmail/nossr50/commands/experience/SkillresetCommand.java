@@ -42,6 +42,11 @@ public class SkillresetCommand extends ExperienceCommand {
 
                 player = (Player) sender;
                 mcMMOPlayer = UserManager.getPlayer(player);
+
+                if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                    return true;
+                }
+
                 profile = mcMMOPlayer.getProfile();
 
                 editValues();
@@ -71,6 +76,10 @@ public class SkillresetCommand extends ExperienceCommand {
                     profile.save(); // Since this is a temporary profile, we save it here.
                 }
                 else {
+                    if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                        return true;
+                    }
+
                     profile = mcMMOPlayer.getProfile();
                     player = mcMMOPlayer.getPlayer();
 
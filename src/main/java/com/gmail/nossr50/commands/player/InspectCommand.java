@@ -69,6 +69,10 @@ public class InspectCommand implements TabExecutor {
                 else {
                     Player target = mcMMOPlayer.getPlayer();
 
+                    if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                        return true;
+                    }
+
                     if (CommandUtils.hidden(sender, target, Permissions.inspectHidden(sender))) {
                         if (!Permissions.inspectOffline(sender)) {
                             sender.sendMessage(LocaleLoader.getString("Inspect.Offline"));
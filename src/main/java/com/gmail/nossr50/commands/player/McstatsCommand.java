@@ -27,6 +27,10 @@ public class McstatsCommand implements TabExecutor {
                 Player player = (Player) sender;
                 McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
 
+                if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+                    return true;
+                }
+
                 if (Config.getInstance().getMcstatsScoreboardsEnabled()) {
                     ScoreboardManager.setupPlayerScoreboard(player.getName());
                     ScoreboardManager.enablePlayerStatsScoreboard(mcMMOPlayer);
@@ -59,6 +59,10 @@ public abstract class SkillCommand implements TabExecutor {
         player = (Player) sender;
         mcMMOPlayer = UserManager.getPlayer(player);
 
+        if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+            return true;
+        }
+
         switch (args.length) {
             case 0:
                 profile = mcMMOPlayer.getProfile();
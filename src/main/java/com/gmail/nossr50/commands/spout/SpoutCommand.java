@@ -7,6 +7,7 @@ import org.bukkit.entity.Player;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.spout.SpoutConfig;
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
 import com.gmail.nossr50.datatypes.spout.huds.McMMOHud;
 import com.gmail.nossr50.locale.LocaleLoader;
@@ -28,7 +29,13 @@ public abstract class SpoutCommand implements TabExecutor {
             return true;
         }
 
-        playerProfile = UserManager.getPlayer((Player) sender).getProfile();
+        McMMOPlayer mcMMOPlayer = UserManager.getPlayer((Player) sender);
+
+        if (CommandUtils.profilePending(sender, mcMMOPlayer)) {
+            return true;
+        }
+
+        playerProfile = mcMMOPlayer.getProfile();
         spoutHud = playerProfile.getSpoutHud();
 
         if (spoutHud == null) {
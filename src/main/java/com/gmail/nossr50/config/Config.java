@@ -7,6 +7,7 @@ import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.entity.EntityType;
 
 import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.database.DatabaseType;
 import com.gmail.nossr50.datatypes.skills.AbilityType;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 import com.gmail.nossr50.util.StringUtils;
@@ -83,6 +84,19 @@ public class Config extends AutoUpdateConfigLoader {
     public int getPurgeInterval() { return config.getInt("Database_Purging.Purge_Interval", -1); }
     public int getOldUsersCutoff() { return config.getInt("Database_Purging.Old_User_Cutoff", 6); }
 
+    /* Database */
+    public DatabaseType getDatabaseType() {
+        if (getUseMySQL()) {
+            return DatabaseType.MYSQL;
+        }
+
+        return getUseSQLite() ? DatabaseType.SQLITE : DatabaseType.FLATFILE;
+    }
+
+    /* SQLite */
+    public boolean getUseSQLite() { return config.getBoolean("SQLite.Enabled", false); }
+    public String getSQLiteFileName() { return config.getString("SQLite.File_Name", "mcmmo.db"); }
+
     /* mySQL */
     public boolean getUseMySQL() { return config.getBoolean("MySQL.Enabled", false); }
     public String getMySQLTablePrefix() { return config.getString("MySQL.Database.TablePrefix", "mcmmo_"); }
@@ -90,6 +104,7 @@ public class Config extends AutoUpdateConfigLoader {
     public String getMySQLUserName() { return getStringIncludingInts(config, "MySQL.Database.User_Name"); }
     public int getMySQLServerPort() { return config.getInt("MySQL.Server.Port", 3306); }
     public String getMySQLServerName() { return config.getString("MySQL.Server.Address", "localhost"); }
+    public int getMySQLMaxConnections() { return config.getInt("MySQL.Database.Max_Connections", 4); }
 
     public String getMySQLUserPassword() {
         if (getStringIncludingInts(config, "MySQL.Database.User_Password") != null) {
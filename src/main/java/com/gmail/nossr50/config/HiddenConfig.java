@@ -9,7 +9,7 @@ public class HiddenConfig {
     private static String fileName;
     private static YamlConfiguration config;
     private static boolean chunkletsEnabled;
-    private static int conversionRate;
+    private static int conversionThreads;
     private static boolean useEnchantmentBuffs;
     private static boolean resendChunksAfterBlockAbility;
 
@@ -30,7 +30,7 @@ public class HiddenConfig {
         if (mcMMO.p.getResource(fileName) != null) {
             config = YamlConfiguration.loadConfiguration(mcMMO.p.getResource(fileName));
             chunkletsEnabled = config.getBoolean("Options.Chunklets", true);
-            conversionRate = config.getInt("Options.ConversionRate", 1);
+            conversionThreads = config.getInt("Options.ConversionThreads", 0);
             useEnchantmentBuffs = config.getBoolean("Options.EnchantmentBuffs", true);
             resendChunksAfterBlockAbility = config.getBoolean("Options.RefreshChunks", false);
         }
@@ -40,8 +40,8 @@ public class HiddenConfig {
         return chunkletsEnabled;
     }
 
-    public int getConversionRate() {
-        return conversionRate;
+    public int getConversionThreads() {
+        return conversionThreads;
     }
 
     public boolean useEnchantmentBuffs() {
@@ -0,0 +1,195 @@
+package com.gmail.nossr50.database;
+
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Properties;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.runnables.database.SQLReconnectTask;
+
+/**
+ * A bounded pool of database connections.
+ * <p>
+ * Idle connections are validated when they are borrowed, unless they were used
+ * very recently, and connections that failed a query are closed when they are
+ * released. New connections are opened on demand, and failed attempts are
+ * retried in progressively larger intervals up to MAX_WAIT.
+ * <p>
+ * The main thread only waits briefly for a free connection, so a pool busy with
+ * slow queries doesn't stall the server.
+ * <p>
+ * This allows for MySQL to time out idle connections as needed by
+ * server operator, without affecting McMMO, while still providing
+ * protection against a database outage taking down Bukkit's tick
+ * processing loop due to attempting a database connection each
+ * time McMMO needs the database.
+ */
+final class ConnectionPool {
+    // Scale waiting time by this much per failed attempt
+    private final double SCALING_FACTOR = 40.0;
+
+    // Minimum wait in nanoseconds (default 500ms)
+    private final long MIN_WAIT = 500L * 1000000L;
+
+    // Maximum time to wait between reconnects (default 5 minutes)
+    private final long MAX_WAIT = 5L * 60L * 1000L * 1000000L;
+
+    // How long to wait when checking if connection is valid (default 3 seconds)
+    private final int VALID_TIMEOUT = 3;
+
+    // Connections used within this many milliseconds are not validated again (default 5 seconds)
+    private final long VALIDATION_INTERVAL = 5000L;
+
+    // How long to wait for a connection to be returned to the pool in milliseconds (default 10 seconds)
+    private final long BORROW_TIMEOUT = 10L * 1000L;
+
+    // How long the main thread waits for a connection to be returned to the pool in milliseconds (default 50ms)
+    private final long MAIN_THREAD_BORROW_TIMEOUT = 50L;
+
+    private final String connectionString;
+    private final Properties connectionProperties;
+
+    private final BlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<PooledConnection>();
+    private final Semaphore permits;
+    private volatile boolean closed;
+
+    // When next to try connecting to Database in nanoseconds
+    private long nextReconnectTimestamp = 0L;
+
+    // How many connection attempts have failed
+    private int reconnectAttempt = 0;
+
+    ConnectionPool(String connectionString, Properties connectionProperties, int maxConnections) {
+        this.connectionString = connectionString;
+        this.connectionProperties = connectionProperties;
+        permits = new Semaphore(Math.max(maxConnections, 1), true);
+    }
+
+    /**
+     * Borrow a connection, which must be given back with {@link #release}.
+     *
+     * @return a valid connection, or null if the database can't be reached
+     */
+    PooledConnection borrow() {
+        long timeout = mcMMO.p.getServer().isPrimaryThread() ? MAIN_THREAD_BORROW_TIMEOUT : BORROW_TIMEOUT;
+
+        try {
+            if (!permits.tryAcquire(timeout, TimeUnit.MILLISECONDS)) {
+                mcMMO.p.getLogger().warning("Timed out waiting for a free database connection!");
+                return null;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        PooledConnection connection;
+
+        // Most recently used connections are the least likely to have been dropped by the server
+        while ((connection = idleConnections.pollFirst()) != null) {
+            if (System.currentTimeMillis() - connection.getLastUsed() < VALIDATION_INTERVAL || connection.isValid(VALID_TIMEOUT)) {
+                return connection;
+            }
+
+            // Cleanup after ourselves for GC and MySQL's sake
+            connection.close();
+        }
+
+        connection = connect();
+
+        if (connection == null) {
+            permits.release();
+        }
+
+        return connection;
+    }
+
+    /**
+     * Give a borrowed connection back to the pool.
+     *
+     * @param connection The connection to return, may be null
+     */
+    void release(PooledConnection connection) {
+        if (connection == null) {
+            return;
+        }
+
+        connection.touch();
+
+        if (closed || connection.isBroken()) {
+            connection.close();
+        }
+        else {
+            idleConnections.offerFirst(connection);
+        }
+
+        permits.release();
+    }
+
+    /**
+     * Mark a borrowed connection as failed, so it is closed rather than reused
+     * when it is released. Call it when a query on the connection throws an
+     * SQLException, as the connection may have been dropped by the server.
+     *
+     * @param connection The connection that failed, may be null
+     */
+    void invalidate(PooledConnection connection) {
+        if (connection != null) {
+            connection.setBroken();
+        }
+    }
+
+    /**
+     * Close every idle connection. Connections still borrowed are closed when released.
+     */
+    void close() {
+        closed = true;
+
+        PooledConnection connection;
+
+        while ((connection = idleConnections.pollFirst()) != null) {
+            connection.close();
+        }
+    }
+
+    /**
+     * Attempt to open a new connection, unless we're waiting for the database to recover.
+     *
+     * @return the new connection, or null if it could not be opened
+     */
+    private synchronized PooledConnection connect() {
+        // If we're waiting for server to recover then leave early
+        if (nextReconnectTimestamp > 0 && nextReconnectTimestamp > System.nanoTime()) {
+            return null;
+        }
+
+        try {
+            mcMMO.p.getLogger().info("Attempting connection to MySQL...");
+            PooledConnection connection = new PooledConnection(DriverManager.getConnection(connectionString, connectionProperties));
+            mcMMO.p.getLogger().info("Connection to MySQL was a success!");
+
+            // Schedule a database save if we really had an outage
+            if (reconnectAttempt > 1) {
+                new SQLReconnectTask().runTaskLater(mcMMO.p, 5);
+            }
+
+            nextReconnectTimestamp = 0;
+            reconnectAttempt = 0;
+            return connection;
+        }
+        catch (SQLException ex) {
+            if (reconnectAttempt == 0 || reconnectAttempt >= 11) {
+                mcMMO.p.getLogger().info("Connection to MySQL failed!");
+            }
+        }
+
+        reconnectAttempt++;
+        nextReconnectTimestamp = (long) (System.nanoTime() + Math.min(MAX_WAIT, (reconnectAttempt * SCALING_FACTOR * MIN_WAIT)));
+        return null;
+    }
+}
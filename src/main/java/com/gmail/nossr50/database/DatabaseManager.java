@@ -1,7 +1,9 @@
 package com.gmail.nossr50.database;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.datatypes.database.PlayerStat;
@@ -12,13 +14,21 @@ public interface DatabaseManager {
 
     /**
      * Purge users with 0 power level from the database.
+     * Safe to call off the main thread.
+     *
+     * @param excludedPlayers Lowercase names of players who must not be purged, such as those online
+     * @return the names of the purged users
      */
-    public void purgePowerlessUsers();
+    public List<String> purgePowerlessUsers(Set<String> excludedPlayers);
 
     /**
      * Purge users who haven't logged on in over a certain time frame from the database.
+     * Safe to call off the main thread.
+     *
+     * @param excludedPlayers Lowercase names of players who must not be purged, such as those online
+     * @return the names of the purged users
      */
-    public void purgeOldUsers();
+    public List<String> purgeOldUsers(Set<String> excludedPlayers);
 
     /**
      * Remove a user from the database.
@@ -32,8 +42,17 @@ public interface DatabaseManager {
      * Save a user to the database.
      *
      * @param profile The profile of the player to save
+     * @return true if the user was successfully saved, false otherwise
      */
-    public void saveUser(PlayerProfile profile);
+    public boolean saveUser(PlayerProfile profile);
+
+    /**
+     * Save a batch of users to the database.
+     *
+     * @param profiles The profiles of the players to save
+     * @return true if every user was successfully saved, false otherwise
+     */
+    public boolean saveUsers(Collection<PlayerProfile> profiles);
 
     /**
     * Retrieve leaderboard info.
@@ -64,10 +83,18 @@ public interface DatabaseManager {
      * Load a player from the database.
      *
      * @param playerName The name of the player to load from the database
-     * @return The player's data
+     * @return The player's data, empty if the player doesn't exist, or null if the database could not be read
      */
     public List<String> loadPlayerData(String playerName);
 
+    /**
+     * Get the names of all users stored in the database.
+     * Safe to call off the main thread.
+     *
+     * @return the names of the stored users
+     */
+    public List<String> getStoredUsers();
+
     /**
      * Convert player data to a different storage format.
      *
@@ -76,4 +103,17 @@ public interface DatabaseManager {
      * @throws Exception
      */
     public boolean convert(String[] data) throws Exception;
+
+    /**
+     * Convert the data of several players to a different storage format at once.
+     *
+     * @param data The data of each player
+     * @return the number of players converted, or -1 if the data could not be written
+     */
+    public int convertUsers(List<String[]> data);
+
+    /**
+     * Release any resources held by the database, called when the plugin is disabled.
+     */
+    public void onDisable();
 }
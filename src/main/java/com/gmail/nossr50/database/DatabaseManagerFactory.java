@@ -1,9 +1,29 @@
 package com.gmail.nossr50.database;
 
 import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.datatypes.database.DatabaseType;
 
 public class DatabaseManagerFactory {
     public static DatabaseManager getDatabaseManager() {
-        return Config.getInstance().getUseMySQL() ? new SQLDatabaseManager() : new FlatfileDatabaseManager();
+        return createDatabaseManager(Config.getInstance().getDatabaseType());
+    }
+
+    /**
+     * Create a manager for a given type of database, regardless of the one in use.
+     *
+     * @param type The type of database
+     * @return the database manager
+     */
+    public static DatabaseManager createDatabaseManager(DatabaseType type) {
+        switch (type) {
+            case MYSQL:
+                return new SQLDatabaseManager();
+
+            case SQLITE:
+                return new SQLiteDatabaseManager();
+
+            default:
+                return new FlatfileDatabaseManager();
+        }
     }
 }
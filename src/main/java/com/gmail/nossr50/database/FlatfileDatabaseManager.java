@@ -1,19 +1,17 @@
 package com.gmail.nossr50.database;
 
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import org.bukkit.OfflinePlayer;
+import java.util.Set;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
@@ -24,97 +22,73 @@ import com.gmail.nossr50.datatypes.skills.AbilityType;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 import com.gmail.nossr50.datatypes.spout.huds.HudType;
 import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.util.StringUtils;
 
 public final class FlatfileDatabaseManager implements DatabaseManager {
-    private final HashMap<SkillType, List<PlayerStat>> playerStatHash = new HashMap<SkillType, List<PlayerStat>>();
-    private final List<PlayerStat> powerLevels = new ArrayList<PlayerStat>();
-    private long lastUpdate = 0;
+    // Positions of the skill levels in a line of the users file
+    private static final int[] SKILL_LEVEL_INDEXES = { 1, 5, 7, 8, 9, 10, 11, 12, 13, 14, 24, 34 };
+
+    private final Map<SkillType, LeaderboardIndex> leaderboards = new EnumMap<SkillType, LeaderboardIndex>(SkillType.class);
+    private final LeaderboardIndex powerLevels = new LeaderboardIndex();
 
-    private final long UPDATE_WAIT_TIME = 600000L; // 10 minutes
     private final File usersFile;
+    private final FlatfileUserStore userStore;
 
     protected FlatfileDatabaseManager() {
         usersFile = new File(mcMMO.getUsersFilePath());
+        userStore = new FlatfileUserStore(usersFile);
         createDatabase();
-        updateLeaderboards();
-    }
-
-    public void purgePowerlessUsers() {
-        int purgedUsers = 0;
 
-        mcMMO.p.getLogger().info("Purging powerless users...");
+        try {
+            userStore.open();
+        }
+        catch (IOException e) {
+            mcMMO.p.getLogger().severe("Exception while indexing " + usersFile.getPath() + " (Are you sure you formatted it correctly?)" + e.toString());
+        }
 
-        for (PlayerStat stat : powerLevels) {
-            if (stat.statVal == 0 && mcMMO.p.getServer().getPlayerExact(stat.name) == null && removeUser(stat.name)) {
-                purgedUsers++;
-            }
+        for (SkillType skillType : SkillType.nonChildSkills()) {
+            leaderboards.put(skillType, new LeaderboardIndex());
         }
 
-        mcMMO.p.getLogger().info("Purged " + purgedUsers + " users from the database.");
+        loadLeaderboards();
     }
 
-    public void purgeOldUsers() {
-        int removedPlayers = 0;
-        long currentTime = System.currentTimeMillis();
+    public List<String> purgePowerlessUsers(final Set<String> excludedPlayers) {
+        return removeUsers(new FlatfileUserStore.RecordFilter() {
+            @Override
+            public boolean matches(String[] data) {
+                return !excludedPlayers.contains(data[0].toLowerCase()) && getPowerLevel(data) == 0;
+            }
+        });
+    }
 
-        mcMMO.p.getLogger().info("Purging old users...");
+    public List<String> purgeOldUsers(final Set<String> excludedPlayers) {
+        final long currentTime = System.currentTimeMillis();
 
-        for (OfflinePlayer player : mcMMO.p.getServer().getOfflinePlayers()) {
-            if (!player.isOnline() && (currentTime - player.getLastPlayed() > PURGE_TIME && removeUser(player.getName()))) {
-                removedPlayers++;
-            }
-        }
+        return removeUsers(new FlatfileUserStore.RecordFilter() {
+            @Override
+            public boolean matches(String[] data) {
+                // Users saved before the last login was recorded are kept, we can't tell how old they are
+                long lastLogin = data.length > 37 ? StringUtils.getLong(data[37]) : 0;
 
-        mcMMO.p.getLogger().info("Purged " + removedPlayers + " users from the database.");
+                return lastLogin > 0 && !excludedPlayers.contains(data[0].toLowerCase()) && currentTime - lastLogin * Misc.TIME_CONVERSION_FACTOR > PURGE_TIME;
+            }
+        });
     }
 
     public boolean removeUser(String playerName) {
         boolean worked = false;
 
-        BufferedReader in = null;
-        FileWriter out = null;
-        String usersFilePath = mcMMO.getUsersFilePath();
-
         try {
-            in = new BufferedReader(new FileReader(usersFilePath));
-            StringBuilder writer = new StringBuilder();
-            String line = "";
-
-            while ((line = in.readLine()) != null) {
-                // Write out the same file but when we get to the player we want to remove, we skip his line.
-                if (!worked && line.split(":")[0].equalsIgnoreCase(playerName)) {
-                    mcMMO.p.getLogger().info("User found, removing...");
-                    worked = true;
-                    continue; // Skip the player
-                }
+            worked = userStore.remove(playerName);
 
-                writer.append(line).append("\r\n");
+            if (worked) {
+                mcMMO.p.getLogger().info("User found, removing...");
+                removeFromLeaderboards(playerName);
             }
-
-            out = new FileWriter(usersFilePath); // Write out the new file
-            out.write(writer.toString());
-        }
-        catch (Exception e) {
-            mcMMO.p.getLogger().severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e.toString());
         }
-        finally {
-            if (in != null) {
-                try {
-                    in.close();
-                }
-                catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
-
-            if (out != null) {
-                try {
-                    out.close();
-                }
-                catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
+        catch (IOException e) {
+            mcMMO.p.getLogger().severe("Exception while removing " + playerName + " from " + usersFile.getPath() + e.toString());
         }
 
         Misc.profileCleanup(playerName);
@@ -122,194 +96,133 @@ public final class FlatfileDatabaseManager implements DatabaseManager {
         return worked;
     }
 
-    public void saveUser(PlayerProfile profile) {
+    public boolean saveUser(PlayerProfile profile) {
         String playerName = profile.getPlayerName();
 
-        BufferedReader in = null;
-        FileWriter out = null;
-        String usersFilePath = mcMMO.getUsersFilePath();
-
         try {
-            // Open the file
-            in = new BufferedReader(new FileReader(usersFilePath));
-            StringBuilder writer = new StringBuilder();
-            String line;
-
-            // While not at the end of the file
-            while ((line = in.readLine()) != null) {
-                // Read the line in and copy it to the output it's not the player we want to edit
-                if (!line.split(":")[0].equalsIgnoreCase(playerName)) {
-                    writer.append(line).append("\r\n");
-                }
-                else {
-                    // Otherwise write the new player information
-                    writer.append(playerName).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.MINING)).append(":");
-                    writer.append(":");
-                    writer.append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.MINING)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.WOODCUTTING)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.WOODCUTTING)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.REPAIR)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.UNARMED)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.HERBALISM)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.EXCAVATION)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.ARCHERY)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.SWORDS)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.AXES)).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.ACROBATICS)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.REPAIR)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.UNARMED)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.HERBALISM)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.EXCAVATION)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.ARCHERY)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.SWORDS)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.AXES)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.ACROBATICS)).append(":");
-                    writer.append(":");
-                    writer.append(profile.getSkillLevel(SkillType.TAMING)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.TAMING)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.BERSERK)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.GIGA_DRILL_BREAKER)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.TREE_FELLER)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.GREEN_TERRA)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.SERRATED_STRIKES)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.SKULL_SPLITTER)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.SUPER_BREAKER)).append(":");
-                    HudType hudType = profile.getHudType();
-                    writer.append(hudType == null ? "STANDARD" : hudType.toString()).append(":");
-                    writer.append(profile.getSkillLevel(SkillType.FISHING)).append(":");
-                    writer.append(profile.getSkillXpLevel(SkillType.FISHING)).append(":");
-                    writer.append((int) profile.getSkillDATS(AbilityType.BLAST_MINING)).append(":");
-                    writer.append(System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR).append(":");
-                    MobHealthbarType mobHealthbarType = profile.getMobHealthbarType();
-                    writer.append(mobHealthbarType == null ? Config.getInstance().getMobHealthbarDefault().toString() : mobHealthbarType.toString()).append(":");
-                    writer.append("\r\n");
-                }
+            // The user was removed, there's nothing left to save
+            if (!userStore.writeIfPresent(playerName, writeUserLine(profile))) {
+                return true;
             }
-
-            // Write the new file
-            out = new FileWriter(usersFilePath);
-            out.write(writer.toString());
         }
-        catch (Exception e) {
+        catch (IOException e) {
             e.printStackTrace();
+            return false;
         }
-        finally {
-            if (in != null) {
-                try {
-                    in.close();
-                }
-                catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
 
-            if (out != null) {
-                try {
-                    out.close();
-                }
-                catch (IOException ex) {
-                    ex.printStackTrace();
-                }
-            }
+        int powerLevel = 0;
+
+        for (SkillType skillType : SkillType.nonChildSkills()) {
+            int skillLevel = profile.getSkillLevel(skillType);
+
+            leaderboards.get(skillType).update(playerName, skillLevel);
+            powerLevel += skillLevel;
+        }
+
+        powerLevels.update(playerName, powerLevel);
+        return true;
+    }
+
+    public boolean saveUsers(Collection<PlayerProfile> profiles) {
+        boolean success = true;
+
+        // Each record is updated in place, so there's nothing to merge across the batch
+        for (PlayerProfile profile : profiles) {
+            success &= saveUser(profile);
         }
+
+        return success;
     }
 
     public List<PlayerStat> readLeaderboard(String skillName, int pageNumber, int statsPerPage) {
-        updateLeaderboards();
-        List<PlayerStat> statsList = skillName.equalsIgnoreCase("all") ? powerLevels : playerStatHash.get(SkillType.getSkill(skillName));
+        LeaderboardIndex leaderboard = skillName.equalsIgnoreCase("all") ? powerLevels : leaderboards.get(SkillType.getSkill(skillName));
         int fromIndex = (Math.max(pageNumber, 1) - 1) * statsPerPage;
 
-        return statsList.subList(Math.min(fromIndex, statsList.size()), Math.min(fromIndex + statsPerPage, statsList.size()));
+        return leaderboard.getRange(fromIndex, statsPerPage);
     }
 
     public Map<String, Integer> readRank(String playerName) {
-        updateLeaderboards();
-
         Map<String, Integer> skills = new HashMap<String, Integer>();
 
         for (SkillType skill : SkillType.nonChildSkills()) {
-            skills.put(skill.name(), getPlayerRank(playerName, playerStatHash.get(skill)));
+            skills.put(skill.name(), leaderboards.get(skill).getRank(playerName));
         }
 
-        skills.put("ALL", getPlayerRank(playerName, powerLevels));
+        skills.put("ALL", powerLevels.getRank(playerName));
 
         return skills;
     }
 
     public void newUser(String playerName) {
+        StringBuilder out = new StringBuilder();
+
+        // Add the player to the end
+        out.append(playerName).append(":");
+        out.append("0:"); // Mining
+        out.append(":");
+        out.append(":");
+        out.append("0:"); // Xp
+        out.append("0:"); // Woodcutting
+        out.append("0:"); // WoodCuttingXp
+        out.append("0:"); // Repair
+        out.append("0:"); // Unarmed
+        out.append("0:"); // Herbalism
+        out.append("0:"); // Excavation
+        out.append("0:"); // Archery
+        out.append("0:"); // Swords
+        out.append("0:"); // Axes
+        out.append("0:"); // Acrobatics
+        out.append("0:"); // RepairXp
+        out.append("0:"); // UnarmedXp
+        out.append("0:"); // HerbalismXp
+        out.append("0:"); // ExcavationXp
+        out.append("0:"); // ArcheryXp
+        out.append("0:"); // SwordsXp
+        out.append("0:"); // AxesXp
+        out.append("0:"); // AcrobaticsXp
+        out.append(":");
+        out.append("0:"); // Taming
+        out.append("0:"); // TamingXp
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("0:"); // DATS
+        out.append("STANDARD").append(":"); // HUD
+        out.append("0:"); // Fishing
+        out.append("0:"); // FishingXp
+        out.append("0:"); // Blast Mining
+        out.append(String.valueOf(System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR)).append(":"); // LastLogin
+        out.append(Config.getInstance().getMobHealthbarDefault().toString()).append(":"); // Mob Healthbar HUD
+
+        // Add more in the same format as the line above
+
         try {
-            // Open the file to write the player
-            BufferedWriter out = new BufferedWriter(new FileWriter(mcMMO.getUsersFilePath(), true));
-
-            // Add the player to the end
-            out.append(playerName).append(":");
-            out.append("0:"); // Mining
-            out.append(":");
-            out.append(":");
-            out.append("0:"); // Xp
-            out.append("0:"); // Woodcutting
-            out.append("0:"); // WoodCuttingXp
-            out.append("0:"); // Repair
-            out.append("0:"); // Unarmed
-            out.append("0:"); // Herbalism
-            out.append("0:"); // Excavation
-            out.append("0:"); // Archery
-            out.append("0:"); // Swords
-            out.append("0:"); // Axes
-            out.append("0:"); // Acrobatics
-            out.append("0:"); // RepairXp
-            out.append("0:"); // UnarmedXp
-            out.append("0:"); // HerbalismXp
-            out.append("0:"); // ExcavationXp
-            out.append("0:"); // ArcheryXp
-            out.append("0:"); // SwordsXp
-            out.append("0:"); // AxesXp
-            out.append("0:"); // AcrobaticsXp
-            out.append(":");
-            out.append("0:"); // Taming
-            out.append("0:"); // TamingXp
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("0:"); // DATS
-            out.append("STANDARD").append(":"); // HUD
-            out.append("0:"); // Fishing
-            out.append("0:"); // FishingXp
-            out.append("0:"); // Blast Mining
-            out.append(String.valueOf(System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR)).append(":"); // LastLogin
-            out.append(Config.getInstance().getMobHealthbarDefault().toString()).append(":"); // Mob Healthbar HUD
-
-            // Add more in the same format as the line above
-
-            out.newLine();
-            out.close();
+            userStore.write(playerName, out.toString());
         }
         catch (Exception e) {
             e.printStackTrace();
+            return;
         }
+
+        for (LeaderboardIndex leaderboard : leaderboards.values()) {
+            leaderboard.update(playerName, 0);
+        }
+
+        powerLevels.update(playerName, 0);
     }
 
     public List<String> loadPlayerData(String playerName) {
         List<String> playerData = new ArrayList<String>();
         try {
-            // Open the user file
-            FileReader file = new FileReader(mcMMO.getUsersFilePath());
-            BufferedReader in = new BufferedReader(file);
-            String line;
+            // Look up the player's record
+            String line = userStore.read(playerName);
 
-            while ((line = in.readLine()) != null) {
-                // Find if the line contains the player we want.
+            if (line != null) {
                 String[] character = line.split(":");
 
-                if (!character[0].equalsIgnoreCase(playerName)) {
-                    continue;
-                }
-
                 // Skill levels
                 playerData.add(character[24]); // Taming
                 playerData.add(character[1]); // Mining
@@ -355,19 +268,58 @@ public final class FlatfileDatabaseManager implements DatabaseManager {
                 playerData.add(character.length > 33 ? character[33] : null); // HudType
                 playerData.add(character.length > 38 ? character[38] : null); // MobHealthBar
             }
-
-            in.close();
         }
         catch (Exception e) {
             e.printStackTrace();
+            return null;
         }
 
         return playerData;
     }
 
+    public List<String> getStoredUsers() {
+        try {
+            return userStore.getNames();
+        }
+        catch (IOException e) {
+            mcMMO.p.getLogger().severe("Exception while reading " + usersFile.getPath() + e.toString());
+            return new ArrayList<String>();
+        }
+    }
+
     public boolean convert(String[] character) throws Exception {
-        // Not implemented
-        return false;
+        return convertUsers(Collections.singletonList(character)) == 1;
+    }
+
+    public int convertUsers(List<String[]> data) {
+        int converted = 0;
+
+        for (String[] character : data) {
+            String playerName = character[0];
+
+            if (playerName == null || playerName.isEmpty() || playerName.equalsIgnoreCase("null")) {
+                continue;
+            }
+
+            StringBuilder line = new StringBuilder();
+
+            for (String field : character) {
+                line.append(field == null ? "" : field).append(":");
+            }
+
+            try {
+                userStore.write(playerName, line.toString());
+            }
+            catch (IOException e) {
+                mcMMO.p.getLogger().severe("Exception while writing " + usersFile.getPath() + e.toString());
+                return -1;
+            }
+
+            powerLevels.update(playerName, loadStats(playerName, character));
+            converted++;
+        }
+
+        return converted;
     }
 
     public boolean checkConnected() {
@@ -375,100 +327,43 @@ public final class FlatfileDatabaseManager implements DatabaseManager {
         return false;
     }
 
+    public void onDisable() {
+        userStore.close();
+    }
+
     /**
-* Update the leader boards.
-*/
-    private void updateLeaderboards() {
-        // Only update FFS leaderboards every 10 minutes.. this puts a lot of strain on the server (depending on the size of the database) and should not be done frequently
-        if (System.currentTimeMillis() < lastUpdate + UPDATE_WAIT_TIME) {
-            return;
+     * Build the leaderboards from the users file.
+     * They are kept up to date as users are saved and removed afterwards.
+     */
+    private void loadLeaderboards() {
+        String usersFilePath = mcMMO.getUsersFilePath();
+
+        for (LeaderboardIndex leaderboard : leaderboards.values()) {
+            leaderboard.clear();
         }
 
-        String usersFilePath = mcMMO.getUsersFilePath();
-        lastUpdate = System.currentTimeMillis(); // Log when the last update was run
-        powerLevels.clear(); // Clear old values from the power levels
-
-        // Initialize lists
-        List<PlayerStat> mining = new ArrayList<PlayerStat>();
-        List<PlayerStat> woodcutting = new ArrayList<PlayerStat>();
-        List<PlayerStat> herbalism = new ArrayList<PlayerStat>();
-        List<PlayerStat> excavation = new ArrayList<PlayerStat>();
-        List<PlayerStat> acrobatics = new ArrayList<PlayerStat>();
-        List<PlayerStat> repair = new ArrayList<PlayerStat>();
-        List<PlayerStat> swords = new ArrayList<PlayerStat>();
-        List<PlayerStat> axes = new ArrayList<PlayerStat>();
-        List<PlayerStat> archery = new ArrayList<PlayerStat>();
-        List<PlayerStat> unarmed = new ArrayList<PlayerStat>();
-        List<PlayerStat> taming = new ArrayList<PlayerStat>();
-        List<PlayerStat> fishing = new ArrayList<PlayerStat>();
-
-        // Read from the FlatFile database and fill our arrays with information
+        powerLevels.clear();
+
+        // Read from the FlatFile database and fill our leaderboards with information
         try {
             BufferedReader in = new BufferedReader(new FileReader(usersFilePath));
             String line = "";
-            ArrayList<String> players = new ArrayList<String>();
 
             while ((line = in.readLine()) != null) {
-                String[] data = line.split(":");
-                String playerName = data[0];
-                int powerLevel = 0;
-
-                // Prevent the same player from being added multiple times (I'd like to note that this shouldn't happen...)
-                if (players.contains(playerName)) {
+                if (FlatfileUserStore.isTombstone(line)) {
                     continue;
                 }
 
-                players.add(playerName);
-
-                powerLevel += loadStat(mining, playerName, data, 1);
-                powerLevel += loadStat(woodcutting, playerName, data, 5);
-                powerLevel += loadStat(repair, playerName, data, 7);
-                powerLevel += loadStat(unarmed, playerName, data, 8);
-                powerLevel += loadStat(herbalism, playerName, data, 9);
-                powerLevel += loadStat(excavation, playerName, data, 10);
-                powerLevel += loadStat(archery, playerName, data, 11);
-                powerLevel += loadStat(swords, playerName, data, 12);
-                powerLevel += loadStat(axes, playerName, data, 13);
-                powerLevel += loadStat(acrobatics, playerName, data, 14);
-                powerLevel += loadStat(taming, playerName, data, 24);
-                powerLevel += loadStat(fishing, playerName, data, 34);
-
-                powerLevels.add(new PlayerStat(playerName, powerLevel));
+                String[] data = line.split(":");
+                String playerName = data[0];
+
+                powerLevels.update(playerName, loadStats(playerName, data));
             }
             in.close();
         }
         catch (Exception e) {
             mcMMO.p.getLogger().severe("Exception while reading " + usersFilePath + " (Are you sure you formatted it correctly?)" + e.toString());
         }
-
-        SkillComparator c = new SkillComparator();
-
-        Collections.sort(mining, c);
-        Collections.sort(woodcutting, c);
-        Collections.sort(repair, c);
-        Collections.sort(unarmed, c);
-        Collections.sort(herbalism, c);
-        Collections.sort(excavation, c);
-        Collections.sort(archery, c);
-        Collections.sort(swords, c);
-        Collections.sort(axes, c);
-        Collections.sort(acrobatics, c);
-        Collections.sort(taming, c);
-        Collections.sort(fishing, c);
-        Collections.sort(powerLevels, c);
-
-        playerStatHash.put(SkillType.MINING, mining);
-        playerStatHash.put(SkillType.WOODCUTTING, woodcutting);
-        playerStatHash.put(SkillType.REPAIR, repair);
-        playerStatHash.put(SkillType.UNARMED, unarmed);
-        playerStatHash.put(SkillType.HERBALISM, herbalism);
-        playerStatHash.put(SkillType.EXCAVATION, excavation);
-        playerStatHash.put(SkillType.ARCHERY, archery);
-        playerStatHash.put(SkillType.SWORDS, swords);
-        playerStatHash.put(SkillType.AXES, axes);
-        playerStatHash.put(SkillType.ACROBATICS, acrobatics);
-        playerStatHash.put(SkillType.TAMING, taming);
-        playerStatHash.put(SkillType.FISHING, fishing);
     }
 
     private void createDatabase() {
@@ -487,39 +382,124 @@ public final class FlatfileDatabaseManager implements DatabaseManager {
         }
     }
 
-    private Integer getPlayerRank(String playerName, List<PlayerStat> statsList) {
-        if (statsList == null) {
-            return null;
+    private String writeUserLine(PlayerProfile profile) {
+        StringBuilder writer = new StringBuilder();
+
+        writer.append(profile.getPlayerName()).append(":");
+        writer.append(profile.getSkillLevel(SkillType.MINING)).append(":");
+        writer.append(":");
+        writer.append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.MINING)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.WOODCUTTING)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.WOODCUTTING)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.REPAIR)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.UNARMED)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.HERBALISM)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.EXCAVATION)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.ARCHERY)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.SWORDS)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.AXES)).append(":");
+        writer.append(profile.getSkillLevel(SkillType.ACROBATICS)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.REPAIR)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.UNARMED)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.HERBALISM)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.EXCAVATION)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.ARCHERY)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.SWORDS)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.AXES)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.ACROBATICS)).append(":");
+        writer.append(":");
+        writer.append(profile.getSkillLevel(SkillType.TAMING)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.TAMING)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.BERSERK)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.GIGA_DRILL_BREAKER)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.TREE_FELLER)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.GREEN_TERRA)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.SERRATED_STRIKES)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.SKULL_SPLITTER)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.SUPER_BREAKER)).append(":");
+        HudType hudType = profile.getHudType();
+        writer.append(hudType == null ? "STANDARD" : hudType.toString()).append(":");
+        writer.append(profile.getSkillLevel(SkillType.FISHING)).append(":");
+        writer.append(profile.getSkillXpLevel(SkillType.FISHING)).append(":");
+        writer.append((int) profile.getSkillDATS(AbilityType.BLAST_MINING)).append(":");
+        writer.append(System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR).append(":");
+        MobHealthbarType mobHealthbarType = profile.getMobHealthbarType();
+        writer.append(mobHealthbarType == null ? Config.getInstance().getMobHealthbarDefault().toString() : mobHealthbarType.toString()).append(":");
+
+        return writer.toString();
+    }
+
+    private List<String> removeUsers(FlatfileUserStore.RecordFilter filter) {
+        List<String> removed;
+
+        try {
+            removed = userStore.removeAll(filter);
+        }
+        catch (IOException e) {
+            mcMMO.p.getLogger().severe("Exception while purging users from " + usersFile.getPath() + e.toString());
+            return new ArrayList<String>();
+        }
+
+        for (String playerName : removed) {
+            removeFromLeaderboards(playerName);
         }
 
-        int currentPos = 1;
+        return removed;
+    }
+
+    private int getPowerLevel(String[] data) {
+        int powerLevel = 0;
 
-        for (PlayerStat stat : statsList) {
-            if (stat.name.equalsIgnoreCase(playerName)) {
-                return currentPos;
+        for (int dataIndex : SKILL_LEVEL_INDEXES) {
+            if (data.length > dataIndex) {
+                powerLevel += StringUtils.getInt(data[dataIndex]);
             }
+        }
 
-            currentPos++;
+        return powerLevel;
+    }
+
+    private void removeFromLeaderboards(String playerName) {
+        for (LeaderboardIndex leaderboard : leaderboards.values()) {
+            leaderboard.remove(playerName);
         }
 
-        return null;
+        powerLevels.remove(playerName);
+    }
+
+    /**
+     * Update every skill leaderboard with the levels from a line of the users file.
+     *
+     * @return the power level of the user
+     */
+    private int loadStats(String playerName, String[] data) {
+        int powerLevel = 0;
+
+        powerLevel += loadStat(SkillType.MINING, playerName, data, 1);
+        powerLevel += loadStat(SkillType.WOODCUTTING, playerName, data, 5);
+        powerLevel += loadStat(SkillType.REPAIR, playerName, data, 7);
+        powerLevel += loadStat(SkillType.UNARMED, playerName, data, 8);
+        powerLevel += loadStat(SkillType.HERBALISM, playerName, data, 9);
+        powerLevel += loadStat(SkillType.EXCAVATION, playerName, data, 10);
+        powerLevel += loadStat(SkillType.ARCHERY, playerName, data, 11);
+        powerLevel += loadStat(SkillType.SWORDS, playerName, data, 12);
+        powerLevel += loadStat(SkillType.AXES, playerName, data, 13);
+        powerLevel += loadStat(SkillType.ACROBATICS, playerName, data, 14);
+        powerLevel += loadStat(SkillType.TAMING, playerName, data, 24);
+        powerLevel += loadStat(SkillType.FISHING, playerName, data, 34);
+
+        return powerLevel;
     }
 
-    private int loadStat(List<PlayerStat> statList, String playerName, String[] data, int dataIndex) {
+    private int loadStat(SkillType skillType, String playerName, String[] data, int dataIndex) {
         if (data.length <= dataIndex) {
             return 0;
         }
 
         int statValue = Integer.parseInt(data[dataIndex]);
-        statList.add(new PlayerStat(playerName, statValue));
+        leaderboards.get(skillType).update(playerName, statValue);
 
         return statValue;
     }
-
-    private class SkillComparator implements Comparator<PlayerStat> {
-        @Override
-        public int compare(PlayerStat o1, PlayerStat o2) {
-            return (o2.statVal - o1.statVal);
-        }
-    }
 }
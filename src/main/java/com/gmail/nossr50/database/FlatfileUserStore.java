@@ -0,0 +1,480 @@
+package com.gmail.nossr50.database;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gmail.nossr50.mcMMO;
+
+/**
+ * Indexed view of the mcmmo.users file.
+ * <p>
+ * Every record keeps the classic colon-delimited layout, but is written into a
+ * slot that is padded with trailing spaces. An in-memory index maps each user
+ * name to the offset and length of its slot, so a save only rewrites that one
+ * slot. Records that outgrow their slot are appended to the end of the file,
+ * and only then tombstoned in place, so a failed write never loses the user.
+ * <p>
+ * Opening the store pads every record, so that the first save of a user that
+ * grew a little doesn't relocate it. Closing it strips padding and tombstones
+ * again, so that the file left on disk while the server is offline is in the
+ * exact format read by older versions and by
+ * {@link com.gmail.nossr50.runnables.database.SQLConversionTask}.
+ */
+public final class FlatfileUserStore {
+    private static final Charset CHARSET = Charset.forName("UTF-8");
+    private static final byte[] LINE_SEPARATOR = "\r\n".getBytes(CHARSET);
+
+    // Room left at the end of every record while the file is open, for its fields to grow in place
+    private static final int SLACK = 32;
+
+    private static final byte TOMBSTONE = '#';
+    private static final byte PADDING = ' ';
+
+    private final File usersFile;
+    private final Map<String, Record> index = new HashMap<String, Record>();
+
+    private RandomAccessFile file;
+    private long endOfFile;
+    private boolean needsLineSeparator;
+
+    FlatfileUserStore(File usersFile) {
+        this.usersFile = usersFile;
+    }
+
+    /**
+     * Compact the file and build the index. Must be called before any other method.
+     *
+     * @throws IOException if the users file could not be read
+     */
+    synchronized void open() throws IOException {
+        compact(SLACK);
+        buildIndex();
+        file = new RandomAccessFile(usersFile, "rw");
+    }
+
+    /**
+     * Compact the file and release the file handle.
+     */
+    synchronized void close() {
+        if (file == null) {
+            return;
+        }
+
+        try {
+            file.close();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+
+        file = null;
+        index.clear();
+
+        try {
+            compact();
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    synchronized boolean contains(String playerName) {
+        return index.containsKey(playerName.toLowerCase());
+    }
+
+    synchronized int size() {
+        return index.size();
+    }
+
+    /**
+     * Get the names of all users, as written in their records.
+     *
+     * @return the names of the users
+     * @throws IOException if a record could not be read
+     */
+    synchronized List<String> getNames() throws IOException {
+        List<String> names = new ArrayList<String>(index.size());
+
+        for (String key : index.keySet()) {
+            String line = read(key);
+            int end = line.indexOf(':');
+
+            names.add(end < 0 ? line : line.substring(0, end));
+        }
+
+        return names;
+    }
+
+    /**
+     * Read the record of a user.
+     *
+     * @param playerName The name of the user
+     * @return the record without its padding, or null if the user does not exist
+     * @throws IOException if the record could not be read
+     */
+    synchronized String read(String playerName) throws IOException {
+        Record record = index.get(playerName.toLowerCase());
+
+        if (record == null) {
+            return null;
+        }
+
+        byte[] bytes = new byte[record.length];
+
+        file.seek(record.offset);
+        file.readFully(bytes);
+
+        return trimPadding(new String(bytes, CHARSET));
+    }
+
+    /**
+     * Write the record of a user, adding it if it does not exist yet.
+     *
+     * @param playerName The name of the user
+     * @param line The complete record, without line separator
+     * @throws IOException if the record could not be written
+     */
+    synchronized void write(String playerName, String line) throws IOException {
+        String key = playerName.toLowerCase();
+        byte[] bytes = line.getBytes(CHARSET);
+        Record record = index.get(key);
+
+        if (record != null && bytes.length <= record.length) {
+            file.seek(record.offset);
+            file.write(pad(bytes, record.length));
+            return;
+        }
+
+        index.put(key, append(bytes));
+
+        if (record != null) {
+            writeTombstone(record);
+        }
+    }
+
+    /**
+     * Write the record of a user, unless it was removed.
+     *
+     * @param playerName The name of the user
+     * @param line The complete record, without line separator
+     * @return true if the record was written, false if the user does not exist
+     * @throws IOException if the record could not be written
+     */
+    synchronized boolean writeIfPresent(String playerName, String line) throws IOException {
+        if (!contains(playerName)) {
+            return false;
+        }
+
+        write(playerName, line);
+        return true;
+    }
+
+    /**
+     * Remove the record of a user.
+     *
+     * @param playerName The name of the user
+     * @return true if the user existed, false otherwise
+     * @throws IOException if the record could not be tombstoned
+     */
+    synchronized boolean remove(String playerName) throws IOException {
+        Record record = index.remove(playerName.toLowerCase());
+
+        if (record == null) {
+            return false;
+        }
+
+        writeTombstone(record);
+        return true;
+    }
+
+    /**
+     * Remove every user whose record matches a filter, in a single pass over the file.
+     *
+     * @param filter The filter selecting the users to remove
+     * @return the names of the removed users
+     * @throws IOException if the file could not be read or a record could not be tombstoned
+     */
+    synchronized List<String> removeAll(RecordFilter filter) throws IOException {
+        List<String> removed = new ArrayList<String>();
+        List<Record> records = new ArrayList<Record>();
+        InputStream in = new BufferedInputStream(new FileInputStream(usersFile));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long lineStart = 0;
+        long position = 0;
+        int b;
+
+        try {
+            while ((b = in.read()) != -1) {
+                position++;
+
+                if (b != '\n') {
+                    line.write(b);
+                    continue;
+                }
+
+                matchLine(filter, lineStart, line.toByteArray(), removed, records);
+                line.reset();
+                lineStart = position;
+            }
+
+            if (line.size() > 0) {
+                matchLine(filter, lineStart, line.toByteArray(), removed, records);
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        for (int i = 0; i < removed.size(); i++) {
+            index.remove(removed.get(i).toLowerCase());
+            writeTombstone(records.get(i));
+        }
+
+        return removed;
+    }
+
+    /**
+     * Rewrite the users file without padding, tombstones or duplicate users.
+     * Only safe while the file is not open.
+     *
+     * @throws IOException if the users file could not be rewritten
+     */
+    synchronized void compact() throws IOException {
+        compact(0);
+    }
+
+    private void compact(int slack) throws IOException {
+        if (file != null) {
+            throw new IllegalStateException("Cannot compact " + usersFile.getPath() + " while it is open");
+        }
+
+        if (!usersFile.exists()) {
+            return;
+        }
+
+        File tempFile = new File(usersFile.getPath() + ".tmp");
+        Set<String> players = new HashSet<String>();
+        BufferedReader in = null;
+        BufferedWriter out = null;
+        int dropped = 0;
+
+        try {
+            in = new BufferedReader(new InputStreamReader(new FileInputStream(usersFile), CHARSET));
+            out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), CHARSET));
+            String line;
+
+            while ((line = in.readLine()) != null) {
+                if (isTombstone(line)) {
+                    dropped++;
+                    continue;
+                }
+
+                // Prevent the same player from being stored multiple times, the first record always won when reading
+                if (!players.add(line.split(":")[0].toLowerCase())) {
+                    dropped++;
+                    continue;
+                }
+
+                out.write(trimPadding(line));
+
+                for (int i = 0; i < slack; i++) {
+                    out.write(PADDING);
+                }
+
+                out.write("\r\n");
+            }
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException ex) {
+                    ex.printStackTrace();
+                }
+            }
+
+            if (out != null) {
+                out.close();
+            }
+        }
+
+        if (!usersFile.delete() || !tempFile.renameTo(usersFile)) {
+            throw new IOException("Could not replace " + usersFile.getPath() + " with " + tempFile.getPath());
+        }
+
+        if (dropped > 0) {
+            mcMMO.p.debug("Compacted " + usersFile.getName() + ", " + dropped + " stale records removed.");
+        }
+    }
+
+    /**
+     * Check if a line of the users file holds no user.
+     *
+     * @param line The line to check
+     * @return true if the line is a tombstone or blank, false otherwise
+     */
+    public static boolean isTombstone(String line) {
+        return line.trim().isEmpty() || line.charAt(0) == TOMBSTONE;
+    }
+
+    private void buildIndex() throws IOException {
+        index.clear();
+        endOfFile = 0;
+        needsLineSeparator = false;
+
+        if (!usersFile.exists()) {
+            return;
+        }
+
+        InputStream in = new BufferedInputStream(new FileInputStream(usersFile));
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        long lineStart = 0;
+        long position = 0;
+        int b;
+
+        try {
+            while ((b = in.read()) != -1) {
+                position++;
+
+                if (b == '\n') {
+                    indexLine(lineStart, line.toByteArray());
+                    line.reset();
+                    lineStart = position;
+                    continue;
+                }
+
+                line.write(b);
+            }
+
+            if (line.size() > 0) {
+                indexLine(lineStart, line.toByteArray());
+                needsLineSeparator = true;
+            }
+        }
+        finally {
+            in.close();
+        }
+
+        endOfFile = position;
+    }
+
+    private void indexLine(long offset, byte[] bytes) {
+        int length = bytes.length;
+
+        if (length > 0 && bytes[length - 1] == '\r') {
+            length--;
+        }
+
+        String line = new String(bytes, 0, length, CHARSET);
+
+        if (isTombstone(line)) {
+            return;
+        }
+
+        String key = line.split(":")[0].toLowerCase();
+
+        if (!index.containsKey(key)) {
+            index.put(key, new Record(offset, length));
+        }
+    }
+
+    private void matchLine(RecordFilter filter, long offset, byte[] bytes, List<String> removed, List<Record> records) {
+        String line = trimPadding(new String(bytes, CHARSET).replace("\r", ""));
+
+        if (isTombstone(line)) {
+            return;
+        }
+
+        String[] data = line.split(":");
+        Record record = index.get(data[0].toLowerCase());
+
+        // Only the indexed copy of a user is live
+        if (record == null || record.offset != offset || !filter.matches(data)) {
+            return;
+        }
+
+        removed.add(data[0]);
+        records.add(record);
+    }
+
+    private Record append(byte[] bytes) throws IOException {
+        file.seek(endOfFile);
+
+        if (needsLineSeparator) {
+            file.write(LINE_SEPARATOR);
+            endOfFile += LINE_SEPARATOR.length;
+            needsLineSeparator = false;
+        }
+
+        Record record = new Record(endOfFile, bytes.length + SLACK);
+
+        file.write(pad(bytes, record.length));
+        file.write(LINE_SEPARATOR);
+        endOfFile = file.getFilePointer();
+
+        return record;
+    }
+
+    private void writeTombstone(Record record) throws IOException {
+        byte[] bytes = new byte[record.length];
+
+        Arrays.fill(bytes, PADDING);
+        bytes[0] = TOMBSTONE;
+
+        file.seek(record.offset);
+        file.write(bytes);
+    }
+
+    private static byte[] pad(byte[] bytes, int length) {
+        byte[] padded = Arrays.copyOf(bytes, length);
+
+        Arrays.fill(padded, bytes.length, length, PADDING);
+        return padded;
+    }
+
+    private static String trimPadding(String line) {
+        int end = line.length();
+
+        while (end > 0 && line.charAt(end - 1) == PADDING) {
+            end--;
+        }
+
+        return line.substring(0, end);
+    }
+
+    /**
+     * Selects records by their fields.
+     */
+    interface RecordFilter {
+        boolean matches(String[] data);
+    }
+
+    private static class Record {
+        private final long offset;
+        private final int length;
+
+        private Record(long offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
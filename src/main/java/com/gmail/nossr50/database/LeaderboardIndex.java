@@ -0,0 +1,255 @@
+package com.gmail.nossr50.database;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+
+/**
+ * Leaderboard for a single stat, kept sorted as players are updated.
+ * <p>
+ * Players are ordered by value, highest first, then by name. The entries are
+ * stored in a treap where every node knows the size of its subtree, so
+ * updates and rank lookups take O(log n) and reading a page of k entries
+ * takes O(log n + k).
+ */
+final class LeaderboardIndex {
+    private final Map<String, Node> nodes = new HashMap<String, Node>();
+    private final Random random = new Random();
+    private Node root;
+
+    /**
+     * Set the value of a player, adding them if needed.
+     *
+     * @param playerName The name of the player
+     * @param value The new value
+     */
+    synchronized void update(String playerName, int value) {
+        String key = playerName.toLowerCase();
+        Node node = nodes.get(key);
+
+        if (node != null) {
+            if (node.value == value && node.name.equals(playerName)) {
+                return;
+            }
+
+            root = delete(root, node);
+        }
+
+        node = new Node(playerName, value, random.nextInt());
+        nodes.put(key, node);
+        root = insert(root, node);
+    }
+
+    /**
+     * Remove a player from the leaderboard.
+     *
+     * @param playerName The name of the player
+     */
+    synchronized void remove(String playerName) {
+        Node node = nodes.remove(playerName.toLowerCase());
+
+        if (node != null) {
+            root = delete(root, node);
+        }
+    }
+
+    /**
+     * Clear the leaderboard.
+     */
+    synchronized void clear() {
+        nodes.clear();
+        root = null;
+    }
+
+    synchronized int size() {
+        return size(root);
+    }
+
+    /**
+     * Get the position of a player on the leaderboard.
+     *
+     * @param playerName The name of the player
+     * @return the 1-based rank of the player, or null if they aren't on the leaderboard
+     */
+    synchronized Integer getRank(String playerName) {
+        Node node = nodes.get(playerName.toLowerCase());
+
+        if (node == null) {
+            return null;
+        }
+
+        int rank = 1;
+        Node current = root;
+
+        while (current != node) {
+            if (compare(node, current) < 0) {
+                current = current.left;
+            }
+            else {
+                rank += size(current.left) + 1;
+                current = current.right;
+            }
+        }
+
+        return rank + size(node.left);
+    }
+
+    /**
+     * Read a range of the leaderboard.
+     *
+     * @param fromIndex The 0-based position of the first entry
+     * @param count The maximum number of entries
+     * @return the entries, in leaderboard order
+     */
+    synchronized List<PlayerStat> getRange(int fromIndex, int count) {
+        List<PlayerStat> stats = new ArrayList<PlayerStat>(Math.max(0, Math.min(count, size(root) - fromIndex)));
+
+        collect(root, fromIndex, count, stats);
+        return stats;
+    }
+
+    private void collect(Node node, int skip, int count, List<PlayerStat> stats) {
+        if (node == null || stats.size() >= count) {
+            return;
+        }
+
+        int leftSize = size(node.left);
+
+        if (skip < leftSize) {
+            collect(node.left, skip, count, stats);
+        }
+
+        if (stats.size() >= count) {
+            return;
+        }
+
+        if (skip <= leftSize) {
+            stats.add(new PlayerStat(node.name, node.value));
+        }
+
+        collect(node.right, Math.max(0, skip - leftSize - 1), count, stats);
+    }
+
+    private Node insert(Node parent, Node node) {
+        if (parent == null) {
+            return node;
+        }
+
+        if (compare(node, parent) < 0) {
+            parent.left = insert(parent.left, node);
+
+            if (parent.left.priority > parent.priority) {
+                parent = rotateRight(parent);
+            }
+        }
+        else {
+            parent.right = insert(parent.right, node);
+
+            if (parent.right.priority > parent.priority) {
+                parent = rotateLeft(parent);
+            }
+        }
+
+        resize(parent);
+        return parent;
+    }
+
+    private Node delete(Node parent, Node node) {
+        if (parent == null) {
+            return null;
+        }
+
+        if (parent == node) {
+            return merge(node.left, node.right);
+        }
+
+        if (compare(node, parent) < 0) {
+            parent.left = delete(parent.left, node);
+        }
+        else {
+            parent.right = delete(parent.right, node);
+        }
+
+        resize(parent);
+        return parent;
+    }
+
+    private Node merge(Node left, Node right) {
+        if (left == null) {
+            return right;
+        }
+
+        if (right == null) {
+            return left;
+        }
+
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            resize(left);
+            return left;
+        }
+
+        right.left = merge(left, right.left);
+        resize(right);
+        return right;
+    }
+
+    private Node rotateRight(Node node) {
+        Node left = node.left;
+
+        node.left = left.right;
+        left.right = node;
+
+        resize(node);
+        resize(left);
+        return left;
+    }
+
+    private Node rotateLeft(Node node) {
+        Node right = node.right;
+
+        node.right = right.left;
+        right.left = node;
+
+        resize(node);
+        resize(right);
+        return right;
+    }
+
+    private static int compare(Node a, Node b) {
+        if (a.value != b.value) {
+            return a.value > b.value ? -1 : 1;
+        }
+
+        int result = a.name.compareToIgnoreCase(b.name);
+        return result != 0 ? result : a.name.compareTo(b.name);
+    }
+
+    private static int size(Node node) {
+        return node == null ? 0 : node.size;
+    }
+
+    private static void resize(Node node) {
+        node.size = size(node.left) + size(node.right) + 1;
+    }
+
+    private static final class Node {
+        private final String name;
+        private final int value;
+        private final int priority;
+
+        private Node left;
+        private Node right;
+        private int size = 1;
+
+        private Node(String name, int value, int priority) {
+            this.name = name;
+            this.value = value;
+            this.priority = priority;
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.gmail.nossr50.database;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A connection owned by a {@link ConnectionPool}, with a cache of the prepared
+ * statements used for the fixed queries run against it.
+ * <p>
+ * A pooled connection is only ever used by the thread that borrowed it.
+ */
+final class PooledConnection {
+    private final Connection connection;
+    private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    private long lastUsed = System.currentTimeMillis();
+    private boolean broken;
+
+    PooledConnection(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Get the underlying connection, for one-off statements that are closed by the caller.
+     *
+     * @return the JDBC connection
+     */
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Get a cached prepared statement for a fixed query, preparing it on first use.
+     * The returned statement must not be closed by the caller.
+     *
+     * @param sql The query to prepare
+     * @return the prepared statement
+     * @throws SQLException if the statement could not be prepared
+     */
+    PreparedStatement getStatement(String sql) throws SQLException {
+        PreparedStatement statement = statements.get(sql);
+
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            statements.put(sql, statement);
+        }
+
+        return statement;
+    }
+
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    void touch() {
+        lastUsed = System.currentTimeMillis();
+    }
+
+    boolean isBroken() {
+        return broken;
+    }
+
+    void setBroken() {
+        broken = true;
+    }
+
+    /**
+     * Check if the connection is still usable.
+     *
+     * @param timeout Seconds to wait for the database to answer
+     * @return true if the connection is open and answering, false otherwise
+     */
+    boolean isValid(int timeout) {
+        try {
+            return !connection.isClosed() && connection.isValid(timeout);
+        }
+        catch (SQLException e) {
+            // Don't print stack trace because it's valid to lose idle connections to the server and have to restart them.
+            return false;
+        }
+    }
+
+    void close() {
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            }
+            catch (SQLException e) {
+                // Ignore
+            }
+        }
+
+        statements.clear();
+
+        try {
+            connection.close();
+        }
+        catch (SQLException e) {
+            // This is a housekeeping exercise, ignore errors
+        }
+    }
+}
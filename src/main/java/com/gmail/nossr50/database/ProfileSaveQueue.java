@@ -0,0 +1,232 @@
+package com.gmail.nossr50.database;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+
+/**
+ * Write-behind queue for player profiles.
+ * <p>
+ * Snapshots of changed profiles are handed to a dedicated saver thread, which
+ * writes them in batches through {@link DatabaseManager#saveUsers}. Profiles
+ * submitted again before they are written are coalesced, so only the latest
+ * copy of each player is saved.
+ */
+public class ProfileSaveQueue {
+    private static final int BATCH_SIZE = 100;
+    private static final long SHUTDOWN_TIMEOUT = 30; // Seconds
+
+    private final DatabaseManager databaseManager;
+    private final ExecutorService executor;
+
+    private final Map<String, PlayerProfile> pending = new LinkedHashMap<String, PlayerProfile>();
+    private final Set<String> saving = new HashSet<String>(); // Players whose snapshot is being written, guarded by pending
+    private final Object flushLock = new Object();
+    private boolean flushScheduled;
+
+    public ProfileSaveQueue(DatabaseManager databaseManager) {
+        this.databaseManager = databaseManager;
+
+        executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mcMMO Profile Saver");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue a profile to be saved asynchronously.
+     *
+     * @param snapshot A snapshot of the profile to save, see {@link PlayerProfile#getSnapshot()}
+     */
+    public void submit(PlayerProfile snapshot) {
+        synchronized (pending) {
+            PlayerProfile previous = pending.put(snapshot.getPlayerName().toLowerCase(), snapshot);
+
+            // The older snapshot will never be written, so its changes have to be saved with this one
+            if (previous != null) {
+                snapshot.mergeChanges(previous);
+            }
+
+            if (flushScheduled) {
+                return;
+            }
+
+            flushScheduled = true;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // We're shutting down, save on this thread instead
+            flush();
+        }
+    }
+
+    /**
+     * Save every queued profile, blocking until they are all written.
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<PlayerProfile> batch;
+
+            while (!(batch = nextBatch()).isEmpty()) {
+                boolean saved = false;
+
+                try {
+                    saved = databaseManager.saveUsers(batch);
+                }
+                finally {
+                    finishBatch(batch, saved);
+                }
+
+                if (!saved) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Save the queued profile of a single player, blocking until it is written.
+     * Only waits for the batch being written if it holds that player.
+     *
+     * @param playerName The name of the player
+     */
+    public void flush(String playerName) {
+        String key = playerName.toLowerCase();
+        PlayerProfile snapshot;
+
+        synchronized (pending) {
+            while (saving.contains(key)) {
+                try {
+                    pending.wait();
+                }
+                catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+
+            snapshot = pending.remove(key);
+
+            if (snapshot == null) {
+                return;
+            }
+
+            saving.add(key);
+        }
+
+        boolean saved = false;
+
+        try {
+            saved = databaseManager.saveUser(snapshot);
+        }
+        finally {
+            finishBatch(Collections.singletonList(snapshot), saved);
+        }
+    }
+
+    /**
+     * Stop the saver thread and write any profiles still queued.
+     */
+    public void shutdown() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                mcMMO.p.getLogger().warning("Timed out waiting for player profiles to be saved!");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    /**
+     * Mark the players of a written batch as no longer being saved, and wake
+     * up anyone waiting on them.
+     * <p>
+     * The snapshots of a batch that failed to save are put back first, and
+     * flushing stops until the next submit, so a database that is down isn't
+     * retried in a loop.
+     */
+    private void finishBatch(List<PlayerProfile> batch, boolean saved) {
+        if (!saved) {
+            mcMMO.p.getLogger().warning("Could not save " + batch.size() + " player profiles, they will be saved again later.");
+        }
+
+        synchronized (pending) {
+            for (PlayerProfile snapshot : batch) {
+                String key = snapshot.getPlayerName().toLowerCase();
+
+                saving.remove(key);
+
+                if (saved) {
+                    continue;
+                }
+
+                PlayerProfile newer = pending.get(key);
+
+                // A newer snapshot holds the latest data, but it still has to write what this one couldn't
+                if (newer != null) {
+                    newer.mergeChanges(snapshot);
+                }
+                else {
+                    pending.put(key, snapshot);
+                }
+            }
+
+            if (!saved) {
+                flushScheduled = false;
+            }
+
+            pending.notifyAll();
+        }
+    }
+
+    private List<PlayerProfile> nextBatch() {
+        synchronized (pending) {
+            List<PlayerProfile> batch = new ArrayList<PlayerProfile>(Math.min(pending.size(), BATCH_SIZE));
+            Iterator<PlayerProfile> iterator = pending.values().iterator();
+
+            while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+                PlayerProfile snapshot = iterator.next();
+
+                batch.add(snapshot);
+                saving.add(snapshot.getPlayerName().toLowerCase());
+                iterator.remove();
+            }
+
+            if (batch.isEmpty()) {
+                flushScheduled = false;
+            }
+
+            return batch;
+        }
+    }
+}
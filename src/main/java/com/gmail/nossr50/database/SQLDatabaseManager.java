@@ -1,90 +1,92 @@
 package com.gmail.nossr50.database;
 
-import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.datatypes.MobHealthbarType;
 import com.gmail.nossr50.datatypes.database.DatabaseUpdateType;
 import com.gmail.nossr50.datatypes.database.PlayerStat;
+import com.gmail.nossr50.datatypes.database.ProfileDataType;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
 import com.gmail.nossr50.datatypes.skills.AbilityType;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 import com.gmail.nossr50.datatypes.spout.huds.HudType;
-import com.gmail.nossr50.runnables.database.SQLReconnectTask;
 import com.gmail.nossr50.util.Misc;
 import com.gmail.nossr50.util.StringUtils;
 
 public final class SQLDatabaseManager implements DatabaseManager {
-    private String connectionString;
-    private String tablePrefix = Config.getInstance().getMySQLTablePrefix();
-    private Connection connection = null;
-
-    // Scale waiting time by this much per failed attempt
-    private final double SCALING_FACTOR = 40.0;
-
-    // Minimum wait in nanoseconds (default 500ms)
-    private final long MIN_WAIT = 500L * 1000000L;
-
-    // Maximum time to wait between reconnects (default 5 minutes)
-    private final long MAX_WAIT = 5L * 60L * 1000L * 1000000L;
-
-    // How long to wait when checking if connection is valid (default 3 seconds)
-    private final int VALID_TIMEOUT = 3;
-
-    // When next to try connecting to Database in nanoseconds
-    private long nextReconnectTimestamp = 0L;
-
-    // How many connection attempts have failed
-    private int reconnectAttempt = 0;
+    private final String tablePrefix = Config.getInstance().getMySQLTablePrefix();
+    private final ConnectionPool connectionPool;
+
+    /* Fixed queries, prepared once per pooled connection */
+    private final String readIdQuery;
+    private final String newUserQuery;
+    private final String loadPlayerQuery;
+    private final String saveLoginByNameQuery;
+    private final String saveHudsQuery;
+    private final String saveCooldownsQuery;
+    private final String saveSkillsQuery;
+    private final String saveExperienceQuery;
+    private final String readRankQuery;
 
     protected SQLDatabaseManager() {
+        readIdQuery = "SELECT id FROM " + tablePrefix + "users WHERE user = ?";
+        newUserQuery = "INSERT INTO " + tablePrefix + "users (user, lastlogin) VALUES (?, ?)";
+        loadPlayerQuery = "SELECT "
+                + "s.taming, s.mining, s.repair, s.woodcutting, s.unarmed, s.herbalism, s.excavation, s.archery, s.swords, s.axes, s.acrobatics, s.fishing, "
+                + "e.taming, e.mining, e.repair, e.woodcutting, e.unarmed, e.herbalism, e.excavation, e.archery, e.swords, e.axes, e.acrobatics, e.fishing, "
+                + "c.taming, c.mining, c.repair, c.woodcutting, c.unarmed, c.herbalism, c.excavation, c.archery, c.swords, c.axes, c.acrobatics, c.blast_mining, "
+                + "h.hudtype, h.mobhealthbar "
+                + "FROM " + tablePrefix + "users u "
+                + "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) "
+                + "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) "
+                + "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) "
+                + "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) "
+                + "WHERE u.user = ?";
+        saveLoginByNameQuery = "UPDATE " + tablePrefix + "users SET lastlogin = ? WHERE user = ?";
+        saveHudsQuery = "UPDATE " + tablePrefix + "huds h JOIN " + tablePrefix + "users u ON (u.id = h.user_id) "
+                + "SET h.hudtype = ?, h.mobhealthbar = ? WHERE u.user = ?";
+        saveCooldownsQuery = "UPDATE " + tablePrefix + "cooldowns c JOIN " + tablePrefix + "users u ON (u.id = c.user_id) SET "
+                + "  c.mining = ?, c.woodcutting = ?, c.unarmed = ?"
+                + ", c.herbalism = ?, c.excavation = ?, c.swords = ?"
+                + ", c.axes = ?, c.blast_mining = ? WHERE u.user = ?";
+        saveSkillsQuery = "UPDATE " + tablePrefix + "skills s JOIN " + tablePrefix + "users u ON (u.id = s.user_id) SET "
+                + " s.taming = ?, s.mining = ?, s.repair = ?, s.woodcutting = ?"
+                + ", s.unarmed = ?, s.herbalism = ?, s.excavation = ?"
+                + ", s.archery = ?, s.swords = ?, s.axes = ?, s.acrobatics = ?"
+                + ", s.fishing = ?, s.power_level = ? WHERE u.user = ?";
+        saveExperienceQuery = "UPDATE " + tablePrefix + "experience e JOIN " + tablePrefix + "users u ON (u.id = e.user_id) SET "
+                + " e.taming = ?, e.mining = ?, e.repair = ?, e.woodcutting = ?"
+                + ", e.unarmed = ?, e.herbalism = ?, e.excavation = ?"
+                + ", e.archery = ?, e.swords = ?, e.axes = ?, e.acrobatics = ?"
+                + ", e.fishing = ? WHERE u.user = ?";
+        readRankQuery = buildRankQuery();
+
+        connectionPool = createConnectionPool();
         checkConnected();
         createStructure();
     }
 
-    public void purgePowerlessUsers() {
-        mcMMO.p.getLogger().info("Purging powerless users...");
-
-        Collection<ArrayList<String>> usernames = read("SELECT u.user FROM " + tablePrefix + "skills AS s, " + tablePrefix + "users AS u WHERE s.user_id = u.id AND (s.taming+s.mining+s.woodcutting+s.repair+s.unarmed+s.herbalism+s.excavation+s.archery+s.swords+s.axes+s.acrobatics+s.fishing) = 0").values();
-
-        write("DELETE FROM u, e, h, s, c USING " + tablePrefix + "users u " +
-                "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
-                "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
-                "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
-                "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
-                "WHERE (s.taming+s.mining+s.woodcutting+s.repair+s.unarmed+s.herbalism+s.excavation+s.archery+s.swords+s.axes+s.acrobatics+s.fishing) = 0");
-
-        processPurge(usernames);
-        mcMMO.p.getLogger().info("Purged " + usernames.size() + " users from the database.");
+    public List<String> purgePowerlessUsers(Set<String> excludedPlayers) {
+        return purgeUsers("s.power_level = 0", excludedPlayers);
     }
 
-    public void purgeOldUsers() {
+    public List<String> purgeOldUsers(Set<String> excludedPlayers) {
         long currentTime = System.currentTimeMillis();
 
-        mcMMO.p.getLogger().info("Purging old users...");
-
-        Collection<ArrayList<String>> usernames = read("SELECT user FROM " + tablePrefix + "users WHERE ((" + currentTime + " - lastlogin * " + Misc.TIME_CONVERSION_FACTOR + ") > " + PURGE_TIME + ")").values();
-
-        write("DELETE FROM u, e, h, s, c USING " + tablePrefix + "users u " +
-                "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) " +
-                "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) " +
-                "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) " +
-                "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) " +
-                "WHERE ((" + currentTime + " - lastlogin * " + Misc.TIME_CONVERSION_FACTOR + ") > " + PURGE_TIME + ")");
-
-        processPurge(usernames);
-        mcMMO.p.getLogger().info("Purged " + usernames.size() + " users from the database.");;
+        return purgeUsers("((" + currentTime + " - u.lastlogin * " + Misc.TIME_CONVERSION_FACTOR + ") > " + PURGE_TIME + ")", excludedPlayers);
     }
 
     public boolean removeUser(String playerName) {
@@ -101,494 +103,510 @@ public final class SQLDatabaseManager implements DatabaseManager {
         return success;
     }
 
-    public void saveUser(PlayerProfile profile) {
-        int userId = readId(profile.getPlayerName());
-        MobHealthbarType mobHealthbarType = profile.getMobHealthbarType();
-        HudType hudType = profile.getHudType();
-
-        saveLogin(userId, ((int) (System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR)));
-        saveHuds(userId, (hudType == null ? "STANDARD" : hudType.toString()), (mobHealthbarType == null ? Config.getInstance().getMobHealthbarDefault().toString() : mobHealthbarType.toString()));
-        saveLongs(
-                "UPDATE " + tablePrefix + "cooldowns SET "
-                    + "  mining = ?, woodcutting = ?, unarmed = ?"
-                    + ", herbalism = ?, excavation = ?, swords = ?"
-                    + ", axes = ?, blast_mining = ? WHERE user_id = ?",
-                userId,
-                profile.getSkillDATS(AbilityType.SUPER_BREAKER),
-                profile.getSkillDATS(AbilityType.TREE_FELLER),
-                profile.getSkillDATS(AbilityType.BERSERK),
-                profile.getSkillDATS(AbilityType.GREEN_TERRA),
-                profile.getSkillDATS(AbilityType.GIGA_DRILL_BREAKER),
-                profile.getSkillDATS(AbilityType.SERRATED_STRIKES),
-                profile.getSkillDATS(AbilityType.SKULL_SPLITTER),
-                profile.getSkillDATS(AbilityType.BLAST_MINING));
-        saveIntegers(
-                "UPDATE " + tablePrefix + "skills SET "
-                    + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                    + ", unarmed = ?, herbalism = ?, excavation = ?"
-                    + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                    + ", fishing = ? WHERE user_id = ?",
-                profile.getSkillLevel(SkillType.TAMING),
-                profile.getSkillLevel(SkillType.MINING),
-                profile.getSkillLevel(SkillType.REPAIR),
-                profile.getSkillLevel(SkillType.WOODCUTTING),
-                profile.getSkillLevel(SkillType.UNARMED),
-                profile.getSkillLevel(SkillType.HERBALISM),
-                profile.getSkillLevel(SkillType.EXCAVATION),
-                profile.getSkillLevel(SkillType.ARCHERY),
-                profile.getSkillLevel(SkillType.SWORDS),
-                profile.getSkillLevel(SkillType.AXES),
-                profile.getSkillLevel(SkillType.ACROBATICS),
-                profile.getSkillLevel(SkillType.FISHING),
-                userId);
-        saveIntegers(
-                "UPDATE " + tablePrefix + "experience SET "
-                    + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                    + ", unarmed = ?, herbalism = ?, excavation = ?"
-                    + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                    + ", fishing = ? WHERE user_id = ?",
-                profile.getSkillXpLevel(SkillType.TAMING),
-                profile.getSkillXpLevel(SkillType.MINING),
-                profile.getSkillXpLevel(SkillType.REPAIR),
-                profile.getSkillXpLevel(SkillType.WOODCUTTING),
-                profile.getSkillXpLevel(SkillType.UNARMED),
-                profile.getSkillXpLevel(SkillType.HERBALISM),
-                profile.getSkillXpLevel(SkillType.EXCAVATION),
-                profile.getSkillXpLevel(SkillType.ARCHERY),
-                profile.getSkillXpLevel(SkillType.SWORDS),
-                profile.getSkillXpLevel(SkillType.AXES),
-                profile.getSkillXpLevel(SkillType.ACROBATICS),
-                profile.getSkillXpLevel(SkillType.FISHING),
-                userId);
+    public boolean saveUser(PlayerProfile profile) {
+        return saveUsers(Collections.singletonList(profile));
     }
 
-    public List<PlayerStat> readLeaderboard(String skillName, int pageNumber, int statsPerPage) {
-        List<PlayerStat> stats = new ArrayList<PlayerStat>();
+    public boolean saveUsers(Collection<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return true;
+        }
 
-        if (checkConnected()) {
-            String query = skillName.equalsIgnoreCase("ALL") ? "taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing" : skillName;
-            ResultSet resultSet = null;
-            PreparedStatement statement = null;
+        PooledConnection connection = connectionPool.borrow();
 
-            try {
-                statement = connection.prepareStatement("SELECT " + query + ", user, NOW() FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON (user_id = id) WHERE " + query + " > 0 ORDER BY " + query + " DESC, user LIMIT ?, ?");
-                statement.setInt(1, (pageNumber * statsPerPage) - statsPerPage);
-                statement.setInt(2, statsPerPage);
-                resultSet = statement.executeQuery();
+        if (connection == null) {
+            return false;
+        }
 
-                while (resultSet.next()) {
-                    ArrayList<String> column = new ArrayList<String>();
+        PreparedStatement loginStatement = null;
+        PreparedStatement hudsStatement = null;
+        PreparedStatement cooldownsStatement = null;
+        PreparedStatement skillsStatement = null;
+        PreparedStatement experienceStatement = null;
 
-                    for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
-                        column.add(resultSet.getString(i));
-                    }
+        try {
+            connection.getConnection().setAutoCommit(false);
+
+            loginStatement = connection.getStatement(saveLoginByNameQuery);
+            hudsStatement = connection.getStatement(saveHudsQuery);
+            cooldownsStatement = connection.getStatement(saveCooldownsQuery);
+            skillsStatement = connection.getStatement(saveSkillsQuery);
+            experienceStatement = connection.getStatement(saveExperienceQuery);
+
+            long lastLogin = System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR;
+
+            for (PlayerProfile profile : profiles) {
+                String playerName = profile.getPlayerName();
+                MobHealthbarType mobHealthbarType = profile.getMobHealthbarType();
+                HudType hudType = profile.getHudType();
+
+                loginStatement.setLong(1, lastLogin);
+                loginStatement.setString(2, playerName);
+                loginStatement.addBatch();
+
+                if (profile.isChanged(ProfileDataType.HUDS)) {
+                    hudsStatement.setString(1, hudType == null ? "STANDARD" : hudType.toString());
+                    hudsStatement.setString(2, mobHealthbarType == null ? Config.getInstance().getMobHealthbarDefault().toString() : mobHealthbarType.toString());
+                    hudsStatement.setString(3, playerName);
+                    hudsStatement.addBatch();
+                }
 
-                    stats.add(new PlayerStat(column.get(1), Integer.valueOf(column.get(0))));
+                if (profile.isChanged(ProfileDataType.COOLDOWNS)) {
+                    cooldownsStatement.setLong(1, profile.getSkillDATS(AbilityType.SUPER_BREAKER));
+                    cooldownsStatement.setLong(2, profile.getSkillDATS(AbilityType.TREE_FELLER));
+                    cooldownsStatement.setLong(3, profile.getSkillDATS(AbilityType.BERSERK));
+                    cooldownsStatement.setLong(4, profile.getSkillDATS(AbilityType.GREEN_TERRA));
+                    cooldownsStatement.setLong(5, profile.getSkillDATS(AbilityType.GIGA_DRILL_BREAKER));
+                    cooldownsStatement.setLong(6, profile.getSkillDATS(AbilityType.SERRATED_STRIKES));
+                    cooldownsStatement.setLong(7, profile.getSkillDATS(AbilityType.SKULL_SPLITTER));
+                    cooldownsStatement.setLong(8, profile.getSkillDATS(AbilityType.BLAST_MINING));
+                    cooldownsStatement.setString(9, playerName);
+                    cooldownsStatement.addBatch();
                 }
-            }
-            catch (SQLException ex) {
-                printErrors(ex);
-            }
-            finally {
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    }
-                    catch (SQLException e) {
-                        // Ignore
-                    }
+
+                if (profile.isChanged(ProfileDataType.SKILLS)) {
+                    skillsStatement.setInt(1, profile.getSkillLevel(SkillType.TAMING));
+                    skillsStatement.setInt(2, profile.getSkillLevel(SkillType.MINING));
+                    skillsStatement.setInt(3, profile.getSkillLevel(SkillType.REPAIR));
+                    skillsStatement.setInt(4, profile.getSkillLevel(SkillType.WOODCUTTING));
+                    skillsStatement.setInt(5, profile.getSkillLevel(SkillType.UNARMED));
+                    skillsStatement.setInt(6, profile.getSkillLevel(SkillType.HERBALISM));
+                    skillsStatement.setInt(7, profile.getSkillLevel(SkillType.EXCAVATION));
+                    skillsStatement.setInt(8, profile.getSkillLevel(SkillType.ARCHERY));
+                    skillsStatement.setInt(9, profile.getSkillLevel(SkillType.SWORDS));
+                    skillsStatement.setInt(10, profile.getSkillLevel(SkillType.AXES));
+                    skillsStatement.setInt(11, profile.getSkillLevel(SkillType.ACROBATICS));
+                    skillsStatement.setInt(12, profile.getSkillLevel(SkillType.FISHING));
+                    skillsStatement.setInt(13, getPowerLevel(profile));
+                    skillsStatement.setString(14, playerName);
+                    skillsStatement.addBatch();
                 }
-            }
-        }
 
-        return stats;
-    }
+                if (profile.isChanged(ProfileDataType.EXPERIENCE)) {
+                    experienceStatement.setInt(1, profile.getSkillXpLevel(SkillType.TAMING));
+                    experienceStatement.setInt(2, profile.getSkillXpLevel(SkillType.MINING));
+                    experienceStatement.setInt(3, profile.getSkillXpLevel(SkillType.REPAIR));
+                    experienceStatement.setInt(4, profile.getSkillXpLevel(SkillType.WOODCUTTING));
+                    experienceStatement.setInt(5, profile.getSkillXpLevel(SkillType.UNARMED));
+                    experienceStatement.setInt(6, profile.getSkillXpLevel(SkillType.HERBALISM));
+                    experienceStatement.setInt(7, profile.getSkillXpLevel(SkillType.EXCAVATION));
+                    experienceStatement.setInt(8, profile.getSkillXpLevel(SkillType.ARCHERY));
+                    experienceStatement.setInt(9, profile.getSkillXpLevel(SkillType.SWORDS));
+                    experienceStatement.setInt(10, profile.getSkillXpLevel(SkillType.AXES));
+                    experienceStatement.setInt(11, profile.getSkillXpLevel(SkillType.ACROBATICS));
+                    experienceStatement.setInt(12, profile.getSkillXpLevel(SkillType.FISHING));
+                    experienceStatement.setString(13, playerName);
+                    experienceStatement.addBatch();
+                }
+            }
 
-    public Map<String, Integer> readRank(String playerName) {
-        Map<String, Integer> skills = new HashMap<String, Integer>();
+            loginStatement.executeBatch();
+            hudsStatement.executeBatch();
+            cooldownsStatement.executeBatch();
+            skillsStatement.executeBatch();
+            experienceStatement.executeBatch();
 
-        if (checkConnected()) {
-            ResultSet resultSet;
+            connection.getConnection().commit();
+            return true;
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            connectionPool.invalidate(connection);
 
             try {
-                for (SkillType skillType : SkillType.nonChildSkills()) {
-                    String skillName = skillType.name().toLowerCase();
-                    String sql = "SELECT COUNT(*) AS rank FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE " + skillName + " > 0 " +
-                                 "AND " + skillName + " > (SELECT " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                                 "WHERE user = ?)";
+                connection.getConnection().rollback();
+            }
+            catch (SQLException e) {
+                // Ignore, the connection is most likely gone
+            }
 
-                    PreparedStatement statement = connection.prepareStatement(sql);
-                    statement.setString(1, playerName);
-                    resultSet = statement.executeQuery();
+            return false;
+        }
+        finally {
+            // The statements are cached, so make sure no half-built batch survives a failure
+            clearBatch(loginStatement);
+            clearBatch(hudsStatement);
+            clearBatch(cooldownsStatement);
+            clearBatch(skillsStatement);
+            clearBatch(experienceStatement);
 
-                    resultSet.next();
+            try {
+                connection.getConnection().setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                // Ignore
+            }
 
-                    int rank = resultSet.getInt("rank");
+            connectionPool.release(connection);
+        }
+    }
 
-                    sql = "SELECT user, " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE " + skillName + " > 0 " +
-                          "AND " + skillName + " = (SELECT " + skillName + " FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                          "WHERE user = '" + playerName + "') ORDER BY user";
+    public List<PlayerStat> readLeaderboard(String skillName, int pageNumber, int statsPerPage) {
+        List<PlayerStat> stats = new ArrayList<PlayerStat>();
+        PooledConnection connection = connectionPool.borrow();
 
-                    statement.close();
+        if (connection == null) {
+            return stats;
+        }
 
-                    statement = connection.prepareStatement(sql);
-                    resultSet = statement.executeQuery();
+        String query = skillName.equalsIgnoreCase("ALL") ? "power_level" : skillName;
+        ResultSet resultSet = null;
 
-                    while (resultSet.next()) {
-                        if (resultSet.getString("user").equalsIgnoreCase(playerName)) {
-                            skills.put(skillType.name(), rank + resultSet.getRow());
-                            break;
-                        }
-                    }
+        try {
+            PreparedStatement statement = connection.getStatement("SELECT " + query + ", user, NOW() FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON (user_id = id) WHERE " + query + " > 0 ORDER BY " + query + " DESC, user LIMIT ?, ?");
+            statement.setInt(1, (pageNumber * statsPerPage) - statsPerPage);
+            statement.setInt(2, statsPerPage);
+            resultSet = statement.executeQuery();
 
-                    statement.close();
+            while (resultSet.next()) {
+                ArrayList<String> column = new ArrayList<String>();
+
+                for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
+                    column.add(resultSet.getString(i));
                 }
 
-                String sql = "SELECT COUNT(*) AS rank FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                        "WHERE taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing > 0 " +
-                        "AND taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing > " +
-                        "(SELECT taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing " +
-                        "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE user = ?)";
+                stats.add(new PlayerStat(column.get(1), Integer.valueOf(column.get(0))));
+            }
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            connectionPool.invalidate(connection);
+        }
+        finally {
+            closeResultSet(resultSet);
+            connectionPool.release(connection);
+        }
+
+        return stats;
+    }
 
-                PreparedStatement statement = connection.prepareStatement(sql);
-                statement.setString(1, playerName);
-                resultSet = statement.executeQuery();
+    public Map<String, Integer> readRank(String playerName) {
+        Map<String, Integer> skills = new HashMap<String, Integer>();
+        PooledConnection connection = connectionPool.borrow();
 
-                resultSet.next();
+        if (connection == null) {
+            return skills;
+        }
 
-                int rank = resultSet.getInt("rank");
+        ResultSet resultSet = null;
 
-                statement.close();
+        try {
+            PreparedStatement statement = connection.getStatement(readRankQuery);
+            statement.setString(1, playerName);
+            resultSet = statement.executeQuery();
 
-                sql = "SELECT user, taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing " +
-                        "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id " +
-                        "WHERE taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing > 0 " +
-                        "AND taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing = " +
-                        "(SELECT taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing " +
-                        "FROM " + tablePrefix + "users JOIN " + tablePrefix + "skills ON user_id = id WHERE user = ?) ORDER BY user";
+            if (resultSet.next()) {
+                int column = 1;
 
-                statement = connection.prepareStatement(sql);
-                statement.setString(1, playerName);
-                resultSet = statement.executeQuery();
+                for (SkillType skillType : SkillType.nonChildSkills()) {
+                    int skillLevel = resultSet.getInt(column++);
+                    int rank = resultSet.getInt(column++);
 
-                while (resultSet.next()) {
-                    if (resultSet.getString("user").equalsIgnoreCase(playerName)) {
-                        skills.put("ALL", rank + resultSet.getRow());
-                        break;
+                    // Players without any level in a skill aren't ranked in it
+                    if (skillLevel > 0) {
+                        skills.put(skillType.name(), rank);
                     }
                 }
 
-                statement.close();
-            }
-            catch (SQLException ex) {
-                printErrors(ex);
+                int powerLevel = resultSet.getInt(column++);
+                int rank = resultSet.getInt(column++);
+
+                if (powerLevel > 0) {
+                    skills.put("ALL", rank);
+                }
             }
         }
+        catch (SQLException ex) {
+            printErrors(ex);
+            connectionPool.invalidate(connection);
+        }
+        finally {
+            closeResultSet(resultSet);
+            connectionPool.release(connection);
+        }
 
         return skills;
     }
 
     public void newUser(String playerName) {
-        PreparedStatement statement = null;
+        PooledConnection connection = connectionPool.borrow();
+
+        if (connection == null) {
+            return;
+        }
 
         try {
-            statement = connection.prepareStatement("INSERT INTO " + tablePrefix + "users (user, lastlogin) VALUES (?, ?)");
-            statement.setString(1, playerName);
-            statement.setLong(2, System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR);
-            statement.execute();
+            newUser(connection, playerName);
+        }
+        finally {
+            connectionPool.release(connection);
+        }
+    }
+
+    public List<String> loadPlayerData(String playerName) {
+        PooledConnection connection = connectionPool.borrow();
 
-            writeMissingRows(readId(playerName));
+        if (connection == null) {
+            return null;
         }
-        catch (SQLException ex) {
-            printErrors(ex);
+
+        try {
+            return loadPlayerData(connection, playerName);
         }
         finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
-            }
+            connectionPool.release(connection);
         }
     }
 
-    public List<String> loadPlayerData(String playerName) {
-        List<String> playerData = null;
+    public List<String> getStoredUsers() {
+        List<String> users = new ArrayList<String>();
+
+        for (ArrayList<String> row : read("SELECT user FROM " + tablePrefix + "users").values()) {
+            users.add(row.get(0));
+        }
+
+        return users;
+    }
+
+    public boolean convert(String[] data) throws Exception {
+        return convertUsers(Collections.singletonList(data)) == 1;
+    }
+
+    public int convertUsers(List<String[]> data) {
+        Map<String, String[]> uniqueUsers = new LinkedHashMap<String, String[]>();
+
+        for (String[] character : data) {
+            String playerName = character[0];
+
+            // Check for things we don't want put in the DB
+            if (playerName == null || playerName.isEmpty() || playerName.equalsIgnoreCase("null") || playerName.length() > 16) {
+                continue;
+            }
+
+            // A name can only appear once in a multi-row insert, the last record wins like it did before
+            uniqueUsers.put(playerName.toLowerCase(), character);
+        }
+
+        List<String[]> users = new ArrayList<String[]>(uniqueUsers.values());
+
+        if (users.isEmpty()) {
+            return 0;
+        }
+
+        PooledConnection connection = connectionPool.borrow();
+
+        if (connection == null) {
+            return -1;
+        }
+
         PreparedStatement statement = null;
+        ResultSet resultSet = null;
+        int converted = -1;
 
         try {
-            statement = connection.prepareStatement(
-                    "SELECT "
-                    + "s.taming, s.mining, s.repair, s.woodcutting, s.unarmed, s.herbalism, s.excavation, s.archery, s.swords, s.axes, s.acrobatics, s.fishing, "
-                    + "e.taming, e.mining, e.repair, e.woodcutting, e.unarmed, e.herbalism, e.excavation, e.archery, e.swords, e.axes, e.acrobatics, e.fishing, "
-                    + "c.taming, c.mining, c.repair, c.woodcutting, c.unarmed, c.herbalism, c.excavation, c.archery, c.swords, c.axes, c.acrobatics, c.blast_mining, "
-                    + "h.hudtype, h.mobhealthbar "
-                    + "FROM " + tablePrefix + "users u "
-                    + "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) "
-                    + "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) "
-                    + "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) "
-                    + "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) "
-                    + "WHERE u.user = ?");
-            statement.setString(1, playerName);
+            connection.getConnection().setAutoCommit(false);
 
-            playerData = readRow(statement);
+            // Create the users, or update their last login if they already exist
+            statement = connection.getConnection().prepareStatement("INSERT INTO " + tablePrefix + "users (user, lastlogin) VALUES "
+                    + repeatRows("(?, ?)", users.size()) + " ON DUPLICATE KEY UPDATE lastlogin = VALUES(lastlogin)");
+            int i = 1;
+
+            for (String[] character : users) {
+                statement.setString(i++, character[0]);
+                statement.setLong(i++, getLong(character, 37, System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR));
+            }
+
+            statement.executeUpdate();
+            closeStatement(statement);
+
+            // Look up the ids of the whole batch at once
+            statement = connection.getConnection().prepareStatement("SELECT id, user FROM " + tablePrefix + "users WHERE user IN (" + repeatRows("?", users.size()) + ")");
+            i = 1;
+
+            for (String[] character : users) {
+                statement.setString(i++, character[0]);
+            }
+
+            Map<String, Integer> ids = new HashMap<String, Integer>();
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                ids.put(resultSet.getString(2).toLowerCase(), resultSet.getInt(1));
+            }
+
+            closeResultSet(resultSet);
+            resultSet = null;
+            closeStatement(statement);
+
+            List<int[]> skills = new ArrayList<int[]>(users.size());
+            List<int[]> experience = new ArrayList<int[]>(users.size());
+            List<int[]> cooldowns = new ArrayList<int[]>(users.size());
+            List<String[]> huds = new ArrayList<String[]>(users.size());
 
-            if (playerData == null || playerData.size() == 0) {
-                int userId = readId(playerName);
+            for (String[] character : users) {
+                Integer id = ids.get(character[0].toLowerCase());
 
-                // Check if user doesn't exist
-                if (userId == 0) {
-                    return playerData;
+                if (id == null) {
+                    continue;
                 }
 
-                // Write missing table rows
-                writeMissingRows(userId);
+                int[] skillLevels = new int[] { id,
+                        getInt(character, 24), getInt(character, 1), getInt(character, 5), getInt(character, 7),
+                        getInt(character, 8), getInt(character, 9), getInt(character, 10), getInt(character, 11),
+                        getInt(character, 12), getInt(character, 13), getInt(character, 14), getInt(character, 34), 0 };
 
-                // Re-read data
-                playerData = loadPlayerData(playerName);
+                for (int skill = 1; skill < skillLevels.length - 1; skill++) {
+                    skillLevels[skillLevels.length - 1] += skillLevels[skill];
+                }
+
+                skills.add(skillLevels);
+                experience.add(new int[] { id,
+                        getInt(character, 25), getInt(character, 4), getInt(character, 6), getInt(character, 15),
+                        getInt(character, 16), getInt(character, 17), getInt(character, 18), getInt(character, 19),
+                        getInt(character, 20), getInt(character, 21), getInt(character, 22), getInt(character, 35) });
+                cooldowns.add(new int[] { id,
+                        getInt(character, 32), getInt(character, 28), getInt(character, 26), getInt(character, 29),
+                        getInt(character, 27), getInt(character, 30), getInt(character, 31), getInt(character, 36) });
+                huds.add(new String[] { id.toString(),
+                        getString(character, 33, "STANDARD"), getString(character, 38, Config.getInstance().getMobHealthbarDefault().toString()) });
+            }
+
+            if (!skills.isEmpty()) {
+                upsertIntegers("skills", "taming, mining, woodcutting, repair, unarmed, herbalism, excavation, archery, swords, axes, acrobatics, fishing, power_level", connection, skills);
+                upsertIntegers("experience", "taming, mining, woodcutting, repair, unarmed, herbalism, excavation, archery, swords, axes, acrobatics, fishing", connection, experience);
+                upsertIntegers("cooldowns", "mining, woodcutting, unarmed, herbalism, excavation, swords, axes, blast_mining", connection, cooldowns);
+
+                statement = connection.getConnection().prepareStatement("INSERT INTO " + tablePrefix + "huds (user_id, hudtype, mobhealthbar) VALUES "
+                        + repeatRows("(?, ?, ?)", huds.size()) + " ON DUPLICATE KEY UPDATE hudtype = VALUES(hudtype), mobhealthbar = VALUES(mobhealthbar)");
+                i = 1;
+
+                for (String[] hud : huds) {
+                    statement.setInt(i++, Integer.parseInt(hud[0]));
+                    statement.setString(i++, hud[1]);
+                    statement.setString(i++, hud[2]);
+                }
+
+                statement.executeUpdate();
             }
+
+            connection.getConnection().commit();
+            converted = skills.size();
         }
         catch (SQLException ex) {
             printErrors(ex);
-        }
-        finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
+            connectionPool.invalidate(connection);
+
+            try {
+                connection.getConnection().rollback();
+            }
+            catch (SQLException e) {
+                // Ignore, the connection is most likely gone
             }
         }
-        return playerData;
-    }
+        finally {
+            closeResultSet(resultSet);
+            closeStatement(statement);
 
-    public boolean convert(String[] data) throws Exception {
-        String playerName = data[0];
+            try {
+                connection.getConnection().setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                // Ignore
+            }
 
-        // Check for things we don't want put in the DB
-        if (playerName == null || playerName.equalsIgnoreCase("null") || playerName.length() > 16) {
-            return false;
+            connectionPool.release(connection);
         }
 
-        String mining = (data.length > 1) ? data[1] : null;
-        String woodcutting = (data.length > 5) ? data[5] : null;
-        String repair = (data.length > 7) ? data[7] : null;
-        String unarmed = (data.length > 8) ? data[8] : null;
-        String herbalism = (data.length > 9) ? data[9] : null;
-        String excavation = (data.length > 10) ? data[10] : null;
-        String archery = (data.length > 11) ? data[11] : null;
-        String swords = (data.length > 12) ? data[12] : null;
-        String axes = (data.length > 13) ? data[13] : null;
-        String acrobatics = (data.length > 14) ? data[14] : null;
-        String taming = (data.length > 24) ? data[24] : null;
-        String fishing = (data.length > 34) ? data[34] : null;
-
-        String miningXP = (data.length > 4) ? data[4] : null;
-        String woodCuttingXP = (data.length > 6) ? data[6] : null;;
-        String repairXP = (data.length > 15) ? data[15] : null;
-        String unarmedXP = (data.length > 16) ? data[16] : null;
-        String herbalismXP = (data.length > 17) ? data[17] : null;
-        String excavationXP = (data.length > 18) ? data[18] : null;
-        String archeryXP = (data.length > 19) ? data[19] : null;
-        String swordsXP = (data.length > 20) ? data[20] : null;
-        String axesXP = (data.length > 21) ? data[21] : null;
-        String acrobaticsXP = (data.length > 22) ? data[22] : null;
-        String tamingXP = (data.length > 25) ? data[25] : null;
-        String fishingXP = (data.length > 35) ? data[35] : null;
-
-        String superBreakerCooldown = (data.length > 32) ? data[32] : null;
-        String treeFellerCooldown = (data.length > 28) ? data[28] : null;
-        String berserkCooldown = (data.length > 26) ? data[26] : null;
-        String greenTerraCooldown = (data.length > 29) ? data[29] : null;
-        String gigaDrillBreakerCooldown = (data.length > 27) ? data[27] : null;
-        String serratedStrikesCooldown = (data.length > 30) ? data[30] : null;
-        String skullSplitterCooldown = (data.length > 31) ? data[31] : null;
-        String blastMiningCooldown = (data.length > 36) ? data[36] : null;
-
-        String hudType = (data.length > 33) ? data[33] : null;
-        String mobHealthbarType = (data.length > 38 ? data[38] : null);
-        long lastLogin = mcMMO.p.getServer().getOfflinePlayer(playerName).getLastPlayed();
-
-        int id = readId(playerName); // Check to see if the user is in the DB
-
-        // Create the user if they don't exist
-        if (id == 0) {
-            newUser(playerName);
-            id = readId(playerName);
-        }
-
-        saveLogin(id, lastLogin);
-        saveIntegers(
-                "UPDATE " + tablePrefix + "skills SET "
-                        + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                        + ", unarmed = ?, herbalism = ?, excavation = ?"
-                        + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                        + ", fishing = ? WHERE user_id = ?",
-                StringUtils.getInt(taming), StringUtils.getInt(mining),
-                StringUtils.getInt(repair), StringUtils.getInt(woodcutting),
-                StringUtils.getInt(unarmed), StringUtils.getInt(herbalism),
-                StringUtils.getInt(excavation), StringUtils.getInt(archery),
-                StringUtils.getInt(swords), StringUtils.getInt(axes),
-                StringUtils.getInt(acrobatics), StringUtils.getInt(fishing),
-                id);
-        saveIntegers(
-                "UPDATE " + tablePrefix + "experience SET "
-                        + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                        + ", unarmed = ?, herbalism = ?, excavation = ?"
-                        + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                        + ", fishing = ? WHERE user_id = ?",
-                StringUtils.getInt(tamingXP), StringUtils.getInt(miningXP),
-                StringUtils.getInt(repairXP), StringUtils.getInt(woodCuttingXP),
-                StringUtils.getInt(unarmedXP), StringUtils.getInt(herbalismXP),
-                StringUtils.getInt(excavationXP), StringUtils.getInt(archeryXP),
-                StringUtils.getInt(swordsXP), StringUtils.getInt(axesXP),
-                StringUtils.getInt(acrobaticsXP), StringUtils.getInt(fishingXP),
-                id);
-        saveLongs(
-                "UPDATE " + tablePrefix + "cooldowns SET "
-                        + " taming = ?, mining = ?, repair = ?, woodcutting = ?"
-                        + ", unarmed = ?, herbalism = ?, excavation = ?"
-                        + ", archery = ?, swords = ?, axes = ?, acrobatics = ?"
-                        + ", blast_mining = ? WHERE user_id = ?",
-                id,
-                StringUtils.getLong(null), StringUtils.getLong(superBreakerCooldown),
-                StringUtils.getLong(null), StringUtils.getInt(treeFellerCooldown),
-                StringUtils.getLong(berserkCooldown), StringUtils.getLong(greenTerraCooldown),
-                StringUtils.getLong(gigaDrillBreakerCooldown), StringUtils.getLong(null),
-                StringUtils.getLong(serratedStrikesCooldown), StringUtils.getLong(skullSplitterCooldown),
-                StringUtils.getLong(null), StringUtils.getLong(blastMiningCooldown));
-        saveHuds(id, hudType, mobHealthbarType);
-        return true;
+        return converted;
+    }
+
+    public void onDisable() {
+        connectionPool.close();
     }
 
     /**
-    * Check connection status and re-establish if dead or stale.
-    *
-    * If the very first immediate attempt fails, further attempts
-    * will be made in progressively larger intervals up to MAX_WAIT
-    * intervals.
+    * Check that the database can be reached.
     *
-    * This allows for MySQL to time out idle connections as needed by
-    * server operator, without affecting McMMO, while still providing
-    * protection against a database outage taking down Bukkit's tick
-    * processing loop due to attempting a database connection each
-    * time McMMO needs the database.
+    * Connections are validated when borrowed from the pool, and if the
+    * database can't be reached, further attempts will be made in
+    * progressively larger intervals, see {@link ConnectionPool}.
     *
     * @return the boolean value for whether or not we are connected
     */
     public boolean checkConnected() {
-        boolean isClosed = true;
-        boolean isValid = false;
-        boolean exists = (connection != null);
+        PooledConnection connection = connectionPool.borrow();
 
-        // If we're waiting for server to recover then leave early
-        if (nextReconnectTimestamp > 0 && nextReconnectTimestamp > System.nanoTime()) {
-            return false;
-        }
+        connectionPool.release(connection);
+        return connection != null;
+    }
 
-        if (exists) {
-            try {
-                isClosed = connection.isClosed();
-            }
-            catch (SQLException e) {
-                isClosed = true;
-                e.printStackTrace();
-                printErrors(e);
-            }
+    /**
+    * Build the query used to rank a player in every skill and in power level at once.
+    *
+    * A player's rank is one more than the number of players with a higher level,
+    * plus the number of players with the same level whose name sorts before theirs.
+    * Each rank is counted by a subquery that can use the index on its column,
+    * power level included as it is stored alongside the skills, so the whole
+    * lookup takes a single round trip to the database.
+    *
+    * @return the rank query, taking the player name as its only parameter
+    */
+    private String buildRankQuery() {
+        StringBuilder query = new StringBuilder("SELECT ");
 
-            if (!isClosed) {
-                try {
-                    isValid = connection.isValid(VALID_TIMEOUT);
-                }
-                catch (SQLException e) {
-                    // Don't print stack trace because it's valid to lose idle connections to the server and have to restart them.
-                    isValid = false;
-                }
-            }
-        }
+        for (SkillType skillType : SkillType.nonChildSkills()) {
+            String skillName = skillType.name().toLowerCase();
 
-        // Leave if all ok
-        if (exists && !isClosed && isValid) {
-            // Housekeeping
-            nextReconnectTimestamp = 0;
-            reconnectAttempt = 0;
-            return true;
+            query.append(rankColumns("s." + skillName, "r." + skillName)).append(", ");
         }
 
-        // Cleanup after ourselves for GC and MySQL's sake
-        if (exists && !isClosed) {
-            try {
-                connection.close();
-            }
-            catch (SQLException ex) {
-                // This is a housekeeping exercise, ignore errors
-            }
-        }
+        query.append(rankColumns("s.power_level", "r.power_level"));
+        query.append(" FROM ").append(tablePrefix).append("users u JOIN ").append(tablePrefix).append("skills s ON (u.id = s.user_id) WHERE u.user = ?");
+
+        return query.toString();
+    }
 
-        // Try to connect again
-        connect();
+    private String rankColumns(String playerValue, String otherValue) {
+        // Unranked players would otherwise tie with every player at 0, and go through all of them
+        return playerValue + ", "
+                + "(SELECT COUNT(*) FROM " + tablePrefix + "skills r WHERE " + otherValue + " > " + playerValue + ") + "
+                + "(SELECT COUNT(*) FROM " + tablePrefix + "users ru JOIN " + tablePrefix + "skills r ON (ru.id = r.user_id) "
+                + "WHERE " + playerValue + " > 0 AND " + otherValue + " = " + playerValue + " AND ru.user < u.user) + 1";
+    }
 
-        // Leave if connection is good
-        try {
-            if (connection != null && !connection.isClosed()) {
-                // Schedule a database save if we really had an outage
-                if (reconnectAttempt > 1) {
-                    new SQLReconnectTask().runTaskLater(mcMMO.p, 5);
-                }
-                nextReconnectTimestamp = 0;
-                reconnectAttempt = 0;
-                return true;
-            }
-        }
-        catch (SQLException e) {
-            // Failed to check isClosed, so presume connection is bad and attempt later
-            e.printStackTrace();
-            printErrors(e);
+    private int getPowerLevel(PlayerProfile profile) {
+        int powerLevel = 0;
+
+        for (SkillType skillType : SkillType.nonChildSkills()) {
+            powerLevel += profile.getSkillLevel(skillType);
         }
 
-        reconnectAttempt++;
-        nextReconnectTimestamp = (long) (System.nanoTime() + Math.min(MAX_WAIT, (reconnectAttempt * SCALING_FACTOR * MIN_WAIT)));
-        return false;
+        return powerLevel;
     }
 
     /**
-    * Attempt to connect to the mySQL database.
+    * Set up the pool of connections to the mySQL database.
+    *
+    * @return the connection pool
     */
-    private void connect() {
-        connectionString = "jdbc:mysql://" + Config.getInstance().getMySQLServerName() + ":" + Config.getInstance().getMySQLServerPort() + "/" + Config.getInstance().getMySQLDatabaseName();
+    private ConnectionPool createConnectionPool() {
+        String connectionString = "jdbc:mysql://" + Config.getInstance().getMySQLServerName() + ":" + Config.getInstance().getMySQLServerPort() + "/" + Config.getInstance().getMySQLDatabaseName();
 
         try {
-            mcMMO.p.getLogger().info("Attempting connection to MySQL...");
-
             // Force driver to load if not yet loaded
             Class.forName("com.mysql.jdbc.Driver");
-            Properties connectionProperties = new Properties();
-            connectionProperties.put("user", Config.getInstance().getMySQLUserName());
-            connectionProperties.put("password", Config.getInstance().getMySQLUserPassword());
-            connectionProperties.put("autoReconnect", "false");
-            connectionProperties.put("maxReconnects", "0");
-            connection = DriverManager.getConnection(connectionString, connectionProperties);
-
-            mcMMO.p.getLogger().info("Connection to MySQL was a success!");
-        }
-        catch (SQLException ex) {
-            connection = null;
-
-            if (reconnectAttempt == 0 || reconnectAttempt >= 11) {
-                mcMMO.p.getLogger().info("Connection to MySQL failed!");
-            }
         }
         catch (ClassNotFoundException ex) {
-            connection = null;
-
-            if (reconnectAttempt == 0 || reconnectAttempt >= 11) {
-                mcMMO.p.getLogger().info("MySQL database driver not found!");
-            }
+            mcMMO.p.getLogger().info("MySQL database driver not found!");
         }
+
+        Properties connectionProperties = new Properties();
+        connectionProperties.put("user", Config.getInstance().getMySQLUserName());
+        connectionProperties.put("password", Config.getInstance().getMySQLUserPassword());
+        connectionProperties.put("autoReconnect", "false");
+        connectionProperties.put("maxReconnects", "0");
+
+        return new ConnectionPool(connectionString, connectionProperties, Config.getInstance().getMySQLMaxConnections());
     }
 
     /**
@@ -637,7 +655,9 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 + "`axes` int(10) unsigned NOT NULL DEFAULT '0',"
                 + "`acrobatics` int(10) unsigned NOT NULL DEFAULT '0',"
                 + "`fishing` int(10) unsigned NOT NULL DEFAULT '0',"
-                + "PRIMARY KEY (`user_id`)) "
+                + "`power_level` int(10) unsigned NOT NULL DEFAULT '0',"
+                + "PRIMARY KEY (`user_id`),"
+                + "KEY `idx_power_level` (`power_level`) USING BTREE) "
                 + "DEFAULT CHARSET=latin1;");
         write("CREATE TABLE IF NOT EXISTS `" + tablePrefix + "experience` ("
                 + "`user_id` int(10) unsigned NOT NULL,"
@@ -679,7 +699,7 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 break;
 
             case INDEX:
-                if (read("SHOW INDEX FROM " + tablePrefix + "skills").size() != 13 && checkConnected()) {
+                if (read("SHOW INDEX FROM " + tablePrefix + "skills WHERE Key_name = 'idx_fishing'").isEmpty() && checkConnected()) {
                     mcMMO.p.getLogger().info("Indexing tables, this may take a while on larger databases");
                     write("ALTER TABLE `" + tablePrefix + "skills` ADD INDEX `idx_taming` (`taming`) USING BTREE, "
                             + "ADD INDEX `idx_mining` (`mining`) USING BTREE, "
@@ -700,6 +720,10 @@ public final class SQLDatabaseManager implements DatabaseManager {
                 sql = "SELECT * FROM `" + tablePrefix + "huds` ORDER BY `" + tablePrefix + "huds`.`mobhealthbar` ASC LIMIT 0 , 30";
                 break;
 
+            case POWER_LEVEL:
+                sql = "SELECT * FROM `" + tablePrefix + "skills` ORDER BY `" + tablePrefix + "skills`.`power_level` ASC LIMIT 0 , 30";
+                break;
+
             case PARTY_NAMES:
                 write("ALTER TABLE `" + tablePrefix + "users` DROP COLUMN `party` ;");
                 return;
@@ -739,13 +763,14 @@ public final class SQLDatabaseManager implements DatabaseManager {
         ResultSet resultSet = null;
         HashMap<Integer, ArrayList<String>> rows = new HashMap<Integer, ArrayList<String>>();
         PreparedStatement statement = null;
+        PooledConnection connection = connectionPool.borrow();
 
-        try {
-            if (!checkConnected()) {
-                return;
-            }
+        if (connection == null) {
+            return;
+        }
 
-            statement = connection.prepareStatement(sql);
+        try {
+            statement = connection.getConnection().prepareStatement(sql);
             resultSet = statement.executeQuery();
 
             while (resultSet.next()) {
@@ -759,6 +784,12 @@ public final class SQLDatabaseManager implements DatabaseManager {
             }
         }
         catch (SQLException ex) {
+            // Give the connection back first, the updates below borrow their own
+            closeStatement(statement);
+            statement = null;
+            connectionPool.release(connection);
+            connection = null;
+
             switch (update) {
                 case BLAST_MINING:
                     mcMMO.p.getLogger().info("Updating mcMMO MySQL tables for Blast Mining...");
@@ -776,19 +807,19 @@ public final class SQLDatabaseManager implements DatabaseManager {
                     write("ALTER TABLE `" + tablePrefix + "huds` ADD `mobhealthbar` varchar(50) NOT NULL DEFAULT '" + Config.getInstance().getMobHealthbarDefault() + "' ;");
                     break;
 
+                case POWER_LEVEL:
+                    mcMMO.p.getLogger().info("Updating mcMMO MySQL tables for power level rankings...");
+                    write("ALTER TABLE `" + tablePrefix + "skills` ADD `power_level` int(10) unsigned NOT NULL DEFAULT '0', ADD INDEX `idx_power_level` (`power_level`) USING BTREE;");
+                    write("UPDATE `" + tablePrefix + "skills` SET `power_level` = taming+mining+woodcutting+repair+unarmed+herbalism+excavation+archery+swords+axes+acrobatics+fishing;");
+                    break;
+
                 default:
                     break;
             }
         }
         finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore the error, we're leaving
-                }
-            }
+            closeStatement(statement);
+            connectionPool.release(connection);
         }
     }
 
@@ -799,13 +830,15 @@ public final class SQLDatabaseManager implements DatabaseManager {
     * @return true if the query was successfully written, false otherwise.
     */
     private boolean write(String sql) {
-        if (!checkConnected()) {
+        PooledConnection connection = connectionPool.borrow();
+
+        if (connection == null) {
             return false;
         }
 
         PreparedStatement statement = null;
         try {
-            statement = connection.prepareStatement(sql);
+            statement = connection.getConnection().prepareStatement(sql);
             statement.executeUpdate();
             return true;
         }
@@ -813,17 +846,12 @@ public final class SQLDatabaseManager implements DatabaseManager {
             if (!sql.equalsIgnoreCase("ALTER TABLE `" + tablePrefix + "users` DROP COLUMN `party` ;")) {
                 printErrors(ex);
             }
+            connectionPool.invalidate(connection);
             return false;
         }
         finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
-            }
+            closeStatement(statement);
+            connectionPool.release(connection);
         }
     }
 
@@ -835,26 +863,22 @@ public final class SQLDatabaseManager implements DatabaseManager {
     */
     private int update(String sql) {
         int rows = 0;
+        PooledConnection connection = connectionPool.borrow();
 
-        if (checkConnected()) {
+        if (connection != null) {
             PreparedStatement statement = null;
 
             try {
-                statement = connection.prepareStatement(sql);
+                statement = connection.getConnection().prepareStatement(sql);
                 rows = statement.executeUpdate();
             }
             catch (SQLException ex) {
                 printErrors(ex);
+                connectionPool.invalidate(connection);
             }
             finally {
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    }
-                    catch (SQLException e) {
-                        // Ignore
-                    }
-                }
+                closeStatement(statement);
+                connectionPool.release(connection);
             }
         }
 
@@ -869,13 +893,14 @@ public final class SQLDatabaseManager implements DatabaseManager {
     */
     private HashMap<Integer, ArrayList<String>> read(String sql) {
         HashMap<Integer, ArrayList<String>> rows = new HashMap<Integer, ArrayList<String>>();
+        PooledConnection connection = connectionPool.borrow();
 
-        if (checkConnected()) {
+        if (connection != null) {
             PreparedStatement statement = null;
             ResultSet resultSet;
 
             try {
-                statement = connection.prepareStatement(sql);
+                statement = connection.getConnection().prepareStatement(sql);
                 resultSet = statement.executeQuery();
 
                 while (resultSet.next()) {
@@ -890,255 +915,359 @@ public final class SQLDatabaseManager implements DatabaseManager {
             }
             catch (SQLException ex) {
                 printErrors(ex);
+                connectionPool.invalidate(connection);
             }
             finally {
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    }
-                    catch (SQLException e) {
-                        // Ignore
-                    }
-                }
+                closeStatement(statement);
+                connectionPool.release(connection);
             }
         }
 
         return rows;
     }
 
-    private ArrayList<String> readRow(PreparedStatement statement) {
+    /**
+    * Read the first row of a prepared query. The statement is left open.
+    *
+    * @param statement The prepared statement to execute
+    * @return the values in the first row, empty if there is none
+    * @throws SQLException if the query failed
+    */
+    private ArrayList<String> readRow(PreparedStatement statement) throws SQLException {
         ArrayList<String> playerData = new ArrayList<String>();
+        ResultSet resultSet = null;
 
-        if (checkConnected()) {
-            ResultSet resultSet = null;
-
-            try {
-                resultSet = statement.executeQuery();
+        try {
+            resultSet = statement.executeQuery();
 
-                if (resultSet.next()) {
-                    for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
-                        playerData.add(resultSet.getString(i));
-                    }
-                }
-            }
-            catch (SQLException ex) {
-                printErrors(ex);
-            }
-            finally {
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    }
-                    catch (SQLException e) {
-                        // Ignore
-                    }
+            if (resultSet.next()) {
+                for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
+                    playerData.add(resultSet.getString(i));
                 }
             }
         }
+        finally {
+            closeResultSet(resultSet);
+        }
 
         return playerData;
     }
 
     /**
-    * Get the Integer. Only return first row / first field.
+    * Get the Integer. Only return first row / first field. The statement is left open.
     *
-    * @param sql SQL query to execute
+    * @param statement The prepared statement to execute
     * @return the value in the first row / first field
     */
     private int readInt(PreparedStatement statement) {
         int result = 0;
+        ResultSet resultSet = null;
 
-        if (checkConnected()) {
-            ResultSet resultSet = null;
-
-            try {
-                resultSet = statement.executeQuery();
+        try {
+            resultSet = statement.executeQuery();
 
-                if (resultSet.next()) {
-                    result = resultSet.getInt(1);
-                }
-            }
-            catch (SQLException ex) {
-                printErrors(ex);
-            }
-            finally {
-                if (statement != null) {
-                    try {
-                        statement.close();
-                    }
-                    catch (SQLException e) {
-                        // Ignore
-                    }
-                }
+            if (resultSet.next()) {
+                result = resultSet.getInt(1);
             }
         }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+        finally {
+            closeResultSet(resultSet);
+        }
 
         return result;
     }
 
-    private void writeMissingRows(int id) {
-        PreparedStatement statement = null;
+    private void newUser(PooledConnection connection, String playerName) {
+        try {
+            PreparedStatement statement = connection.getStatement(newUserQuery);
+            statement.setString(1, playerName);
+            statement.setLong(2, System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR);
+            statement.execute();
+
+            writeMissingRows(connection, readId(connection, playerName));
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            connectionPool.invalidate(connection);
+        }
+    }
 
+    private List<String> loadPlayerData(PooledConnection connection, String playerName) {
         try {
-            statement = connection.prepareStatement("INSERT IGNORE INTO " + tablePrefix + "experience (user_id) VALUES (?)");
+            PreparedStatement statement = connection.getStatement(loadPlayerQuery);
+            statement.setString(1, playerName);
+
+            List<String> playerData = readRow(statement);
+
+            if (!playerData.isEmpty()) {
+                return playerData;
+            }
+
+            statement = connection.getStatement(readIdQuery);
+            statement.setString(1, playerName);
+
+            List<String> userId = readRow(statement);
+
+            // Check if user doesn't exist
+            if (userId.isEmpty()) {
+                return playerData;
+            }
+
+            // Write missing table rows
+            writeMissingRows(connection, Integer.parseInt(userId.get(0)));
+
+            // Re-read data
+            statement = connection.getStatement(loadPlayerQuery);
+            statement.setString(1, playerName);
+
+            playerData = readRow(statement);
+
+            // The user exists, so missing data means the rows couldn't be written
+            return playerData.isEmpty() ? null : playerData;
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            connectionPool.invalidate(connection);
+            return null;
+        }
+    }
+
+    private void writeMissingRows(PooledConnection connection, int id) {
+        try {
+            PreparedStatement statement = connection.getStatement("INSERT IGNORE INTO " + tablePrefix + "experience (user_id) VALUES (?)");
             statement.setInt(1, id);
             statement.execute();
-            statement.close();
 
-            statement = connection.prepareStatement("INSERT IGNORE INTO " + tablePrefix + "skills (user_id) VALUES (?)");
+            statement = connection.getStatement("INSERT IGNORE INTO " + tablePrefix + "skills (user_id) VALUES (?)");
             statement.setInt(1, id);
             statement.execute();
-            statement.close();
 
-            statement = connection.prepareStatement("INSERT IGNORE INTO " + tablePrefix + "cooldowns (user_id) VALUES (?)");
+            statement = connection.getStatement("INSERT IGNORE INTO " + tablePrefix + "cooldowns (user_id) VALUES (?)");
             statement.setInt(1, id);
             statement.execute();
-            statement.close();
 
-            statement = connection.prepareStatement("INSERT IGNORE INTO " + tablePrefix + "huds (user_id, mobhealthbar) VALUES (? ,'" + Config.getInstance().getMobHealthbarDefault().name() + "')");
+            statement = connection.getStatement("INSERT IGNORE INTO " + tablePrefix + "huds (user_id, mobhealthbar) VALUES (? ,'" + Config.getInstance().getMobHealthbarDefault().name() + "')");
             statement.setInt(1, id);
             statement.execute();
-            statement.close();
         }
         catch (SQLException ex) {
             printErrors(ex);
-        }
-        finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
-            }
+            connectionPool.invalidate(connection);
         }
     }
 
-    private void processPurge(Collection<ArrayList<String>> usernames) {
-        for (ArrayList<String> user : usernames) {
-            Misc.profileCleanup(user.get(0));
+    /**
+    * Delete every user matching a condition from all tables at once.
+    *
+    * @param condition The condition on the users (u) and skills (s) tables
+    * @param excludedPlayers Lowercase names of players to keep
+    * @return the names of the deleted users
+    */
+    private List<String> purgeUsers(String condition, Set<String> excludedPlayers) {
+        List<String> usernames = new ArrayList<String>();
+        List<String> excluded = new ArrayList<String>(excludedPlayers);
+
+        if (!excluded.isEmpty()) {
+            condition += " AND u.user NOT IN (" + repeatRows("?", excluded.size()) + ")";
+        }
+
+        PooledConnection connection = connectionPool.borrow();
+
+        if (connection == null) {
+            return usernames;
         }
-    }
 
-    private void saveIntegers(String sql, int... args) {
         PreparedStatement statement = null;
+        ResultSet resultSet = null;
 
         try {
-            statement = connection.prepareStatement(sql);
-            int i = 1;
+            connection.getConnection().setAutoCommit(false);
+
+            statement = connection.getConnection().prepareStatement("SELECT u.user FROM " + tablePrefix + "users u "
+                    + "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) WHERE " + condition + " FOR UPDATE");
+            setStrings(statement, excluded);
+            resultSet = statement.executeQuery();
 
-            for (int arg : args) {
-                statement.setInt(i++, arg);
+            while (resultSet.next()) {
+                usernames.add(resultSet.getString(1));
             }
 
-            statement.execute();
+            closeResultSet(resultSet);
+            resultSet = null;
+            closeStatement(statement);
+
+            statement = connection.getConnection().prepareStatement("DELETE FROM u, e, h, s, c USING " + tablePrefix + "users u "
+                    + "JOIN " + tablePrefix + "experience e ON (u.id = e.user_id) "
+                    + "JOIN " + tablePrefix + "huds h ON (u.id = h.user_id) "
+                    + "JOIN " + tablePrefix + "skills s ON (u.id = s.user_id) "
+                    + "JOIN " + tablePrefix + "cooldowns c ON (u.id = c.user_id) "
+                    + "WHERE " + condition);
+            setStrings(statement, excluded);
+            statement.executeUpdate();
+
+            connection.getConnection().commit();
         }
         catch (SQLException ex) {
             printErrors(ex);
+            connectionPool.invalidate(connection);
+            usernames.clear();
+
+            try {
+                connection.getConnection().rollback();
+            }
+            catch (SQLException e) {
+                // Ignore, the connection is most likely gone
+            }
         }
         finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
+            closeResultSet(resultSet);
+            closeStatement(statement);
+
+            try {
+                connection.getConnection().setAutoCommit(true);
+            }
+            catch (SQLException e) {
+                // Ignore
             }
-        }
-    }
 
-    private void saveLongs(String sql, int id, long... args) {
-        PreparedStatement statement = null;
+            connectionPool.release(connection);
+        }
 
-        try {
-            statement = connection.prepareStatement(sql);
-            int i = 1;
+        return usernames;
+    }
 
-            for (long arg : args) {
-                statement.setLong(i++, arg);
-            }
+    private void setStrings(PreparedStatement statement, List<String> values) throws SQLException {
+        int i = 1;
 
-            statement.setInt(i++, id);
-            statement.execute();
-        }
-        catch (SQLException ex) {
-            printErrors(ex);
-        }
-        finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
-            }
+        for (String value : values) {
+            statement.setString(i++, value);
         }
     }
 
-    private int readId(String playerName) {
+    private int readId(PooledConnection connection, String playerName) {
         int id = 0;
 
         try {
-            PreparedStatement statement = connection.prepareStatement("SELECT id FROM " + tablePrefix + "users WHERE user = ?");
+            PreparedStatement statement = connection.getStatement(readIdQuery);
             statement.setString(1, playerName);
             id = readInt(statement);
         }
         catch (SQLException ex) {
             printErrors(ex);
+            connectionPool.invalidate(connection);
         }
 
         return id;
     }
 
-    private void saveLogin(int id, long login) {
+    /**
+    * Insert or update one row per user in a table with a single statement.
+    *
+    * @param table The table to write, without prefix
+    * @param columns The value columns, after user_id
+    * @param connection The connection to use
+    * @param rows The user id followed by the value of each column, for each row
+    * @throws SQLException if the rows could not be written
+    */
+    private void upsertIntegers(String table, String columns, PooledConnection connection, List<int[]> rows) throws SQLException {
+        String[] columnNames = columns.split(", ");
+        StringBuilder placeholders = new StringBuilder("(?");
+        StringBuilder updates = new StringBuilder();
+
+        for (String column : columnNames) {
+            placeholders.append(", ?");
+
+            if (updates.length() > 0) {
+                updates.append(", ");
+            }
+
+            updates.append(column).append(" = VALUES(").append(column).append(")");
+        }
+
+        placeholders.append(")");
+
         PreparedStatement statement = null;
 
         try {
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "users SET lastlogin = ? WHERE id = ?");
-            statement.setLong(1, login);
-            statement.setInt(2, id);
-            statement.execute();
-        }
-        catch (SQLException ex) {
-            printErrors(ex);
-        }
-        finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
+            statement = connection.getConnection().prepareStatement("INSERT INTO " + tablePrefix + table + " (user_id, " + columns + ") VALUES "
+                    + repeatRows(placeholders.toString(), rows.size()) + " ON DUPLICATE KEY UPDATE " + updates);
+            int i = 1;
+
+            for (int[] row : rows) {
+                for (int value : row) {
+                    statement.setInt(i++, value);
                 }
             }
+
+            statement.executeUpdate();
+        }
+        finally {
+            closeStatement(statement);
         }
     }
 
-    private void saveHuds(int userId, String hudType, String mobHealthBar) {
-        PreparedStatement statement = null;
+    private String repeatRows(String row, int count) {
+        StringBuilder rows = new StringBuilder(row);
+
+        for (int i = 1; i < count; i++) {
+            rows.append(", ").append(row);
+        }
+
+        return rows.toString();
+    }
+
+    private int getInt(String[] data, int index) {
+        return data.length > index ? StringUtils.getInt(data[index]) : 0;
+    }
+
+    private long getLong(String[] data, int index, long defaultValue) {
+        long value = data.length > index ? StringUtils.getLong(data[index]) : 0;
+        return value > 0 ? value : defaultValue;
+    }
+
+    private String getString(String[] data, int index, String defaultValue) {
+        return data.length > index && !data[index].isEmpty() ? data[index] : defaultValue;
+    }
+
+    private void closeStatement(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
 
         try {
-            statement = connection.prepareStatement("UPDATE " + tablePrefix + "huds SET hudtype = ?, mobhealthbar = ? WHERE user_id = ?");
-            statement.setString(1, hudType);
-            statement.setString(2, mobHealthBar);
-            statement.setInt(3, userId);
-            statement.execute();
+            statement.close();
         }
-        catch (SQLException ex) {
-            printErrors(ex);
+        catch (SQLException e) {
+            // Ignore
         }
-        finally {
-            if (statement != null) {
-                try {
-                    statement.close();
-                }
-                catch (SQLException e) {
-                    // Ignore
-                }
-            }
+    }
+
+    private void closeResultSet(ResultSet resultSet) {
+        if (resultSet == null) {
+            return;
+        }
+
+        try {
+            resultSet.close();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void clearBatch(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            statement.clearBatch();
+        }
+        catch (SQLException e) {
+            // Ignore
         }
     }
 
@@ -1147,4 +1276,4 @@ public final class SQLDatabaseManager implements DatabaseManager {
         mcMMO.p.getLogger().severe("SQLState: " + ex.getSQLState());
         mcMMO.p.getLogger().severe("VendorError: " + ex.getErrorCode());
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,748 @@
+package com.gmail.nossr50.database;
+
+import java.io.File;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.datatypes.skills.AbilityType;
+import com.gmail.nossr50.datatypes.skills.SkillType;
+import com.gmail.nossr50.datatypes.spout.huds.HudType;
+import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.util.StringUtils;
+
+/**
+ * Stores users in an embedded SQLite database file, next to the users file.
+ * <p>
+ * Every user is a single row, so loading or saving a profile touches one row.
+ * Names are unique regardless of case, like with MySQL, and every skill and
+ * the power level have an index that serves both the leaderboards and the
+ * rank lookups. SQLite only allows one writer at a time, so all access goes
+ * through one connection and is serialized on this manager.
+ */
+public final class SQLiteDatabaseManager implements DatabaseManager {
+    // Column lists, in the order PlayerProfile reads its data
+    private static final String SKILL_COLUMNS = "taming, mining, repair, woodcutting, unarmed, herbalism, excavation, archery, swords, axes, acrobatics, fishing";
+    private static final String EXPERIENCE_COLUMNS = "xp_taming, xp_mining, xp_repair, xp_woodcutting, xp_unarmed, xp_herbalism, xp_excavation, xp_archery, xp_swords, xp_axes, xp_acrobatics, xp_fishing";
+    private static final String COOLDOWN_COLUMNS = "cd_super_breaker, cd_tree_feller, cd_berserk, cd_green_terra, cd_giga_drill_breaker, cd_serrated_strikes, cd_skull_splitter, cd_blast_mining";
+
+    private final File databaseFile;
+    private final MobHealthbarType mobHealthbarDefault;
+    private PooledConnection connection;
+
+    /* Fixed queries, prepared once */
+    private final String newUserQuery;
+    private final String loadPlayerQuery;
+    private final String saveUserQuery;
+    private final String removeUserQuery;
+    private final String readRankQuery;
+
+    protected SQLiteDatabaseManager() {
+        this(new File(mcMMO.getFlatFileDirectory() + Config.getInstance().getSQLiteFileName()), Config.getInstance().getMobHealthbarDefault());
+    }
+
+    /**
+     * Open the given database file, creating it if needed.
+     *
+     * @param databaseFile The database file
+     * @param mobHealthbarDefault The health bar type of users without one
+     */
+    SQLiteDatabaseManager(File databaseFile, MobHealthbarType mobHealthbarDefault) {
+        this.databaseFile = databaseFile;
+        this.mobHealthbarDefault = mobHealthbarDefault;
+
+        newUserQuery = "INSERT OR IGNORE INTO users (user, lastlogin, mobhealthbar) VALUES (?, ?, ?)";
+        loadPlayerQuery = "SELECT " + SKILL_COLUMNS + ", " + EXPERIENCE_COLUMNS + ", "
+                + "NULL, cd_super_breaker, NULL, cd_tree_feller, cd_berserk, cd_green_terra, cd_giga_drill_breaker, NULL, cd_serrated_strikes, cd_skull_splitter, NULL, cd_blast_mining, "
+                + "hudtype, mobhealthbar FROM users WHERE user = ?";
+        saveUserQuery = "UPDATE users SET lastlogin = ?, power_level = ?, "
+                + assignments(SKILL_COLUMNS) + ", " + assignments(EXPERIENCE_COLUMNS) + ", " + assignments(COOLDOWN_COLUMNS) + ", "
+                + "hudtype = ?, mobhealthbar = ? WHERE user = ?";
+        removeUserQuery = "DELETE FROM users WHERE user = ?";
+        readRankQuery = buildRankQuery();
+
+        checkConnected();
+        createStructure();
+    }
+
+    public List<String> purgePowerlessUsers(Set<String> excludedPlayers) {
+        return purgeUsers("power_level = 0", excludedPlayers);
+    }
+
+    public List<String> purgeOldUsers(Set<String> excludedPlayers) {
+        long cutoff = (System.currentTimeMillis() - PURGE_TIME) / Misc.TIME_CONVERSION_FACTOR;
+
+        return purgeUsers("lastlogin < " + cutoff, excludedPlayers);
+    }
+
+    public synchronized boolean removeUser(String playerName) {
+        boolean success = false;
+        PooledConnection connection = getConnection();
+
+        if (connection != null) {
+            try {
+                PreparedStatement statement = connection.getStatement(removeUserQuery);
+                statement.setString(1, playerName);
+                success = statement.executeUpdate() != 0;
+            }
+            catch (SQLException ex) {
+                printErrors(ex);
+            }
+        }
+
+        Misc.profileCleanup(playerName);
+
+        return success;
+    }
+
+    public boolean saveUser(PlayerProfile profile) {
+        return saveUsers(Collections.singletonList(profile));
+    }
+
+    public synchronized boolean saveUsers(Collection<PlayerProfile> profiles) {
+        if (profiles.isEmpty()) {
+            return true;
+        }
+
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return false;
+        }
+
+        PreparedStatement statement = null;
+
+        try {
+            connection.getConnection().setAutoCommit(false);
+            statement = connection.getStatement(saveUserQuery);
+
+            long lastLogin = System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR;
+
+            // The whole row is rewritten either way, so every column is saved regardless of what changed
+            for (PlayerProfile profile : profiles) {
+                MobHealthbarType mobHealthbarType = profile.getMobHealthbarType();
+                HudType hudType = profile.getHudType();
+                int i = 1;
+                int powerLevel = 0;
+
+                for (SkillType skillType : SkillType.nonChildSkills()) {
+                    powerLevel += profile.getSkillLevel(skillType);
+                }
+
+                statement.setLong(i++, lastLogin);
+                statement.setInt(i++, powerLevel);
+
+                statement.setInt(i++, profile.getSkillLevel(SkillType.TAMING));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.MINING));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.REPAIR));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.WOODCUTTING));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.UNARMED));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.HERBALISM));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.EXCAVATION));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.ARCHERY));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.SWORDS));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.AXES));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.ACROBATICS));
+                statement.setInt(i++, profile.getSkillLevel(SkillType.FISHING));
+
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.TAMING));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.MINING));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.REPAIR));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.WOODCUTTING));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.UNARMED));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.HERBALISM));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.EXCAVATION));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.ARCHERY));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.SWORDS));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.AXES));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.ACROBATICS));
+                statement.setInt(i++, profile.getSkillXpLevel(SkillType.FISHING));
+
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.SUPER_BREAKER));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.TREE_FELLER));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.BERSERK));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.GREEN_TERRA));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.GIGA_DRILL_BREAKER));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.SERRATED_STRIKES));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.SKULL_SPLITTER));
+                statement.setLong(i++, profile.getSkillDATS(AbilityType.BLAST_MINING));
+
+                statement.setString(i++, hudType == null ? "STANDARD" : hudType.toString());
+                statement.setString(i++, mobHealthbarType == null ? mobHealthbarDefault.toString() : mobHealthbarType.toString());
+                statement.setString(i++, profile.getPlayerName());
+                statement.addBatch();
+            }
+
+            statement.executeBatch();
+            connection.getConnection().commit();
+            return true;
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            rollback(connection);
+            return false;
+        }
+        finally {
+            // The statement is cached, so make sure no half-built batch survives a failure
+            clearBatch(statement);
+            restoreAutoCommit(connection);
+        }
+    }
+
+    public synchronized List<PlayerStat> readLeaderboard(String skillName, int pageNumber, int statsPerPage) {
+        List<PlayerStat> stats = new ArrayList<PlayerStat>();
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return stats;
+        }
+
+        String column = "power_level";
+
+        if (!skillName.equalsIgnoreCase("ALL")) {
+            SkillType skillType = SkillType.getSkill(skillName);
+
+            if (skillType == null || skillType.isChildSkill()) {
+                return stats;
+            }
+
+            column = skillType.name().toLowerCase();
+        }
+
+        ResultSet resultSet = null;
+
+        try {
+            PreparedStatement statement = connection.getStatement("SELECT " + column + ", user FROM users WHERE " + column + " > 0 ORDER BY " + column + " DESC, user LIMIT ? OFFSET ?");
+            statement.setInt(1, statsPerPage);
+            statement.setInt(2, (Math.max(pageNumber, 1) - 1) * statsPerPage);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                stats.add(new PlayerStat(resultSet.getString(2), resultSet.getInt(1)));
+            }
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+        finally {
+            closeResultSet(resultSet);
+        }
+
+        return stats;
+    }
+
+    public synchronized Map<String, Integer> readRank(String playerName) {
+        Map<String, Integer> skills = new HashMap<String, Integer>();
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return skills;
+        }
+
+        ResultSet resultSet = null;
+
+        try {
+            PreparedStatement statement = connection.getStatement(readRankQuery);
+            statement.setString(1, playerName);
+            resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                int column = 1;
+
+                for (SkillType skillType : SkillType.nonChildSkills()) {
+                    int skillLevel = resultSet.getInt(column++);
+                    int rank = resultSet.getInt(column++);
+
+                    // Players without any level in a skill aren't ranked in it
+                    if (skillLevel > 0) {
+                        skills.put(skillType.name(), rank);
+                    }
+                }
+
+                int powerLevel = resultSet.getInt(column++);
+                int rank = resultSet.getInt(column++);
+
+                if (powerLevel > 0) {
+                    skills.put("ALL", rank);
+                }
+            }
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+        finally {
+            closeResultSet(resultSet);
+        }
+
+        return skills;
+    }
+
+    public synchronized void newUser(String playerName) {
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return;
+        }
+
+        try {
+            PreparedStatement statement = connection.getStatement(newUserQuery);
+            statement.setString(1, playerName);
+            statement.setLong(2, System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR);
+            statement.setString(3, mobHealthbarDefault.toString());
+            statement.executeUpdate();
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+    }
+
+    public synchronized List<String> loadPlayerData(String playerName) {
+        List<String> playerData = new ArrayList<String>();
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return null;
+        }
+
+        ResultSet resultSet = null;
+
+        try {
+            PreparedStatement statement = connection.getStatement(loadPlayerQuery);
+            statement.setString(1, playerName);
+            resultSet = statement.executeQuery();
+
+            if (resultSet.next()) {
+                for (int i = 1; i <= resultSet.getMetaData().getColumnCount(); i++) {
+                    playerData.add(resultSet.getString(i));
+                }
+            }
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            return null;
+        }
+        finally {
+            closeResultSet(resultSet);
+        }
+
+        return playerData;
+    }
+
+    public synchronized List<String> getStoredUsers() {
+        List<String> users = new ArrayList<String>();
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return users;
+        }
+
+        ResultSet resultSet = null;
+
+        try {
+            resultSet = connection.getStatement("SELECT user FROM users").executeQuery();
+
+            while (resultSet.next()) {
+                users.add(resultSet.getString(1));
+            }
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+        finally {
+            closeResultSet(resultSet);
+        }
+
+        return users;
+    }
+
+    public boolean convert(String[] data) throws Exception {
+        return convertUsers(Collections.singletonList(data)) == 1;
+    }
+
+    public synchronized int convertUsers(List<String[]> data) {
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return -1;
+        }
+
+        PreparedStatement insertStatement = null;
+        PreparedStatement updateStatement = null;
+        int converted = 0;
+
+        try {
+            connection.getConnection().setAutoCommit(false);
+
+            insertStatement = connection.getStatement(newUserQuery);
+            updateStatement = connection.getStatement(saveUserQuery);
+
+            for (String[] character : data) {
+                String playerName = character[0];
+
+                // Check for things we don't want put in the DB
+                if (playerName == null || playerName.isEmpty() || playerName.equalsIgnoreCase("null") || playerName.length() > 16) {
+                    continue;
+                }
+
+                long lastLogin = getLong(character, 37, System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR);
+                int[] skills = { getInt(character, 24), getInt(character, 1), getInt(character, 7), getInt(character, 5),
+                        getInt(character, 8), getInt(character, 9), getInt(character, 10), getInt(character, 11),
+                        getInt(character, 12), getInt(character, 13), getInt(character, 14), getInt(character, 34) };
+                int[] experience = { getInt(character, 25), getInt(character, 4), getInt(character, 15), getInt(character, 6),
+                        getInt(character, 16), getInt(character, 17), getInt(character, 18), getInt(character, 19),
+                        getInt(character, 20), getInt(character, 21), getInt(character, 22), getInt(character, 35) };
+                int[] cooldowns = { getInt(character, 32), getInt(character, 28), getInt(character, 26), getInt(character, 29),
+                        getInt(character, 27), getInt(character, 30), getInt(character, 31), getInt(character, 36) };
+                int powerLevel = 0;
+
+                for (int skillLevel : skills) {
+                    powerLevel += skillLevel;
+                }
+
+                insertStatement.setString(1, playerName);
+                insertStatement.setLong(2, lastLogin);
+                insertStatement.setString(3, mobHealthbarDefault.toString());
+                insertStatement.addBatch();
+
+                int i = 1;
+
+                updateStatement.setLong(i++, lastLogin);
+                updateStatement.setInt(i++, powerLevel);
+
+                for (int value : skills) {
+                    updateStatement.setInt(i++, value);
+                }
+
+                for (int value : experience) {
+                    updateStatement.setInt(i++, value);
+                }
+
+                for (int value : cooldowns) {
+                    updateStatement.setLong(i++, value);
+                }
+
+                updateStatement.setString(i++, getString(character, 33, "STANDARD"));
+                updateStatement.setString(i++, getString(character, 38, mobHealthbarDefault.toString()));
+                updateStatement.setString(i++, playerName);
+                updateStatement.addBatch();
+
+                converted++;
+            }
+
+            // Create the missing users first, then overwrite everyone's data
+            insertStatement.executeBatch();
+            updateStatement.executeBatch();
+
+            connection.getConnection().commit();
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            rollback(connection);
+            converted = -1;
+        }
+        finally {
+            clearBatch(insertStatement);
+            clearBatch(updateStatement);
+            restoreAutoCommit(connection);
+        }
+
+        return converted;
+    }
+
+    public synchronized boolean checkConnected() {
+        return getConnection() != null;
+    }
+
+    public synchronized void onDisable() {
+        if (connection != null) {
+            connection.close();
+            connection = null;
+        }
+    }
+
+    /**
+     * Get the connection to the database file, opening it if needed.
+     *
+     * @return the connection, or null if the database could not be opened
+     */
+    private PooledConnection getConnection() {
+        if (connection != null) {
+            return connection;
+        }
+
+        try {
+            // Force driver to load if not yet loaded
+            Class.forName("org.sqlite.JDBC");
+        }
+        catch (ClassNotFoundException ex) {
+            mcMMO.p.getLogger().info("SQLite database driver not found!");
+            return null;
+        }
+
+        Statement statement = null;
+
+        try {
+            databaseFile.getParentFile().mkdirs();
+            connection = new PooledConnection(DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getPath()));
+
+            // Let readers work alongside the writer, and only sync the file at checkpoints
+            statement = connection.getConnection().createStatement();
+            statement.execute("PRAGMA journal_mode = WAL");
+            statement.execute("PRAGMA synchronous = NORMAL");
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+        }
+        finally {
+            closeStatement(statement);
+        }
+
+        return connection;
+    }
+
+    /**
+     * Create the users table and its indexes if they don't exist yet.
+     */
+    private synchronized void createStructure() {
+        StringBuilder table = new StringBuilder("CREATE TABLE IF NOT EXISTS users ("
+                + "id INTEGER PRIMARY KEY, "
+                + "user VARCHAR(40) NOT NULL COLLATE NOCASE, "
+                + "lastlogin INTEGER NOT NULL, "
+                + "power_level INTEGER NOT NULL DEFAULT 0");
+
+        for (String column : (SKILL_COLUMNS + ", " + EXPERIENCE_COLUMNS + ", " + COOLDOWN_COLUMNS).split(", ")) {
+            table.append(", ").append(column).append(" INTEGER NOT NULL DEFAULT 0");
+        }
+
+        table.append(", hudtype VARCHAR(50) NOT NULL DEFAULT 'STANDARD'");
+        table.append(", mobhealthbar VARCHAR(50) NOT NULL DEFAULT '").append(mobHealthbarDefault).append("')");
+
+        write(table.toString());
+        write("CREATE UNIQUE INDEX IF NOT EXISTS idx_user ON users (user)");
+
+        // Matches the leaderboard order, so both pages and ranks are read straight from the index
+        for (String column : (SKILL_COLUMNS + ", power_level").split(", ")) {
+            write("CREATE INDEX IF NOT EXISTS idx_" + column + " ON users (" + column + " DESC, user)");
+        }
+    }
+
+    /**
+     * Build the query used to rank a player in every skill and in power level at once.
+     *
+     * @return the rank query, taking the player name as its only parameter
+     * @see SQLDatabaseManager
+     */
+    private String buildRankQuery() {
+        StringBuilder query = new StringBuilder("SELECT ");
+
+        for (SkillType skillType : SkillType.nonChildSkills()) {
+            query.append(rankColumns(skillType.name().toLowerCase())).append(", ");
+        }
+
+        query.append(rankColumns("power_level"));
+        query.append(" FROM users u WHERE u.user = ?");
+
+        return query.toString();
+    }
+
+    private String rankColumns(String column) {
+        return "u." + column + ", "
+                + "(SELECT COUNT(*) FROM users r WHERE r." + column + " > u." + column + ") + "
+                + "(SELECT COUNT(*) FROM users r WHERE r." + column + " = u." + column + " AND r.user < u.user) + 1";
+    }
+
+    /**
+     * Delete every user matching a condition at once.
+     *
+     * @param condition The condition on the users table
+     * @param excludedPlayers Lowercase names of players to keep
+     * @return the names of the deleted users
+     */
+    private synchronized List<String> purgeUsers(String condition, Set<String> excludedPlayers) {
+        List<String> usernames = new ArrayList<String>();
+        List<String> excluded = new ArrayList<String>(excludedPlayers);
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return usernames;
+        }
+
+        if (!excluded.isEmpty()) {
+            StringBuilder placeholders = new StringBuilder("?");
+
+            for (int i = 1; i < excluded.size(); i++) {
+                placeholders.append(", ?");
+            }
+
+            condition += " AND user NOT IN (" + placeholders + ")";
+        }
+
+        PreparedStatement statement = null;
+        ResultSet resultSet = null;
+
+        try {
+            connection.getConnection().setAutoCommit(false);
+
+            statement = connection.getConnection().prepareStatement("SELECT user FROM users WHERE " + condition);
+            setStrings(statement, excluded);
+            resultSet = statement.executeQuery();
+
+            while (resultSet.next()) {
+                usernames.add(resultSet.getString(1));
+            }
+
+            closeResultSet(resultSet);
+            resultSet = null;
+            closeStatement(statement);
+
+            statement = connection.getConnection().prepareStatement("DELETE FROM users WHERE " + condition);
+            setStrings(statement, excluded);
+            statement.executeUpdate();
+
+            connection.getConnection().commit();
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            usernames.clear();
+            rollback(connection);
+        }
+        finally {
+            closeResultSet(resultSet);
+            closeStatement(statement);
+            restoreAutoCommit(connection);
+        }
+
+        return usernames;
+    }
+
+    /**
+     * Attempt to write the SQL query.
+     *
+     * @param sql Query to write.
+     * @return true if the query was successfully written, false otherwise.
+     */
+    private boolean write(String sql) {
+        PooledConnection connection = getConnection();
+
+        if (connection == null) {
+            return false;
+        }
+
+        Statement statement = null;
+
+        try {
+            statement = connection.getConnection().createStatement();
+            statement.executeUpdate(sql);
+            return true;
+        }
+        catch (SQLException ex) {
+            printErrors(ex);
+            return false;
+        }
+        finally {
+            closeStatement(statement);
+        }
+    }
+
+    private static String assignments(String columns) {
+        return columns.replace(", ", " = ?, ") + " = ?";
+    }
+
+    private void setStrings(PreparedStatement statement, List<String> values) throws SQLException {
+        int i = 1;
+
+        for (String value : values) {
+            statement.setString(i++, value);
+        }
+    }
+
+    private int getInt(String[] data, int index) {
+        return data.length > index ? StringUtils.getInt(data[index]) : 0;
+    }
+
+    private long getLong(String[] data, int index, long defaultValue) {
+        long value = data.length > index ? StringUtils.getLong(data[index]) : 0;
+        return value > 0 ? value : defaultValue;
+    }
+
+    private String getString(String[] data, int index, String defaultValue) {
+        return data.length > index && !data[index].isEmpty() ? data[index] : defaultValue;
+    }
+
+    private void rollback(PooledConnection connection) {
+        try {
+            connection.getConnection().rollback();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void restoreAutoCommit(PooledConnection connection) {
+        try {
+            connection.getConnection().setAutoCommit(true);
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void closeStatement(Statement statement) {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            statement.close();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void closeResultSet(ResultSet resultSet) {
+        if (resultSet == null) {
+            return;
+        }
+
+        try {
+            resultSet.close();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void clearBatch(PreparedStatement statement) {
+        if (statement == null) {
+            return;
+        }
+
+        try {
+            statement.clearBatch();
+        }
+        catch (SQLException e) {
+            // Ignore
+        }
+    }
+
+    private void printErrors(SQLException ex) {
+        mcMMO.p.getLogger().severe("SQLException: " + ex.getMessage());
+        mcMMO.p.getLogger().severe("SQLState: " + ex.getSQLState());
+        mcMMO.p.getLogger().severe("VendorError: " + ex.getErrorCode());
+    }
+}
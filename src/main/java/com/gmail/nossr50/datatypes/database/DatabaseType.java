@@ -0,0 +1,24 @@
+package com.gmail.nossr50.datatypes.database;
+
+public enum DatabaseType {
+    FLATFILE,
+    MYSQL,
+    SQLITE;
+
+    public static DatabaseType getDatabaseType(String typeName) {
+        for (DatabaseType type : values()) {
+            if (type.name().equalsIgnoreCase(typeName)) {
+                return type;
+            }
+        }
+
+        if (typeName.equalsIgnoreCase("file")) {
+            return FLATFILE;
+        }
+        else if (typeName.equalsIgnoreCase("sql")) {
+            return MYSQL;
+        }
+
+        return null;
+    }
+}
@@ -5,6 +5,7 @@ public enum DatabaseUpdateType {
     BLAST_MINING,
     INDEX,
     MOB_HEALTHBARS,
+    POWER_LEVEL,
     PARTY_NAMES, 
     KILL_ORPHANS,
     ;
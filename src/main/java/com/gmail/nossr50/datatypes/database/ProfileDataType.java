@@ -0,0 +1,13 @@
+package com.gmail.nossr50.datatypes.database;
+
+/**
+ * The groups of player data that are stored separately, used to track which
+ * parts of a profile changed since it was last saved.
+ */
+public enum ProfileDataType {
+    LOGIN,
+    SKILLS,
+    EXPERIENCE,
+    COOLDOWNS,
+    HUDS;
+}
@@ -88,11 +88,11 @@ public class McMMOPlayer {
 
     private boolean isUsingUnarmed;
 
-    public McMMOPlayer(Player player) {
+    public McMMOPlayer(Player player, PlayerProfile profile) {
         String playerName = player.getName();
 
         this.player = player;
-        profile = new PlayerProfile(playerName, true);
+        this.profile = profile;
         party = PartyManager.getPlayerParty(playerName);
 
         /* 
@@ -499,7 +499,8 @@ public class McMMOPlayer {
      * @param xp Experience amount to add
      */
     public void applyXpGain(SkillType skillType, float xp) {
-        if (!Permissions.skillEnabled(player, skillType)) {
+        // Experience gained while the profile is loading would be lost
+        if (!isProfileLoaded() || !Permissions.skillEnabled(player, skillType)) {
             return;
         }
 
@@ -548,6 +549,31 @@ public class McMMOPlayer {
         return profile;
     }
 
+    /**
+     * Replace the pending profile of this player once the real one has been loaded.
+     *
+     * @param profile The loaded profile
+     */
+    public void setProfile(PlayerProfile profile) {
+        McMMOHud spoutHud = this.profile.getSpoutHud();
+
+        this.profile = profile;
+
+        if (spoutHud != null) {
+            spoutHud.setProfile(profile);
+            profile.setSpoutHud(spoutHud);
+        }
+    }
+
+    /**
+     * Check if the profile of this player is ready, skills should be ignored until it is.
+     *
+     * @return true if the profile has been loaded, false if it is still pending
+     */
+    public boolean isProfileLoaded() {
+        return profile.isLoaded();
+    }
+
     /*
      * Party Stuff
      */
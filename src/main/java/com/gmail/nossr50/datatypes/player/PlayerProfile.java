@@ -1,5 +1,6 @@
 package com.gmail.nossr50.datatypes.player;
 
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -11,6 +12,7 @@ import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.config.spout.SpoutConfig;
 import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.database.ProfileDataType;
 import com.gmail.nossr50.datatypes.skills.AbilityType;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 import com.gmail.nossr50.datatypes.spout.huds.HudType;
@@ -32,11 +34,42 @@ public class PlayerProfile {
     private final Map<SkillType, Float>     skillsXp   = new HashMap<SkillType, Float>();     // Skill & XP
     private final Map<AbilityType, Integer> skillsDATS = new HashMap<AbilityType, Integer>(); // Ability & Cooldown
 
-    public PlayerProfile(String playerName, boolean addNew) {
-        this.playerName = playerName;
+    /* Data changed since the last save */
+    private final Set<ProfileDataType> changedData = EnumSet.noneOf(ProfileDataType.class);
+
+    private PlayerProfile(PlayerProfile profile) {
+        playerName = profile.playerName;
+        loaded = profile.loaded;
+        hudType = profile.hudType;
+        mobHealthbarType = profile.mobHealthbarType;
+
+        skills.putAll(profile.skills);
+        skillsXp.putAll(profile.skillsXp);
+        skillsDATS.putAll(profile.skillsDATS);
+        changedData.addAll(profile.changedData);
+    }
+
+    /**
+     * Create an empty profile that isn't backed by the database, used while
+     * the real profile of an online player is being loaded.
+     *
+     * @param playerName The name of the player
+     */
+    public PlayerProfile(String playerName) {
+        this(playerName, mcMMO.isSpoutEnabled() ? SpoutConfig.getInstance().getDefaultHudType() : HudType.DISABLED, Config.getInstance().getMobHealthbarDefault());
+    }
 
-        hudType = mcMMO.isSpoutEnabled() ? SpoutConfig.getInstance().getDefaultHudType() : HudType.DISABLED;
-        mobHealthbarType = Config.getInstance().getMobHealthbarDefault();
+    /**
+     * Create an empty profile with the given HUD settings, that isn't backed by the database.
+     *
+     * @param playerName The name of the player
+     * @param hudType The Spout HUD of the player
+     * @param mobHealthbarType The mob health bar of the player
+     */
+    public PlayerProfile(String playerName, HudType hudType, MobHealthbarType mobHealthbarType) {
+        this.playerName = playerName;
+        this.hudType = hudType;
+        this.mobHealthbarType = mobHealthbarType;
 
         for (AbilityType abilityType : AbilityType.values()) {
             skillsDATS.put(abilityType, 0);
@@ -46,15 +79,74 @@ public class PlayerProfile {
             skills.put(skillType, 0);
             skillsXp.put(skillType, 0F);
         }
+    }
 
-        if (!loadPlayer() && addNew) {
+    /**
+     * Load a profile from the database.
+     * <p>
+     * If the database could not be read, the profile is left unloaded, so it
+     * is never saved over the stored data.
+     *
+     * @param playerName The name of the player
+     * @param addNew Whether to create the profile if it doesn't exist yet
+     */
+    public PlayerProfile(String playerName, boolean addNew) {
+        this(playerName);
+
+        List<String> playerData = mcMMO.getDatabaseManager().loadPlayerData(playerName);
+
+        if (playerData == null) {
+            return;
+        }
+
+        if (!playerData.isEmpty()) {
+            loadPlayer(playerData);
+        }
+        else if (addNew) {
             mcMMO.getDatabaseManager().newUser(playerName);
             loaded = true;
         }
+
+        // Profiles of online players record their login on the next save
+        if (addNew) {
+            markLogin();
+        }
     }
 
     public void save() {
-        mcMMO.getDatabaseManager().saveUser(this);
+        // A profile that was never loaded would overwrite the stored data with defaults
+        if (!loaded || !isChanged()) {
+            return;
+        }
+
+        if (mcMMO.getDatabaseManager().saveUser(this)) {
+            changedData.clear();
+        }
+    }
+
+    /**
+     * Queue this profile to be saved off the main thread.
+     * <p>
+     * The changes are handed over with the snapshot, if the save fails the
+     * queue keeps them until it can be written.
+     */
+    public void scheduleAsyncSave() {
+        if (!loaded || !isChanged()) {
+            return;
+        }
+
+        mcMMO.getProfileSaveQueue().submit(getSnapshot());
+        changedData.clear();
+    }
+
+    /**
+     * Get a detached copy of the persistent data of this profile.
+     * The copy is never modified, so it can be safely saved from another thread.
+     *
+     * @return a copy of this profile
+     */
+    public PlayerProfile getSnapshot() {
+        return new PlayerProfile(this);
     }
 
     public String getPlayerName() {
@@ -65,6 +157,42 @@ public class PlayerProfile {
         return loaded;
     }
 
+    /**
+     * Check if any data of this profile changed since it was last saved.
+     *
+     * @return true if the profile needs to be saved, false otherwise
+     */
+    public boolean isChanged() {
+        return !changedData.isEmpty();
+    }
+
+    /**
+     * Check if a specific group of data changed since this profile was last saved.
+     *
+     * @param dataType The group of data to check
+     * @return true if the data needs to be saved, false otherwise
+     */
+    public boolean isChanged(ProfileDataType dataType) {
+        return changedData.contains(dataType);
+    }
+
+    /**
+     * Record the login of the player on the next save.
+     */
+    public void markLogin() {
+        changedData.add(ProfileDataType.LOGIN);
+    }
+
+    /**
+     * Mark the data changed in another copy of this profile as changed here too,
+     * used when a newer snapshot replaces one that was never saved.
+     *
+     * @param profile The older copy of this profile
+     */
+    public void mergeChanges(PlayerProfile profile) {
+        changedData.addAll(profile.changedData);
+    }
+
     /*
      * HUD Stuff
      */
@@ -83,6 +211,7 @@ public class PlayerProfile {
 
     public void setHudType(HudType hudType) {
         this.hudType = hudType;
+        changedData.add(ProfileDataType.HUDS);
     }
 
     /*
@@ -95,6 +224,7 @@ public class PlayerProfile {
 
     public void setMobHealthbarType(MobHealthbarType mobHealthbarType) {
         this.mobHealthbarType = mobHealthbarType;
+        changedData.add(ProfileDataType.HUDS);
     }
 
     /*
@@ -133,6 +263,7 @@ public class PlayerProfile {
         int wearsOff = (int) (DATS * .001D);
 
         skillsDATS.put(abilityType, wearsOff);
+        changedData.add(ProfileDataType.COOLDOWNS);
     }
 
     /**
@@ -142,6 +273,8 @@ public class PlayerProfile {
         for (AbilityType ability : skillsDATS.keySet()) {
             skillsDATS.put(ability, 0);
         }
+
+        changedData.add(ProfileDataType.COOLDOWNS);
     }
 
     /*
@@ -170,10 +303,12 @@ public class PlayerProfile {
         }
 
         skillsXp.put(skillType, newValue);
+        changedData.add(ProfileDataType.EXPERIENCE);
     }
 
     public void skillUp(SkillType skillType, int newValue) {
         skills.put(skillType, skills.get(skillType) + newValue);
+        changedData.add(ProfileDataType.SKILLS);
     }
 
     /**
@@ -188,6 +323,7 @@ public class PlayerProfile {
         }
 
         skillsXp.put(skillType, skillsXp.get(skillType) - xp);
+        changedData.add(ProfileDataType.EXPERIENCE);
     }
 
     /**
@@ -203,6 +339,8 @@ public class PlayerProfile {
 
         skills.put(skillType, newValue);
         skillsXp.put(skillType, 0F);
+        changedData.add(ProfileDataType.SKILLS);
+        changedData.add(ProfileDataType.EXPERIENCE);
     }
 
     /**
@@ -218,6 +356,8 @@ public class PlayerProfile {
 
         skills.put(skillType, skills.get(skillType) + levels);
         skillsXp.put(skillType, 0F);
+        changedData.add(ProfileDataType.SKILLS);
+        changedData.add(ProfileDataType.EXPERIENCE);
     }
 
     /**
@@ -232,6 +372,7 @@ public class PlayerProfile {
         }
 
         skillsXp.put(skillType, skillsXp.get(skillType) + experience);
+        changedData.add(ProfileDataType.EXPERIENCE);
     }
 
     /**
@@ -255,13 +396,7 @@ public class PlayerProfile {
         return sum / parents.size();
     }
 
-    private boolean loadPlayer() {
-        List<String> playerData = mcMMO.getDatabaseManager().loadPlayerData(playerName);
-        
-        if (playerData == null || playerData.isEmpty()) {
-            return false;
-        }
-
+    private void loadPlayer(List<String> playerData) {
         skills.put(SkillType.TAMING, Integer.valueOf(playerData.get(0)));
         skills.put(SkillType.MINING, Integer.valueOf(playerData.get(1)));
         skills.put(SkillType.REPAIR, Integer.valueOf(playerData.get(2)));
@@ -316,6 +451,5 @@ public class PlayerProfile {
         }
 
         loaded = true;
-        return true;
     }
 }
@@ -1,5 +1,6 @@
 package com.gmail.nossr50.datatypes.skills;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -47,18 +48,22 @@ public enum SkillType {
     private AbilityType ability;
     private ToolType tool;
 
-    public static final List<String> SKILL_NAMES;
-
-    static {
-        ArrayList<String> names = new ArrayList<String>();
-
-        for (SkillType skill : values()) {
-            names.add(SkillUtils.getSkillName(skill));
+    /**
+     * @deprecated Use {@link #getSkillNames()} instead. This is a view of it,
+     * so that loading this class doesn't read the locale from the config.
+     */
+    @Deprecated
+    public static final List<String> SKILL_NAMES = new AbstractList<String>() {
+        @Override
+        public String get(int index) {
+            return getSkillNames().get(index);
         }
 
-        Collections.sort(names);
-        SKILL_NAMES = ImmutableList.copyOf(names);
-    }
+        @Override
+        public int size() {
+            return getSkillNames().size();
+        }
+    };
 
     private SkillType(Class<? extends SkillManager> managerClass, Color runescapeColor) {
         this.managerClass = managerClass;
@@ -160,6 +165,17 @@ public enum SkillType {
         return new SkillType[] { SkillType.SMELTING };
     }
 
+    /**
+     * Get the localized names of all skills, sorted.
+     * <p>
+     * The names are only built on first use, as they need the locale from the config.
+     *
+     * @return the names of all skills
+     */
+    public static List<String> getSkillNames() {
+        return SkillNames.NAMES;
+    }
+
     public Color getRunescapeModeColor() {
         return runescapeColor;
     }
@@ -173,4 +189,19 @@ public enum SkillType {
 
         return null;
     }
+
+    private static class SkillNames {
+        private static final List<String> NAMES;
+
+        static {
+            ArrayList<String> names = new ArrayList<String>();
+
+            for (SkillType skill : values()) {
+                names.add(SkillUtils.getSkillName(skill));
+            }
+
+            Collections.sort(names);
+            NAMES = ImmutableList.copyOf(names);
+        }
+    }
 }
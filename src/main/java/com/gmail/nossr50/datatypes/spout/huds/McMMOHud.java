@@ -42,6 +42,17 @@ public class McMMOHud {
         }
     }
 
+    /**
+     * Point the HUD at a newly loaded profile.
+     *
+     * @param profile The profile to display
+     */
+    public void setProfile(PlayerProfile profile) {
+        this.profile = profile;
+
+        initializeXpBar();
+    }
+
     /**
      * Update the XP bar.
      */
@@ -0,0 +1,46 @@
+package com.gmail.nossr50.events.player;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+
+/**
+ * Called on the main thread once the profile of an online player has been loaded.
+ */
+public class McMMOPlayerProfileLoadEvent extends PlayerEvent {
+    private McMMOPlayer mcMMOPlayer;
+
+    public McMMOPlayerProfileLoadEvent(Player player, McMMOPlayer mcMMOPlayer) {
+        super(player);
+        this.mcMMOPlayer = mcMMOPlayer;
+    }
+
+    /**
+     * @return The mcMMO player whose profile was loaded
+     */
+    public McMMOPlayer getMcMMOPlayer() {
+        return mcMMOPlayer;
+    }
+
+    /**
+     * @return The profile that was loaded
+     */
+    public PlayerProfile getProfile() {
+        return mcMMOPlayer.getProfile();
+    }
+
+    /** Rest of file is required boilerplate for custom events **/
+    private static final HandlerList handlers = new HandlerList();
+
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+}
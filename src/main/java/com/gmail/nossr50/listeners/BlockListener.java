@@ -1,12 +1,12 @@
 package com.gmail.nossr50.listeners;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.bukkit.GameMode;
 import org.bukkit.Material;
 import org.bukkit.Sound;
 import org.bukkit.block.Block;
-import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.enchantments.Enchantment;
 import org.bukkit.entity.Player;
@@ -56,27 +56,15 @@ public class BlockListener implements Listener {
      */
     @EventHandler(priority = EventPriority.MONITOR)
     public void onBlockPistonExtend(BlockPistonExtendEvent event) {
-        List<Block> blocks = event.getBlocks();
-        BlockFace direction = event.getDirection();
-        Block futureEmptyBlock = event.getBlock().getRelative(direction); // Block that would be air after piston is finished
-
-        for (Block b : blocks) {
-            if (BlockUtils.shouldBeWatched(b.getState()) && mcMMO.getPlaceStore().isTrue(b)) {
-                b.getRelative(direction).setMetadata(mcMMO.blockMetadataKey, mcMMO.metadataValue);
-                if (b.equals(futureEmptyBlock)) {
-                    mcMMO.getPlaceStore().setFalse(b);
-                }
-            }
-        }
+        List<Block> watchedBlocks = new ArrayList<Block>();
 
-        for (Block b : blocks) {
-            Block nextBlock = b.getRelative(direction);
-
-            if (nextBlock.hasMetadata(mcMMO.blockMetadataKey)) {
-                mcMMO.getPlaceStore().setTrue(nextBlock);
-                nextBlock.removeMetadata(mcMMO.blockMetadataKey, plugin);
+        for (Block b : event.getBlocks()) {
+            if (BlockUtils.shouldBeWatched(b.getState())) {
+                watchedBlocks.add(b);
             }
         }
+
+        mcMMO.getPlaceStore().shift(watchedBlocks, event.getDirection());
     }
 
     /**
@@ -88,7 +76,7 @@ public class BlockListener implements Listener {
     public void onBlockPistonRetract(BlockPistonRetractEvent event) {
         if (event.isSticky()) {
             // Needed only because under some circumstances Minecraft doesn't move the block
-            new StickyPistonTrackerTask(event.getDirection(), event.getBlock()).runTaskLater(plugin, 2);
+            mcMMO.getTimerWheel().schedule(new StickyPistonTrackerTask(event.getDirection(), event.getBlock()), 2);
         }
     }
 
@@ -140,6 +128,12 @@ public class BlockListener implements Listener {
             return;
         }
 
+        // Skills wait for the profile, but the block isn't placed anymore either way
+        if (!UserManager.hasLoadedProfile(player)) {
+            mcMMO.getPlaceStore().setFalse(blockState);
+            return;
+        }
+
         McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
         ItemStack heldItem = player.getItemInHand();
 
@@ -206,7 +200,7 @@ public class BlockListener implements Listener {
 
         Player player = event.getPlayer();
 
-        if (Misc.isNPCEntity(player) || player.getGameMode() == GameMode.CREATIVE) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || player.getGameMode() == GameMode.CREATIVE) {
             return;
         }
 
@@ -248,7 +242,7 @@ public class BlockListener implements Listener {
 
         Player player = event.getPlayer();
 
-        if (Misc.isNPCEntity(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
             return;
         }
 
@@ -314,7 +308,7 @@ public class BlockListener implements Listener {
 
         Player player = event.getPlayer();
 
-        if (Misc.isNPCEntity(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
             return;
         }
 
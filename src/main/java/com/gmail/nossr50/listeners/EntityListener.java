@@ -47,6 +47,7 @@ import com.gmail.nossr50.skills.mining.MiningManager;
 import com.gmail.nossr50.skills.taming.Taming;
 import com.gmail.nossr50.skills.taming.TamingManager;
 import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.util.MobHealthbarUtils;
 import com.gmail.nossr50.util.Permissions;
 import com.gmail.nossr50.util.player.UserManager;
 import com.gmail.nossr50.util.skills.CombatUtils;
@@ -219,6 +220,10 @@ public class EntityListener implements Listener {
                 return;
             }
 
+            if (!mcMMOPlayer.isProfileLoaded()) {
+                return;
+            }
+
             switch (cause) {
                 case FALL:
                     AcrobaticsManager acrobaticsManager = mcMMOPlayer.getAcrobaticsManager();
@@ -258,7 +263,7 @@ public class EntityListener implements Listener {
             Tameable pet = (Tameable) livingEntity;
             AnimalTamer owner = pet.getOwner();
 
-            if (Taming.canPreventDamage(pet, owner)) {
+            if (Taming.canPreventDamage(pet, owner) && UserManager.hasLoadedProfile((Player) owner)) {
                 Player player = (Player) owner;
                 Wolf wolf = (Wolf) pet;
 
@@ -336,15 +341,7 @@ public class EntityListener implements Listener {
             return;
         }
 
-        if (entity.hasMetadata(mcMMO.customNameKey)) {
-            entity.setCustomName(entity.getMetadata(mcMMO.customNameKey).get(0).asString());
-            entity.removeMetadata(mcMMO.customNameKey, mcMMO.p);
-        }
-
-        if (entity.hasMetadata(mcMMO.customVisibleKey)) {
-            entity.setCustomNameVisible(entity.getMetadata(mcMMO.customVisibleKey).get(0).asBoolean());
-            entity.removeMetadata(mcMMO.customVisibleKey, mcMMO.p);
-        }
+        MobHealthbarUtils.restoreName(entity);
     }
 
     /**
@@ -405,7 +402,7 @@ public class EntityListener implements Listener {
         // We can make this assumption because we (should) be the only ones using this exact metadata
         Player player = plugin.getServer().getPlayer(entity.getMetadata(mcMMO.tntMetadataKey).get(0).asString());
 
-        if (Misc.isNPCEntity(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
             return;
         }
 
@@ -432,7 +429,7 @@ public class EntityListener implements Listener {
         // We can make this assumption because we (should) be the only ones using this exact metadata
         Player player = plugin.getServer().getPlayer(entity.getMetadata(mcMMO.tntMetadataKey).get(0).asString());
 
-        if (Misc.isNPCEntity(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
             return;
         }
 
@@ -459,7 +456,7 @@ public class EntityListener implements Listener {
 
         Player player = (Player) entity;
 
-        if (Misc.isNPCEntity(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
             return;
         }
 
@@ -525,7 +522,7 @@ public class EntityListener implements Listener {
         Player player = (Player) event.getOwner();
         LivingEntity entity = event.getEntity();
 
-        if (Misc.isNPCEntity(player) || Misc.isNPCEntity(entity) || entity.hasMetadata(mcMMO.entityMetadataKey)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || Misc.isNPCEntity(entity) || entity.hasMetadata(mcMMO.entityMetadataKey)) {
             return;
         }
 
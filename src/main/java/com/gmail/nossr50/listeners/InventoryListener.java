@@ -73,7 +73,7 @@ public class InventoryListener implements Listener {
 
         Player player = Misc.getPlayerFromFurnace(furnaceBlock);
 
-        if (Misc.isNPCEntity(player) || !Permissions.fuelEfficiency(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || !Permissions.fuelEfficiency(player)) {
             return;
         }
 
@@ -91,7 +91,7 @@ public class InventoryListener implements Listener {
 
         Player player = Misc.getPlayerFromFurnace(furnaceBlock);
 
-        if (Misc.isNPCEntity(player) || !Permissions.skillEnabled(player, SkillType.SMELTING)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || !Permissions.skillEnabled(player, SkillType.SMELTING)) {
             return;
         }
 
@@ -109,7 +109,7 @@ public class InventoryListener implements Listener {
 
         Player player = Misc.getPlayerFromFurnace(furnaceBlock);
 
-        if (Misc.isNPCEntity(player) || !Permissions.vanillaXpBoost(player, SkillType.SMELTING)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || !Permissions.vanillaXpBoost(player, SkillType.SMELTING)) {
             return;
         }
 
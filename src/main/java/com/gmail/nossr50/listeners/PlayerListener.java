@@ -15,12 +15,14 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.entity.PlayerDeathEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
+import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
 import org.bukkit.event.player.PlayerChangedWorldEvent;
 import org.bukkit.event.player.PlayerCommandPreprocessEvent;
 import org.bukkit.event.player.PlayerDropItemEvent;
 import org.bukkit.event.player.PlayerFishEvent;
 import org.bukkit.event.player.PlayerInteractEvent;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
 import org.bukkit.event.player.PlayerPickupItemEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRespawnEvent;
@@ -36,6 +38,7 @@ import com.gmail.nossr50.datatypes.party.Party;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.AbilityType;
 import com.gmail.nossr50.datatypes.skills.SkillType;
+import com.gmail.nossr50.events.player.McMMOPlayerProfileLoadEvent;
 import com.gmail.nossr50.locale.LocaleLoader;
 import com.gmail.nossr50.party.ShareHandler;
 import com.gmail.nossr50.runnables.skills.BleedTimerTask;
@@ -89,7 +92,7 @@ public class PlayerListener implements Listener {
 
         Player player = event.getEntity();
 
-        if (Misc.isNPCEntity(player) || Permissions.hardcoreBypass(player)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || Permissions.hardcoreBypass(player)) {
             return;
         }
 
@@ -150,7 +153,7 @@ public class PlayerListener implements Listener {
     public void onPlayerFish(PlayerFishEvent event) {
         Player player = event.getPlayer();
 
-        if (Misc.isNPCEntity(player) || !Permissions.skillEnabled(player, SkillType.FISHING)) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || !Permissions.skillEnabled(player, SkillType.FISHING)) {
             return;
         }
 
@@ -256,6 +259,34 @@ public class PlayerListener implements Listener {
         BleedTimerTask.bleedOut(player); // Bleed it out
     }
 
+    /**
+     * Monitor AsyncPlayerPreLogin events.
+     * <p>
+     * The profile is loaded here, off the main thread, so it is ready when the player joins.
+     *
+     * @param event The event to watch
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onAsyncPlayerPreLogin(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        UserManager.preloadProfile(event.getName());
+    }
+
+    /**
+     * Monitor PlayerLogin events.
+     *
+     * @param event The event to watch
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (event.getResult() != PlayerLoginEvent.Result.ALLOWED) {
+            UserManager.discardPreloadedProfile(event.getPlayer().getName());
+        }
+    }
+
     /**
      * Monitor PlayerJoin events.
      *
@@ -270,7 +301,6 @@ public class PlayerListener implements Listener {
         }
 
         UserManager.addUser(player).actualizeRespawnATS();
-        ScoreboardManager.enablePowerLevelDisplay(player);
 
         if (Config.getInstance().getMOTDEnabled() && Permissions.motd(player)) {
             Motd.displayAll(player);
@@ -286,6 +316,16 @@ public class PlayerListener implements Listener {
         }
     }
 
+    /**
+     * Monitor McMMOPlayerProfileLoad events.
+     *
+     * @param event The event to watch
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerProfileLoad(McMMOPlayerProfileLoadEvent event) {
+        ScoreboardManager.enablePowerLevelDisplay(event.getPlayer());
+    }
+
     /**
      * Monitor PlayerRespawn events.
      *
@@ -312,7 +352,7 @@ public class PlayerListener implements Listener {
         Player player = event.getPlayer();
         Block block = event.getClickedBlock();
 
-        if (Misc.isNPCEntity(player) || player.getGameMode() == GameMode.CREATIVE) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || player.getGameMode() == GameMode.CREATIVE) {
             return;
         }
 
@@ -416,7 +456,7 @@ public class PlayerListener implements Listener {
     public void onPlayerInteract(PlayerInteractEvent event) {
         Player player = event.getPlayer();
 
-        if (Misc.isNPCEntity(player) || player.getGameMode() == GameMode.CREATIVE) {
+        if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player) || player.getGameMode() == GameMode.CREATIVE) {
             return;
         }
 
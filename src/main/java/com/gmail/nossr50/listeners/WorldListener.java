@@ -1,24 +1,25 @@
 package com.gmail.nossr50.listeners;
 
 import java.io.File;
-import java.util.ArrayList;
 
 import org.bukkit.Chunk;
 import org.bukkit.World;
-import org.bukkit.block.BlockState;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 import org.bukkit.event.world.StructureGrowEvent;
 import org.bukkit.event.world.WorldInitEvent;
 import org.bukkit.event.world.WorldUnloadEvent;
 
 import com.gmail.nossr50.mcMMO;
-import com.gmail.nossr50.util.blockmeta.conversion.BlockStoreConversionMain;
+import com.gmail.nossr50.runnables.skills.BleedTimerTask;
+import com.gmail.nossr50.util.MobHealthbarUtils;
+import com.gmail.nossr50.util.blockmeta.chunkmeta.ChunkManager;
+import com.gmail.nossr50.util.blockmeta.chunkmeta.HashChunkManager;
 
 public class WorldListener implements Listener {
-    private final ArrayList<BlockStoreConversionMain> converters = new ArrayList<BlockStoreConversionMain>();
     private final mcMMO plugin;
 
     public WorldListener(final mcMMO plugin) {
@@ -36,9 +37,7 @@ public class WorldListener implements Listener {
             return;
         }
 
-        for (BlockState blockState : event.getBlocks()) {
-            mcMMO.getPlaceStore().setFalse(blockState);
-        }
+        mcMMO.getPlaceStore().setFalseAll(event.getBlocks());
     }
 
     /**
@@ -50,15 +49,15 @@ public class WorldListener implements Listener {
     public void onWorldInit(WorldInitEvent event) {
         World world = event.getWorld();
 
-        if (!new File(world.getWorldFolder(), "mcmmo_data").exists() || plugin == null) {
+        ChunkManager placeStore = mcMMO.getPlaceStore();
+
+        if (!new File(world.getWorldFolder(), "mcmmo_data").exists() || plugin == null || !(placeStore instanceof HashChunkManager)) {
             return;
         }
 
         plugin.getLogger().info("Converting block storage for " + world.getName() + " to a new format.");
 
-        BlockStoreConversionMain converter = new BlockStoreConversionMain(world);
-        converter.run();
-        converters.add(converter);
+        ((HashChunkManager) placeStore).convertWorld(world);
     }
 
     /**
@@ -71,6 +70,18 @@ public class WorldListener implements Listener {
         mcMMO.getPlaceStore().unloadWorld(event.getWorld());
     }
 
+    /**
+     * Monitor ChunkLoad events.
+     *
+     * @param event The event to watch
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+
+        mcMMO.getPlaceStore().chunkLoaded(chunk.getX(), chunk.getZ(), event.getWorld());
+    }
+
     /**
      * Monitor ChunkUnload events.
      *
@@ -81,5 +92,7 @@ public class WorldListener implements Listener {
         Chunk chunk = event.getChunk();
 
         mcMMO.getPlaceStore().chunkUnloaded(chunk.getX(), chunk.getZ(), event.getWorld());
+        BleedTimerTask.remove(chunk);
+        MobHealthbarUtils.restoreNames(chunk);
     }
 }
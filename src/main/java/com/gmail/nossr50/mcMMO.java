@@ -24,6 +24,7 @@ import com.gmail.nossr50.config.spout.SpoutConfig;
 import com.gmail.nossr50.config.treasure.TreasureConfig;
 import com.gmail.nossr50.database.DatabaseManager;
 import com.gmail.nossr50.database.DatabaseManagerFactory;
+import com.gmail.nossr50.database.ProfileSaveQueue;
 import com.gmail.nossr50.listeners.BlockListener;
 import com.gmail.nossr50.listeners.EntityListener;
 import com.gmail.nossr50.listeners.InventoryListener;
@@ -34,9 +35,12 @@ import com.gmail.nossr50.listeners.WorldListener;
 import com.gmail.nossr50.locale.LocaleLoader;
 import com.gmail.nossr50.metrics.MetricsManager;
 import com.gmail.nossr50.party.PartyManager;
+import com.gmail.nossr50.runnables.MobHealthDisplayUpdaterTask;
 import com.gmail.nossr50.runnables.SaveTimerTask;
+import com.gmail.nossr50.runnables.TimerWheelTask;
 import com.gmail.nossr50.runnables.database.UserPurgeTask;
 import com.gmail.nossr50.runnables.party.PartyAutoKickTask;
+import com.gmail.nossr50.runnables.skills.ArrowTrackerCleanupTask;
 import com.gmail.nossr50.runnables.skills.BleedTimerTask;
 import com.gmail.nossr50.skills.child.ChildConfig;
 import com.gmail.nossr50.skills.repair.Repairable;
@@ -46,12 +50,14 @@ import com.gmail.nossr50.skills.repair.config.RepairConfigManager;
 import com.gmail.nossr50.util.ChimaeraWing;
 import com.gmail.nossr50.util.LogFilter;
 import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.util.MobHealthbarUtils;
 import com.gmail.nossr50.util.Permissions;
 import com.gmail.nossr50.util.UpdateChecker;
 import com.gmail.nossr50.util.blockmeta.chunkmeta.ChunkManager;
 import com.gmail.nossr50.util.blockmeta.chunkmeta.ChunkManagerFactory;
 import com.gmail.nossr50.util.commands.CommandRegistrationManager;
 import com.gmail.nossr50.util.player.UserManager;
+import com.gmail.nossr50.util.scheduler.TimerWheel;
 import com.gmail.nossr50.util.spout.SpoutUtils;
 
 public class mcMMO extends JavaPlugin {
@@ -59,6 +65,8 @@ public class mcMMO extends JavaPlugin {
     private static ChunkManager      placeStore;
     private static RepairableManager repairableManager;
     private static DatabaseManager   databaseManager;
+    private static ProfileSaveQueue  profileSaveQueue;
+    private static TimerWheel        timerWheel;
 
     /* File Paths */
     private static String mainDirectory;
@@ -86,8 +94,6 @@ public class mcMMO extends JavaPlugin {
     public final static String blockMetadataKey    = "mcMMO: Piston Tracking";
     public final static String furnaceMetadataKey  = "mcMMO: Tracked Furnace";
     public final static String tntMetadataKey      = "mcMMO: Tracked TNT";
-    public final static String customNameKey       = "mcMMO: Custom Name";
-    public final static String customVisibleKey    = "mcMMO: Name Visibility";
     public final static String droppedItemKey      = "mcMMO: Tracked Item";
     public final static String infiniteArrowKey    = "mcMMO: Infinite Arrow";
     public final static String bowForceKey         = "mcMMO: Bow Force";
@@ -112,6 +118,8 @@ public class mcMMO extends JavaPlugin {
             combatTagEnabled = getServer().getPluginManager().getPlugin("CombatTag") != null;
 
             databaseManager = DatabaseManagerFactory.getDatabaseManager();
+            profileSaveQueue = new ProfileSaveQueue(databaseManager);
+            timerWheel = new TimerWheel(getLogger());
 
             registerEvents();
             registerCustomRecipes();
@@ -157,10 +165,13 @@ public class mcMMO extends JavaPlugin {
     @Override
     public void onDisable() {
         try {
-            UserManager.saveAll();      // Make sure to save player information if the server shuts down
-            PartyManager.saveParties(); // Save our parties
-            placeStore.saveAll();       // Save our metadata
-            placeStore.cleanUp();       // Cleanup empty metadata stores
+            MobHealthbarUtils.restoreAllNames(); // Don't save entities with a healthbar as their name
+            UserManager.saveAll();       // Make sure to save player information if the server shuts down
+            profileSaveQueue.shutdown(); // Wait for pending saves to be written
+            databaseManager.onDisable(); // Release the database
+            PartyManager.saveParties();  // Save our parties
+            placeStore.saveAll();        // Save our metadata
+            placeStore.cleanUp();        // Cleanup empty metadata stores
         }
         catch (NullPointerException e) {}
 
@@ -237,6 +248,14 @@ public class mcMMO extends JavaPlugin {
         return databaseManager;
     }
 
+    public static ProfileSaveQueue getProfileSaveQueue() {
+        return profileSaveQueue;
+    }
+
+    public static TimerWheel getTimerWheel() {
+        return timerWheel;
+    }
+
     @Deprecated
     public static void setDatabaseManager(DatabaseManager databaseManager) {
         mcMMO.databaseManager = databaseManager;
@@ -348,21 +367,30 @@ public class mcMMO extends JavaPlugin {
     }
 
     private void scheduleTasks() {
+        // Runs the delayed tasks of skills and displays (Runs every tick)
+        new TimerWheelTask(timerWheel).runTaskTimer(this, 1, 1);
+
         // Periodic save timer (Saves every 10 minutes by default)
         long saveIntervalTicks = Config.getInstance().getSaveInterval() * 1200;
         new SaveTimerTask().runTaskTimer(this, saveIntervalTicks, saveIntervalTicks);
 
-        // Bleed timer (Runs every two seconds)
-        new BleedTimerTask().runTaskTimer(this, 2 * Misc.TICK_CONVERSION_FACTOR, 2 * Misc.TICK_CONVERSION_FACTOR);
+        // Bleed timer (Each bleeding entity takes damage every two seconds, spread over several runs)
+        new BleedTimerTask().runTaskTimer(this, BleedTimerTask.BLEED_INTERVAL, BleedTimerTask.BLEED_INTERVAL);
+
+        // Mob healthbar timer (Restores the names of the mobs whose healthbar timed out)
+        new MobHealthDisplayUpdaterTask().runTaskTimer(this, 5, 5);
+
+        // Arrow tracker cleanup (Runs every 10 minutes)
+        new ArrowTrackerCleanupTask().runTaskTimer(this, 10 * 60 * Misc.TICK_CONVERSION_FACTOR, 10 * 60 * Misc.TICK_CONVERSION_FACTOR);
 
         // Old & Powerless User remover
         long purgeIntervalTicks = Config.getInstance().getPurgeInterval() * 60 * 60 * Misc.TICK_CONVERSION_FACTOR;
 
         if (purgeIntervalTicks == 0) {
-            new UserPurgeTask().runTaskLater(this, 2 * Misc.TICK_CONVERSION_FACTOR); // Start 2 seconds after startup.
+            new UserPurgeTask().runTaskLaterAsynchronously(this, 2 * Misc.TICK_CONVERSION_FACTOR); // Start 2 seconds after startup.
         }
         else if (purgeIntervalTicks > 0) {
-            new UserPurgeTask().runTaskTimer(this, purgeIntervalTicks, purgeIntervalTicks);
+            new UserPurgeTask().runTaskTimerAsynchronously(this, purgeIntervalTicks, purgeIntervalTicks);
         }
 
         // Automatically remove old members from parties
@@ -9,6 +9,7 @@ import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.config.HiddenConfig;
 import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.runnables.skills.BleedTimerTask;
 import com.turt2live.metrics.EMetrics;
 import com.turt2live.metrics.Metrics;
 import com.turt2live.metrics.Metrics.Graph;
@@ -157,6 +158,14 @@ public class MetricsManager {
                         }
                     });
                 }
+                else if (Config.getInstance().getUseSQLite()) {
+                    storageGraph.addPlotter(new Metrics.Plotter("SQLite") {
+                        @Override
+                        public int getValue() {
+                            return 1;
+                        }
+                    });
+                }
                 else {
                     storageGraph.addPlotter(new Metrics.Plotter("Flatfile") {
                         @Override
@@ -281,6 +290,16 @@ public class MetricsManager {
                     });
                 }
 
+                // Bleeding Graph
+                Graph bleedGraph = metrics.createGraph("Bleeding");
+
+                bleedGraph.addPlotter(new Metrics.Plotter("Active bleeds") {
+                    @Override
+                    public int getValue() {
+                        return BleedTimerTask.getActiveBleedCount();
+                    }
+                });
+
                 // Vanilla v Modified config graph
                 Graph customConfigGraph = metrics.createGraph("Modified Configs");
 
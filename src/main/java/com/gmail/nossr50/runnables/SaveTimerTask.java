@@ -1,22 +1,27 @@
 package com.gmail.nossr50.runnables;
 
+import java.util.Iterator;
+
 import org.bukkit.scheduler.BukkitRunnable;
 
-import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.party.PartyManager;
-import com.gmail.nossr50.runnables.player.PlayerProfileSaveTask;
 import com.gmail.nossr50.util.player.UserManager;
 
 public class SaveTimerTask extends BukkitRunnable {
     @Override
     public void run() {
         // All player data will be saved periodically through this
-        int count = 1;
+        Iterator<McMMOPlayer> iterator = UserManager.getPlayers().values().iterator();
+
+        while (iterator.hasNext()) {
+            McMMOPlayer mcMMOPlayer = iterator.next();
+
+            mcMMOPlayer.getProfile().scheduleAsyncSave();
 
-        for (McMMOPlayer mcMMOPlayer : UserManager.getPlayers().values()) {
-            new PlayerProfileSaveTask(mcMMOPlayer).runTaskLater(mcMMO.p, count);
-            count++;
+            if (!mcMMOPlayer.getPlayer().isOnline()) {
+                iterator.remove();
+            }
         }
 
         PartyManager.saveParties();
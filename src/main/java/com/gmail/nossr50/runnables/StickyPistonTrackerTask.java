@@ -3,11 +3,10 @@ package com.gmail.nossr50.runnables;
 import org.bukkit.Material;
 import org.bukkit.block.Block;
 import org.bukkit.block.BlockFace;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.mcMMO;
 
-public class StickyPistonTrackerTask extends BukkitRunnable {
+public class StickyPistonTrackerTask implements Runnable {
     private BlockFace direction;
     private Block block;
 
@@ -0,0 +1,18 @@
+package com.gmail.nossr50.runnables;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.gmail.nossr50.util.scheduler.TimerWheel;
+
+public class TimerWheelTask extends BukkitRunnable {
+    private TimerWheel timerWheel;
+
+    public TimerWheelTask(TimerWheel timerWheel) {
+        this.timerWheel = timerWheel;
+    }
+
+    @Override
+    public void run() {
+        timerWheel.tick();
+    }
+}
@@ -0,0 +1,153 @@
+package com.gmail.nossr50.runnables.database;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.database.DatabaseManager;
+import com.gmail.nossr50.database.DatabaseManagerFactory;
+import com.gmail.nossr50.datatypes.database.DatabaseType;
+import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.util.Misc;
+import com.gmail.nossr50.util.player.UserManager;
+
+/**
+ * Copies every user from another type of database into the one in use. Must be run asynchronously.
+ * <p>
+ * Users are read one by one from the source database, and written to the
+ * database in use in batches, in the format of a line of the users file.
+ */
+public class DatabaseConversionTask extends BukkitRunnable {
+    private static final int BATCH_SIZE = 500;
+
+    // Position in a line of the users file of each value returned by loadPlayerData(), -1 for unused values
+    private static final int[] USERS_FILE_INDEXES = {
+        24, 1, 7, 5, 8, 9, 10, 11, 12, 13, 14, 34, // Skill levels
+        25, 4, 15, 6, 16, 17, 18, 19, 20, 21, 22, 35, // Experience
+        -1, 32, -1, 28, 26, 29, 27, -1, 30, 31, -1, 36, // Cooldowns
+        33, 38 // HudType, MobHealthBar
+    };
+    private static final int USERS_FILE_LENGTH = 39;
+    private static final int LAST_LOGIN_INDEX = 37;
+
+    private final DatabaseType sourceType;
+    private final CommandSender sender;
+
+    /**
+     * @param sourceType The type of database to copy the users from
+     * @param sender Who to notify when the conversion is done, may be null
+     */
+    public DatabaseConversionTask(DatabaseType sourceType, CommandSender sender) {
+        this.sourceType = sourceType;
+        this.sender = sender;
+    }
+
+    @Override
+    public void run() {
+        DatabaseManager source = DatabaseManagerFactory.createDatabaseManager(sourceType);
+        DatabaseManager destination = mcMMO.getDatabaseManager();
+        long startTime = System.currentTimeMillis();
+        int converted = 0;
+        boolean failed = false;
+
+        try {
+            List<String[]> batch = new ArrayList<String[]>(BATCH_SIZE);
+
+            for (String playerName : source.getStoredUsers()) {
+                List<String> playerData = source.loadPlayerData(playerName);
+
+                if (playerData == null || playerData.isEmpty()) {
+                    continue;
+                }
+
+                batch.add(toUsersFileFormat(playerName, playerData));
+
+                if (batch.size() < BATCH_SIZE) {
+                    continue;
+                }
+
+                int count = destination.convertUsers(batch);
+
+                if (count < 0) {
+                    failed = true;
+                    break;
+                }
+
+                converted += count;
+                batch.clear();
+            }
+
+            if (!failed && !batch.isEmpty()) {
+                int count = destination.convertUsers(batch);
+
+                failed = count < 0;
+                converted += Math.max(count, 0);
+            }
+        }
+        finally {
+            source.onDisable();
+        }
+
+        if (failed) {
+            mcMMO.p.getLogger().warning("Conversion from " + sourceType.name() + " stopped after " + converted + " users!");
+        }
+        else {
+            mcMMO.p.getLogger().info("Converted " + converted + " users from " + sourceType.name() + " to " + Config.getInstance().getDatabaseType().name() + " in " + ((System.currentTimeMillis() - startTime) / 1000) + "s");
+        }
+
+        new ConversionFinishTask(failed).runTask(mcMMO.p);
+    }
+
+    private String[] toUsersFileFormat(String playerName, List<String> playerData) {
+        String[] character = new String[USERS_FILE_LENGTH];
+
+        Arrays.fill(character, "0");
+
+        // Unused fields, left empty like in the users file
+        character[2] = "";
+        character[3] = "";
+        character[23] = "";
+
+        character[0] = playerName;
+        character[33] = "STANDARD";
+        character[LAST_LOGIN_INDEX] = String.valueOf(System.currentTimeMillis() / Misc.TIME_CONVERSION_FACTOR);
+        character[38] = Config.getInstance().getMobHealthbarDefault().toString();
+
+        for (int i = 0; i < USERS_FILE_INDEXES.length && i < playerData.size(); i++) {
+            if (USERS_FILE_INDEXES[i] >= 0 && playerData.get(i) != null) {
+                character[USERS_FILE_INDEXES[i]] = playerData.get(i);
+            }
+        }
+
+        return character;
+    }
+
+    private class ConversionFinishTask extends BukkitRunnable {
+        private final boolean failed;
+
+        private ConversionFinishTask(boolean failed) {
+            this.failed = failed;
+        }
+
+        @Override
+        public void run() {
+            // Write what the online players did since logging in, including any pending saves, before reloading them from the converted data
+            UserManager.saveAll();
+            UserManager.clearAll();
+
+            for (Player player : mcMMO.p.getServer().getOnlinePlayers()) {
+                UserManager.addUser(player);
+            }
+
+            if (sender != null) {
+                sender.sendMessage(LocaleLoader.getString(failed ? "Commands.mcconvert.Failed" : "Commands.mcconvert.Finish"));
+            }
+        }
+    }
+}
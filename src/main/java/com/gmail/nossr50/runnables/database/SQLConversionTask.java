@@ -1,37 +1,401 @@
 package com.gmail.nossr50.runnables.database;
 
+import java.io.BufferedInputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.database.DatabaseManager;
+import com.gmail.nossr50.database.FlatfileUserStore;
 
+/**
+ * Copies the users file into MySQL.
+ * <p>
+ * This task reads the file and hands batches of lines to a pool of workers,
+ * which parse them and write each batch with a few multi-row statements in
+ * a single transaction. The queues between them are bounded, so the file is
+ * never read much further ahead than the database can keep up with.
+ * <p>
+ * Lines are routed to the workers by the name of their user, so every copy
+ * of a duplicated user is written by the same worker in file order, and the
+ * last one wins.
+ * <p>
+ * The position up to which every batch has been written is saved to a
+ * checkpoint file, so an interrupted conversion resumes where it stopped.
+ */
 public class SQLConversionTask extends BukkitRunnable {
+    private static final int BATCH_SIZE = 500;
+    private static final long PROGRESS_INTERVAL = 5000; // Milliseconds
+    private static final long SHUTDOWN_TIMEOUT = 10; // Minutes
+
+    private static final Part END = new Part(null, null);
+
+    private final DatabaseManager databaseManager = mcMMO.getDatabaseManager();
+    private final AtomicInteger converted = new AtomicInteger();
+
+    private final Map<Integer, Long> completedBatches = new TreeMap<Integer, Long>();
+    private int nextBatch;
+    private long checkpoint;
+    private volatile boolean failed;
+
+    private long position;
+    private final ByteArrayOutputStream lineBuffer = new ByteArrayOutputStream();
 
     @Override
     public void run() {
         String location = mcMMO.getUsersFilePath();
+        File checkpointFile = new File(location + ".convert");
+        int workers = Math.max(1, Config.getInstance().getMySQLMaxConnections() - 1); // Leave a connection for the players
+        List<BlockingQueue<Part>> queues = new ArrayList<BlockingQueue<Part>>(workers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mcMMO SQL Converter");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (int i = 0; i < workers; i++) {
+            BlockingQueue<Part> queue = new ArrayBlockingQueue<Part>(2);
+
+            queues.add(queue);
+            executor.execute(new ConversionWorker(queue));
+        }
+
+        long startTime = System.currentTimeMillis();
+        long lastReport = startTime;
+        InputStream in = null;
 
         try {
-            BufferedReader in = new BufferedReader(new FileReader(location));
-            String line = "";
-            int converted = 0;
+            checkpoint = readCheckpoint(checkpointFile);
+            position = checkpoint;
+
+            FileInputStream fileStream = new FileInputStream(location);
+            fileStream.getChannel().position(position);
+            in = new BufferedInputStream(fileStream);
+
+            if (position > 0) {
+                mcMMO.p.getLogger().info("Resuming conversion of " + location + " from byte " + position);
+            }
+
+            // Each worker gets about BATCH_SIZE lines of every batch
+            List<List<String>> parts = createParts(workers);
+            int lineCount = 0;
+            int sequence = 0;
+            String line;
+
+            while (!failed && (line = readLine(in)) != null) {
+                if (!FlatfileUserStore.isTombstone(line)) {
+                    parts.get(getWorker(line, workers)).add(line);
+                }
+
+                if (++lineCount < BATCH_SIZE * workers) {
+                    continue;
+                }
+
+                submitBatch(new Batch(sequence++, position), parts, queues);
+                parts = createParts(workers);
+                lineCount = 0;
 
-            while ((line = in.readLine()) != null) {
+                long currentTime = System.currentTimeMillis();
 
-                // Find if the line contains the player we want.
-                String[] playerData = line.split(":");
-                if (mcMMO.getDatabaseManager().convert(playerData)) {
-                    converted++;
+                if (currentTime - lastReport >= PROGRESS_INTERVAL) {
+                    reportProgress(startTime, currentTime);
+                    writeCheckpoint(checkpointFile);
+                    lastReport = currentTime;
                 }
             }
 
-            mcMMO.p.getLogger().info("MySQL Updated from users file, " + converted + " items added/updated to MySQL DB");
-            in.close();
+            if (lineCount > 0 && !failed) {
+                submitBatch(new Batch(sequence++, position), parts, queues);
+            }
         }
-        catch (Exception e) {
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+        catch (IOException e) {
             mcMMO.p.getLogger().severe("Exception while reading " + location + " (Are you sure you formatted it correctly?)" + e.toString());
+            failed = true;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+
+        for (BlockingQueue<Part> queue : queues) {
+            try {
+                queue.put(END);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                executor.shutdownNow();
+                break;
+            }
+        }
+
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.MINUTES)) {
+                mcMMO.p.getLogger().warning("Timed out waiting for the conversion to MySQL to finish!");
+                failed = true;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failed = true;
+        }
+
+        if (failed) {
+            writeCheckpoint(checkpointFile);
+            mcMMO.p.getLogger().warning("Conversion to MySQL stopped at byte " + getCheckpoint() + ", run /mmoupdate again to resume.");
+            return;
+        }
+
+        checkpointFile.delete();
+        mcMMO.p.getLogger().info("MySQL Updated from users file, " + converted.get() + " items added/updated to MySQL DB in " + ((System.currentTimeMillis() - startTime) / 1000) + "s");
+    }
+
+    private static List<List<String>> createParts(int workers) {
+        List<List<String>> parts = new ArrayList<List<String>>(workers);
+
+        for (int i = 0; i < workers; i++) {
+            parts.add(new ArrayList<String>(BATCH_SIZE));
+        }
+
+        return parts;
+    }
+
+    /**
+     * Get the worker that writes a line, the same one for every line of a user.
+     */
+    private static int getWorker(String line, int workers) {
+        int end = line.indexOf(':');
+        String playerName = end < 0 ? line : line.substring(0, end);
+
+        return (playerName.toLowerCase().hashCode() & Integer.MAX_VALUE) % workers;
+    }
+
+    /**
+     * Hand the lines of a batch to their workers. The batch is complete once every part of it is written.
+     */
+    private void submitBatch(Batch batch, List<List<String>> parts, List<BlockingQueue<Part>> queues) throws InterruptedException {
+        int partCount = 0;
+
+        for (List<String> lines : parts) {
+            if (!lines.isEmpty()) {
+                partCount++;
+            }
+        }
+
+        if (partCount == 0) {
+            completeBatch(batch);
+            return;
+        }
+
+        batch.remainingParts.set(partCount);
+
+        for (int i = 0; i < parts.size(); i++) {
+            List<String> lines = parts.get(i);
+
+            if (!lines.isEmpty()) {
+                queues.get(i).put(new Part(batch, lines));
+            }
+        }
+    }
+
+    private void reportProgress(long startTime, long currentTime) {
+        int count = converted.get();
+        long elapsed = Math.max(currentTime - startTime, 1);
+
+        mcMMO.p.getLogger().info("Converted " + count + " users to MySQL (" + (count * 1000L / elapsed) + " users/s)");
+    }
+
+    /**
+     * Record that a batch was written, and move the checkpoint past every batch written so far without gaps.
+     */
+    private synchronized void completeBatch(Batch batch) {
+        completedBatches.put(batch.sequence, batch.endPosition);
+
+        Long endPosition;
+
+        while ((endPosition = completedBatches.remove(nextBatch)) != null) {
+            checkpoint = endPosition;
+            nextBatch++;
+        }
+    }
+
+    private synchronized long getCheckpoint() {
+        return checkpoint;
+    }
+
+    private long readCheckpoint(File checkpointFile) {
+        if (!checkpointFile.exists()) {
+            return 0;
+        }
+
+        BufferedReader in = null;
+
+        try {
+            in = new BufferedReader(new FileReader(checkpointFile));
+            return Long.parseLong(in.readLine().trim());
+        }
+        catch (Exception e) {
+            mcMMO.p.getLogger().warning("Could not read " + checkpointFile.getPath() + ", converting from the start.");
+            return 0;
+        }
+        finally {
+            if (in != null) {
+                try {
+                    in.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    private void writeCheckpoint(File checkpointFile) {
+        FileWriter out = null;
+
+        try {
+            out = new FileWriter(checkpointFile);
+            out.write(String.valueOf(getCheckpoint()));
+        }
+        catch (IOException e) {
+            mcMMO.p.getLogger().warning("Could not save conversion checkpoint to " + checkpointFile.getPath() + e.toString());
+        }
+        finally {
+            if (out != null) {
+                try {
+                    out.close();
+                }
+                catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a line while keeping track of the byte position in the file.
+     */
+    private String readLine(InputStream in) throws IOException {
+        lineBuffer.reset();
+
+        int read;
+
+        while ((read = in.read()) != -1) {
+            position++;
+
+            if (read == '\n') {
+                break;
+            }
+
+            if (read != '\r') {
+                lineBuffer.write(read);
+            }
+        }
+
+        if (read == -1 && lineBuffer.size() == 0) {
+            return null;
+        }
+
+        return lineBuffer.toString("UTF-8");
+    }
+
+    private class ConversionWorker implements Runnable {
+        private final BlockingQueue<Part> queue;
+
+        private ConversionWorker(BlockingQueue<Part> queue) {
+            this.queue = queue;
+        }
+
+        @Override
+        public void run() {
+            try {
+                Part part;
+
+                while ((part = queue.take()) != END) {
+                    // Keep draining the queue after a failure so the reader is never left blocked
+                    if (failed) {
+                        continue;
+                    }
+
+                    List<String[]> users = new ArrayList<String[]>(part.lines.size());
+
+                    for (String line : part.lines) {
+                        users.add(line.split(":"));
+                    }
+
+                    int count = databaseManager.convertUsers(users);
+
+                    if (count < 0) {
+                        failed = true;
+                        continue;
+                    }
+
+                    converted.addAndGet(count);
+
+                    if (part.batch.remainingParts.decrementAndGet() == 0) {
+                        completeBatch(part.batch);
+                    }
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed = true;
+            }
+        }
+    }
+
+    private static final class Batch {
+        private final int sequence;
+        private final long endPosition;
+        private final AtomicInteger remainingParts = new AtomicInteger();
+
+        private Batch(int sequence, long endPosition) {
+            this.sequence = sequence;
+            this.endPosition = endPosition;
+        }
+    }
+
+    private static final class Part {
+        private final Batch batch;
+        private final List<String> lines;
+
+        private Part(Batch batch, List<String> lines) {
+            this.batch = batch;
+            this.lines = lines;
         }
     }
 }
@@ -1,17 +1,98 @@
 package com.gmail.nossr50.runnables.database;
 
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.bukkit.command.CommandSender;
+import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.Config;
+import com.gmail.nossr50.database.DatabaseManager;
+import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.util.Misc;
 
+/**
+ * Purges powerless and old users from the database. Must be run asynchronously.
+ */
 public class UserPurgeTask extends BukkitRunnable {
+    private CommandSender sender;
+
+    public UserPurgeTask() {
+        this(null);
+    }
+
+    /**
+     * @param sender Who to notify when the purge is done, may be null
+     */
+    public UserPurgeTask(CommandSender sender) {
+        this.sender = sender;
+    }
+
     @Override
     public void run() {
-        mcMMO.getDatabaseManager().purgePowerlessUsers();
+        Set<String> onlinePlayers;
+
+        try {
+            onlinePlayers = mcMMO.p.getServer().getScheduler().callSyncMethod(mcMMO.p, new Callable<Set<String>>() {
+                @Override
+                public Set<String> call() {
+                    Set<String> playerNames = new HashSet<String>();
+
+                    for (Player player : mcMMO.p.getServer().getOnlinePlayers()) {
+                        playerNames.add(player.getName().toLowerCase());
+                    }
+
+                    return playerNames;
+                }
+            }).get();
+        }
+        catch (Exception e) {
+            // The server is most likely shutting down
+            return;
+        }
+
+        DatabaseManager databaseManager = mcMMO.getDatabaseManager();
+        long startTime = System.currentTimeMillis();
+
+        List<String> powerlessUsers = databaseManager.purgePowerlessUsers(onlinePlayers);
+        List<String> oldUsers = Collections.emptyList();
 
         if (Config.getInstance().getOldUsersCutoff() != -1) {
-            mcMMO.getDatabaseManager().purgeOldUsers();
+            oldUsers = databaseManager.purgeOldUsers(onlinePlayers);
+        }
+
+        mcMMO.p.getLogger().info("Purged " + powerlessUsers.size() + " powerless users and " + oldUsers.size() + " old users from the database in " + (System.currentTimeMillis() - startTime) + "ms.");
+
+        new PurgeCleanupTask(powerlessUsers, oldUsers).runTask(mcMMO.p);
+    }
+
+    private class PurgeCleanupTask extends BukkitRunnable {
+        private List<String> powerlessUsers;
+        private List<String> oldUsers;
+
+        private PurgeCleanupTask(List<String> powerlessUsers, List<String> oldUsers) {
+            this.powerlessUsers = powerlessUsers;
+            this.oldUsers = oldUsers;
+        }
+
+        @Override
+        public void run() {
+            for (String playerName : powerlessUsers) {
+                Misc.profileCleanup(playerName);
+            }
+
+            for (String playerName : oldUsers) {
+                Misc.profileCleanup(playerName);
+            }
+
+            if (sender != null) {
+                sender.sendMessage(LocaleLoader.getString("Commands.mcpurge.Success"));
+            }
         }
     }
 }
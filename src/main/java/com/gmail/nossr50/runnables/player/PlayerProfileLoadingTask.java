@@ -0,0 +1,67 @@
+package com.gmail.nossr50.runnables.player;
+
+import org.bukkit.entity.Player;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.gmail.nossr50.mcMMO;
+import com.gmail.nossr50.datatypes.player.McMMOPlayer;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.util.player.UserManager;
+
+/**
+ * Loads the profile of a pending player off the main thread, then hands it
+ * back to the main thread.
+ * <p>
+ * If the database can't be read, the player stays pending and the load is
+ * retried until it succeeds or the player leaves.
+ */
+public class PlayerProfileLoadingTask extends BukkitRunnable {
+    private static final long RETRY_DELAY = 5 * 20; // Ticks
+
+    private McMMOPlayer mcMMOPlayer;
+    private String playerName;
+
+    public PlayerProfileLoadingTask(McMMOPlayer mcMMOPlayer) {
+        this.mcMMOPlayer = mcMMOPlayer;
+        this.playerName = mcMMOPlayer.getPlayer().getName();
+    }
+
+    @Override
+    public void run() {
+        // The player left, or another load already finished
+        if (!mcMMOPlayer.getPlayer().isOnline() || mcMMOPlayer.isProfileLoaded()) {
+            return;
+        }
+
+        PlayerProfile profile = UserManager.loadProfile(playerName, true);
+
+        if (!profile.isLoaded()) {
+            mcMMO.p.getLogger().warning("Could not load the profile of " + playerName + ", trying again in " + (RETRY_DELAY / 20) + " seconds.");
+            new PlayerProfileLoadingTask(mcMMOPlayer).runTaskLaterAsynchronously(mcMMO.p, RETRY_DELAY);
+            return;
+        }
+
+        new ApplyProfileTask(profile).runTask(mcMMO.p);
+    }
+
+    private class ApplyProfileTask extends BukkitRunnable {
+        private PlayerProfile profile;
+
+        private ApplyProfileTask(PlayerProfile profile) {
+            this.profile = profile;
+        }
+
+        @Override
+        public void run() {
+            Player player = mcMMOPlayer.getPlayer();
+
+            // The player left, or was reloaded, while we were loading, or another load finished first
+            if (!player.isOnline() || UserManager.getPlayer(player) != mcMMOPlayer || mcMMOPlayer.isProfileLoaded()) {
+                return;
+            }
+
+            mcMMOPlayer.setProfile(profile);
+            UserManager.profileLoaded(mcMMOPlayer);
+        }
+    }
+}
@@ -1,12 +1,11 @@
 package com.gmail.nossr50.runnables.scoreboards;
 
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 import org.bukkit.scoreboard.Scoreboard;
 
 import com.gmail.nossr50.util.scoreboards.ScoreboardManager;
 
-public class ScoreboardChangeTask extends BukkitRunnable {
+public class ScoreboardChangeTask implements Runnable {
     private Player player;
     private Scoreboard oldScoreboard;
 
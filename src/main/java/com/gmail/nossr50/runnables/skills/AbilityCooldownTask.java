@@ -1,11 +1,10 @@
 package com.gmail.nossr50.runnables.skills;
 
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.AbilityType;
 
-public class AbilityCooldownTask extends BukkitRunnable {
+public class AbilityCooldownTask implements Runnable {
     private McMMOPlayer mcMMOPlayer;
     private AbilityType ability;
 
@@ -1,7 +1,6 @@
 package com.gmail.nossr50.runnables.skills;
 
 import org.bukkit.entity.Player;
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.HiddenConfig;
@@ -14,7 +13,7 @@ import com.gmail.nossr50.util.skills.ParticleEffectUtils;
 import com.gmail.nossr50.util.skills.PerksUtils;
 import com.gmail.nossr50.util.skills.SkillUtils;
 
-public class AbilityDisableTask extends BukkitRunnable {
+public class AbilityDisableTask implements Runnable {
     private McMMOPlayer mcMMOPlayer;
     private AbilityType ability;
 
@@ -60,6 +59,6 @@ public class AbilityDisableTask extends BukkitRunnable {
         }
 
         SkillUtils.sendSkillMessage(player, ability.getAbilityPlayerOff(player));
-        new AbilityCooldownTask(mcMMOPlayer, ability).runTaskLaterAsynchronously(mcMMO.p, PerksUtils.handleCooldownPerks(player, ability.getCooldown()) * Misc.TICK_CONVERSION_FACTOR);
+        mcMMO.getTimerWheel().schedule(new AbilityCooldownTask(mcMMOPlayer, ability), PerksUtils.handleCooldownPerks(player, ability.getCooldown()) * Misc.TICK_CONVERSION_FACTOR);
     }
 }
@@ -0,0 +1,12 @@
+package com.gmail.nossr50.runnables.skills;
+
+import org.bukkit.scheduler.BukkitRunnable;
+
+import com.gmail.nossr50.skills.archery.Archery;
+
+public class ArrowTrackerCleanupTask extends BukkitRunnable {
+    @Override
+    public void run() {
+        Archery.getArrowTracker().removeInvalidEntities();
+    }
+}
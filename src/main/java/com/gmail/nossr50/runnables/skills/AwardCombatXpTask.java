@@ -1,41 +1,114 @@
 package com.gmail.nossr50.runnables.skills;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
 import org.bukkit.entity.LivingEntity;
-import org.bukkit.scheduler.BukkitRunnable;
 
+import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.SkillType;
 
-public class AwardCombatXpTask extends BukkitRunnable {
-    private McMMOPlayer mcMMOPlayer;
-    private double baseXp;
-    private SkillType skillType;
-    private LivingEntity target;
-    private int baseHealth;
-
-    public AwardCombatXpTask(McMMOPlayer mcMMOPlayer, SkillType skillType, double baseXp, LivingEntity target) {
-        this.mcMMOPlayer = mcMMOPlayer;
-        this.skillType = skillType;
-        this.baseXp = baseXp;
-        this.target = target;
-        baseHealth = target.getHealth();
+/**
+ * Awards the combat xp of the hits of a tick, once their damage has been dealt.
+ * <p>
+ * Hits are queued as they happen, and the task runs once on the next tick for
+ * all of them. The xp of each hit is still based on the damage it dealt, but it
+ * is added up per player and skill, so a player hitting a lot of mobs at once
+ * gets a single xp gain per skill.
+ */
+public class AwardCombatXpTask implements Runnable {
+    private static final SkillType[] SKILL_TYPES = SkillType.values();
+
+    private static List<CombatHit> pendingHits = new ArrayList<CombatHit>();
+
+    private AwardCombatXpTask() {}
+
+    /**
+     * Queue the xp of a hit, to be awarded on the next tick.
+     *
+     * @param mcMMOPlayer The player dealing the damage
+     * @param skillType The skill to award the xp to
+     * @param baseXp The xp for each point of damage
+     * @param target The entity hit
+     */
+    public static void queueXp(McMMOPlayer mcMMOPlayer, SkillType skillType, double baseXp, LivingEntity target) {
+        if (pendingHits.isEmpty()) {
+            mcMMO.getTimerWheel().schedule(new AwardCombatXpTask(), 0);
+        }
+
+        pendingHits.add(new CombatHit(mcMMOPlayer, skillType, baseXp, target));
     }
 
     @Override
     public void run() {
-        int health = target.getHealth();
-        int damage = baseHealth - health;
+        List<CombatHit> hits = pendingHits;
+        Map<McMMOPlayer, float[]> playerXp = new LinkedHashMap<McMMOPlayer, float[]>();
+
+        // Hits queued while awarding the xp are awarded on the next tick
+        pendingHits = new ArrayList<CombatHit>();
+
+        for (CombatHit hit : hits) {
+            int xp = hit.getXp();
+
+            if (xp == 0) {
+                continue;
+            }
+
+            float[] skillXp = playerXp.get(hit.mcMMOPlayer);
 
-        // May avoid negative xp, we don't know what other plugins do with the entity health
-        if (damage <= 0) {
-            return;
+            if (skillXp == null) {
+                skillXp = new float[SKILL_TYPES.length];
+                playerXp.put(hit.mcMMOPlayer, skillXp);
+            }
+
+            skillXp[hit.skillType.ordinal()] += xp;
         }
 
-        // Don't reward the player for overkills
-        if (health < 0) {
-            damage += health;
+        for (Entry<McMMOPlayer, float[]> entry : playerXp.entrySet()) {
+            float[] skillXp = entry.getValue();
+
+            for (int i = 0; i < skillXp.length; i++) {
+                if (skillXp[i] != 0) {
+                    entry.getKey().beginXpGain(SKILL_TYPES[i], skillXp[i]);
+                }
+            }
+        }
+    }
+
+    private static class CombatHit {
+        private final McMMOPlayer mcMMOPlayer;
+        private final SkillType skillType;
+        private final double baseXp;
+        private final LivingEntity target;
+        private final int baseHealth;
+
+        private CombatHit(McMMOPlayer mcMMOPlayer, SkillType skillType, double baseXp, LivingEntity target) {
+            this.mcMMOPlayer = mcMMOPlayer;
+            this.skillType = skillType;
+            this.baseXp = baseXp;
+            this.target = target;
+            this.baseHealth = target.getHealth();
         }
 
-        mcMMOPlayer.beginXpGain(skillType, (int) (damage * baseXp));
+        private int getXp() {
+            int health = target.getHealth();
+            int damage = baseHealth - health;
+
+            // May avoid negative xp, we don't know what other plugins do with the entity health
+            if (damage <= 0) {
+                return 0;
+            }
+
+            // Don't reward the player for overkills
+            if (health < 0) {
+                damage += health;
+            }
+
+            return (int) (damage * baseXp);
+        }
     }
 }
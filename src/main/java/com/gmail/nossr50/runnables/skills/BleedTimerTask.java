@@ -1,30 +1,63 @@
 package com.gmail.nossr50.runnables.skills;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.UUID;
 
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.locale.LocaleLoader;
+import com.gmail.nossr50.util.Misc;
 import com.gmail.nossr50.util.skills.CombatUtils;
 import com.gmail.nossr50.util.skills.ParticleEffectUtils;
 
+/**
+ * Makes bleeding entities take damage every two seconds.
+ * <p>
+ * Bleeding entities are looked up by their UUID, and spread over buckets. Each
+ * run only handles one bucket, so every entity still bleeds every two seconds,
+ * but the damage of a big Serrated Strikes isn't dealt all at once. Entities
+ * stop bleeding when they die or their chunk is unloaded.
+ */
 public class BleedTimerTask extends BukkitRunnable {
     private final static int MAX_BLEED_TICKS = 10;
-    private static Map<LivingEntity, Integer> bleedList = new HashMap<LivingEntity, Integer>();
+    private final static int BUCKET_COUNT = 8;
+
+    public final static int BLEED_INTERVAL = 2 * Misc.TICK_CONVERSION_FACTOR / BUCKET_COUNT;
+
+    private static Map<UUID, BleedingEntity> bleedList = new HashMap<UUID, BleedingEntity>();
+    private static List<List<BleedingEntity>> buckets = new ArrayList<List<BleedingEntity>>();
+    private static int currentBucket;
+
+    static {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.add(new ArrayList<BleedingEntity>());
+        }
+    }
+
+    // Dealing damage calls our listeners, which can stop other entities from bleeding
+    private List<BleedingEntity> bleeding = new ArrayList<BleedingEntity>();
 
     @Override
     public void run() {
-        for (Iterator<Entry<LivingEntity, Integer>> bleedIterator = bleedList.entrySet().iterator(); bleedIterator.hasNext();) {
-            Entry<LivingEntity, Integer> entry = bleedIterator.next();
-            LivingEntity entity = entry.getKey();
+        bleeding.addAll(buckets.get(currentBucket));
+        currentBucket = (currentBucket + 1) % BUCKET_COUNT;
 
-            if (entry.getValue() <= 0 || !entity.isValid()) {
-                bleedIterator.remove();
+        for (BleedingEntity bleedingEntity : bleeding) {
+            if (bleedingEntity.removed) {
+                continue;
+            }
+
+            LivingEntity entity = bleedingEntity.entity;
+
+            if (bleedingEntity.ticks <= 0 || !entity.isValid()) {
+                remove(bleedingEntity);
                 continue;
             }
 
@@ -44,27 +77,29 @@ public class BleedTimerTask extends BukkitRunnable {
                     ParticleEffectUtils.playBleedEffect(entity);
                 }
 
-                entry.setValue(entry.getValue() - damage);
+                bleedingEntity.ticks -= damage;
 
-                if (entry.getValue() <= 0) {
+                if (bleedingEntity.ticks <= 0) {
                     player.sendMessage(LocaleLoader.getString("Swords.Combat.Bleeding.Stopped"));
                 }
             }
             else {
                 damage = 2;
 
-                // Anticipate the entity's death to prevent CME because of our EntityDeathEvent listener
+                // Anticipate the entity's death, our EntityDeathEvent listener would remove it anyway
                 if (entity.getHealth() - damage > 0) {
-                    entry.setValue(entry.getValue() - 1);
+                    bleedingEntity.ticks--;
                 }
                 else {
-                    bleedIterator.remove();
+                    remove(bleedingEntity);
                 }
 
                 CombatUtils.dealDamage(entity, damage);
                 ParticleEffectUtils.playBleedEffect(entity);
             }
         }
+
+        bleeding.clear();
     }
 
     /**
@@ -73,9 +108,11 @@ public class BleedTimerTask extends BukkitRunnable {
      * @param entity LivingEntity to bleed out
      */
     public static void bleedOut(LivingEntity entity) {
-        if (bleedList.containsKey(entity)) {
-            CombatUtils.dealDamage(entity, bleedList.get(entity) * 2);
-            bleedList.remove(entity);
+        BleedingEntity bleedingEntity = bleedList.get(entity.getUniqueId());
+
+        if (bleedingEntity != null) {
+            remove(bleedingEntity);
+            CombatUtils.dealDamage(entity, bleedingEntity.ticks * 2);
         }
     }
 
@@ -85,8 +122,27 @@ public class BleedTimerTask extends BukkitRunnable {
      * @param entity LivingEntity to remove
      */
     public static void remove(LivingEntity entity) {
-        if (bleedList.containsKey(entity)) {
-            bleedList.remove(entity);
+        BleedingEntity bleedingEntity = bleedList.get(entity.getUniqueId());
+
+        if (bleedingEntity != null) {
+            remove(bleedingEntity);
+        }
+    }
+
+    /**
+     * Remove the entities of a chunk from the bleedList.
+     *
+     * @param chunk Chunk being unloaded
+     */
+    public static void remove(Chunk chunk) {
+        if (bleedList.isEmpty()) {
+            return;
+        }
+
+        for (Entity entity : chunk.getEntities()) {
+            if (entity instanceof LivingEntity) {
+                remove((LivingEntity) entity);
+            }
         }
     }
 
@@ -97,14 +153,67 @@ public class BleedTimerTask extends BukkitRunnable {
      * @param ticks Number of bleeding ticks
      */
     public static void add(LivingEntity entity, int ticks) {
-        int newTicks = ticks;
+        BleedingEntity bleedingEntity = bleedList.get(entity.getUniqueId());
+
+        if (bleedingEntity != null) {
+            bleedingEntity.ticks = Math.min(bleedingEntity.ticks + ticks, MAX_BLEED_TICKS);
+            return;
+        }
+
+        bleedingEntity = new BleedingEntity(entity, Math.min(ticks, MAX_BLEED_TICKS));
+        bleedList.put(bleedingEntity.id, bleedingEntity);
+
+        // Fill up the emptiest bucket, to keep the runs even
+        List<BleedingEntity> bucket = buckets.get(0);
+
+        for (List<BleedingEntity> otherBucket : buckets) {
+            if (otherBucket.size() < bucket.size()) {
+                bucket = otherBucket;
+            }
+        }
+
+        bleedingEntity.bucket = bucket;
+        bleedingEntity.position = bucket.size();
+        bucket.add(bleedingEntity);
+    }
 
-        if (bleedList.containsKey(entity)) {
-            newTicks += bleedList.get(entity);
-            bleedList.put(entity, Math.min(newTicks, MAX_BLEED_TICKS));
+    /**
+     * @return the number of entities currently bleeding
+     */
+    public static int getActiveBleedCount() {
+        return bleedList.size();
+    }
+
+    private static void remove(BleedingEntity bleedingEntity) {
+        if (bleedingEntity.removed) {
+            return;
+        }
+
+        List<BleedingEntity> bucket = bleedingEntity.bucket;
+        BleedingEntity last = bucket.remove(bucket.size() - 1);
+
+        // Move the last entity of the bucket in the free spot
+        if (last != bleedingEntity) {
+            bucket.set(bleedingEntity.position, last);
+            last.position = bleedingEntity.position;
         }
-        else {
-            bleedList.put(entity, Math.min(newTicks, MAX_BLEED_TICKS));
+
+        bleedList.remove(bleedingEntity.id);
+        bleedingEntity.removed = true;
+    }
+
+    private static class BleedingEntity {
+        private final LivingEntity entity;
+        private final UUID id;
+        private int ticks;
+        private List<BleedingEntity> bucket;
+        private int position;
+        private boolean removed;
+
+        private BleedingEntity(LivingEntity entity, int ticks) {
+            this.entity = entity;
+            this.id = entity.getUniqueId();
+            this.ticks = ticks;
         }
     }
 }
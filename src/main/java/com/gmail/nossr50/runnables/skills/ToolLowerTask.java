@@ -1,12 +1,11 @@
 package com.gmail.nossr50.runnables.skills;
 
-import org.bukkit.scheduler.BukkitRunnable;
 
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
 import com.gmail.nossr50.datatypes.skills.ToolType;
 
-public class ToolLowerTask extends BukkitRunnable {
+public class ToolLowerTask implements Runnable {
     private McMMOPlayer mcMMOPlayer;
     private ToolType tool;
 
@@ -1,9 +1,5 @@
 package com.gmail.nossr50.skills.archery;
 
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
-
 import org.bukkit.Location;
 import org.bukkit.Material;
 import org.bukkit.entity.LivingEntity;
@@ -14,7 +10,7 @@ import com.gmail.nossr50.config.AdvancedConfig;
 import com.gmail.nossr50.util.Misc;
 
 public class Archery {
-    private static List<TrackedEntity> trackedEntities = new ArrayList<TrackedEntity>();
+    private static ArrowTracker arrowTracker = new ArrowTracker();
 
     public static int    retrieveMaxBonusLevel = AdvancedConfig.getInstance().getRetrieveMaxBonusLevel();
     public static double retrieveMaxChance     = AdvancedConfig.getInstance().getRetrieveChanceMax();
@@ -30,25 +26,7 @@ public class Archery {
     public static final double DISTANCE_XP_MULTIPLIER = 0.025;
 
     protected static void incrementTrackerValue(LivingEntity livingEntity) {
-        for (TrackedEntity trackedEntity : trackedEntities) {
-            if (trackedEntity.getLivingEntity().getEntityId() == livingEntity.getEntityId()) {
-                trackedEntity.incrementArrowCount();
-                return;
-            }
-        }
-
-        addToTracker(livingEntity); // If the entity isn't tracked yet
-    }
-
-    protected static void addToTracker(LivingEntity livingEntity) {
-        TrackedEntity trackedEntity = new TrackedEntity(livingEntity);
-
-        trackedEntity.incrementArrowCount();
-        trackedEntities.add(trackedEntity);
-    }
-
-    protected static void removeFromTracker(TrackedEntity trackedEntity) {
-        trackedEntities.remove(trackedEntity);
+        arrowTracker.incrementArrowCount(livingEntity);
     }
 
     /**
@@ -57,17 +35,17 @@ public class Archery {
      * @param livingEntity The entity hit by the arrows
      */
     public static void arrowRetrievalCheck(LivingEntity livingEntity) {
-        for (Iterator<TrackedEntity> entityIterator = trackedEntities.iterator(); entityIterator.hasNext();) {
-            TrackedEntity trackedEntity = entityIterator.next();
+        int arrowCount = arrowTracker.removeArrowCount(livingEntity);
 
-            if (trackedEntity.getID() == livingEntity.getUniqueId()) {
-                Misc.dropItems(livingEntity.getLocation(), new ItemStack(Material.ARROW), trackedEntity.getArrowCount());
-                entityIterator.remove();
-                return;
-            }
+        if (arrowCount > 0) {
+            Misc.dropItems(livingEntity.getLocation(), new ItemStack(Material.ARROW), arrowCount);
         }
     }
 
+    public static ArrowTracker getArrowTracker() {
+        return arrowTracker;
+    }
+
     public static Location stringToLocation(String location) {
         String[] values = location.split(",");
 
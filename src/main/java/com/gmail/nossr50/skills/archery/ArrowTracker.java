@@ -0,0 +1,77 @@
+package com.gmail.nossr50.skills.archery;
+
+import java.util.Iterator;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.bukkit.entity.LivingEntity;
+
+/**
+ * Counts the arrows stuck in entities, so they can be dropped when the entity dies.
+ * <p>
+ * Entities are looked up by their UUID. The ones that disappear without
+ * dying, like despawned mobs, are evicted by {@link #removeInvalidEntities()},
+ * which is run periodically for all the entities at once.
+ */
+public class ArrowTracker {
+    private final ConcurrentMap<UUID, TrackedEntity> trackedEntities = new ConcurrentHashMap<UUID, TrackedEntity>();
+
+    /**
+     * Add an arrow to an entity, tracking the entity if it isn't yet.
+     *
+     * @param livingEntity The entity hit by the arrow
+     */
+    public void incrementArrowCount(LivingEntity livingEntity) {
+        UUID id = livingEntity.getUniqueId();
+        TrackedEntity trackedEntity = trackedEntities.get(id);
+
+        if (trackedEntity == null) {
+            trackedEntity = new TrackedEntity(livingEntity);
+            TrackedEntity existing = trackedEntities.putIfAbsent(id, trackedEntity);
+
+            if (existing != null) {
+                trackedEntity = existing;
+            }
+        }
+
+        trackedEntity.incrementArrowCount();
+    }
+
+    /**
+     * Stop tracking an entity.
+     *
+     * @param livingEntity The entity to stop tracking
+     * @return the number of arrows stuck in the entity, 0 if it wasn't tracked
+     */
+    public int removeArrowCount(LivingEntity livingEntity) {
+        TrackedEntity trackedEntity = trackedEntities.remove(livingEntity.getUniqueId());
+
+        return trackedEntity == null ? 0 : trackedEntity.getArrowCount();
+    }
+
+    /**
+     * Stop tracking the entities that are no longer valid.
+     *
+     * @return the number of entities evicted
+     */
+    public int removeInvalidEntities() {
+        int removed = 0;
+
+        for (Iterator<TrackedEntity> entityIterator = trackedEntities.values().iterator(); entityIterator.hasNext();) {
+            if (!entityIterator.next().getLivingEntity().isValid()) {
+                entityIterator.remove();
+                removed++;
+            }
+        }
+
+        return removed;
+    }
+
+    /**
+     * @return the number of entities tracked
+     */
+    public int getTrackedEntityCount() {
+        return trackedEntities.size();
+    }
+}
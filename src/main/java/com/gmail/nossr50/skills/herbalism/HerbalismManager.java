@@ -291,7 +291,7 @@ public class HerbalismManager extends SkillManager {
 
         playerInventory.removeItem(seed);
         player.updateInventory(); // Needed until replacement available
-        new HerbalismBlockUpdaterTask(blockState).runTaskLater(mcMMO.p, 0);
+        mcMMO.getTimerWheel().schedule(new HerbalismBlockUpdaterTask(blockState), 0);
     }
 
     private boolean handleBlockState(BlockState blockState, boolean greenTerra) {
@@ -109,7 +109,7 @@ public class MiningManager extends SkillManager {
 
         getProfile().setSkillDATS(AbilityType.BLAST_MINING, System.currentTimeMillis());
         mcMMOPlayer.setAbilityInformed(AbilityType.BLAST_MINING, false);
-        new AbilityCooldownTask(mcMMOPlayer, AbilityType.BLAST_MINING).runTaskLaterAsynchronously(mcMMO.p, AbilityType.BLAST_MINING.getCooldown() * Misc.TICK_CONVERSION_FACTOR);
+        mcMMO.getTimerWheel().schedule(new AbilityCooldownTask(mcMMOPlayer, AbilityType.BLAST_MINING), AbilityType.BLAST_MINING.getCooldown() * Misc.TICK_CONVERSION_FACTOR);
     }
 
     /**
@@ -139,15 +139,19 @@ public class MiningManager extends SkillManager {
             }
         }
 
-        for (BlockState blockState : ores) {
+        boolean[] placedOres = mcMMO.getPlaceStore().isTrueBatch(ores);
+
+        for (int index = 0; index < ores.size(); index++) {
+            BlockState blockState = ores.get(index);
+
             if (Misc.getRandom().nextFloat() < (yield + oreBonus)) {
-                if (!mcMMO.getPlaceStore().isTrue(blockState)) {
+                if (!placedOres[index]) {
                     xp += Mining.getBlockXp(blockState);
                 }
 
                 Misc.dropItem(blockState.getLocation(), blockState.getData().toItemStack(1)); // Initial block that would have been dropped
 
-                if (!mcMMO.getPlaceStore().isTrue(blockState)) {
+                if (!placedOres[index]) {
                     for (int i = 1; i < dropMultiplier; i++) {
                         Mining.handleSilkTouchDrops(blockState); // Bonus drops - should drop the block & not the items
                     }
@@ -144,21 +144,27 @@ public final class Woodcutting {
      */
     protected static void processRegularTrees(BlockState blockState, List<BlockState> treeFellerBlocks) {
         List<BlockState> futureCenterBlocks = new ArrayList<BlockState>();
+        List<BlockState> nextBlocks = new ArrayList<BlockState>();
 
         // Handle the blocks around 'block'
         for (int y = 0; y <= 1; y++) {
             for (int x = -1; x <= 1; x++) {
                 for (int z = -1; z <= 1; z++) {
-                    BlockState nextBlock = blockState.getBlock().getRelative(x, y, z).getState();
-                    handleBlock(nextBlock, futureCenterBlocks, treeFellerBlocks);
-
-                    if (WoodcuttingManager.treeFellerReachedThreshold) {
-                        return;
-                    }
+                    nextBlocks.add(blockState.getBlock().getRelative(x, y, z).getState());
                 }
             }
         }
 
+        boolean[] placedBlocks = mcMMO.getPlaceStore().isTrueBatch(nextBlocks);
+
+        for (int i = 0; i < nextBlocks.size(); i++) {
+            handleBlock(nextBlocks.get(i), placedBlocks[i], futureCenterBlocks, treeFellerBlocks);
+
+            if (WoodcuttingManager.treeFellerReachedThreshold) {
+                return;
+            }
+        }
+
         // Recursive call for each log found
         for (BlockState futureCenterBlock : futureCenterBlocks) {
             if (WoodcuttingManager.treeFellerReachedThreshold) {
@@ -177,21 +183,25 @@ public final class Woodcutting {
      */
     protected static void processRedMushroomTrees(BlockState blockState, List<BlockState> treeFellerBlocks) {
         List<BlockState> futureCenterBlocks = new ArrayList<BlockState>();
+        List<BlockState> nextBlocks = new ArrayList<BlockState>();
 
         // Handle the blocks around 'block'
         for (int y = 0; y <= 1; y++) {
             for (int x = -1; x <= 1; x++) {
                 for (int z = -1; z <= 1; z++) {
-                    BlockState nextBlock = blockState.getBlock().getRelative(x, y, z).getState();
-                    BlockState otherNextBlock = blockState.getBlock().getRelative(x, y - (y * 2), z).getState();
+                    nextBlocks.add(blockState.getBlock().getRelative(x, y, z).getState());
+                    nextBlocks.add(blockState.getBlock().getRelative(x, y - (y * 2), z).getState());
+                }
+            }
+        }
 
-                    handleBlock(nextBlock, futureCenterBlocks, treeFellerBlocks);
-                    handleBlock(otherNextBlock, futureCenterBlocks, treeFellerBlocks);
+        boolean[] placedBlocks = mcMMO.getPlaceStore().isTrueBatch(nextBlocks);
 
-                    if (WoodcuttingManager.treeFellerReachedThreshold) {
-                        return;
-                    }
-                }
+        for (int i = 0; i < nextBlocks.size(); i++) {
+            handleBlock(nextBlocks.get(i), placedBlocks[i], futureCenterBlocks, treeFellerBlocks);
+
+            if (WoodcuttingManager.treeFellerReachedThreshold) {
+                return;
             }
         }
 
@@ -240,11 +250,12 @@ public final class Woodcutting {
      * Handle a block addition to the list of blocks to be removed and to the list of blocks used for future recursive calls of 'processRecursively()'
      *
      * @param blockState Block to be added
+     * @param placed True if the block was placed by a player
      * @param futureCenterBlocks List of blocks that will be used to call 'processRecursively()'
      * @param treeFellerBlocks List of blocks to be removed
      */
-    private static void handleBlock(BlockState blockState, List<BlockState> futureCenterBlocks, List<BlockState> treeFellerBlocks) {
-        if (!BlockUtils.affectedByTreeFeller(blockState) || mcMMO.getPlaceStore().isTrue(blockState) || treeFellerBlocks.contains(blockState)) {
+    private static void handleBlock(BlockState blockState, boolean placed, List<BlockState> futureCenterBlocks, List<BlockState> treeFellerBlocks) {
+        if (!BlockUtils.affectedByTreeFeller(blockState) || placed || treeFellerBlocks.contains(blockState)) {
             return;
         }
 
@@ -1,21 +1,33 @@
 package com.gmail.nossr50.util;
 
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
 import org.bukkit.ChatColor;
+import org.bukkit.Chunk;
+import org.bukkit.entity.Entity;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntityDamageEvent;
-import org.bukkit.metadata.FixedMetadataValue;
 
-import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.AdvancedConfig;
 import com.gmail.nossr50.config.Config;
 import com.gmail.nossr50.datatypes.MobHealthbarType;
 import com.gmail.nossr50.datatypes.player.PlayerProfile;
-import com.gmail.nossr50.runnables.MobHealthDisplayUpdaterTask;
 import com.gmail.nossr50.util.player.UserManager;
 
 public final class MobHealthbarUtils {
+    private static final int MAX_DISPLAY = 10;
+
+    // Healthbars are built once for each type, color, size and number of colored symbols
+    private static final String[][][][] HEALTHBARS = new String[MobHealthbarType.values().length][ChatColor.values().length][MAX_DISPLAY + 1][MAX_DISPLAY + 1];
+
+    // Entities showing a healthbar, in the order their name has to be restored
+    private static final Map<UUID, HealthbarDisplay> DISPLAYS = new LinkedHashMap<UUID, HealthbarDisplay>();
+
     private MobHealthbarUtils() {};
 
     /**
@@ -71,20 +83,89 @@ public final class MobHealthbarUtils {
 
         int displayTime = Config.getInstance().getMobHealthbarTime();
 
-        if (displayTime != -1) {
-            boolean updateName = !ChatColor.stripColor(oldName).equalsIgnoreCase(ChatColor.stripColor(newName));
+        if (displayTime == -1) {
+            return;
+        }
+
+        // Only the first hit knows the real name, the next ones push the restore time back
+        HealthbarDisplay display = DISPLAYS.remove(target.getUniqueId());
 
-            if (updateName) {
-                target.setMetadata(mcMMO.customNameKey, new FixedMetadataValue(mcMMO.p, oldName));
-                target.setMetadata(mcMMO.customVisibleKey, new FixedMetadataValue(mcMMO.p, oldNameVisible));
+        if (display == null) {
+            if (ChatColor.stripColor(oldName).equalsIgnoreCase(ChatColor.stripColor(newName))) {
+                oldName = "";
+                oldNameVisible = false;
             }
-            else if (!target.hasMetadata(mcMMO.customNameKey)) {
-                target.setMetadata(mcMMO.customNameKey, new FixedMetadataValue(mcMMO.p, ""));
-                target.setMetadata(mcMMO.customVisibleKey, new FixedMetadataValue(mcMMO.p, false));
+
+            display = new HealthbarDisplay(target, oldName, oldNameVisible);
+        }
+
+        display.restoreTime = System.currentTimeMillis() + displayTime * Misc.TIME_CONVERSION_FACTOR;
+        DISPLAYS.put(target.getUniqueId(), display);
+    }
+
+    /**
+     * Restore the names of the entities whose healthbar timed out.
+     */
+    public static void restoreExpiredNames() {
+        long currentTime = System.currentTimeMillis();
+
+        // Displays are ordered by restore time
+        for (Iterator<HealthbarDisplay> displayIterator = DISPLAYS.values().iterator(); displayIterator.hasNext();) {
+            HealthbarDisplay display = displayIterator.next();
+
+            if (display.restoreTime > currentTime) {
+                return;
+            }
+
+            displayIterator.remove();
+
+            if (display.entity.isValid()) {
+                display.restore();
+            }
+        }
+    }
+
+    /**
+     * Restore the name of an entity showing a healthbar.
+     *
+     * @param entity The entity to restore
+     */
+    public static void restoreName(LivingEntity entity) {
+        HealthbarDisplay display = DISPLAYS.remove(entity.getUniqueId());
+
+        if (display != null) {
+            display.restore();
+        }
+    }
+
+    /**
+     * Restore the names of the entities of a chunk, so they aren't saved with a healthbar.
+     *
+     * @param chunk The chunk being unloaded
+     */
+    public static void restoreNames(Chunk chunk) {
+        if (DISPLAYS.isEmpty()) {
+            return;
+        }
+
+        for (Entity entity : chunk.getEntities()) {
+            if (entity instanceof LivingEntity) {
+                restoreName((LivingEntity) entity);
             }
+        }
+    }
 
-            new MobHealthDisplayUpdaterTask(target).runTaskLater(mcMMO.p, displayTime * Misc.TICK_CONVERSION_FACTOR); // Clear health display after 3 seconds
+    /**
+     * Restore the names of all the entities showing a healthbar.
+     */
+    public static void restoreAllNames() {
+        for (HealthbarDisplay display : DISPLAYS.values()) {
+            if (display.entity.isValid()) {
+                display.restore();
+            }
         }
+
+        DISPLAYS.clear();
     }
 
     private static String createHealthDisplay(PlayerProfile profile, LivingEntity entity, int damage) {
@@ -132,21 +213,43 @@ public final class MobHealthbarUtils {
                 return null;
         }
 
-        int coloredDisplay = (int) Math.ceil(fullDisplay * (healthPercentage / 100.0D));
-        int grayDisplay = fullDisplay - coloredDisplay;
+        int coloredDisplay = Math.min((int) Math.ceil(fullDisplay * (healthPercentage / 100.0D)), fullDisplay);
+        String[] healthbars = HEALTHBARS[profile.getMobHealthbarType().ordinal()][color.ordinal()][fullDisplay];
+
+        if (healthbars[coloredDisplay] == null) {
+            StringBuilder healthbar = new StringBuilder().append(color);
+
+            for (int i = 0; i < coloredDisplay; i++) {
+                healthbar.append(symbol);
+            }
+
+            healthbar.append(ChatColor.GRAY);
 
-        String healthbar = color + "";
+            for (int i = coloredDisplay; i < fullDisplay; i++) {
+                healthbar.append(symbol);
+            }
 
-        for (int i = 0; i < coloredDisplay; i++) {
-            healthbar += symbol;
+            healthbars[coloredDisplay] = healthbar.toString();
         }
 
-        healthbar += ChatColor.GRAY;
+        return healthbars[coloredDisplay];
+    }
+
+    private static class HealthbarDisplay {
+        private final LivingEntity entity;
+        private final String originalName;
+        private final boolean originalNameVisible;
+        private long restoreTime;
 
-        for (int i = 0; i < grayDisplay; i++) {
-            healthbar += symbol;
+        private HealthbarDisplay(LivingEntity entity, String originalName, boolean originalNameVisible) {
+            this.entity = entity;
+            this.originalName = originalName;
+            this.originalNameVisible = originalNameVisible;
         }
 
-        return healthbar;
+        private void restore() {
+            entity.setCustomNameVisible(originalNameVisible);
+            entity.setCustomName(originalName);
+        }
     }
 }
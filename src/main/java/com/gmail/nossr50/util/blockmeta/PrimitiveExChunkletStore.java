@@ -82,8 +82,7 @@ public class PrimitiveExChunkletStore implements ChunkletStore, Externalizable {
     public void readExternal(ObjectInput in) throws IOException {
         byte[] temp = new byte[9];
 
-        // Could probably reorganize this loop to print nasty things if it does not equal 9 or -1
-        while (in.read(temp, 0, 9) == 9) {
+        while (readColumn(in, temp)) {
             int x = addressByteX(temp[0]);
             int z = addressByteZ(temp[0]);
             boolean[] yColumn = new boolean[64];
@@ -98,6 +97,28 @@ public class PrimitiveExChunkletStore implements ChunkletStore, Externalizable {
         }
     }
 
+    /**
+     * Read a whole column. Columns run across the block data records of the
+     * stream, so a single read can come back short in the middle of one.
+     *
+     * @return false once there are no columns left
+     */
+    private static boolean readColumn(ObjectInput in, byte[] column) throws IOException {
+        int read = 0;
+
+        while (read < column.length) {
+            int count = in.read(column, read, column.length - read);
+
+            if (count < 0) {
+                return false;
+            }
+
+            read += count;
+        }
+
+        return true;
+    }
+
     /*
      * The column: An array of 9 bytes which represent all y values for a given (x,z) Chunklet-coordinate
      *
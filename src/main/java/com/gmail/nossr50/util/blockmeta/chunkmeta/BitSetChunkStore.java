@@ -0,0 +1,478 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.UUID;
+
+import org.bukkit.World;
+
+import com.gmail.nossr50.util.blockmeta.ChunkletStore;
+
+/**
+ * A ChunkStore that keeps one bit per block, sized to the number of blocks set.
+ * <p>
+ * Most chunks only hold a handful of placed blocks, so a store starts out as a
+ * sorted array of block positions. Once it holds more than SPARSE_LIMIT blocks
+ * it is promoted to bitsets, one per 16 block high section of the chunk, and
+ * sections without any block set are not allocated. A store that empties out
+ * again goes back to the sorted array.
+ * <p>
+ * Positions are ordered by y, then z, then x, so every section is a contiguous
+ * run of 64 longs. The number of set bits is kept up to date, so
+ * {@link #isEmpty()} doesn't need to scan the store.
+ */
+public class BitSetChunkStore implements ChunkStore {
+    private static final long serialVersionUID = -5560436286149846224L;
+    private static final int CURRENT_VERSION = 8;
+    private static final int MAGIC_NUMBER = 0xEA5EDEBB;
+
+    // Stores with up to this many blocks are kept as a sorted array of positions (256 bytes at most)
+    private static final int SPARSE_LIMIT = 64;
+    private static final int INITIAL_CAPACITY = 4;
+
+    // A section is 16x16x16 bits
+    private static final int SECTION_WORDS = 64;
+
+    transient private boolean dirty = false;
+    transient private int count;
+    transient private int[] positions;
+    transient private long[][] sections;
+    transient private int[] sectionCounts;
+    private int cx;
+    private int cz;
+    private UUID worldUid;
+    private int worldHeight;
+
+    public BitSetChunkStore(World world, int cx, int cz) {
+        this(world.getUID(), world.getMaxHeight(), cx, cz);
+    }
+
+    BitSetChunkStore(UUID worldUid, int worldHeight, int cx, int cz) {
+        this.cx = cx;
+        this.cz = cz;
+        this.worldUid = worldUid;
+        this.worldHeight = worldHeight;
+        this.positions = new int[INITIAL_CAPACITY];
+    }
+
+    @Override
+    public boolean isDirty() {
+        return dirty;
+    }
+
+    @Override
+    public void setDirty(boolean dirty) {
+        this.dirty = dirty;
+    }
+
+    @Override
+    public int getChunkX() {
+        return cx;
+    }
+
+    @Override
+    public int getChunkZ() {
+        return cz;
+    }
+
+    @Override
+    public boolean isTrue(int x, int y, int z) {
+        if (y < 0 || y >= worldHeight) {
+            return false;
+        }
+
+        int index = getIndex(x, y, z);
+
+        if (sections == null) {
+            return Arrays.binarySearch(positions, 0, count, index) >= 0;
+        }
+
+        long[] section = sections[index >>> 12];
+        return section != null && (section[(index >>> 6) & (SECTION_WORDS - 1)] & (1L << index)) != 0;
+    }
+
+    @Override
+    public void setTrue(int x, int y, int z) {
+        if (y < 0 || y >= worldHeight) {
+            return;
+        }
+
+        set(getIndex(x, y, z));
+    }
+
+    @Override
+    public void setFalse(int x, int y, int z) {
+        if (y < 0 || y >= worldHeight) {
+            return;
+        }
+
+        clear(getIndex(x, y, z));
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    @Override
+    public void copyFrom(ChunkletStore otherStore) {
+        // A chunklet only covers the bottom 64 blocks of the chunk
+        int height = Math.min(64, worldHeight);
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < height; y++) {
+                    if (otherStore.isTrue(x, y, z)) {
+                        set(getIndex(x, y, z));
+                    }
+                    else {
+                        clear(getIndex(x, y, z));
+                    }
+                }
+            }
+        }
+
+        dirty = true;
+    }
+
+    /**
+     * @return the number of blocks set to true in this store
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * @return true if this store is using bitsets rather than a sorted array of positions
+     */
+    public boolean isPromoted() {
+        return sections != null;
+    }
+
+    UUID getWorldUid() {
+        return worldUid;
+    }
+
+    int getWorldHeight() {
+        return worldHeight;
+    }
+
+    /**
+     * @return the number of words in the bitset of the whole chunk
+     */
+    int getWordCount() {
+        return ((worldHeight + 15) >> 4) * SECTION_WORDS;
+    }
+
+    /**
+     * Get a word of the bitset of the whole chunk.
+     *
+     * @param wordIndex The position of the word
+     * @return the 64 bits starting at wordIndex * 64
+     */
+    long getWord(int wordIndex) {
+        if (sections != null) {
+            long[] section = sections[wordIndex / SECTION_WORDS];
+            return section == null ? 0 : section[wordIndex & (SECTION_WORDS - 1)];
+        }
+
+        long word = 0;
+        int position = Arrays.binarySearch(positions, 0, count, wordIndex << 6);
+
+        for (position = position < 0 ? -position - 1 : position; position < count && positions[position] >>> 6 == wordIndex; position++) {
+            word |= 1L << positions[position];
+        }
+
+        return word;
+    }
+
+    /**
+     * Set the bits of a word of the bitset of the whole chunk.
+     *
+     * @param wordIndex The position of the word
+     * @param bits The bits to set, bits already set are left alone
+     */
+    void setWord(int wordIndex, long bits) {
+        while (bits != 0) {
+            set((wordIndex << 6) | Long.numberOfTrailingZeros(bits));
+            bits &= bits - 1;
+        }
+    }
+
+    /**
+     * Set the blocks of a chunk saved in the old chunklet format.
+     * The columns are transposed into whole words, so each word is set at once.
+     *
+     * @param columns The 64 block high columns of each chunklet, indexed by (chunklet * 256) + (x * 16) + z
+     */
+    void setColumns(long[] columns) {
+        long[] words = new long[getWordCount()];
+
+        for (int i = 0; i < columns.length; i++) {
+            long column = columns[i];
+            int yStart = (i >> 8) << 6;
+            int x = (i >> 4) & 0xF;
+            int z = i & 0xF;
+            long bit = 1L << (((z & 3) << 4) | x);
+
+            while (column != 0) {
+                int y = yStart + Long.numberOfTrailingZeros(column);
+
+                if (y < worldHeight) {
+                    words[(y << 2) | (z >> 2)] |= bit;
+                }
+
+                column &= column - 1;
+            }
+        }
+
+        for (int i = 0; i < words.length; i++) {
+            if (words[i] != 0) {
+                setWord(i, words[i]);
+            }
+        }
+    }
+
+    /**
+     * Convert a store read in the format used before version 8.
+     * The new store is marked dirty, so it is written back in the current format.
+     *
+     * @param legacyStore The store to convert
+     * @return the converted store
+     */
+    static BitSetChunkStore upgrade(PrimitiveChunkStore legacyStore) {
+        BitSetChunkStore chunkStore = new BitSetChunkStore(legacyStore.getWorldUid(), legacyStore.getWorldHeight(), legacyStore.getChunkX(), legacyStore.getChunkZ());
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                boolean[] column = legacyStore.store[x][z];
+
+                for (int y = 0; y < column.length; y++) {
+                    if (column[y]) {
+                        chunkStore.setTrue(x, y, z);
+                    }
+                }
+            }
+        }
+
+        chunkStore.dirty = true;
+        return chunkStore;
+    }
+
+    private void set(int index) {
+        if (sections == null) {
+            int position = Arrays.binarySearch(positions, 0, count, index);
+
+            if (position >= 0) {
+                return;
+            }
+
+            if (count < SPARSE_LIMIT) {
+                position = -position - 1;
+
+                if (count == positions.length) {
+                    positions = Arrays.copyOf(positions, Math.min(positions.length * 2, SPARSE_LIMIT));
+                }
+
+                System.arraycopy(positions, position, positions, position + 1, count - position);
+                positions[position] = index;
+                count++;
+                dirty = true;
+                return;
+            }
+
+            promote();
+        }
+
+        int sectionIndex = index >>> 12;
+        long[] section = sections[sectionIndex];
+        long bit = 1L << index;
+
+        if (section == null) {
+            section = new long[SECTION_WORDS];
+            sections[sectionIndex] = section;
+        }
+        else if ((section[(index >>> 6) & (SECTION_WORDS - 1)] & bit) != 0) {
+            return;
+        }
+
+        section[(index >>> 6) & (SECTION_WORDS - 1)] |= bit;
+        sectionCounts[sectionIndex]++;
+        count++;
+        dirty = true;
+    }
+
+    private void clear(int index) {
+        if (sections == null) {
+            int position = Arrays.binarySearch(positions, 0, count, index);
+
+            if (position < 0) {
+                return;
+            }
+
+            System.arraycopy(positions, position + 1, positions, position, count - position - 1);
+            count--;
+            dirty = true;
+            return;
+        }
+
+        int sectionIndex = index >>> 12;
+        long[] section = sections[sectionIndex];
+        long bit = 1L << index;
+
+        if (section == null || (section[(index >>> 6) & (SECTION_WORDS - 1)] & bit) == 0) {
+            return;
+        }
+
+        section[(index >>> 6) & (SECTION_WORDS - 1)] &= ~bit;
+        count--;
+        dirty = true;
+
+        if (--sectionCounts[sectionIndex] == 0) {
+            sections[sectionIndex] = null;
+        }
+
+        // Leave some room before promoting again, so a store near the limit doesn't keep switching
+        if (count <= SPARSE_LIMIT / 2) {
+            demote();
+        }
+    }
+
+    /**
+     * Move the positions into section bitsets.
+     */
+    private void promote() {
+        int sectionCount = (worldHeight + 15) >> 4;
+
+        sections = new long[sectionCount][];
+        sectionCounts = new int[sectionCount];
+
+        for (int i = 0; i < count; i++) {
+            int index = positions[i];
+            int sectionIndex = index >>> 12;
+
+            if (sections[sectionIndex] == null) {
+                sections[sectionIndex] = new long[SECTION_WORDS];
+            }
+
+            sections[sectionIndex][(index >>> 6) & (SECTION_WORDS - 1)] |= 1L << index;
+            sectionCounts[sectionIndex]++;
+        }
+
+        positions = null;
+    }
+
+    /**
+     * Move the bits back into a sorted array of positions.
+     */
+    private void demote() {
+        int[] sparsePositions = new int[SPARSE_LIMIT];
+        int size = 0;
+
+        for (int sectionIndex = 0; sectionIndex < sections.length; sectionIndex++) {
+            long[] section = sections[sectionIndex];
+
+            if (section == null) {
+                continue;
+            }
+
+            for (int word = 0; word < SECTION_WORDS; word++) {
+                long bits = section[word];
+
+                while (bits != 0) {
+                    sparsePositions[size++] = (sectionIndex << 12) | (word << 6) | Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+
+        positions = sparsePositions;
+        sections = null;
+        sectionCounts = null;
+    }
+
+    /**
+     * Only the words holding a set bit are written, each prefixed by its position.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(CURRENT_VERSION);
+
+        out.writeLong(worldUid.getLeastSignificantBits());
+        out.writeLong(worldUid.getMostSignificantBits());
+        out.writeInt(cx);
+        out.writeInt(cz);
+        out.writeInt(worldHeight);
+
+        int wordCount = getWordCount();
+        int words = 0;
+
+        for (int i = 0; i < wordCount; i++) {
+            if (getWord(i) != 0) {
+                words++;
+            }
+        }
+
+        out.writeInt(words);
+
+        for (int i = 0; i < wordCount; i++) {
+            long word = getWord(i);
+
+            if (word != 0) {
+                out.writeShort(i);
+                out.writeLong(word);
+            }
+        }
+
+        dirty = false;
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        int magic = in.readInt();
+        int fileVersionNumber = in.readInt();
+
+        if (magic != MAGIC_NUMBER || fileVersionNumber < 8) {
+            throw new InvalidObjectException("Unknown chunk store format " + fileVersionNumber);
+        }
+
+        long lsb = in.readLong();
+        long msb = in.readLong();
+        worldUid = new UUID(msb, lsb);
+        cx = in.readInt();
+        cz = in.readInt();
+        worldHeight = in.readInt();
+
+        if (worldHeight <= 0 || worldHeight > ChunkStoreCodec.MAX_WORLD_HEIGHT) {
+            throw new InvalidObjectException("Invalid world height " + worldHeight);
+        }
+
+        // Constructor is not invoked, need to set these fields
+        positions = new int[INITIAL_CAPACITY];
+
+        int wordCount = getWordCount();
+        int words = in.readInt();
+
+        if (words < 0 || words > wordCount) {
+            throw new InvalidObjectException("Invalid word count " + words);
+        }
+
+        for (int i = 0; i < words; i++) {
+            int wordIndex = in.readUnsignedShort();
+
+            if (wordIndex >= wordCount) {
+                throw new InvalidObjectException("Word position out of range: " + wordIndex);
+            }
+
+            setWord(wordIndex, in.readLong());
+        }
+
+        dirty = false;
+    }
+
+    private static int getIndex(int x, int y, int z) {
+        return (y << 8) | (z << 4) | x;
+    }
+}
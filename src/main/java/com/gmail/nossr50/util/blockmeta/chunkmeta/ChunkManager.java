@@ -1,9 +1,12 @@
 package com.gmail.nossr50.util.blockmeta.chunkmeta;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.entity.Entity;
 
@@ -189,6 +192,30 @@ public interface ChunkManager {
      */
     public void setFalse(BlockState blockState);
 
+    /**
+     * Check a list of BlockState locations at once, looking each chunk up only once
+     *
+     * @param blockStates BlockState locations to check
+     * @return for each BlockState of the list, true if its location is set to true, false if otherwise
+     */
+    public boolean[] isTrueBatch(List<BlockState> blockStates);
+
+    /**
+     * Set a collection of BlockState locations to false at once, looking each chunk up only once
+     *
+     * @param blockStates BlockState locations to set
+     */
+    public void setFalseAll(Collection<BlockState> blockStates);
+
+    /**
+     * Move the values of a collection of blocks one block towards a direction, as a piston moves the blocks
+     * Every block location set to true is set to false, then the location next to it in the direction is set to true
+     *
+     * @param blocks Block locations to move
+     * @param direction Direction to move them in
+     */
+    public void shift(Collection<Block> blocks, BlockFace direction);
+
     /**
      * Delete any ChunkletStores that are empty
      */
@@ -0,0 +1,302 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.util.UUID;
+
+/**
+ * Reads and writes chunk stores in a compact binary format.
+ * <p>
+ * A store starts with a magic number, the format version, the world UID, the
+ * chunk coordinates and the world height. The blocks set follow in one of two
+ * encodings, whichever is smaller: the gaps between consecutive positions for
+ * chunks with few blocks set, or the non-zero words of the bitset of the chunk,
+ * each prefixed by the number of empty words before it. Numbers that are
+ * usually small are written as variable length integers.
+ * <p>
+ * Stores saved before version 9 used Java serialization. These are recognized
+ * by the stream header of Java serialization and still read through it.
+ */
+final class ChunkStoreCodec {
+    private static final int MAGIC_NUMBER = 0xEA5EDEBB;
+    private static final int CURRENT_VERSION = 9;
+    private static final short SERIALIZATION_MAGIC = (short) 0xACED;
+
+    private static final int ENCODING_POSITIONS = 0;
+    private static final int ENCODING_WORDS = 1;
+
+    static final int MAX_WORLD_HEIGHT = 4096;
+
+    private ChunkStoreCodec() {}
+
+    /**
+     * Write a chunk store, marking it as saved.
+     *
+     * @param chunkStore The store to write
+     * @param out The stream to write to
+     * @throws IOException if the stream couldn't be written to
+     */
+    static void write(ChunkStore chunkStore, DataOutputStream out) throws IOException {
+        BitSetChunkStore bitSetStore;
+
+        if (chunkStore instanceof BitSetChunkStore) {
+            bitSetStore = (BitSetChunkStore) chunkStore;
+        }
+        else if (chunkStore instanceof PrimitiveChunkStore) {
+            bitSetStore = BitSetChunkStore.upgrade((PrimitiveChunkStore) chunkStore);
+        }
+        else {
+            throw new IOException("Unable to write chunk stores of type " + chunkStore.getClass().getName());
+        }
+
+        UUID worldUid = bitSetStore.getWorldUid();
+        int wordCount = bitSetStore.getWordCount();
+
+        out.writeInt(MAGIC_NUMBER);
+        out.writeInt(CURRENT_VERSION);
+        out.writeLong(worldUid.getMostSignificantBits());
+        out.writeLong(worldUid.getLeastSignificantBits());
+        out.writeInt(bitSetStore.getChunkX());
+        out.writeInt(bitSetStore.getChunkZ());
+        out.writeInt(bitSetStore.getWorldHeight());
+
+        // Work out which encoding is smaller
+        int positionsSize = 0;
+        int wordsSize = 0;
+        int nextPosition = 0;
+        int nextWord = 0;
+
+        for (int i = 0; i < wordCount; i++) {
+            long bits = bitSetStore.getWord(i);
+
+            if (bits == 0) {
+                continue;
+            }
+
+            wordsSize += getVarIntSize(i - nextWord) + 8;
+            nextWord = i + 1;
+
+            while (bits != 0) {
+                int position = (i << 6) | Long.numberOfTrailingZeros(bits);
+
+                positionsSize += getVarIntSize(position - nextPosition);
+                nextPosition = position + 1;
+                bits &= bits - 1;
+            }
+        }
+
+        if (positionsSize <= wordsSize) {
+            out.writeByte(ENCODING_POSITIONS);
+            writeVarInt(out, bitSetStore.getCount());
+            nextPosition = 0;
+
+            for (int i = 0; i < wordCount; i++) {
+                long bits = bitSetStore.getWord(i);
+
+                while (bits != 0) {
+                    int position = (i << 6) | Long.numberOfTrailingZeros(bits);
+
+                    writeVarInt(out, position - nextPosition);
+                    nextPosition = position + 1;
+                    bits &= bits - 1;
+                }
+            }
+        }
+        else {
+            int words = 0;
+
+            for (int i = 0; i < wordCount; i++) {
+                if (bitSetStore.getWord(i) != 0) {
+                    words++;
+                }
+            }
+
+            out.writeByte(ENCODING_WORDS);
+            writeVarInt(out, words);
+            nextWord = 0;
+
+            for (int i = 0; i < wordCount; i++) {
+                long bits = bitSetStore.getWord(i);
+
+                if (bits == 0) {
+                    continue;
+                }
+
+                writeVarInt(out, i - nextWord);
+                out.writeLong(bits);
+                nextWord = i + 1;
+            }
+        }
+
+        chunkStore.setDirty(false);
+    }
+
+    /**
+     * Read a chunk store, in the current format or a legacy one.
+     *
+     * @param in The stream to read from
+     * @return the store read
+     * @throws IOException if the stream couldn't be read, or doesn't hold a valid chunk store
+     */
+    static ChunkStore read(InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in);
+        DataInputStream data = new DataInputStream(buffered);
+
+        buffered.mark(2);
+
+        if (data.readShort() == SERIALIZATION_MAGIC) {
+            buffered.reset();
+            return readSerialized(buffered);
+        }
+
+        buffered.reset();
+
+        int magic = data.readInt();
+        int version = data.readInt();
+
+        if (magic != MAGIC_NUMBER) {
+            throw new IOException("Not a chunk store");
+        }
+
+        if (version > CURRENT_VERSION) {
+            throw new IOException("Chunk store format " + version + " is newer than this version of mcMMO");
+        }
+
+        long msb = data.readLong();
+        long lsb = data.readLong();
+        int cx = data.readInt();
+        int cz = data.readInt();
+        int worldHeight = data.readInt();
+
+        if (worldHeight <= 0 || worldHeight > MAX_WORLD_HEIGHT) {
+            throw new IOException("Invalid world height " + worldHeight);
+        }
+
+        BitSetChunkStore chunkStore = new BitSetChunkStore(new UUID(msb, lsb), worldHeight, cx, cz);
+        int positionCount = worldHeight * 256;
+        int wordCount = chunkStore.getWordCount();
+        int encoding = data.readUnsignedByte();
+
+        switch (encoding) {
+            case ENCODING_POSITIONS:
+                int count = readVarInt(data);
+                int position = -1;
+
+                if (count > positionCount) {
+                    throw new IOException("Invalid block count " + count);
+                }
+
+                for (int i = 0; i < count; i++) {
+                    position += readVarInt(data) + 1;
+
+                    if (position < 0 || position >= positionCount) {
+                        throw new IOException("Block position out of range: " + position);
+                    }
+
+                    chunkStore.setWord(position >>> 6, 1L << position);
+                }
+
+                break;
+
+            case ENCODING_WORDS:
+                int words = readVarInt(data);
+                int wordIndex = -1;
+
+                if (words > wordCount) {
+                    throw new IOException("Invalid word count " + words);
+                }
+
+                for (int i = 0; i < words; i++) {
+                    wordIndex += readVarInt(data) + 1;
+
+                    if (wordIndex < 0 || wordIndex >= wordCount) {
+                        throw new IOException("Word position out of range: " + wordIndex);
+                    }
+
+                    chunkStore.setWord(wordIndex, data.readLong());
+                }
+
+                break;
+
+            default:
+                throw new IOException("Unknown chunk store encoding " + encoding);
+        }
+
+        chunkStore.setDirty(false);
+        return chunkStore;
+    }
+
+    /**
+     * Read a chunk store saved with Java serialization, before version 9.
+     * The store is marked dirty, so it is saved in the current format.
+     */
+    private static ChunkStore readSerialized(InputStream in) throws IOException {
+        ObjectInputStream objectStream = new ObjectInputStream(in);
+        Object o;
+
+        try {
+            o = objectStream.readObject();
+        }
+        catch (ClassNotFoundException e) {
+            throw new IOException("Unknown chunk store class " + e.getMessage());
+        }
+
+        ChunkStore chunkStore;
+
+        if (o instanceof PrimitiveChunkStore) {
+            chunkStore = BitSetChunkStore.upgrade((PrimitiveChunkStore) o);
+        }
+        else if (o instanceof ChunkStore) {
+            chunkStore = (ChunkStore) o;
+        }
+        else {
+            throw new IOException("Unknown chunk store class " + (o == null ? null : o.getClass().getName()));
+        }
+
+        chunkStore.setDirty(true);
+        return chunkStore;
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+
+        out.writeByte(value);
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    throw new IOException("Variable length integer out of range");
+                }
+
+                return value;
+            }
+        }
+
+        throw new IOException("Variable length integer too long");
+    }
+
+    private static int getVarIntSize(int value) {
+        int size = 1;
+
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+
+        return size;
+    }
+}
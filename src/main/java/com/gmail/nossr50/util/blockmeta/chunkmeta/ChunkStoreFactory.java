@@ -5,6 +5,6 @@ import org.bukkit.World;
 public class ChunkStoreFactory {
     protected static ChunkStore getChunkStore(World world, int x, int z) {
         // TODO: Add in loading from config what type of store we want.
-        return new PrimitiveChunkStore(world, x, z);
+        return new BitSetChunkStore(world, x, z);
     }
 }
@@ -0,0 +1,165 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The chunk stores of a single world, keyed by chunk coordinates.
+ * <p>
+ * Keys are the chunk coordinates packed into a long, and entries are kept in
+ * open-addressed arrays with linear probing, so looking up a chunk doesn't
+ * allocate anything. A chunk can be mapped to null, to remember that it has
+ * no data without reading it again.
+ */
+final class ChunkStoreMap {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private ChunkStore[] values = new ChunkStore[INITIAL_CAPACITY];
+    private boolean[] used = new boolean[INITIAL_CAPACITY];
+    private int size;
+
+    static long toKey(int cx, int cz) {
+        return (((long) cx) << 32) | (cz & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param key The packed chunk coordinates
+     * @return the store of the chunk, or null if it has none or isn't in the map
+     */
+    ChunkStore get(long key) {
+        int slot = find(key);
+        return slot < 0 ? null : values[slot];
+    }
+
+    boolean containsKey(long key) {
+        return find(key) >= 0;
+    }
+
+    void put(long key, ChunkStore value) {
+        int slot = find(key);
+
+        if (slot >= 0) {
+            values[slot] = value;
+            return;
+        }
+
+        if ((size + 1) * 4 > keys.length * 3) {
+            resize(keys.length * 2);
+        }
+
+        slot = hash(key) & (keys.length - 1);
+
+        while (used[slot]) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        used[slot] = true;
+        size++;
+    }
+
+    /**
+     * @param key The packed chunk coordinates
+     * @return the store that was removed, or null
+     */
+    ChunkStore remove(long key) {
+        int slot = find(key);
+
+        if (slot < 0) {
+            return null;
+        }
+
+        ChunkStore value = values[slot];
+        int mask = keys.length - 1;
+
+        // Shift the following entries of the cluster back, so no probe sequence is broken
+        int hole = slot;
+        int next = (slot + 1) & mask;
+
+        while (used[next]) {
+            int home = hash(keys[next]) & mask;
+
+            // Only move entries whose home slot isn't cyclically between the hole and their position
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                values[hole] = values[next];
+                hole = next;
+            }
+
+            next = (next + 1) & mask;
+        }
+
+        used[hole] = false;
+        values[hole] = null;
+        size--;
+        return value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the stores in the map, without the chunks mapped to null
+     */
+    List<ChunkStore> values() {
+        List<ChunkStore> stores = new ArrayList<ChunkStore>(size);
+
+        for (int i = 0; i < keys.length; i++) {
+            if (used[i] && values[i] != null) {
+                stores.add(values[i]);
+            }
+        }
+
+        return stores;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        return -1;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        ChunkStore[] oldValues = values;
+        boolean[] oldUsed = used;
+
+        keys = new long[capacity];
+        values = new ChunkStore[capacity];
+        used = new boolean[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (!oldUsed[i]) {
+                continue;
+            }
+
+            int slot = hash(oldKeys[i]) & (capacity - 1);
+
+            while (used[slot]) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            used[slot] = true;
+        }
+    }
+
+    private static int hash(long key) {
+        // Spread both coordinates over the low bits, neighbouring chunks would cluster otherwise
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
+    }
+}
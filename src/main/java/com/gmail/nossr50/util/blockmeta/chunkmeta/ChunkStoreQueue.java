@@ -0,0 +1,366 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.bukkit.World;
+
+import com.gmail.nossr50.mcMMO;
+
+/**
+ * Reads and saves chunk stores on a dedicated thread, as the server loads and unloads chunks.
+ * <p>
+ * The store of a chunk is read as soon as the chunk loads, so block checks
+ * rarely have to wait for the disk. At most MAX_IN_FLIGHT reads are queued at
+ * once, chunks loading past that are read when first used instead. A block
+ * check for a chunk being read waits for that chunk only, and reads it itself
+ * if the read hasn't started yet.
+ * <p>
+ * Unloaded chunks stay in memory until they are saved, in batches sorted by
+ * region so each region file is written in one go.
+ * <p>
+ * Every minute, the region files that haven't been used for a while are closed.
+ */
+class ChunkStoreQueue {
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final int MAX_PENDING_UNLOADS = 1024;
+    private static final int BATCH_SIZE = 64;
+    private static final long SHUTDOWN_TIMEOUT = 30; // Seconds
+    private static final long IDLE_CHECK_INTERVAL = 60; // Seconds
+
+    private final HashChunkManager manager;
+    private final ScheduledExecutorService executor;
+
+    private final Map<ChunkKey, PendingLoad> loading = new HashMap<ChunkKey, PendingLoad>();
+    private final Set<ChunkKey> unloading = new LinkedHashSet<ChunkKey>();
+    private final Object flushLock = new Object();
+    private boolean flushScheduled;
+
+    ChunkStoreQueue(HashChunkManager manager) {
+        this.manager = manager;
+
+        executor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mcMMO Chunk Store I/O");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        executor.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                // An exception would cancel the check for good
+                try {
+                    manager.closeIdleRegionFiles();
+                }
+                catch (RuntimeException e) {
+                    mcMMO.p.getLogger().warning("Unable to close idle region files: " + e.getMessage());
+                }
+            }
+        }, IDLE_CHECK_INTERVAL, IDLE_CHECK_INTERVAL, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Queue a chunk store to be read.
+     */
+    void prefetch(World world, int cx, int cz) {
+        ChunkKey key = new ChunkKey(world, cx, cz);
+        PendingLoad load;
+
+        synchronized (this) {
+            // The chunk loaded again before it was saved, so its store is still in memory
+            if (unloading.remove(key)) {
+                return;
+            }
+
+            if (loading.size() >= MAX_IN_FLIGHT || loading.containsKey(key)) {
+                return;
+            }
+
+            load = new PendingLoad();
+            loading.put(key, load);
+        }
+
+        try {
+            executor.execute(new PrefetchTask(key, load));
+        }
+        catch (RejectedExecutionException e) {
+            // We're shutting down, the chunk will be read when it is used
+            synchronized (this) {
+                loading.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Wait for a chunk store being read, if any.
+     *
+     * @return true if the chunk store was being read, and now is in memory
+     */
+    boolean awaitPrefetch(World world, int cx, int cz) {
+        PendingLoad load;
+
+        synchronized (this) {
+            if (loading.isEmpty()) {
+                return false;
+            }
+
+            load = loading.get(new ChunkKey(world, cx, cz));
+
+            // Reading it on this thread is faster than waiting for the reads queued before it
+            if (load == null || !load.started) {
+                return false;
+            }
+        }
+
+        try {
+            load.done.await();
+            return true;
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Queue a chunk store to be saved and removed from memory.
+     */
+    void unload(World world, int cx, int cz) {
+        boolean schedule;
+
+        synchronized (this) {
+            if (unloading.size() >= MAX_PENDING_UNLOADS) {
+                schedule = false;
+            }
+            else {
+                unloading.add(new ChunkKey(world, cx, cz));
+
+                if (flushScheduled) {
+                    return;
+                }
+
+                flushScheduled = true;
+                schedule = true;
+            }
+        }
+
+        if (!schedule) {
+            // The saver is falling behind, don't let the queue grow any further
+            manager.unloadChunk(cx, cz, world);
+            return;
+        }
+
+        try {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    flush();
+                }
+            });
+        }
+        catch (RejectedExecutionException e) {
+            // We're shutting down, save on this thread instead
+            flush();
+        }
+    }
+
+    /**
+     * Forget about the chunks of an unloading world.
+     */
+    synchronized void cancel(World world) {
+        UUID uid = world.getUID();
+
+        for (Iterator<ChunkKey> iterator = loading.keySet().iterator(); iterator.hasNext();) {
+            if (iterator.next().worldUid.equals(uid)) {
+                iterator.remove();
+            }
+        }
+
+        for (Iterator<ChunkKey> iterator = unloading.iterator(); iterator.hasNext();) {
+            if (iterator.next().worldUid.equals(uid)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Save and unload every queued chunk, blocking until they are all written.
+     */
+    void flush() {
+        synchronized (flushLock) {
+            try {
+                List<ChunkKey> batch;
+
+                while (!(batch = nextBatch()).isEmpty()) {
+                    for (ChunkKey key : batch) {
+                        // One chunk failing to save mustn't hold back the others, it stays in memory until saved
+                        try {
+                            manager.unloadChunk(key.cx, key.cz, key.world);
+                        }
+                        catch (RuntimeException e) {
+                            mcMMO.p.getLogger().warning("Unable to save placed blocks of chunk " + key.cx + ", " + key.cz + " in " + key.world.getName() + ": " + e.getMessage());
+                        }
+                    }
+                }
+            }
+            finally {
+                // Otherwise no flush would ever be scheduled again
+                synchronized (this) {
+                    flushScheduled = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the I/O thread and save any chunks still queued.
+     */
+    void shutdown() {
+        executor.shutdown();
+
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                mcMMO.p.getLogger().warning("Timed out waiting for chunk stores to be saved!");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        flush();
+    }
+
+    private List<ChunkKey> nextBatch() {
+        List<ChunkKey> batch;
+
+        synchronized (this) {
+            batch = new ArrayList<ChunkKey>(Math.min(unloading.size(), BATCH_SIZE));
+            Iterator<ChunkKey> iterator = unloading.iterator();
+
+            while (iterator.hasNext() && batch.size() < BATCH_SIZE) {
+                batch.add(iterator.next());
+                iterator.remove();
+            }
+
+            if (batch.isEmpty()) {
+                flushScheduled = false;
+            }
+        }
+
+        Collections.sort(batch, new Comparator<ChunkKey>() {
+            @Override
+            public int compare(ChunkKey o1, ChunkKey o2) {
+                return o1.compareRegion(o2);
+            }
+        });
+
+        return batch;
+    }
+
+    private class PrefetchTask implements Runnable {
+        private final ChunkKey key;
+        private final PendingLoad load;
+
+        private PrefetchTask(ChunkKey key, PendingLoad load) {
+            this.key = key;
+            this.load = load;
+        }
+
+        @Override
+        public void run() {
+            synchronized (ChunkStoreQueue.this) {
+                // Cancelled along with its world
+                if (loading.get(key) != load) {
+                    return;
+                }
+
+                load.started = true;
+            }
+
+            try {
+                manager.loadChunk(key.cx, key.cz, key.world, null);
+            }
+            finally {
+                synchronized (ChunkStoreQueue.this) {
+                    if (loading.get(key) == load) {
+                        loading.remove(key);
+                    }
+                }
+
+                load.done.countDown();
+            }
+        }
+    }
+
+    private static class PendingLoad {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private boolean started;
+    }
+
+    /**
+     * Chunks are compared by the UID of their world, the world is only kept to load or unload them.
+     */
+    private static class ChunkKey {
+        private final World world;
+        private final UUID worldUid;
+        private final int cx;
+        private final int cz;
+
+        private ChunkKey(World world, int cx, int cz) {
+            this.world = world;
+            this.worldUid = world.getUID();
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ChunkKey)) {
+                return false;
+            }
+
+            ChunkKey other = (ChunkKey) obj;
+            return cx == other.cx && cz == other.cz && worldUid.equals(other.worldUid);
+        }
+
+        @Override
+        public int hashCode() {
+            return (worldUid.hashCode() * 31 + cx) * 31 + cz;
+        }
+
+        private int compareRegion(ChunkKey other) {
+            int result = worldUid.compareTo(other.worldUid);
+
+            if (result == 0) {
+                result = compare(cx >> 5, other.cx >> 5);
+            }
+
+            if (result == 0) {
+                result = compare(cz >> 5, other.cz >> 5);
+            }
+
+            return result;
+        }
+
+        private static int compare(int a, int b) {
+            return a < b ? -1 : (a == b ? 0 : 1);
+        }
+    }
+}
@@ -1,286 +1,370 @@
 package com.gmail.nossr50.util.blockmeta.chunkmeta;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.entity.Entity;
 
 import com.gmail.nossr50.mcMMO;
-import com.gmail.nossr50.util.blockmeta.conversion.BlockStoreConversionZDirectory;
-
+import com.gmail.nossr50.util.blockmeta.conversion.BlockStoreConversionMain;
+import com.gmail.nossr50.util.blockmeta.conversion.ChunkletReader;
+
+/**
+ * Keeps track of placed blocks, one region file of chunk stores at a time.
+ * <p>
+ * Regions are spread over a fixed number of stripes, each with two locks. The
+ * stripe itself guards the chunk stores in memory and is only ever held for a
+ * lookup or an update, never while reading or writing a file. The I/O lock of
+ * the stripe guards its region files, and is taken before the stripe when
+ * both are needed. Checking a block of a chunk that is already in memory
+ * therefore never waits for a chunk being read or saved, and reading a chunk
+ * only waits for the regions sharing its stripe.
+ * <p>
+ * Chunk stores are read as soon as their chunk loads, and saved after it
+ * unloads, by a {@link ChunkStoreQueue}.
+ * <p>
+ * Each stripe keeps at most a few region files open, closing the one used the
+ * longest time ago to open another, and region files unused for five minutes
+ * are closed by the queue. A closed region file is opened again when next used.
+ * <p>
+ * Blocks checked or changed in batches are grouped by chunk, and each chunk is
+ * looked up once for all its blocks.
+ * <p>
+ * Safe to call from any thread: isTrue, setTrue, setFalse, the batch methods, isChunkLoaded,
+ * closeAll, convertChunk, and the methods loading, saving, unloading, reading or writing a
+ * single chunk. A chunk is saved and then taken out of memory under its I/O
+ * lock, so a block set while its chunk unloads is read back with the chunk
+ * rather than lost, and a chunk that fails to save stays in memory.
+ * <p>
+ * Main thread only: the world methods, saveAll and unloadAll, as they go
+ * through the worlds of the server.
+ */
 public class HashChunkManager implements ChunkManager {
-    private HashMap<UUID, HashMap<Long, McMMOSimpleRegionFile>> regionFiles = new HashMap<UUID, HashMap<Long, McMMOSimpleRegionFile>>();
-    public HashMap<String, ChunkStore> store = new HashMap<String, ChunkStore>();
-    public ArrayList<BlockStoreConversionZDirectory> converters = new ArrayList<BlockStoreConversionZDirectory>();
-    private HashMap<UUID, Boolean> oldData = new HashMap<UUID, Boolean>();
+    private static final int STRIPE_COUNT = 64;
+    private static final int MAX_OPEN_REGION_FILES = 512;
+    private static final int MAX_OPEN_REGION_FILES_PER_STRIPE = MAX_OPEN_REGION_FILES / STRIPE_COUNT;
+
+    private final Stripe[] stripes = new Stripe[STRIPE_COUNT];
+    private final ChunkStoreQueue queue = new ChunkStoreQueue(this);
+    private final List<BlockStoreConversionMain> converters = new ArrayList<BlockStoreConversionMain>();
+    private ConcurrentHashMap<UUID, Boolean> oldData = new ConcurrentHashMap<UUID, Boolean>();
+    private final AtomicInteger openRegionFiles = new AtomicInteger();
+    private final AtomicLong regionFileEvictions = new AtomicLong();
+
+    public HashChunkManager() {
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
 
     @Override
-    public synchronized void closeAll() {
-        for (UUID uid : regionFiles.keySet()) {
-            HashMap<Long, McMMOSimpleRegionFile> worldRegions = regionFiles.get(uid);
-            for (Iterator<McMMOSimpleRegionFile> worldRegionIterator = worldRegions.values().iterator(); worldRegionIterator.hasNext();) {
-                McMMOSimpleRegionFile rf = worldRegionIterator.next();
-                if (rf != null) {
-                    rf.close();
-                    worldRegionIterator.remove();
+    public void closeAll() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe.ioLock) {
+                for (HashMap<Long, McMMOSimpleRegionFile> worldRegions : stripe.regionFiles.values()) {
+                    for (Iterator<McMMOSimpleRegionFile> worldRegionIterator = worldRegions.values().iterator(); worldRegionIterator.hasNext();) {
+                        McMMOSimpleRegionFile rf = worldRegionIterator.next();
+                        if (rf != null) {
+                            worldRegionIterator.remove();
+                            closeRegionFile(stripe, rf);
+                        }
+                    }
                 }
+                stripe.regionFiles.clear();
             }
         }
-        regionFiles.clear();
     }
 
     @Override
-    public synchronized ChunkStore readChunkStore(World world, int x, int z) throws IOException {
-        McMMOSimpleRegionFile rf = getSimpleRegionFile(world, x, z);
-        InputStream in = rf.getInputStream(x, z);
+    public ChunkStore readChunkStore(World world, int x, int z) throws IOException {
+        Stripe stripe = getStripe(world, x, z);
+        InputStream in;
+
+        synchronized (stripe.ioLock) {
+            McMMOSimpleRegionFile rf = getSimpleRegionFile(stripe, world, x, z);
+            in = rf.getInputStream(x, z);
+        }
+
         if (in == null) {
             return null;
         }
-        ObjectInputStream objectStream = new ObjectInputStream(in);
-        try {
-            Object o = objectStream.readObject();
-            if (o instanceof ChunkStore) {
-                return (ChunkStore) o;
-            }
 
-            throw new RuntimeException("Wrong class type read for chunk meta data for " + x + ", " + z);
+        try {
+            return ChunkStoreCodec.read(in);
         }
         catch (IOException e) {
-            // Assume the format changed
-            return null;
-            //throw new RuntimeException("Unable to process chunk meta data for " + x + ", " + z, e);
-        }
-        catch (ClassNotFoundException e) {
-            // Assume the format changed
-            //System.out.println("[SpoutPlugin] is Unable to find serialized class for " + x + ", " + z + ", " + e.getMessage());
+            mcMMO.p.getLogger().warning("Unable to read placed blocks of chunk " + x + ", " + z + " in " + world.getName() + ": " + e.getMessage());
             return null;
-            //throw new RuntimeException("Unable to find serialized class for " + x + ", " + z, e);
         }
         finally {
-            objectStream.close();
+            in.close();
         }
     }
 
     @Override
-    public synchronized void writeChunkStore(World world, int x, int z, ChunkStore data) {
-        if (!data.isDirty()) {
-            return;
-        }
-        try {
-            McMMOSimpleRegionFile rf = getSimpleRegionFile(world, x, z);
-            ObjectOutputStream objectStream = new ObjectOutputStream(rf.getOutputStream(x, z));
-            objectStream.writeObject(data);
-            objectStream.flush();
-            objectStream.close();
-            data.setDirty(false);
-        }
-        catch (IOException e) {
-            throw new RuntimeException("Unable to write chunk meta data for " + x + ", " + z, e);
-        }
-    }
+    public void writeChunkStore(World world, int x, int z, ChunkStore data) {
+        Stripe stripe = getStripe(world, x, z);
 
-    @Override
-    public synchronized void closeChunkStore(World world, int x, int z) {
-        McMMOSimpleRegionFile rf = getSimpleRegionFile(world, x, z);
-        if (rf != null) {
-            rf.close();
-        }
-    }
+        // Held throughout, so two saves of the same chunk can't land in the wrong order
+        synchronized (stripe.ioLock) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
 
-    private synchronized McMMOSimpleRegionFile getSimpleRegionFile(World world, int x, int z) {
-        File directory = new File(world.getWorldFolder(), "mcmmo_regions");
+            try {
+                // Other threads may be changing the store, so it is serialized under the stripe lock
+                synchronized (stripe) {
+                    if (!data.isDirty()) {
+                        return;
+                    }
 
-        directory.mkdirs();
-
-        UUID key = world.getUID();
+                    ChunkStoreCodec.write(data, new DataOutputStream(bytes));
+                }
 
-        HashMap<Long, McMMOSimpleRegionFile> worldRegions = regionFiles.get(key);
+                DataOutputStream out = getSimpleRegionFile(stripe, world, x, z).getOutputStream(x, z);
+                bytes.writeTo(out);
+                out.close();
+            }
+            catch (IOException e) {
+                synchronized (stripe) {
+                    data.setDirty(true);
+                }
 
-        if (worldRegions == null) {
-            worldRegions = new HashMap<Long, McMMOSimpleRegionFile>();
-            regionFiles.put(key, worldRegions);
+                throw new RuntimeException("Unable to write chunk meta data for " + x + ", " + z, e);
+            }
         }
+    }
 
-        int rx = x >> 5;
-        int rz = z >> 5;
+    @Override
+    public void closeChunkStore(World world, int x, int z) {
+        Stripe stripe = getStripe(world, x, z);
 
-        long key2 = (((long) rx) << 32) | ((rz) & 0xFFFFFFFFL);
+        synchronized (stripe.ioLock) {
+            HashMap<Long, McMMOSimpleRegionFile> worldRegions = stripe.regionFiles.get(world.getUID());
 
-        McMMOSimpleRegionFile regionFile = worldRegions.get(key2);
+            if (worldRegions == null) {
+                return;
+            }
 
-        if (regionFile == null) {
-            File file = new File(directory, "mcmmo_" + rx + "_" + rz + "_.mcm");
-            regionFile = new McMMOSimpleRegionFile(file, rx, rz);
-            worldRegions.put(key2, regionFile);
+            McMMOSimpleRegionFile rf = worldRegions.remove(getRegionKey(x, z));
+            if (rf != null) {
+                closeRegionFile(stripe, rf);
+            }
         }
-
-        return regionFile;
     }
 
     @Override
-    public synchronized void loadChunklet(int cx, int cy, int cz, World world) {
+    public void loadChunklet(int cx, int cy, int cz, World world) {
         loadChunk(cx, cz, world, null);
     }
 
     @Override
-    public synchronized void unloadChunklet(int cx, int cy, int cz, World world) {
+    public void unloadChunklet(int cx, int cy, int cz, World world) {
         unloadChunk(cx, cz, world);
     }
 
     @Override
-    public synchronized void loadChunk(int cx, int cz, World world, Entity[] entities) {
-        if (world == null || store.containsKey(world.getName() + "," + cx + "," + cz)) {
+    public void loadChunk(int cx, int cz, World world, Entity[] entities) {
+        if (world == null) {
             return;
         }
 
-        UUID key = world.getUID();
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
 
-        if (!oldData.containsKey(key)) {
-            oldData.put(key, (new File(world.getWorldFolder(), "mcmmo_data")).exists());
-        }
-        else if (oldData.get(key)) {
-            if (convertChunk(new File(world.getWorldFolder(), "mcmmo_data"), cx, cz, world, true)) {
-                return;
+        synchronized (stripe.ioLock) {
+            synchronized (stripe) {
+                if (stripe.lookup(world, key)) {
+                    return;
+                }
             }
-        }
 
-        ChunkStore chunkStore = null;
+            UUID uid = world.getUID();
+            File dataDir = new File(world.getWorldFolder(), "mcmmo_data");
+            Boolean hasOldData = oldData.get(uid);
 
-        try {
-            chunkStore = readChunkStore(world, cx, cz);
+            if (hasOldData == null || hasOldData) {
+                hasOldData = dataDir.exists();
+                oldData.put(uid, hasOldData);
+            }
+
+            if (hasOldData) {
+                // Saved with the old data merged in, ahead of the converter
+                convertChunk(dataDir, cx, cz, world);
+            }
+
+            ChunkStore chunkStore = null;
+
+            try {
+                chunkStore = readChunkStore(world, cx, cz);
+            }
+            catch (Exception e) {}
+
+            // Chunks without data are remembered too, so they aren't read again until they unload
+            synchronized (stripe) {
+                stripe.put(world, key, chunkStore);
+            }
         }
-        catch (Exception e) {}
+    }
 
-        if (chunkStore == null) {
+    @Override
+    public void unloadChunk(int cx, int cz, World world) {
+        if (world == null) {
             return;
         }
 
-        store.put(world.getName() + "," + cx + "," + cz, chunkStore);
-    }
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
 
-    @Override
-    public synchronized void unloadChunk(int cx, int cz, World world) {
-        saveChunk(cx, cz, world);
+        // The chunk can't be read again before it is saved
+        synchronized (stripe.ioLock) {
+            while (true) {
+                ChunkStore out;
+
+                // Only taken out of memory once saved, so a failed write doesn't lose it
+                synchronized (stripe) {
+                    out = stripe.lookup(world, key) ? stripe.lastChunkStore : null;
 
-        if (store.containsKey(world.getName() + "," + cx + "," + cz)) {
-            store.remove(world.getName() + "," + cx + "," + cz);
+                    if (out == null || !out.isDirty()) {
+                        stripe.remove(world, key);
+                        return;
+                    }
+                }
 
-            //closeChunkStore(world, cx, cz);
+                // Blocks set while it was written make it dirty again, and it is written once more
+                writeChunkStore(world, cx, cz, out);
+            }
         }
     }
 
     @Override
-    public synchronized void saveChunk(int cx, int cz, World world) {
+    public void saveChunk(int cx, int cz, World world) {
         if (world == null) {
             return;
         }
 
-        String key = world.getName() + "," + cx + "," + cz;
-
-        if (store.containsKey(key)) {
-            ChunkStore out = store.get(world.getName() + "," + cx + "," + cz);
+        Stripe stripe = getStripe(world, cx, cz);
+        ChunkStore out = null;
 
-            if (!out.isDirty()) {
-                return;
+        synchronized (stripe.ioLock) {
+            synchronized (stripe) {
+                if (stripe.lookup(world, ChunkStoreMap.toKey(cx, cz))) {
+                    out = stripe.lastChunkStore;
+                }
             }
 
-            writeChunkStore(world, cx, cz, out);
+            if (out != null) {
+                writeChunkStore(world, cx, cz, out);
+            }
         }
     }
 
     @Override
-    public synchronized boolean isChunkLoaded(int cx, int cz, World world) {
+    public boolean isChunkLoaded(int cx, int cz, World world) {
         if (world == null) {
             return false;
         }
 
-        return store.containsKey(world.getName() + "," + cx + "," + cz);
+        Stripe stripe = getStripe(world, cx, cz);
+
+        synchronized (stripe) {
+            return stripe.lookup(world, ChunkStoreMap.toKey(cx, cz)) && stripe.lastChunkStore != null;
+        }
     }
 
     @Override
-    public synchronized void chunkLoaded(int cx, int cz, World world) {}
+    public void chunkLoaded(int cx, int cz, World world) {
+        if (world == null) {
+            return;
+        }
+
+        // Blocks are mapped to stores with x / 16, so on the negative side a chunk also covers the next store
+        int maxCx = cx < 0 ? cx + 1 : cx;
+        int maxCz = cz < 0 ? cz + 1 : cz;
+
+        for (int x = cx; x <= maxCx; x++) {
+            for (int z = cz; z <= maxCz; z++) {
+                queue.prefetch(world, x, z);
+            }
+        }
+    }
 
     @Override
-    public synchronized void chunkUnloaded(int cx, int cz, World world) {
+    public void chunkUnloaded(int cx, int cz, World world) {
         if (world == null) {
             return;
         }
 
-        unloadChunk(cx, cz, world);
+        queue.unload(world, cx, cz);
     }
 
     @Override
-    public synchronized void saveWorld(World world) {
+    public void saveWorld(World world) {
         if (world == null) {
             return;
         }
 
         closeAll();
-        String worldName = world.getName();
 
-        List<String> keys = new ArrayList<String>(store.keySet());
-        for (String key : keys) {
-            String[] info = key.split(",");
-            if (worldName.equals(info[0])) {
-                int cx = 0;
-                int cz = 0;
+        for (Stripe stripe : stripes) {
+            List<ChunkStore> chunkStores;
 
-                try {
-                    cx = Integer.parseInt(info[1]);
-                    cz = Integer.parseInt(info[2]);
-                }
-                catch (Exception e) {
-                    continue;
-                }
-                saveChunk(cx, cz, world);
+            synchronized (stripe) {
+                chunkStores = stripe.getWorldStores(world).values();
+            }
+
+            for (ChunkStore chunkStore : chunkStores) {
+                saveChunk(chunkStore.getChunkX(), chunkStore.getChunkZ(), world);
             }
         }
     }
 
     @Override
-    public synchronized void unloadWorld(World world) {
+    public void unloadWorld(World world) {
         if (world == null) {
             return;
         }
 
+        stopConverters(world);
+        queue.cancel(world);
         closeAll();
-        String worldName = world.getName();
 
-        List<String> keys = new ArrayList<String>(store.keySet());
-        for (String key : keys) {
-            String[] info = key.split(",");
-            if (worldName.equals(info[0])) {
-                int cx = 0;
-                int cz = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe.ioLock) {
+                List<ChunkStore> chunkStores;
 
-                try {
-                    cx = Integer.parseInt(info[1]);
-                    cz = Integer.parseInt(info[2]);
+                synchronized (stripe) {
+                    chunkStores = stripe.removeWorld(world);
                 }
-                catch (Exception e) {
-                    continue;
+
+                for (ChunkStore chunkStore : chunkStores) {
+                    writeChunkStore(world, chunkStore.getChunkX(), chunkStore.getChunkZ(), chunkStore);
                 }
-                unloadChunk(cx, cz, world);
             }
         }
     }
 
     @Override
-    public synchronized void loadWorld(World world) {}
+    public void loadWorld(World world) {}
 
     @Override
-    public synchronized void saveAll() {
+    public void saveAll() {
         closeAll();
 
         for (World world : mcMMO.p.getServer().getWorlds()) {
@@ -289,7 +373,7 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized void unloadAll() {
+    public void unloadAll() {
         closeAll();
 
         for (World world : mcMMO.p.getServer().getWorlds()) {
@@ -298,32 +382,33 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized boolean isTrue(int x, int y, int z, World world) {
+    public boolean isTrue(int x, int y, int z, World world) {
         if (world == null) {
             return false;
         }
 
         int cx = x / 16;
         int cz = z / 16;
-        String key = world.getName() + "," + cx + "," + cz;
-
-        if (!store.containsKey(key)) {
-            loadChunk(cx, cz, world, null);
-        }
 
-        if (!store.containsKey(key)) {
-            return false;
-        }
-
-        ChunkStore check = store.get(key);
         int ix = Math.abs(x) % 16;
         int iz = Math.abs(z) % 16;
 
-        return check.isTrue(ix, y, iz);
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
+
+        while (true) {
+            synchronized (stripe) {
+                if (stripe.lookup(world, key)) {
+                    return stripe.lastChunkStore != null && stripe.lastChunkStore.isTrue(ix, y, iz);
+                }
+            }
+
+            loadForLookup(cx, cz, world);
+        }
     }
 
     @Override
-    public synchronized boolean isTrue(Block block) {
+    public boolean isTrue(Block block) {
         if (block == null) {
             return false;
         }
@@ -332,7 +417,7 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized boolean isTrue(BlockState blockState) {
+    public boolean isTrue(BlockState blockState) {
         if (blockState == null) {
             return false;
         }
@@ -341,35 +426,16 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized void setTrue(int x, int y, int z, World world) {
+    public void setTrue(int x, int y, int z, World world) {
         if (world == null) {
             return;
         }
 
-        int cx = x / 16;
-        int cz = z / 16;
-
-        int ix = Math.abs(x) % 16;
-        int iz = Math.abs(z) % 16;
-
-        String key = world.getName() + "," + cx + "," + cz;
-
-        if (!store.containsKey(key)) {
-            loadChunk(cx, cz, world, null);
-        }
-
-        ChunkStore cStore = store.get(key);
-
-        if (cStore == null) {
-            cStore = ChunkStoreFactory.getChunkStore(world, cx, cz);
-            store.put(key, cStore);
-        }
-
-        cStore.setTrue(ix, y, iz);
+        setTrueInChunk(x / 16, z / 16, Math.abs(x) % 16, y, Math.abs(z) % 16, world);
     }
 
     @Override
-    public synchronized void setTrue(Block block) {
+    public void setTrue(Block block) {
         if (block == null) {
             return;
         }
@@ -387,7 +453,7 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized void setFalse(int x, int y, int z, World world) {
+    public void setFalse(int x, int y, int z, World world) {
         if (world == null) {
             return;
         }
@@ -398,23 +464,27 @@ public class HashChunkManager implements ChunkManager {
         int ix = Math.abs(x) % 16;
         int iz = Math.abs(z) % 16;
 
-        String key = world.getName() + "," + cx + "," + cz;
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
 
-        if (!store.containsKey(key)) {
-            loadChunk(cx, cz, world, null);
-        }
+        while (true) {
+            synchronized (stripe) {
+                if (stripe.lookup(world, key)) {
+                    // No need to make a store for something we will be setting to false
+                    if (stripe.lastChunkStore != null) {
+                        stripe.lastChunkStore.setFalse(ix, y, iz);
+                    }
 
-        ChunkStore cStore = store.get(key);
+                    return;
+                }
+            }
 
-        if (cStore == null) {
-            return; // No need to make a store for something we will be setting to false
+            loadForLookup(cx, cz, world);
         }
-
-        cStore.setFalse(ix, y, iz);
     }
 
     @Override
-    public synchronized void setFalse(Block block) {
+    public void setFalse(Block block) {
         if (block == null) {
             return;
         }
@@ -423,7 +493,7 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized void setFalse(BlockState blockState) {
+    public void setFalse(BlockState blockState) {
         if (blockState == null) {
             return;
         }
@@ -432,49 +502,598 @@ public class HashChunkManager implements ChunkManager {
     }
 
     @Override
-    public synchronized void cleanUp() {}
+    public boolean[] isTrueBatch(List<BlockState> blockStates) {
+        boolean[] result = new boolean[blockStates.size()];
+        List<ChunkBatch> batches = new ArrayList<ChunkBatch>();
+        int index = 0;
+
+        for (BlockState blockState : blockStates) {
+            if (blockState != null) {
+                addToBatch(batches, blockState.getWorld(), index, blockState.getX(), blockState.getY(), blockState.getZ());
+            }
+
+            index++;
+        }
+
+        for (ChunkBatch batch : batches) {
+            Stripe stripe = getStripe(batch.world, batch.cx, batch.cz);
+            long key = ChunkStoreMap.toKey(batch.cx, batch.cz);
+
+            while (true) {
+                synchronized (stripe) {
+                    if (stripe.lookup(batch.world, key)) {
+                        ChunkStore chunkStore = stripe.lastChunkStore;
+
+                        if (chunkStore != null) {
+                            for (int i = 0; i < batch.size; i++) {
+                                result[batch.indexes[i]] = chunkStore.isTrue(Math.abs(batch.xs[i]) % 16, batch.ys[i], Math.abs(batch.zs[i]) % 16);
+                            }
+                        }
+
+                        break;
+                    }
+                }
 
-    public synchronized void convertChunk(File dataDir, int cx, int cz, World world) {
-        convertChunk(dataDir, cx, cz, world, false);
+                loadForLookup(batch.cx, batch.cz, batch.world);
+            }
+        }
+
+        return result;
     }
 
-    public synchronized boolean convertChunk(File dataDir, int cx, int cz, World world, boolean actually) {
-        if (!actually || !dataDir.exists()) {
-            return false;
+    @Override
+    public void setFalseAll(Collection<BlockState> blockStates) {
+        List<ChunkBatch> batches = new ArrayList<ChunkBatch>();
+
+        for (BlockState blockState : blockStates) {
+            if (blockState != null) {
+                addToBatch(batches, blockState.getWorld(), 0, blockState.getX(), blockState.getY(), blockState.getZ());
+            }
         }
 
-        File cxDir = new File(dataDir, "" + cx);
-        if (!cxDir.exists()) {
-            return false;
+        for (ChunkBatch batch : batches) {
+            Stripe stripe = getStripe(batch.world, batch.cx, batch.cz);
+            long key = ChunkStoreMap.toKey(batch.cx, batch.cz);
+
+            while (true) {
+                synchronized (stripe) {
+                    if (stripe.lookup(batch.world, key)) {
+                        ChunkStore chunkStore = stripe.lastChunkStore;
+
+                        if (chunkStore != null) {
+                            for (int i = 0; i < batch.size; i++) {
+                                chunkStore.setFalse(Math.abs(batch.xs[i]) % 16, batch.ys[i], Math.abs(batch.zs[i]) % 16);
+                            }
+                        }
+
+                        break;
+                    }
+                }
+
+                loadForLookup(batch.cx, batch.cz, batch.world);
+            }
         }
+    }
 
-        File czDir = new File(cxDir, "" + cz);
-        if (!czDir.exists()) {
-            return false;
+    @Override
+    public void shift(Collection<Block> blocks, BlockFace direction) {
+        List<ChunkBatch> sources = new ArrayList<ChunkBatch>();
+        List<ChunkBatch> targets = new ArrayList<ChunkBatch>();
+
+        for (Block block : blocks) {
+            if (block != null) {
+                addToBatch(sources, block.getWorld(), 0, block.getX(), block.getY(), block.getZ());
+            }
         }
 
-        boolean conversionSet = false;
+        // Every block is cleared before any is set, as the blocks move into each other's place
+        for (ChunkBatch batch : sources) {
+            Stripe stripe = getStripe(batch.world, batch.cx, batch.cz);
+            long key = ChunkStoreMap.toKey(batch.cx, batch.cz);
+
+            while (true) {
+                synchronized (stripe) {
+                    if (stripe.lookup(batch.world, key)) {
+                        ChunkStore chunkStore = stripe.lastChunkStore;
+
+                        if (chunkStore != null) {
+                            for (int i = 0; i < batch.size; i++) {
+                                int x = batch.xs[i];
+                                int y = batch.ys[i];
+                                int z = batch.zs[i];
+
+                                if (chunkStore.isTrue(Math.abs(x) % 16, y, Math.abs(z) % 16)) {
+                                    chunkStore.setFalse(Math.abs(x) % 16, y, Math.abs(z) % 16);
+                                    addToBatch(targets, batch.world, 0, x + direction.getModX(), y + direction.getModY(), z + direction.getModZ());
+                                }
+                            }
+                        }
+
+                        break;
+                    }
+                }
 
-        for (BlockStoreConversionZDirectory converter : this.converters) {
-            if (converter == null) {
-                continue;
+                loadForLookup(batch.cx, batch.cz, batch.world);
             }
+        }
+
+        for (ChunkBatch batch : targets) {
+            Stripe stripe = getStripe(batch.world, batch.cx, batch.cz);
+            long key = ChunkStoreMap.toKey(batch.cx, batch.cz);
+
+            while (true) {
+                synchronized (stripe) {
+                    if (stripe.lookup(batch.world, key)) {
+                        ChunkStore chunkStore = stripe.lastChunkStore;
+
+                        if (chunkStore == null) {
+                            chunkStore = ChunkStoreFactory.getChunkStore(batch.world, batch.cx, batch.cz);
+                            stripe.put(batch.world, key, chunkStore);
+                        }
 
-            if (converter.taskID >= 0) {
-                continue;
+                        for (int i = 0; i < batch.size; i++) {
+                            chunkStore.setTrue(Math.abs(batch.xs[i]) % 16, batch.ys[i], Math.abs(batch.zs[i]) % 16);
+                        }
+
+                        break;
+                    }
+                }
+
+                loadForLookup(batch.cx, batch.cz, batch.world);
+            }
+        }
+    }
+
+    @Override
+    public void cleanUp() {
+        stopConverters(null);
+        queue.shutdown();
+    }
+
+    /**
+     * @return the number of region files currently open
+     */
+    public int getOpenRegionFileCount() {
+        return openRegionFiles.get();
+    }
+
+    /**
+     * @return the number of region files closed so far to stay under the limit, or because they were unused
+     */
+    public long getRegionFileEvictionCount() {
+        return regionFileEvictions.get();
+    }
+
+    /**
+     * Set a block to true, by its position inside its chunk.
+     *
+     * @param cx Chunk X coordinate
+     * @param cz Chunk Z coordinate
+     * @param x X coordinate inside the chunk
+     * @param y Y coordinate
+     * @param z Z coordinate inside the chunk
+     * @param world World the chunk is in
+     */
+    public void setTrueInChunk(int cx, int cz, int x, int y, int z, World world) {
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
+
+        while (true) {
+            synchronized (stripe) {
+                if (stripe.lookup(world, key)) {
+                    ChunkStore cStore = stripe.lastChunkStore;
+
+                    if (cStore == null) {
+                        cStore = ChunkStoreFactory.getChunkStore(world, cx, cz);
+                        stripe.put(world, key, cStore);
+                    }
+
+                    cStore.setTrue(x, y, z);
+                    return;
+                }
             }
 
-            converter.start(world, cxDir, czDir);
-            conversionSet = true;
-            break;
+            loadForLookup(cx, cz, world);
         }
+    }
+
+    /**
+     * Start converting the placed blocks of a world saved in the old chunklet format.
+     */
+    public void convertWorld(World world) {
+        BlockStoreConversionMain converter = new BlockStoreConversionMain(world, this);
 
-        if (!conversionSet) {
-            BlockStoreConversionZDirectory converter = new BlockStoreConversionZDirectory();
-            converter.start(world, cxDir, czDir);
+        synchronized (converters) {
             converters.add(converter);
         }
 
+        converter.start();
+    }
+
+    /**
+     * Merge the placed blocks of a chunk saved in the old chunklet format into
+     * its chunk store, then delete the old files. Merging a chunk twice is harmless.
+     *
+     * @param dataDir The mcmmo_data directory of the world
+     * @param cx Chunk X coordinate
+     * @param cz Chunk Z coordinate
+     * @param world World the chunk is in
+     * @return true if the chunk had old data, and it was converted
+     */
+    public boolean convertChunk(File dataDir, int cx, int cz, World world) {
+        File czDir = new File(new File(dataDir, "" + cx), "" + cz);
+
+        if (!czDir.isDirectory()) {
+            return false;
+        }
+
+        long[] columns;
+
+        try {
+            columns = ChunkletReader.readChunk(czDir);
+        }
+        catch (IOException e) {
+            mcMMO.p.getLogger().warning("Unable to read old placed blocks of chunk " + cx + ", " + cz + " in " + world.getName() + ": " + e.getMessage());
+            return false;
+        }
+
+        Stripe stripe = getStripe(world, cx, cz);
+        long key = ChunkStoreMap.toKey(cx, cz);
+
+        synchronized (stripe.ioLock) {
+            if (columns != null) {
+                ChunkStore chunkStore = null;
+                boolean loaded;
+
+                synchronized (stripe) {
+                    loaded = stripe.lookup(world, key);
+
+                    if (loaded) {
+                        chunkStore = stripe.lastChunkStore;
+
+                        if (chunkStore == null) {
+                            chunkStore = ChunkStoreFactory.getChunkStore(world, cx, cz);
+                            stripe.put(world, key, chunkStore);
+                        }
+
+                        setColumns(chunkStore, columns);
+                    }
+                }
+
+                // Not in memory, so it is merged with what is on disk rather than loaded
+                if (!loaded) {
+                    try {
+                        chunkStore = readChunkStore(world, cx, cz);
+                    }
+                    catch (IOException e) {
+                        // Don't overwrite what couldn't be read
+                        return false;
+                    }
+
+                    if (chunkStore == null) {
+                        chunkStore = ChunkStoreFactory.getChunkStore(world, cx, cz);
+                    }
+
+                    setColumns(chunkStore, columns);
+                }
+
+                // The old files are only deleted once their blocks are safely on disk
+                try {
+                    writeChunkStore(world, cx, cz, chunkStore);
+                }
+                catch (RuntimeException e) {
+                    mcMMO.p.getLogger().warning("Unable to save converted placed blocks of chunk " + cx + ", " + cz + " in " + world.getName() + ": " + e.getMessage());
+                    return false;
+                }
+            }
+
+            ChunkletReader.deleteChunk(czDir);
+        }
+
         return true;
     }
+
+    /**
+     * Close the region files that haven't been used for a while.
+     */
+    void closeIdleRegionFiles() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe.ioLock) {
+                for (HashMap<Long, McMMOSimpleRegionFile> worldRegions : stripe.regionFiles.values()) {
+                    for (Iterator<McMMOSimpleRegionFile> worldRegionIterator = worldRegions.values().iterator(); worldRegionIterator.hasNext();) {
+                        if (worldRegionIterator.next().testCloseTimeout()) {
+                            worldRegionIterator.remove();
+                            stripe.regionFileCount--;
+                            openRegionFiles.decrementAndGet();
+                            regionFileEvictions.incrementAndGet();
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stop the converters of a world, or of every world if null.
+     */
+    private void stopConverters(World world) {
+        List<BlockStoreConversionMain> stopping = new ArrayList<BlockStoreConversionMain>();
+
+        synchronized (converters) {
+            for (Iterator<BlockStoreConversionMain> iterator = converters.iterator(); iterator.hasNext();) {
+                BlockStoreConversionMain converter = iterator.next();
+
+                if (world == null || converter.getWorld() == world) {
+                    stopping.add(converter);
+                    iterator.remove();
+                }
+            }
+        }
+
+        for (BlockStoreConversionMain converter : stopping) {
+            converter.stop();
+        }
+    }
+
+    /**
+     * Read a chunk that is needed right away, unless it is already being read.
+     */
+    private void loadForLookup(int cx, int cz, World world) {
+        if (!queue.awaitPrefetch(world, cx, cz)) {
+            loadChunk(cx, cz, world, null);
+        }
+    }
+
+    /**
+     * Must be called with the I/O lock of the stripe held.
+     */
+    private McMMOSimpleRegionFile getSimpleRegionFile(Stripe stripe, World world, int x, int z) {
+        File directory = new File(world.getWorldFolder(), "mcmmo_regions");
+
+        directory.mkdirs();
+
+        UUID key = world.getUID();
+
+        HashMap<Long, McMMOSimpleRegionFile> worldRegions = stripe.regionFiles.get(key);
+
+        if (worldRegions == null) {
+            worldRegions = new HashMap<Long, McMMOSimpleRegionFile>();
+            stripe.regionFiles.put(key, worldRegions);
+        }
+
+        int rx = x >> 5;
+        int rz = z >> 5;
+
+        long key2 = getRegionKey(x, z);
+
+        McMMOSimpleRegionFile regionFile = worldRegions.get(key2);
+
+        if (regionFile == null) {
+            if (stripe.regionFileCount >= MAX_OPEN_REGION_FILES_PER_STRIPE) {
+                closeLeastRecentlyUsed(stripe);
+            }
+
+            File file = new File(directory, "mcmmo_" + rx + "_" + rz + "_.mcm");
+            regionFile = new McMMOSimpleRegionFile(file, rx, rz);
+            worldRegions.put(key2, regionFile);
+            stripe.regionFileCount++;
+            openRegionFiles.incrementAndGet();
+        }
+
+        return regionFile;
+    }
+
+    /**
+     * Close the region file of a stripe that was used the longest time ago.
+     * Must be called with the I/O lock of the stripe held.
+     */
+    private void closeLeastRecentlyUsed(Stripe stripe) {
+        HashMap<Long, McMMOSimpleRegionFile> oldestRegions = null;
+        long oldestKey = 0;
+        long oldestAccessTime = Long.MAX_VALUE;
+
+        for (HashMap<Long, McMMOSimpleRegionFile> worldRegions : stripe.regionFiles.values()) {
+            for (Map.Entry<Long, McMMOSimpleRegionFile> entry : worldRegions.entrySet()) {
+                long accessTime = entry.getValue().getLastAccessTime();
+
+                if (accessTime < oldestAccessTime) {
+                    oldestRegions = worldRegions;
+                    oldestKey = entry.getKey();
+                    oldestAccessTime = accessTime;
+                }
+            }
+        }
+
+        if (oldestRegions != null) {
+            closeRegionFile(stripe, oldestRegions.remove(oldestKey));
+            regionFileEvictions.incrementAndGet();
+        }
+    }
+
+    /**
+     * Must be called with the I/O lock of the stripe held, once the region file is out of its map.
+     */
+    private void closeRegionFile(Stripe stripe, McMMOSimpleRegionFile regionFile) {
+        stripe.regionFileCount--;
+        openRegionFiles.decrementAndGet();
+        regionFile.close();
+    }
+
+    /**
+     * Must be called with the lock of the stripe held, if the store is in memory.
+     */
+    private static void setColumns(ChunkStore chunkStore, long[] columns) {
+        if (chunkStore instanceof BitSetChunkStore) {
+            ((BitSetChunkStore) chunkStore).setColumns(columns);
+            return;
+        }
+
+        for (int i = 0; i < columns.length; i++) {
+            for (long column = columns[i]; column != 0; column &= column - 1) {
+                chunkStore.setTrue((i >> 4) & 0xF, ((i >> 8) << 6) + Long.numberOfTrailingZeros(column), i & 0xF);
+            }
+        }
+    }
+
+    /**
+     * Add a block to the batch of its chunk. Batches are small and close
+     * together, so the chunk is searched for from the last one added.
+     */
+    private static void addToBatch(List<ChunkBatch> batches, World world, int index, int x, int y, int z) {
+        if (world == null) {
+            return;
+        }
+
+        int cx = x / 16;
+        int cz = z / 16;
+
+        for (int i = batches.size() - 1; i >= 0; i--) {
+            ChunkBatch batch = batches.get(i);
+
+            if (batch.cx == cx && batch.cz == cz && batch.world == world) {
+                batch.add(index, x, y, z);
+                return;
+            }
+        }
+
+        ChunkBatch batch = new ChunkBatch(world, cx, cz);
+        batch.add(index, x, y, z);
+        batches.add(batch);
+    }
+
+    private static long getRegionKey(int x, int z) {
+        return (((long) (x >> 5)) << 32) | ((z >> 5) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * All chunks of a region share a stripe, so its region file is only used under one lock.
+     */
+    private Stripe getStripe(World world, int cx, int cz) {
+        int hash = world.getUID().hashCode();
+        hash = hash * 31 + (cx >> 5);
+        hash = hash * 31 + (cz >> 5);
+        hash ^= (hash >>> 16);
+
+        return stripes[hash & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * The blocks of a batch in one chunk, by their position in the batch and their coordinates.
+     */
+    private static class ChunkBatch {
+        private final World world;
+        private final int cx;
+        private final int cz;
+        private int size;
+        private int[] indexes = new int[16];
+        private int[] xs = new int[16];
+        private int[] ys = new int[16];
+        private int[] zs = new int[16];
+
+        private ChunkBatch(World world, int cx, int cz) {
+            this.world = world;
+            this.cx = cx;
+            this.cz = cz;
+        }
+
+        private void add(int index, int x, int y, int z) {
+            if (size == indexes.length) {
+                indexes = Arrays.copyOf(indexes, size * 2);
+                xs = Arrays.copyOf(xs, size * 2);
+                ys = Arrays.copyOf(ys, size * 2);
+                zs = Arrays.copyOf(zs, size * 2);
+            }
+
+            indexes[size] = index;
+            xs[size] = x;
+            ys[size] = y;
+            zs[size] = z;
+            size++;
+        }
+    }
+
+    /**
+     * The chunk stores and region files of the regions hashed to one stripe.
+     * The stores are guarded by the monitor of the stripe, the region files by ioLock.
+     */
+    private static class Stripe {
+        private final Object ioLock = new Object();
+        private final HashMap<UUID, HashMap<Long, McMMOSimpleRegionFile>> regionFiles = new HashMap<UUID, HashMap<Long, McMMOSimpleRegionFile>>();
+        private int regionFileCount;
+        private final HashMap<UUID, ChunkStoreMap> store = new HashMap<UUID, ChunkStoreMap>();
+
+        // Block lookups come in runs on the same world and chunk, so remember the last ones
+        private World lastWorld;
+        private ChunkStoreMap lastWorldStores;
+        private ChunkStoreMap lastChunkStores;
+        private long lastChunkKey;
+        private ChunkStore lastChunkStore;
+
+        /**
+         * Look up a chunk without allocating anything.
+         * If the chunk has been read, its store (or null if it has none) is left in lastChunkStore.
+         *
+         * @return true if the chunk has been read
+         */
+        private boolean lookup(World world, long key) {
+            ChunkStoreMap worldStores = getWorldStores(world);
+
+            if (worldStores == lastChunkStores && key == lastChunkKey) {
+                return true;
+            }
+
+            ChunkStore chunkStore = worldStores.get(key);
+
+            if (chunkStore == null && !worldStores.containsKey(key)) {
+                return false;
+            }
+
+            lastChunkStores = worldStores;
+            lastChunkKey = key;
+            lastChunkStore = chunkStore;
+            return true;
+        }
+
+        private void put(World world, long key, ChunkStore chunkStore) {
+            getWorldStores(world).put(key, chunkStore);
+            lastChunkStores = null;
+        }
+
+        private ChunkStore remove(World world, long key) {
+            lastChunkStores = null;
+            return getWorldStores(world).remove(key);
+        }
+
+        private List<ChunkStore> removeWorld(World world) {
+            ChunkStoreMap worldStores = store.remove(world.getUID());
+
+            lastWorld = null;
+            lastWorldStores = null;
+            lastChunkStores = null;
+
+            if (worldStores == null) {
+                return new ArrayList<ChunkStore>();
+            }
+
+            return worldStores.values();
+        }
+
+        private ChunkStoreMap getWorldStores(World world) {
+            if (world == lastWorld) {
+                return lastWorldStores;
+            }
+
+            UUID uid = world.getUID();
+            ChunkStoreMap worldStores = store.get(uid);
+
+            if (worldStores == null) {
+                worldStores = new ChunkStoreMap();
+                store.put(uid, worldStores);
+            }
+
+            lastWorld = world;
+            lastWorldStores = worldStores;
+            return worldStores;
+        }
+    }
 }
@@ -22,29 +22,43 @@ package com.gmail.nossr50.util.blockmeta.chunkmeta;
 import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
+import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
-import java.util.ArrayList;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
 import java.util.zip.DeflaterOutputStream;
 import java.util.zip.InflaterInputStream;
 
+/**
+ * A region file holding the chunk stores of 32x32 chunks.
+ * <p>
+ * The file starts with a 12KB header: the first segment of each chunk, then
+ * the length of each chunk, then the segment size. The header is read once when
+ * the file is opened, moving a chunk only rewrites the entries of that chunk,
+ * and the used segments are tracked in a BitSet to find free space.
+ */
 public class McMMOSimpleRegionFile {
+    private static final int HEADER_SIZE = 4096 * 3;
+    private static final int LENGTHS_OFFSET = 4096;
+    private static final int SEGMENT_SIZE_OFFSET = 4096 * 2;
+
     private RandomAccessFile file;
+    private FileChannel channel;
     private final int[] dataStart = new int[1024];
     private final int[] dataActualLength = new int[1024];
     private final int[] dataLength = new int[1024];
-    private final ArrayList<Boolean> inuse = new ArrayList<Boolean>();
+    private final BitSet inuse = new BitSet();
     private int segmentSize;
     private int segmentMask;
     private final int rx;
     private final int rz;
     private final int defaultSegmentSize;
     private final File parent;
-    @SuppressWarnings("unused")
     private long lastAccessTime = System.currentTimeMillis();
-    @SuppressWarnings("unused")
-    private static long TIMEOUT_TIME = 300000; // 5 min
+    private static final long TIMEOUT_TIME = 300000; // 5 min
 
     public McMMOSimpleRegionFile(File f, int rx, int rz) {
         this(f, rx, rz, 10);
@@ -56,89 +70,49 @@ public class McMMOSimpleRegionFile {
         this.defaultSegmentSize = defaultSegmentSize;
         this.parent = f;
 
-        lastAccessTime = System.currentTimeMillis();
-        if (file == null) {
-            try {
-                this.file = new RandomAccessFile(parent, "rw");
-
-                if (file.length() < 4096 * 3) {
-                    for (int i = 0; i < 1024 * 3; i++) {
-                        file.writeInt(0);
-                    }
-                    file.seek(4096 * 2);
-                    file.writeInt(defaultSegmentSize);
-                }
-
-                file.seek(4096 * 2);
-
-                this.segmentSize = file.readInt();
-                this.segmentMask = (1 << segmentSize) - 1;
-
-                int reservedSegments = this.sizeToSegments(4096 * 3);
-
-                for (int i = 0; i < reservedSegments; i++) {
-                    while (inuse.size() <= i) {
-                        inuse.add(false);
-                    }
-                    inuse.set(i, true);
-                }
-
-                file.seek(0);
-
-                for (int i = 0; i < 1024; i++) {
-                    dataStart[i] = file.readInt();
-                }
+        getFile();
+    }
 
-                for (int i = 0; i < 1024; i++) {
-                    dataActualLength[i] = file.readInt();
-                    dataLength[i] = sizeToSegments(dataActualLength[i]);
-                    setInUse(i, true);
-                }
+    public synchronized final RandomAccessFile getFile() {
+        lastAccessTime = System.currentTimeMillis();
 
-                extendFile();
+        // An interrupted read or write closes the channel, so the file has to be opened again
+        if (file != null && !channel.isOpen()) {
+            try {
+                file.close();
             }
-            catch (IOException fnfe) {
-                throw new RuntimeException(fnfe);
+            catch (IOException e) {
+                // Ignore, it is closed already
             }
+
+            file = null;
+            channel = null;
         }
-    }
 
-    public synchronized final RandomAccessFile getFile() {
-        lastAccessTime = System.currentTimeMillis();
         if (file == null) {
             try {
                 this.file = new RandomAccessFile(parent, "rw");
 
-                if (file.length() < 4096 * 3) {
-                    for (int i = 0; i < 1024 * 3; i++) {
-                        file.writeInt(0);
-                    }
-                    file.seek(4096 * 2);
+                if (file.length() < HEADER_SIZE) {
+                    file.write(new byte[HEADER_SIZE]);
+                    file.seek(SEGMENT_SIZE_OFFSET);
                     file.writeInt(defaultSegmentSize);
                 }
 
-                file.seek(4096 * 2);
-
-                this.segmentSize = file.readInt();
-                this.segmentMask = (1 << segmentSize) - 1;
-
-                int reservedSegments = this.sizeToSegments(4096 * 3);
+                this.channel = file.getChannel();
 
-                for (int i = 0; i < reservedSegments; i++) {
-                    while (inuse.size() <= i) {
-                        inuse.add(false);
-                    }
-                    inuse.set(i, true);
-                }
+                ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+                readFully(header, 0);
 
-                file.seek(0);
+                this.segmentSize = header.getInt(SEGMENT_SIZE_OFFSET);
+                this.segmentMask = (1 << segmentSize) - 1;
 
-                for (int i = 0; i < 1024; i++) {
-                    dataStart[i] = file.readInt();
-                }
+                inuse.clear();
+                inuse.set(0, sizeToSegments(HEADER_SIZE));
 
                 for (int i = 0; i < 1024; i++) {
-                    dataActualLength[i] = file.readInt();
+                    dataStart[i] = header.getInt(i * 4);
+                    dataActualLength[i] = header.getInt(LENGTHS_OFFSET + i * 4);
                     dataLength[i] = sizeToSegments(dataActualLength[i]);
                     setInUse(i, true);
                 }
@@ -152,62 +126,177 @@ public class McMMOSimpleRegionFile {
         return file;
     }
 
+    /**
+     * Close the file if it hasn't been used for a while.
+     *
+     * @return true if the file was closed
+     */
     public synchronized boolean testCloseTimeout() {
-        /*
         if (System.currentTimeMillis() - TIMEOUT_TIME > lastAccessTime) {
             close();
             return true;
         }
-         */
+
         return false;
     }
 
+    synchronized long getLastAccessTime() {
+        return lastAccessTime;
+    }
+
     public synchronized DataOutputStream getOutputStream(int x, int z) {
         int index = getChunkIndex(x, z);
         return new DataOutputStream(new DeflaterOutputStream(new McMMOSimpleChunkBuffer(this, index)));
     }
 
     public synchronized DataInputStream getInputStream(int x, int z) throws IOException {
-        int index = getChunkIndex(x, z);
-        int actualLength = dataActualLength[index];
+        byte[] data = read(getChunkIndex(x, z));
 
-        if (actualLength == 0) {
+        if (data == null) {
             return null;
         }
 
-        byte[] data = new byte[actualLength];
-
-        getFile().seek(dataStart[index] << segmentSize);
-        getFile().readFully(data);
         return new DataInputStream(new InflaterInputStream(new ByteArrayInputStream(data)));
     }
 
     synchronized void write(int index, byte[] buffer, int size) throws IOException {
+        getFile();
+
         int oldStart = setInUse(index, false);
         int start = findSpace(oldStart, size);
-        getFile().seek(start << segmentSize);
-        getFile().write(buffer, 0, size);
+        ByteBuffer data = ByteBuffer.wrap(buffer, 0, size);
+        long position = ((long) start) << segmentSize;
+
+        writeFully(data, position);
+
         dataStart[index] = start;
         dataActualLength[index] = size;
         dataLength[index] = sizeToSegments(size);
         setInUse(index, true);
-        saveFAT();
+
+        writeHeaderInt(index * 4, start);
+        writeHeaderInt(LENGTHS_OFFSET + index * 4, size);
     }
 
     public synchronized void close() {
         try {
             if (file != null) {
-                file.seek(4096 * 2);
                 file.close();
             }
 
             file = null;
+            channel = null;
         }
         catch (IOException ioe) {
             throw new RuntimeException("Unable to close file", ioe);
         }
     }
 
+    /**
+     * Rewrite a region file with its chunks back to back, dropping the gaps
+     * left by chunks that were moved. The region file must not be open.
+     *
+     * @param f The region file to compact
+     * @return true if the file was compacted, false if it had no gaps or couldn't be replaced
+     * @throws IOException if the region file couldn't be read or written
+     */
+    public static boolean compact(File f) throws IOException {
+        if (!f.exists()) {
+            return false;
+        }
+
+        McMMOSimpleRegionFile source = new McMMOSimpleRegionFile(f, 0, 0);
+        File compactedFile = new File(f.getPath() + ".compact");
+        File backupFile = new File(f.getPath() + ".old");
+
+        try {
+            long usedLength = ((long) source.inuse.cardinality()) << source.segmentSize;
+
+            if (source.file.length() <= usedLength) {
+                return false;
+            }
+
+            compactedFile.delete();
+            McMMOSimpleRegionFile target = new McMMOSimpleRegionFile(compactedFile, 0, 0, source.segmentSize);
+
+            try {
+                for (int i = 0; i < 1024; i++) {
+                    byte[] data = source.read(i);
+
+                    if (data != null) {
+                        target.write(i, data, data.length);
+                    }
+                }
+            }
+            finally {
+                target.close();
+            }
+        }
+        finally {
+            source.close();
+        }
+
+        if (!f.renameTo(backupFile)) {
+            compactedFile.delete();
+            return false;
+        }
+
+        if (!compactedFile.renameTo(f)) {
+            backupFile.renameTo(f);
+            compactedFile.delete();
+            return false;
+        }
+
+        backupFile.delete();
+        return true;
+    }
+
+    /**
+     * @return the raw data of a chunk, or null if it has none
+     */
+    private synchronized byte[] read(int index) throws IOException {
+        getFile();
+
+        int actualLength = dataActualLength[index];
+
+        if (actualLength == 0) {
+            return null;
+        }
+
+        ByteBuffer data = ByteBuffer.allocate(actualLength);
+        long position = ((long) dataStart[index]) << segmentSize;
+
+        try {
+            readFully(data, position);
+        }
+        catch (EOFException e) {
+            throw new EOFException("Chunk " + index + " runs past the end of the region file");
+        }
+
+        return data.array();
+    }
+
+    private synchronized void readFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            if (channel.read(data, position + data.position()) < 0) {
+                throw new EOFException();
+            }
+        }
+    }
+
+    private synchronized void writeFully(ByteBuffer data, long position) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data, position + data.position());
+        }
+    }
+
+    private synchronized void writeHeaderInt(int offset, int value) throws IOException {
+        ByteBuffer data = ByteBuffer.allocate(4);
+
+        data.putInt(0, value);
+        writeFully(data, offset);
+    }
+
     private synchronized int setInUse(int index, boolean used) {
         if (dataActualLength[index] == 0) {
             return dataStart[index];
@@ -216,67 +305,57 @@ public class McMMOSimpleRegionFile {
         int start = dataStart[index];
         int end = start + dataLength[index];
 
-        for (int i = start; i < end; i++) {
-            while (i > inuse.size() - 1) {
-                inuse.add(false);
-            }
+        if (used) {
+            int overlap = inuse.nextSetBit(start);
 
-            Boolean old = inuse.set(i, used);
-            if (old != null && old == used) {
-                if (old) {
-                    throw new IllegalStateException("Attempting to overwrite an in-use segment");
-                }
+            if (overlap >= 0 && overlap < end) {
+                throw new IllegalStateException("Attempting to overwrite an in-use segment");
+            }
 
+            inuse.set(start, end);
+        }
+        else {
+            if (inuse.nextClearBit(start) < end) {
                 throw new IllegalStateException("Attempting to delete empty segment");
             }
+
+            inuse.clear(start, end);
         }
 
-        return dataStart[index];
+        return start;
     }
 
     private synchronized void extendFile() throws IOException {
-        long extend = (-getFile().length()) & segmentMask;
-
-        getFile().seek(getFile().length());
+        long length = getFile().length();
+        long extend = (-length) & segmentMask;
 
-        while ((extend--) > 0) {
-            getFile().write(0);
+        if (extend > 0) {
+            getFile().setLength(length + extend);
         }
     }
 
+    /**
+     * Find the first run of free segments big enough for a chunk, keeping it in place if it still fits.
+     */
     private synchronized int findSpace(int oldStart, int size) {
         int segments = sizeToSegments(size);
+        int used = inuse.nextSetBit(oldStart);
 
-        boolean oldFree = true;
-        for (int i = oldStart; i < inuse.size() && i < oldStart + segments; i++) {
-            if (inuse.get(i)) {
-                oldFree = false;
-                break;
-            }
-        }
-
-        if (oldFree) {
+        if (used < 0 || used >= oldStart + segments) {
             return oldStart;
         }
 
-        int start = 0;
-        int end = 0;
+        int start = inuse.nextClearBit(0);
 
-        while (end < inuse.size()) {
-            if (inuse.get(end)) {
-                end++;
-                start = end;
-            }
-            else {
-                end++;
-            }
+        while (true) {
+            int end = inuse.nextSetBit(start);
 
-            if (end - start >= segments) {
+            if (end < 0 || end - start >= segments) {
                 return start;
             }
-        }
 
-        return start;
+            start = inuse.nextClearBit(end);
+        }
     }
 
     private synchronized int sizeToSegments(int size) {
@@ -287,7 +366,7 @@ public class McMMOSimpleRegionFile {
         return ((size - 1) >> segmentSize) + 1;
     }
 
-    private synchronized Integer getChunkIndex(int x, int z) {
+    private synchronized int getChunkIndex(int x, int z) {
         if (rx != (x >> 5) || rz != (z >> 5)) {
             throw new RuntimeException(x + ", " + z + " not in region " + rx + ", " + rz);
         }
@@ -297,15 +376,4 @@ public class McMMOSimpleRegionFile {
 
         return (x << 5) + z;
     }
-
-    private synchronized void saveFAT() throws IOException {
-        getFile().seek(0);
-        for (int i = 0; i < 1024; i++) {
-            getFile().writeInt(dataStart[i]);
-        }
-
-        for (int i = 0; i < 1024; i++) {
-            getFile().writeInt(dataActualLength[i]);
-        }
-    }
 }
@@ -1,9 +1,12 @@
 package com.gmail.nossr50.util.blockmeta.chunkmeta;
 
 import java.io.IOException;
+import java.util.Collection;
+import java.util.List;
 
 import org.bukkit.World;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockFace;
 import org.bukkit.block.BlockState;
 import org.bukkit.entity.Entity;
 
@@ -97,6 +100,17 @@ public class NullChunkManager implements ChunkManager {
     @Override
     public void setFalse(BlockState blockState) {}
 
+    @Override
+    public boolean[] isTrueBatch(List<BlockState> blockStates) {
+        return new boolean[blockStates.size()];
+    }
+
+    @Override
+    public void setFalseAll(Collection<BlockState> blockStates) {}
+
+    @Override
+    public void shift(Collection<Block> blocks, BlockFace direction) {}
+
     @Override
     public void cleanUp() {}
 }
@@ -93,6 +93,14 @@ public class PrimitiveChunkStore implements ChunkStore {
         dirty = true;
     }
 
+    UUID getWorldUid() {
+        return worldUid;
+    }
+
+    int getWorldHeight() {
+        return worldHeight;
+    }
+
     private void writeObject(ObjectOutputStream out) throws IOException {
         out.writeInt(MAGIC_NUMBER);
         out.writeInt(CURRENT_VERSION);
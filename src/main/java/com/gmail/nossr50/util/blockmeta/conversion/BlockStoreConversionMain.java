@@ -1,93 +1,217 @@
 package com.gmail.nossr50.util.blockmeta.conversion;
 
 import java.io.File;
-
-import org.bukkit.scheduler.BukkitScheduler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.bukkit.World;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.config.HiddenConfig;
-
-public class BlockStoreConversionMain implements Runnable {
-    private int taskID, i;
-    private org.bukkit.World world;
-    BukkitScheduler scheduler;
-    File dataDir;
-    File[] xDirs;
-    BlockStoreConversionXDirectory[] converters;
-
-    public BlockStoreConversionMain(org.bukkit.World world) {
-        this.taskID = -1;
+import com.gmail.nossr50.util.blockmeta.chunkmeta.HashChunkManager;
+
+/**
+ * Converts the placed blocks of a world from the old chunklet format, in the background.
+ * <p>
+ * The chunks left in mcmmo_data are grouped by region, and each region is
+ * converted on one of a few worker threads, so its region file is written in
+ * one go. The old files of a chunk are deleted as soon as its blocks are saved,
+ * which is what checkpoints the conversion: after a restart it resumes with the
+ * chunks left. Chunks loading in the meantime are converted by the chunk manager.
+ */
+public class BlockStoreConversionMain {
+    private static final long SHUTDOWN_TIMEOUT = 30; // Seconds
+
+    private final World world;
+    private final HashChunkManager manager;
+    private final File dataDir;
+    private final AtomicInteger remainingRegions = new AtomicInteger();
+    private final AtomicInteger convertedChunks = new AtomicInteger();
+    private ExecutorService executor;
+    private volatile boolean stopped;
+
+    public BlockStoreConversionMain(World world, HashChunkManager manager) {
         this.world = world;
-        this.scheduler = mcMMO.p.getServer().getScheduler();
-        this.dataDir = new File(this.world.getWorldFolder(), "mcmmo_data");
-        this.converters = new BlockStoreConversionXDirectory[HiddenConfig.getInstance().getConversionRate()];
+        this.manager = manager;
+        this.dataDir = new File(world.getWorldFolder(), "mcmmo_data");
     }
 
-    public void start() {
-        if (this.taskID >= 0) {
+    public World getWorld() {
+        return world;
+    }
+
+    public synchronized void start() {
+        if (executor != null || stopped) {
             return;
         }
 
-        this.taskID = this.scheduler.runTaskLater(mcMMO.p, this, 1).getTaskId();
-        return;
-    }
+        int threads = HiddenConfig.getInstance().getConversionThreads();
 
-    @Override
-    public void run() {
-        if (!this.dataDir.exists()) {
-            softStop();
-            return;
+        if (threads <= 0) {
+            threads = Runtime.getRuntime().availableProcessors();
         }
 
-        if (!this.dataDir.isDirectory()) {
-            this.dataDir.delete();
-            softStop();
-            return;
+        executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "mcMMO Block Store Conversion #" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                thread.setPriority(Thread.MIN_PRIORITY);
+                return thread;
+            }
+        });
+
+        // Listing the directories can take a while on big worlds
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                queueRegions();
+            }
+        });
+    }
+
+    /**
+     * Stop converting, waiting for the chunks being converted.
+     */
+    public void stop() {
+        ExecutorService executor;
+
+        synchronized (this) {
+            stopped = true;
+            executor = this.executor;
         }
 
-        if (this.dataDir.listFiles().length <= 0) {
-            this.dataDir.delete();
-            softStop();
+        if (executor == null) {
             return;
         }
 
-        this.xDirs = this.dataDir.listFiles();
+        // Not shutdownNow(), an interrupt would close the region file being written
+        executor.shutdown();
 
-        for (this.i = 0; (this.i < HiddenConfig.getInstance().getConversionRate()) && (this.i < this.xDirs.length); this.i++) {
-            if (this.converters[this.i] == null) {
-                this.converters[this.i] = new BlockStoreConversionXDirectory();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT, TimeUnit.SECONDS)) {
+                mcMMO.p.getLogger().warning("Timed out waiting for the storage conversion of " + world.getName() + " to stop!");
             }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void queueRegions() {
+        Map<Long, List<int[]>> regions = new HashMap<Long, List<int[]>>();
+        File[] xDirs = dataDir.listFiles();
+
+        if (xDirs != null) {
+            for (File xDir : xDirs) {
+                File[] zDirs = xDir.listFiles();
+
+                if (zDirs == null) {
+                    continue;
+                }
 
-            this.converters[this.i].start(this.world, this.xDirs[this.i]);
+                for (File zDir : zDirs) {
+                    int cx;
+                    int cz;
+
+                    try {
+                        cx = Integer.parseInt(xDir.getName());
+                        cz = Integer.parseInt(zDir.getName());
+                    }
+                    catch (NumberFormatException e) {
+                        continue;
+                    }
+
+                    long key = (((long) (cx >> 5)) << 32) | ((cz >> 5) & 0xFFFFFFFFL);
+                    List<int[]> chunks = regions.get(key);
+
+                    if (chunks == null) {
+                        chunks = new ArrayList<int[]>();
+                        regions.put(key, chunks);
+                    }
+
+                    chunks.add(new int[] { cx, cz });
+                }
+            }
         }
 
-        softStop();
-    }
+        remainingRegions.set(regions.size());
 
-    public void stop() {
-        if (this.taskID < 0) {
+        if (regions.isEmpty()) {
+            finish();
             return;
         }
 
-        this.scheduler.cancelTask(this.taskID);
-        this.taskID = -1;
+        try {
+            for (List<int[]> chunks : regions.values()) {
+                executor.execute(new RegionTask(chunks));
+            }
+        }
+        catch (RejectedExecutionException e) {
+            // Stopped while queueing, the rest is converted after the next start
+        }
     }
 
-    public void softStop() {
-        stop();
+    private void finish() {
+        executor.shutdown();
+
+        File[] xDirs = dataDir.listFiles();
 
-        if (this.dataDir.exists() || this.dataDir.isDirectory()) {
-            start();
+        if (xDirs != null) {
+            for (File xDir : xDirs) {
+                // Only succeeds for directories whose chunks were all converted
+                xDir.delete();
+            }
+        }
+
+        if (dataDir.delete() || !dataDir.exists()) {
+            mcMMO.p.getLogger().info("Finished converting the storage for " + world.getName() + " (" + convertedChunks.get() + " chunks).");
             return;
         }
 
-        mcMMO.p.getLogger().info("Finished converting the storage for " + world.getName() + ".");
+        mcMMO.p.getLogger().warning("Some chunks of " + world.getName() + " couldn't be converted, they will be tried again on the next start.");
+    }
+
+    private class RegionTask implements Runnable {
+        private final List<int[]> chunks;
 
-        this.dataDir = null;
-        this.xDirs = null;
-        this.world = null;
-        this.scheduler = null;
-        this.converters = null;
-        return;
+        private RegionTask(List<int[]> chunks) {
+            this.chunks = chunks;
+        }
+
+        @Override
+        public void run() {
+            try {
+                for (int[] chunk : chunks) {
+                    if (stopped) {
+                        return;
+                    }
+
+                    try {
+                        if (manager.convertChunk(dataDir, chunk[0], chunk[1], world)) {
+                            convertedChunks.incrementAndGet();
+                        }
+                    }
+                    catch (RuntimeException e) {
+                        mcMMO.p.getLogger().warning("Unable to convert chunk " + chunk[0] + ", " + chunk[1] + " of " + world.getName() + ": " + e.getMessage());
+                    }
+                }
+            }
+            finally {
+                if (remainingRegions.decrementAndGet() == 0 && !stopped) {
+                    finish();
+                }
+            }
+        }
     }
 }
@@ -0,0 +1,140 @@
+package com.gmail.nossr50.util.blockmeta.conversion;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.io.UTFDataFormatException;
+
+import com.gmail.nossr50.util.blockmeta.PrimitiveChunkletStore;
+import com.gmail.nossr50.util.blockmeta.PrimitiveExChunkletStore;
+
+/**
+ * Reads the placed blocks of a chunk saved in the old chunklet format, where
+ * mcmmo_data/cx/cz holds one file per 64 block high chunklet of the chunk.
+ * <p>
+ * The chunklets are read straight from their files, without going through a
+ * chunklet manager, and each column of a chunklet is packed into a long.
+ */
+public final class ChunkletReader {
+    public static final int CHUNKLETS_PER_CHUNK = 4;
+
+    private ChunkletReader() {}
+
+    /**
+     * Read the chunklets of a chunk.
+     * Chunklets that are corrupted are read as empty, like the chunklet manager did.
+     *
+     * @param czDir The directory of the chunk
+     * @return the columns of each chunklet, indexed by (chunklet * 256) + (x * 16) + z, or null if no block is set
+     * @throws IOException if a chunklet file couldn't be read
+     */
+    public static long[] readChunk(File czDir) throws IOException {
+        long[] columns = null;
+
+        for (int cy = 0; cy < CHUNKLETS_PER_CHUNK; cy++) {
+            File yFile = new File(czDir, "" + cy);
+
+            if (!yFile.isFile()) {
+                continue;
+            }
+
+            boolean[][][] store = readChunklet(yFile);
+
+            if (store == null) {
+                continue;
+            }
+
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    long column = getColumn(store[x][z]);
+
+                    if (column == 0) {
+                        continue;
+                    }
+
+                    if (columns == null) {
+                        columns = new long[CHUNKLETS_PER_CHUNK * 256];
+                    }
+
+                    columns[(cy << 8) | (x << 4) | z] = column;
+                }
+            }
+        }
+
+        return columns;
+    }
+
+    /**
+     * Delete the chunklet files of a chunk, and its directories once they are empty.
+     *
+     * @param czDir The directory of the chunk
+     */
+    public static void deleteChunk(File czDir) {
+        File[] yFiles = czDir.listFiles();
+
+        if (yFiles != null) {
+            for (File yFile : yFiles) {
+                yFile.delete();
+            }
+        }
+
+        czDir.delete();
+
+        // Only succeeds if this was the last chunk of the directory
+        czDir.getParentFile().delete();
+    }
+
+    /**
+     * @return the X, Z, Y array of a chunklet, or null if it is corrupted
+     */
+    private static boolean[][][] readChunklet(File yFile) throws IOException {
+        FileInputStream fileIn = new FileInputStream(yFile);
+        Object chunklet;
+
+        try {
+            chunklet = new ObjectInputStream(new BufferedInputStream(fileIn)).readObject();
+        }
+        catch (EOFException e) {
+            return null;
+        }
+        catch (StreamCorruptedException e) {
+            return null;
+        }
+        catch (UTFDataFormatException e) {
+            return null;
+        }
+        catch (ClassNotFoundException e) {
+            throw new IOException("Unknown chunklet class " + e.getMessage());
+        }
+        finally {
+            fileIn.close();
+        }
+
+        if (chunklet instanceof PrimitiveExChunkletStore) {
+            return ((PrimitiveExChunkletStore) chunklet).store;
+        }
+
+        if (chunklet instanceof PrimitiveChunkletStore) {
+            return ((PrimitiveChunkletStore) chunklet).store;
+        }
+
+        throw new IOException("Unknown chunklet class " + (chunklet == null ? null : chunklet.getClass().getName()));
+    }
+
+    private static long getColumn(boolean[] column) {
+        long bits = 0;
+        int height = Math.min(column.length, 64);
+
+        for (int y = 0; y < height; y++) {
+            if (column[y]) {
+                bits |= 1L << y;
+            }
+        }
+
+        return bits;
+    }
+}
@@ -17,6 +17,7 @@ import com.gmail.nossr50.commands.MobhealthCommand;
 import com.gmail.nossr50.commands.XprateCommand;
 import com.gmail.nossr50.commands.chat.AdminChatCommand;
 import com.gmail.nossr50.commands.chat.PartyChatCommand;
+import com.gmail.nossr50.commands.database.McconvertCommand;
 import com.gmail.nossr50.commands.database.McpurgeCommand;
 import com.gmail.nossr50.commands.database.McremoveCommand;
 import com.gmail.nossr50.commands.database.MmoupdateCommand;
@@ -272,6 +273,15 @@ public final class CommandRegistrationManager {
         command.setExecutor(new McremoveCommand());
     }
 
+    private static void registerMcconvertCommand() {
+        PluginCommand command = mcMMO.p.getCommand("mcconvert");
+        command.setDescription(LocaleLoader.getString("Commands.Description.mcconvert"));
+        command.setPermission("mcmmo.commands.mcconvert");
+        command.setPermissionMessage(permissionsMessage);
+        command.setUsage(LocaleLoader.getString("Commands.Usage.1", "mcconvert", "<flatfile|mysql|sqlite>"));
+        command.setExecutor(new McconvertCommand());
+    }
+
     private static void registerMmoupdateCommand() {
         PluginCommand command = mcMMO.p.getCommand("mmoupdate");
         command.setDescription(LocaleLoader.getString("Commands.Description.mmoupdate"));
@@ -421,6 +431,7 @@ public final class CommandRegistrationManager {
         registerMcpurgeCommand();
         registerMcremoveCommand();
         registerMmoupdateCommand();
+        registerMcconvertCommand();
 
         // Experience Commands
         registerAddlevelsCommand();
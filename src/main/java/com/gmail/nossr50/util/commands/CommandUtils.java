@@ -105,6 +105,15 @@ public final class CommandUtils {
         return true;
     }
 
+    public static boolean profilePending(CommandSender sender, McMMOPlayer mcMMOPlayer) {
+        if (mcMMOPlayer.isProfileLoaded()) {
+            return false;
+        }
+
+        sender.sendMessage(LocaleLoader.getString("Commands.NotLoaded"));
+        return true;
+    }
+
     public static boolean isInvalidInteger(CommandSender sender, String value) {
         if (StringUtils.isInt(value)) {
             return false;
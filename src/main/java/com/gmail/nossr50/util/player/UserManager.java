@@ -3,20 +3,31 @@ package com.gmail.nossr50.util.player;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.bukkit.OfflinePlayer;
 import org.bukkit.entity.Player;
 
 import com.gmail.nossr50.mcMMO;
 import com.gmail.nossr50.datatypes.player.McMMOPlayer;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.events.player.McMMOPlayerProfileLoadEvent;
+import com.gmail.nossr50.runnables.player.PlayerProfileLoadingTask;
 
 public final class UserManager {
     private final static Map<String, McMMOPlayer> players = new HashMap<String, McMMOPlayer>();
 
+    // Profiles loaded while their players were logging in, waiting for them to join
+    private final static Map<String, PlayerProfile> preloadedProfiles = new ConcurrentHashMap<String, PlayerProfile>();
+
     private UserManager() {};
 
     /**
      * Add a new user.
+     * <p>
+     * If the profile of the player wasn't loaded while they were logging in,
+     * it is loaded asynchronously, and the player stays pending until then.
+     * A {@link McMMOPlayerProfileLoadEvent} is fired once the profile is ready.
      *
      * @param player The player to create a user record for
      * @return the player's {@link McMMOPlayer} object
@@ -24,18 +35,88 @@ public final class UserManager {
     public static McMMOPlayer addUser(Player player) {
         String playerName = player.getName();
         McMMOPlayer mcMMOPlayer = players.get(playerName);
+        PlayerProfile profile = preloadedProfiles.remove(playerName);
 
         if (mcMMOPlayer != null) {
             mcMMOPlayer.setPlayer(player); // The player object is different on each reconnection and must be updated
+
+            // The player left before their profile was applied, so it has to be loaded again
+            if (!mcMMOPlayer.isProfileLoaded()) {
+                if (profile == null) {
+                    new PlayerProfileLoadingTask(mcMMOPlayer).runTaskAsynchronously(mcMMO.p);
+                    return mcMMOPlayer;
+                }
+
+                mcMMOPlayer.setProfile(profile);
+            }
+        }
+        else if (profile != null) {
+            mcMMOPlayer = new McMMOPlayer(player, profile);
+            players.put(playerName, mcMMOPlayer);
         }
         else {
-            mcMMOPlayer = new McMMOPlayer(player);
+            mcMMOPlayer = new McMMOPlayer(player, new PlayerProfile(playerName));
             players.put(playerName, mcMMOPlayer);
+
+            new PlayerProfileLoadingTask(mcMMOPlayer).runTaskAsynchronously(mcMMO.p);
+            return mcMMOPlayer;
+        }
+
+        if (mcMMOPlayer.getProfile().isLoaded()) {
+            profileLoaded(mcMMOPlayer);
         }
 
         return mcMMOPlayer;
     }
 
+    /**
+     * Load the profile of a player.
+     * This reads from the database and is safe to call from any thread.
+     *
+     * @param playerName The name of the player to load
+     * @param addNew Whether to create the profile if it doesn't exist yet
+     * @return the loaded profile
+     */
+    public static PlayerProfile loadProfile(String playerName, boolean addNew) {
+        // Make sure a save still queued from a previous session doesn't get overwritten with stale data
+        mcMMO.getProfileSaveQueue().flush(playerName);
+
+        return new PlayerProfile(playerName, addNew);
+    }
+
+    /**
+     * Load the profile of a player who is logging in, so it is ready when they join.
+     * Called from the asynchronous login thread. New players are only created once they join.
+     *
+     * @param playerName The name of the player logging in
+     */
+    public static void preloadProfile(String playerName) {
+        PlayerProfile profile = loadProfile(playerName, false);
+
+        if (profile.isLoaded()) {
+            profile.markLogin();
+            preloadedProfiles.put(playerName, profile);
+        }
+    }
+
+    /**
+     * Discard a preloaded profile, used when a player is denied from joining.
+     *
+     * @param playerName The name of the player
+     */
+    public static void discardPreloadedProfile(String playerName) {
+        preloadedProfiles.remove(playerName);
+    }
+
+    /**
+     * Notify listeners that the profile of a player is ready to be used.
+     *
+     * @param mcMMOPlayer The player whose profile was loaded
+     */
+    public static void profileLoaded(McMMOPlayer mcMMOPlayer) {
+        mcMMO.p.getServer().getPluginManager().callEvent(new McMMOPlayerProfileLoadEvent(mcMMOPlayer.getPlayer(), mcMMOPlayer));
+    }
+
     /**
      * Remove a user.
      *
@@ -50,21 +131,37 @@ public final class UserManager {
      */
     public static void clearAll() {
         players.clear();
+        preloadedProfiles.clear();
     }
 
     /**
-     * Save all users.
+     * Save all users, blocking until they are written.
      */
     public static void saveAll() {
         for (McMMOPlayer mcMMOPlayer : players.values()) {
-            mcMMOPlayer.getProfile().save();
+            mcMMOPlayer.getProfile().scheduleAsyncSave();
         }
+
+        mcMMO.getProfileSaveQueue().flush();
     }
 
     public static Map<String, McMMOPlayer> getPlayers() {
         return players;
     }
 
+    /**
+     * Check if the profile of a player is loaded.
+     * Skills and commands ignore players whose profile is still pending.
+     *
+     * @param player The player to check
+     * @return true if the profile of the player has been loaded, false otherwise
+     */
+    public static boolean hasLoadedProfile(Player player) {
+        McMMOPlayer mcMMOPlayer = players.get(player.getName());
+
+        return mcMMOPlayer != null && mcMMOPlayer.isProfileLoaded();
+    }
+
     /**
      * Get the McMMOPlayer of a player by a partial name.
      *
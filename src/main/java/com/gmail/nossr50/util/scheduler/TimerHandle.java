@@ -0,0 +1,37 @@
+package com.gmail.nossr50.util.scheduler;
+
+/**
+ * A task scheduled on a {@link TimerWheel}.
+ */
+public final class TimerHandle {
+    final Runnable task;
+    final long period;
+    final long delay;
+
+    // Owned by the thread ticking the wheel
+    long deadline;
+    TimerHandle next;
+
+    private volatile boolean cancelled;
+
+    TimerHandle(Runnable task, long delay, long period) {
+        this.task = task;
+        this.delay = delay;
+        this.period = period;
+    }
+
+    /**
+     * Cancel the task. It won't run again, even if it is due on the current tick.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isRepeating() {
+        return period > 0;
+    }
+}
@@ -0,0 +1,192 @@
+package com.gmail.nossr50.util.scheduler;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs delayed and repeating tasks from a single repeating Bukkit task.
+ * <p>
+ * Gameplay events schedule a lot of short-lived tasks, a few per hit in big
+ * fights, and giving each of them its own Bukkit task is costly. Here they are
+ * kept in a hierarchical timer wheel instead: the first level has one slot per
+ * tick for the next 256 ticks, and each of the three levels above has 64 slots
+ * covering 64 times the span of the level below. Tasks are moved down a level
+ * as their tick comes closer, so scheduling a task is constant time and a tick
+ * only looks at the tasks due.
+ * <p>
+ * Tasks can be scheduled and cancelled from any thread, but they are always run
+ * by {@link #tick()}, on the thread ticking the wheel.
+ */
+public class TimerWheel {
+    private static final int FIRST_LEVEL_BITS = 8;
+    private static final int LEVEL_BITS = 6;
+    private static final int LEVELS = 4;
+
+    // Tasks further away are parked in the last level until they get closer
+    private static final long MAX_SPAN = 1L << (FIRST_LEVEL_BITS + LEVEL_BITS * (LEVELS - 1));
+
+    private final Logger logger;
+    private final TimerHandle[][] levels = new TimerHandle[LEVELS][];
+    private final ConcurrentLinkedQueue<TimerHandle> scheduled = new ConcurrentLinkedQueue<TimerHandle>();
+    private long currentTick;
+    private int taskCount;
+
+    public TimerWheel(Logger logger) {
+        this.logger = logger;
+
+        levels[0] = new TimerHandle[1 << FIRST_LEVEL_BITS];
+
+        for (int level = 1; level < LEVELS; level++) {
+            levels[level] = new TimerHandle[1 << LEVEL_BITS];
+        }
+    }
+
+    /**
+     * Schedule a task to run once.
+     *
+     * @param task The task to run
+     * @param delay The number of ticks to wait, a delay of 0 runs the task on the next tick like Bukkit
+     * @return the handle to cancel the task with
+     */
+    public TimerHandle schedule(Runnable task, long delay) {
+        return add(new TimerHandle(task, Math.max(delay, 1), 0));
+    }
+
+    /**
+     * Schedule a task to run every period ticks, until it is cancelled.
+     *
+     * @param task The task to run
+     * @param delay The number of ticks to wait before the first run
+     * @param period The number of ticks between runs
+     * @return the handle to cancel the task with
+     */
+    public TimerHandle scheduleRepeating(Runnable task, long delay, long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive: " + period);
+        }
+
+        return add(new TimerHandle(task, Math.max(delay, 1), period));
+    }
+
+    /**
+     * Advance the wheel by one tick and run the tasks due.
+     */
+    public void tick() {
+        TimerHandle handle;
+
+        while ((handle = scheduled.poll()) != null) {
+            if (!handle.isCancelled()) {
+                handle.deadline = currentTick + handle.delay;
+                place(handle);
+                taskCount++;
+            }
+        }
+
+        currentTick++;
+
+        // Move the tasks of the next slot of a level down once the level below went round
+        for (int level = 1; level < LEVELS; level++) {
+            int shift = getShift(level);
+
+            if ((currentTick & ((1L << shift) - 1)) != 0) {
+                break;
+            }
+
+            cascade(level, (int) (currentTick >>> shift) & (levels[level].length - 1));
+        }
+
+        TimerHandle[] slots = levels[0];
+        int slot = (int) currentTick & (slots.length - 1);
+
+        handle = slots[slot];
+        slots[slot] = null;
+
+        while (handle != null) {
+            TimerHandle next = handle.next;
+            handle.next = null;
+            run(handle);
+            handle = next;
+        }
+    }
+
+    /**
+     * @return the number of ticks since the wheel was created
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+
+    /**
+     * @return the number of tasks waiting in the wheel, including cancelled tasks not reached yet
+     */
+    public int getTaskCount() {
+        return taskCount;
+    }
+
+    private TimerHandle add(TimerHandle handle) {
+        scheduled.add(handle);
+        return handle;
+    }
+
+    private void run(TimerHandle handle) {
+        if (handle.isCancelled()) {
+            taskCount--;
+            return;
+        }
+
+        try {
+            handle.task.run();
+        }
+        catch (RuntimeException e) {
+            logger.log(Level.WARNING, "Task " + handle.task.getClass().getName() + " generated an exception", e);
+        }
+
+        if (handle.isRepeating() && !handle.isCancelled()) {
+            handle.deadline += handle.period;
+            place(handle);
+            return;
+        }
+
+        taskCount--;
+    }
+
+    private void cascade(int level, int slot) {
+        TimerHandle handle = levels[level][slot];
+        levels[level][slot] = null;
+
+        while (handle != null) {
+            TimerHandle next = handle.next;
+
+            if (handle.isCancelled()) {
+                handle.next = null;
+                taskCount--;
+            }
+            else {
+                place(handle);
+            }
+
+            handle = next;
+        }
+    }
+
+    private void place(TimerHandle handle) {
+        long ticks = handle.deadline - currentTick;
+        int level = 0;
+
+        while (level < LEVELS - 1 && ticks >= 1L << getShift(level + 1)) {
+            level++;
+        }
+
+        long deadline = Math.min(handle.deadline, currentTick + MAX_SPAN - 1);
+        TimerHandle[] slots = levels[level];
+        int slot = (int) (deadline >>> getShift(level)) & (slots.length - 1);
+
+        handle.next = slots[slot];
+        slots[slot] = handle;
+    }
+
+    private static int getShift(int level) {
+        return level == 0 ? 0 : FIRST_LEVEL_BITS + LEVEL_BITS * (level - 1);
+    }
+}
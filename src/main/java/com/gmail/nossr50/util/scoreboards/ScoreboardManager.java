@@ -310,7 +310,7 @@ public class ScoreboardManager {
             enablePowerLevelDisplay(player);
 
             if (displayTime != -1 && !SCOREBOARD_TASKS.contains(playerName)) {
-                new ScoreboardChangeTask(player, oldScoreboard).runTaskLater(mcMMO.p, displayTime * Misc.TICK_CONVERSION_FACTOR);
+                mcMMO.getTimerWheel().schedule(new ScoreboardChangeTask(player, oldScoreboard), displayTime * Misc.TICK_CONVERSION_FACTOR);
                 SCOREBOARD_TASKS.add(playerName);
             }
         }
@@ -145,7 +145,7 @@ public final class CombatUtils {
             event.setDamage(archeryManager.skillShotCheck(event.getDamage()));
         }
 
-        if (target instanceof Player && SkillType.UNARMED.getPVPEnabled()) {
+        if (target instanceof Player && SkillType.UNARMED.getPVPEnabled() && UserManager.hasLoadedProfile((Player) target)) {
             UnarmedManager unarmedManager = UserManager.getPlayer((Player) target).getUnarmedManager();
 
             if (unarmedManager.canDeflect()) {
@@ -181,7 +181,7 @@ public final class CombatUtils {
         if (attacker instanceof Player && damager.getType() == EntityType.PLAYER) {
             Player player = (Player) attacker;
 
-            if (Misc.isNPCEntity(player)) {
+            if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
                 return;
             }
 
@@ -243,7 +243,7 @@ public final class CombatUtils {
 
                 Player master = (Player) tamer;
 
-                if (Misc.isNPCEntity(master)) {
+                if (Misc.isNPCEntity(master) || !UserManager.hasLoadedProfile(master)) {
                     break;
                 }
 
@@ -262,7 +262,7 @@ public final class CombatUtils {
 
                 Player player = (Player) shooter;
 
-                if (Misc.isNPCEntity(player)) {
+                if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
                     break;
                 }
 
@@ -276,11 +276,12 @@ public final class CombatUtils {
         }
 
         if (target instanceof Player) {
-            if (Misc.isNPCEntity(target)) {
+            Player player = (Player) target;
+
+            if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
                 return;
             }
 
-            Player player = (Player) target;
             McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
             AcrobaticsManager acrobaticsManager = mcMMOPlayer.getAcrobaticsManager();
 
@@ -303,7 +304,7 @@ public final class CombatUtils {
         else if (attacker instanceof Player) {
             Player player = (Player) attacker;
 
-            if (Misc.isNPCEntity(player)) {
+            if (Misc.isNPCEntity(player) || !UserManager.hasLoadedProfile(player)) {
                 return;
             }
 
@@ -513,7 +514,7 @@ public final class CombatUtils {
         baseXP *= multiplier;
 
         if (baseXP != 0) {
-            new AwardCombatXpTask(mcMMOPlayer, skillType, baseXP, target).runTaskLater(mcMMO.p, 0);
+            AwardCombatXpTask.queueXp(mcMMOPlayer, skillType, baseXP, target);
         }
     }
 
@@ -85,7 +85,7 @@ public class SkillUtils {
 
         McMMOPlayer mcMMOPlayer = UserManager.getPlayer(player);
 
-        if (!mcMMOPlayer.getAbilityUse()) {
+        if (!mcMMOPlayer.isProfileLoaded() || !mcMMOPlayer.getAbilityUse()) {
             return;
         }
 
@@ -119,7 +119,7 @@ public class SkillUtils {
 
             mcMMOPlayer.setToolPreparationATS(tool, System.currentTimeMillis());
             mcMMOPlayer.setToolPreparationMode(tool, true);
-            new ToolLowerTask(mcMMOPlayer, tool).runTaskLaterAsynchronously(mcMMO.p, 4 * Misc.TICK_CONVERSION_FACTOR);
+            mcMMO.getTimerWheel().schedule(new ToolLowerTask(mcMMOPlayer, tool), 4 * Misc.TICK_CONVERSION_FACTOR);
         }
     }
 
@@ -254,6 +254,10 @@ public class SkillUtils {
      * @param type The skill the ability is based on
      */
     public static void abilityCheck(McMMOPlayer mcMMOPlayer, SkillType type) {
+        if (!mcMMOPlayer.isProfileLoaded()) {
+            return;
+        }
+
         ToolType tool = type.getTool();
         AbilityType ability = type.getAbility();
 
@@ -300,7 +304,7 @@ public class SkillUtils {
                 handleAbilitySpeedIncrease(player);
             }
 
-            new AbilityDisableTask(mcMMOPlayer, ability).runTaskLater(mcMMO.p, ticks * Misc.TICK_CONVERSION_FACTOR);
+            mcMMO.getTimerWheel().schedule(new AbilityDisableTask(mcMMOPlayer, ability), ticks * Misc.TICK_CONVERSION_FACTOR);
         }
     }
 
@@ -0,0 +1,139 @@
+package com.gmail.nossr50.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.gmail.nossr50.datatypes.database.PlayerStat;
+
+public class LeaderboardIndexTest {
+    private static final Comparator<PlayerStat> LEADERBOARD_ORDER = new Comparator<PlayerStat>() {
+        @Override
+        public int compare(PlayerStat a, PlayerStat b) {
+            if (a.statVal != b.statVal) {
+                return a.statVal > b.statVal ? -1 : 1;
+            }
+
+            int result = a.name.compareToIgnoreCase(b.name);
+            return result != 0 ? result : a.name.compareTo(b.name);
+        }
+    };
+
+    @Test
+    public void tieOrderTest() {
+        LeaderboardIndex leaderboard = new LeaderboardIndex();
+
+        leaderboard.update("carol", 10);
+        leaderboard.update("Bob", 10);
+        leaderboard.update("alice", 10);
+        leaderboard.update("Dave", 20);
+
+        // Ties are broken by name, regardless of case
+        assertEquals(Integer.valueOf(1), leaderboard.getRank("dave"));
+        assertEquals(Integer.valueOf(2), leaderboard.getRank("Alice"));
+        assertEquals(Integer.valueOf(3), leaderboard.getRank("bob"));
+        assertEquals(Integer.valueOf(4), leaderboard.getRank("CAROL"));
+
+        // Renaming a player only changes how they are written
+        leaderboard.update("ALICE", 10);
+        assertEquals(4, leaderboard.size());
+        assertEquals("ALICE", leaderboard.getRange(1, 1).get(0).name);
+
+        leaderboard.remove("bob");
+        assertNull(leaderboard.getRank("Bob"));
+        assertEquals(Integer.valueOf(3), leaderboard.getRank("carol"));
+    }
+
+    @Test
+    public void randomOperationsTest() {
+        LeaderboardIndex leaderboard = new LeaderboardIndex();
+        List<PlayerStat> reference = new ArrayList<PlayerStat>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 20000; i++) {
+            String playerName = randomName(random);
+
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    // Few distinct values, so most players tie with others
+                    int value = random.nextInt(16);
+                    leaderboard.update(playerName, value);
+                    removeStat(reference, playerName);
+                    reference.add(new PlayerStat(playerName, value));
+                    Collections.sort(reference, LEADERBOARD_ORDER);
+                    break;
+
+                case 2:
+                    leaderboard.remove(playerName);
+                    removeStat(reference, playerName);
+                    break;
+
+                default:
+                    assertEquals(getRank(reference, playerName), leaderboard.getRank(playerName));
+                    break;
+            }
+
+            assertEquals(reference.size(), leaderboard.size());
+
+            if (i % 100 == 0) {
+                int fromIndex = random.nextInt(reference.size() + 2);
+                int count = random.nextInt(20);
+
+                assertRange(reference.subList(Math.min(fromIndex, reference.size()), Math.min(fromIndex + count, reference.size())), leaderboard.getRange(fromIndex, count));
+            }
+        }
+
+        assertRange(reference, leaderboard.getRange(0, reference.size()));
+
+        for (int i = 0; i < reference.size(); i++) {
+            assertEquals(Integer.valueOf(i + 1), leaderboard.getRank(reference.get(i).name));
+        }
+
+        leaderboard.clear();
+        assertEquals(0, leaderboard.size());
+        assertEquals(0, leaderboard.getRange(0, 10).size());
+    }
+
+    private static String randomName(Random random) {
+        String playerName = "player" + random.nextInt(200);
+
+        return random.nextBoolean() ? playerName : playerName.toUpperCase();
+    }
+
+    private static void removeStat(List<PlayerStat> reference, String playerName) {
+        for (Iterator<PlayerStat> iterator = reference.iterator(); iterator.hasNext();) {
+            if (iterator.next().name.equalsIgnoreCase(playerName)) {
+                iterator.remove();
+                return;
+            }
+        }
+    }
+
+    private static Integer getRank(List<PlayerStat> reference, String playerName) {
+        for (int i = 0; i < reference.size(); i++) {
+            if (reference.get(i).name.equalsIgnoreCase(playerName)) {
+                return i + 1;
+            }
+        }
+
+        return null;
+    }
+
+    private static void assertRange(List<PlayerStat> expected, List<PlayerStat> actual) {
+        assertEquals(expected.size(), actual.size());
+
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).name, actual.get(i).name);
+            assertEquals(expected.get(i).statVal, actual.get(i).statVal);
+        }
+    }
+}
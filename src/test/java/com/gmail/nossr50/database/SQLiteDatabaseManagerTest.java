@@ -0,0 +1,91 @@
+package com.gmail.nossr50.database;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gmail.nossr50.datatypes.MobHealthbarType;
+import com.gmail.nossr50.datatypes.player.PlayerProfile;
+import com.gmail.nossr50.datatypes.skills.SkillType;
+import com.gmail.nossr50.datatypes.spout.huds.HudType;
+
+public class SQLiteDatabaseManagerTest {
+    private File file;
+    private SQLiteDatabaseManager databaseManager;
+
+    @Before
+    public void openDatabase() throws IOException {
+        file = File.createTempFile("mcmmo_", ".db");
+        file.delete();
+        databaseManager = new SQLiteDatabaseManager(file, MobHealthbarType.HEARTS);
+    }
+
+    @After
+    public void closeDatabase() {
+        databaseManager.onDisable();
+
+        // Journal files left next to the database
+        new File(file.getPath() + "-wal").delete();
+        new File(file.getPath() + "-shm").delete();
+        file.delete();
+    }
+
+    @Test
+    public void roundTripTest() {
+        databaseManager.newUser("Alice");
+        databaseManager.newUser("Bob");
+        databaseManager.newUser("Carol");
+
+        // Names are unique regardless of case
+        databaseManager.newUser("ALICE");
+        assertEquals(3, databaseManager.getStoredUsers().size());
+
+        PlayerProfile alice = new PlayerProfile("Alice", HudType.STANDARD, MobHealthbarType.BAR);
+        alice.modifySkill(SkillType.MINING, 10);
+
+        PlayerProfile bob = new PlayerProfile("Bob", HudType.STANDARD, MobHealthbarType.HEARTS);
+        bob.modifySkill(SkillType.MINING, 20);
+        bob.modifySkill(SkillType.FISHING, 5);
+
+        assertTrue(databaseManager.saveUsers(Arrays.asList(alice, bob)));
+
+        List<String> playerData = databaseManager.loadPlayerData("alice");
+        assertEquals("10", playerData.get(1));
+        assertEquals("0", playerData.get(11));
+        assertEquals("STANDARD", playerData.get(36));
+        assertEquals("BAR", playerData.get(37));
+
+        Map<String, Integer> bobRank = databaseManager.readRank("Bob");
+        assertEquals(Integer.valueOf(1), bobRank.get(SkillType.MINING.name()));
+        assertEquals(Integer.valueOf(1), bobRank.get(SkillType.FISHING.name()));
+        assertEquals(Integer.valueOf(1), bobRank.get("ALL"));
+
+        // Players without any level in a skill aren't ranked in it
+        Map<String, Integer> aliceRank = databaseManager.readRank("Alice");
+        assertEquals(Integer.valueOf(2), aliceRank.get(SkillType.MINING.name()));
+        assertEquals(Integer.valueOf(2), aliceRank.get("ALL"));
+        assertFalse(aliceRank.containsKey(SkillType.FISHING.name()));
+        assertTrue(databaseManager.readRank("Carol").isEmpty());
+
+        assertEquals(Collections.singletonList("Carol"), databaseManager.purgePowerlessUsers(Collections.<String>emptySet()));
+        assertEquals(2, databaseManager.getStoredUsers().size());
+        assertTrue(databaseManager.loadPlayerData("Carol").isEmpty());
+
+        // Saved users survive reopening the file
+        databaseManager.onDisable();
+        databaseManager = new SQLiteDatabaseManager(file, MobHealthbarType.HEARTS);
+        assertEquals("20", databaseManager.loadPlayerData("Bob").get(1));
+        assertEquals("5", databaseManager.loadPlayerData("Bob").get(11));
+    }
+}
@@ -0,0 +1,93 @@
+package com.gmail.nossr50.skills.archery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.bukkit.entity.LivingEntity;
+
+import com.gmail.nossr50.skills.archery.ArrowTrackerTest.TestEntity;
+
+/**
+ * Compares the tracker with the list it replaced, searched for every arrow,
+ * with 10,000 entities shot at random and then killed.
+ * <p>
+ * Not part of the unit tests, run it by hand from the test classpath.
+ */
+public class ArrowTrackerBenchmark {
+    private static final int ENTITY_COUNT = 10000;
+    private static final int ARROWS = 20000;
+    private static final int ROUNDS = 2;
+
+    public static void main(String[] args) {
+        List<TestEntity> entities = new ArrayList<TestEntity>();
+
+        for (int i = 0; i < ENTITY_COUNT; i++) {
+            entities.add(new TestEntity());
+        }
+
+        for (int round = 0; round < ROUNDS; round++) {
+            Random random = new Random(round);
+            ArrowTracker arrowTracker = new ArrowTracker();
+            int trackerArrows = 0;
+            long start = System.nanoTime();
+
+            for (int i = 0; i < ARROWS; i++) {
+                arrowTracker.incrementArrowCount(entities.get(random.nextInt(ENTITY_COUNT)).livingEntity);
+            }
+
+            arrowTracker.removeInvalidEntities();
+
+            for (TestEntity entity : entities) {
+                trackerArrows += arrowTracker.removeArrowCount(entity.livingEntity);
+            }
+
+            long trackerTime = System.nanoTime() - start;
+
+            random = new Random(round);
+            List<TrackedEntity> trackedEntities = new ArrayList<TrackedEntity>();
+            int listArrows = 0;
+            start = System.nanoTime();
+
+            for (int i = 0; i < ARROWS; i++) {
+                incrementListValue(trackedEntities, entities.get(random.nextInt(ENTITY_COUNT)).livingEntity);
+            }
+
+            for (TestEntity entity : entities) {
+                listArrows += removeListValue(trackedEntities, entity.livingEntity);
+            }
+
+            long listTime = System.nanoTime() - start;
+
+            if (trackerArrows != ARROWS || listArrows != ARROWS) {
+                throw new IllegalStateException("Tracked " + trackerArrows + " and " + listArrows + " arrows out of " + ARROWS);
+            }
+
+            System.out.println("Arrow tracker: " + (trackerTime / 1000000) + " ms, list: " + (listTime / 1000000) + " ms (" + ENTITY_COUNT + " entities, " + ARROWS + " arrows)");
+        }
+    }
+
+    private static void incrementListValue(List<TrackedEntity> trackedEntities, LivingEntity livingEntity) {
+        for (TrackedEntity trackedEntity : trackedEntities) {
+            if (trackedEntity.getLivingEntity().getUniqueId().equals(livingEntity.getUniqueId())) {
+                trackedEntity.incrementArrowCount();
+                return;
+            }
+        }
+
+        TrackedEntity trackedEntity = new TrackedEntity(livingEntity);
+
+        trackedEntity.incrementArrowCount();
+        trackedEntities.add(trackedEntity);
+    }
+
+    private static int removeListValue(List<TrackedEntity> trackedEntities, LivingEntity livingEntity) {
+        for (int i = 0; i < trackedEntities.size(); i++) {
+            if (trackedEntities.get(i).getLivingEntity().getUniqueId().equals(livingEntity.getUniqueId())) {
+                return trackedEntities.remove(i).getArrowCount();
+            }
+        }
+
+        return 0;
+    }
+}
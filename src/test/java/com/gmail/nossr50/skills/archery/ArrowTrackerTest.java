@@ -0,0 +1,95 @@
+package com.gmail.nossr50.skills.archery;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.bukkit.entity.LivingEntity;
+import org.junit.Test;
+
+public class ArrowTrackerTest {
+    @Test
+    public void arrowCountTest() {
+        ArrowTracker arrowTracker = new ArrowTracker();
+        TestEntity first = new TestEntity();
+        TestEntity second = new TestEntity();
+
+        for (int i = 0; i < 3; i++) {
+            arrowTracker.incrementArrowCount(first.livingEntity);
+        }
+
+        arrowTracker.incrementArrowCount(second.livingEntity);
+
+        // A different object for the same entity, like after a chunk reload
+        assertEquals(3, arrowTracker.removeArrowCount(new TestEntity(first.id).livingEntity));
+        assertEquals(0, arrowTracker.removeArrowCount(first.livingEntity));
+        assertEquals(1, arrowTracker.getTrackedEntityCount());
+    }
+
+    @Test
+    public void removeInvalidEntitiesTest() {
+        ArrowTracker arrowTracker = new ArrowTracker();
+        List<TestEntity> entities = new ArrayList<TestEntity>();
+
+        for (int i = 0; i < 100; i++) {
+            TestEntity entity = new TestEntity();
+
+            entity.valid = i % 3 != 0;
+            arrowTracker.incrementArrowCount(entity.livingEntity);
+            entities.add(entity);
+        }
+
+        assertEquals(34, arrowTracker.removeInvalidEntities());
+        assertEquals(66, arrowTracker.getTrackedEntityCount());
+
+        for (TestEntity entity : entities) {
+            assertEquals(entity.valid ? 1 : 0, arrowTracker.removeArrowCount(entity.livingEntity));
+        }
+    }
+
+    /**
+     * A LivingEntity only answering for its UUID and validity.
+     */
+    static class TestEntity implements InvocationHandler {
+        private final UUID id;
+        final LivingEntity livingEntity;
+        private boolean valid = true;
+
+        TestEntity() {
+            this(UUID.randomUUID());
+        }
+
+        private TestEntity(UUID id) {
+            this.id = id;
+            this.livingEntity = (LivingEntity) Proxy.newProxyInstance(LivingEntity.class.getClassLoader(), new Class<?>[] { LivingEntity.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+
+            if (name.equals("getUniqueId")) {
+                return id;
+            }
+
+            if (name.equals("isValid")) {
+                return valid;
+            }
+
+            if (name.equals("hashCode")) {
+                return System.identityHashCode(proxy);
+            }
+
+            if (name.equals("equals")) {
+                return proxy == args[0];
+            }
+
+            throw new UnsupportedOperationException(name);
+        }
+    }
+}
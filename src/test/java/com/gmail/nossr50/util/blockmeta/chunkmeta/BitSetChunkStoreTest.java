@@ -0,0 +1,118 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class BitSetChunkStoreTest {
+    private static final int WORLD_HEIGHT = 256;
+
+    @Test
+    public void setAndClearTest() {
+        BitSetChunkStore store = new BitSetChunkStore(UUID.randomUUID(), WORLD_HEIGHT, 3, -7);
+
+        assertTrue(store.isEmpty());
+
+        store.setTrue(0, 0, 0);
+        store.setTrue(15, WORLD_HEIGHT - 1, 15);
+        store.setTrue(15, WORLD_HEIGHT - 1, 15);
+
+        assertEquals(2, store.getCount());
+        assertTrue(store.isTrue(0, 0, 0));
+        assertTrue(store.isTrue(15, WORLD_HEIGHT - 1, 15));
+        assertFalse(store.isTrue(15, WORLD_HEIGHT - 1, 14));
+        assertTrue(store.isDirty());
+
+        store.setFalse(0, 0, 0);
+        store.setFalse(15, WORLD_HEIGHT - 1, 15);
+
+        assertTrue(store.isEmpty());
+    }
+
+    @Test
+    public void promotionTest() {
+        BitSetChunkStore store = new BitSetChunkStore(UUID.randomUUID(), WORLD_HEIGHT, 0, 0);
+
+        for (int y = 0; y < 100; y++) {
+            store.setTrue(y % 16, y, 15 - (y % 16));
+        }
+
+        assertTrue(store.isPromoted());
+        assertEquals(100, store.getCount());
+
+        for (int y = 0; y < 90; y++) {
+            store.setFalse(y % 16, y, 15 - (y % 16));
+        }
+
+        assertFalse(store.isPromoted());
+        assertEquals(10, store.getCount());
+
+        for (int y = 0; y < 100; y++) {
+            assertEquals(y >= 90, store.isTrue(y % 16, y, 15 - (y % 16)));
+        }
+    }
+
+    @Test
+    public void serializationTest() throws Exception {
+        BitSetChunkStore store = new BitSetChunkStore(UUID.randomUUID(), WORLD_HEIGHT, 3, -7);
+
+        for (int y = 0; y < WORLD_HEIGHT; y += 7) {
+            store.setTrue(y % 16, y, (y * 3) % 16);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(store);
+        out.close();
+
+        assertFalse(store.isDirty());
+
+        BitSetChunkStore copy = (BitSetChunkStore) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+
+        assertEquals(store.getChunkX(), copy.getChunkX());
+        assertEquals(store.getChunkZ(), copy.getChunkZ());
+        assertEquals(store.getCount(), copy.getCount());
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < WORLD_HEIGHT; y++) {
+                    assertEquals(store.isTrue(x, y, z), copy.isTrue(x, y, z));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void setColumnsTest() {
+        Random random = new Random(23);
+        // A 128 block high world only keeps the bottom two chunklets
+        BitSetChunkStore store = new BitSetChunkStore(UUID.randomUUID(), 128, 0, 0);
+        long[] columns = new long[4 * 256];
+
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = random.nextInt(4) == 0 ? random.nextLong() : 0;
+        }
+
+        store.setTrue(5, 5, 5);
+        store.setColumns(columns);
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 128; y++) {
+                    boolean expected = (columns[((y >> 6) << 8) | (x << 4) | z] & (1L << y)) != 0;
+
+                    assertEquals(expected || (x == 5 && y == 5 && z == 5), store.isTrue(x, y, z));
+                }
+            }
+        }
+    }
+}
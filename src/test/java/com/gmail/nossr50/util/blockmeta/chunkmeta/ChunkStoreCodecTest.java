@@ -0,0 +1,189 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ChunkStoreCodecTest {
+    private static final int[] WORLD_HEIGHTS = { 64, 128, 256 };
+
+    @Test
+    public void roundTripFuzzTest() throws IOException {
+        Random random = new Random(17);
+
+        for (int i = 0; i < 500; i++) {
+            BitSetChunkStore chunkStore = createRandomStore(random);
+            BitSetChunkStore read = (BitSetChunkStore) ChunkStoreCodec.read(new ByteArrayInputStream(encode(chunkStore)));
+
+            assertSameStore(chunkStore, read);
+            assertFalse(read.isDirty());
+        }
+    }
+
+    @Test
+    public void encodingSizeTest() throws IOException {
+        BitSetChunkStore sparse = new BitSetChunkStore(UUID.randomUUID(), 256, 0, 0);
+        BitSetChunkStore dense = new BitSetChunkStore(UUID.randomUUID(), 256, 0, 0);
+
+        sparse.setTrue(3, 70, 9);
+
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                for (int y = 0; y < 64; y++) {
+                    dense.setTrue(x, y, z);
+                }
+            }
+        }
+
+        // Header is 36 bytes, then the encoding, the count and the position
+        assertTrue(encode(sparse).length <= 36 + 1 + 1 + 3);
+        // 256 full words, 9 bytes each
+        assertTrue(encode(dense).length <= 36 + 1 + 2 + 256 * 9);
+    }
+
+    @Test
+    public void legacyTest() throws IOException {
+        BitSetChunkStore chunkStore = createRandomStore(new Random(3));
+        ChunkStore read = ChunkStoreCodec.read(new ByteArrayInputStream(serialize(chunkStore)));
+
+        assertSameStore(chunkStore, (BitSetChunkStore) read);
+        // Saved again in the current format
+        assertTrue(read.isDirty());
+    }
+
+    @Test
+    public void corruptDataTest() throws IOException {
+        Random random = new Random(5);
+
+        for (int i = 0; i < 2000; i++) {
+            byte[] data = encode(createRandomStore(random));
+
+            if (random.nextBoolean()) {
+                // Keep the magic number, so it isn't read as a serialized store
+                for (int j = random.nextInt(4); j >= 0; j--) {
+                    data[4 + random.nextInt(data.length - 4)] = (byte) random.nextInt(256);
+                }
+            }
+            else {
+                byte[] truncated = new byte[random.nextInt(data.length)];
+                System.arraycopy(data, 0, truncated, 0, truncated.length);
+                data = truncated;
+            }
+
+            readCorrupt(data);
+        }
+
+        // A legacy store whose blocks are above its world height
+        BitSetChunkStore chunkStore = new BitSetChunkStore(UUID.randomUUID(), 256, 0, 0);
+        chunkStore.setTrue(0, 255, 0);
+
+        byte[] legacyData = serialize(chunkStore);
+        int start = findLegacyData(legacyData);
+        // World height, after the world and chunk coordinates
+        legacyData[start + 26] = 0;
+        legacyData[start + 27] = 16;
+
+        try {
+            ChunkStoreCodec.read(new ByteArrayInputStream(legacyData));
+            fail("Blocks above the world height should be reported");
+        }
+        catch (IOException e) {
+            // Expected
+        }
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] data = serialize(createRandomStore(random));
+
+            // Only corrupt the data of the store, after its magic number and version
+            start = findLegacyData(data);
+
+            for (int j = random.nextInt(4); j >= 0; j--) {
+                data[start + random.nextInt(data.length - start)] = (byte) random.nextInt(256);
+            }
+
+            readCorrupt(data);
+        }
+    }
+
+    /**
+     * Read corrupt data, which has to either fail with an IOException or give a valid store.
+     */
+    private static void readCorrupt(byte[] data) {
+        try {
+            ChunkStoreCodec.read(new ByteArrayInputStream(data));
+        }
+        catch (IOException e) {
+            return;
+        }
+        catch (RuntimeException e) {
+            fail("Corrupt data should be reported as an IOException, got " + e);
+        }
+    }
+
+    private static BitSetChunkStore createRandomStore(Random random) {
+        int worldHeight = WORLD_HEIGHTS[random.nextInt(WORLD_HEIGHTS.length)];
+        BitSetChunkStore chunkStore = new BitSetChunkStore(UUID.randomUUID(), worldHeight, random.nextInt() >> 8, random.nextInt() >> 8);
+
+        // From empty stores to stores with most of their blocks set
+        int blocks = random.nextInt(4) == 0 ? random.nextInt(100) : random.nextInt(worldHeight * 256);
+        int spread = 1 + random.nextInt(worldHeight * 256);
+
+        for (int i = 0; i < blocks; i++) {
+            int index = random.nextInt(spread);
+            chunkStore.setTrue(index & 0xF, index >> 8, (index >> 4) & 0xF);
+        }
+
+        return chunkStore;
+    }
+
+    /**
+     * @return the position of the data following the magic number and version of a serialized store
+     */
+    private static int findLegacyData(byte[] data) {
+        int start = 8;
+
+        while (data[start - 8] != (byte) 0xEA || data[start - 7] != (byte) 0x5E || data[start - 6] != (byte) 0xDE || data[start - 5] != (byte) 0xBB) {
+            start++;
+        }
+
+        return start;
+    }
+
+    private static byte[] serialize(ChunkStore chunkStore) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+
+        out.writeObject(chunkStore);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static byte[] encode(ChunkStore chunkStore) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ChunkStoreCodec.write(chunkStore, new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameStore(BitSetChunkStore expected, BitSetChunkStore actual) {
+        assertEquals(expected.getWorldUid(), actual.getWorldUid());
+        assertEquals(expected.getWorldHeight(), actual.getWorldHeight());
+        assertEquals(expected.getChunkX(), actual.getChunkX());
+        assertEquals(expected.getChunkZ(), actual.getChunkZ());
+        assertEquals(expected.getCount(), actual.getCount());
+
+        for (int i = 0; i < expected.getWordCount(); i++) {
+            assertEquals(expected.getWord(i), actual.getWord(i));
+        }
+    }
+}
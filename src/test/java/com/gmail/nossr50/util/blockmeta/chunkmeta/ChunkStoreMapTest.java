@@ -0,0 +1,119 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import org.junit.Test;
+
+public class ChunkStoreMapTest {
+    private static final UUID WORLD_UID = UUID.randomUUID();
+
+    @Test
+    public void nullValueTest() {
+        ChunkStoreMap map = new ChunkStoreMap();
+        long key = ChunkStoreMap.toKey(-1, 1);
+
+        assertFalse(map.containsKey(key));
+
+        map.put(key, null);
+
+        assertTrue(map.containsKey(key));
+        assertNull(map.get(key));
+        assertTrue(map.values().isEmpty());
+
+        map.remove(key);
+
+        assertFalse(map.containsKey(key));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void randomOperationsTest() {
+        ChunkStoreMap map = new ChunkStoreMap();
+        Map<Long, ChunkStore> reference = new HashMap<Long, ChunkStore>();
+        Random random = new Random(42);
+
+        for (int i = 0; i < 100000; i++) {
+            long key = ChunkStoreMap.toKey(random.nextInt(64) - 32, random.nextInt(64) - 32);
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    ChunkStore value = random.nextInt(4) == 0 ? null : new BitSetChunkStore(WORLD_UID, 256, 0, 0);
+                    map.put(key, value);
+                    reference.put(key, value);
+                    break;
+
+                case 1:
+                    assertSame(reference.remove(key), map.remove(key));
+                    break;
+
+                default:
+                    assertEquals(reference.containsKey(key), map.containsKey(key));
+                    assertSame(reference.get(key), map.get(key));
+                    break;
+            }
+
+            assertEquals(reference.size(), map.size());
+        }
+
+        for (Map.Entry<Long, ChunkStore> entry : reference.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertSame(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+
+    @Test
+    public void lookupAllocationTest() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean)) {
+            return;
+        }
+
+        com.sun.management.ThreadMXBean threadBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        if (!threadBean.isThreadAllocatedMemorySupported() || !threadBean.isThreadAllocatedMemoryEnabled()) {
+            return;
+        }
+
+        ChunkStoreMap map = new ChunkStoreMap();
+
+        for (int cx = -16; cx < 16; cx++) {
+            for (int cz = -16; cz < 16; cz++) {
+                map.put(ChunkStoreMap.toKey(cx, cz), new BitSetChunkStore(WORLD_UID, 256, cx, cz));
+            }
+        }
+
+        int found = lookupAll(map);
+        long threadId = Thread.currentThread().getId();
+        long before = threadBean.getThreadAllocatedBytes(threadId);
+
+        found += lookupAll(map);
+
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - before;
+
+        assertEquals(2 * 32 * 32, found);
+        assertEquals(0, allocated);
+    }
+
+    private static int lookupAll(ChunkStoreMap map) {
+        int found = 0;
+
+        for (int cx = -16; cx < 16; cx++) {
+            for (int cz = -16; cz < 16; cz++) {
+                if (map.get(ChunkStoreMap.toKey(cx, cz)) != null) {
+                    found++;
+                }
+            }
+        }
+
+        return found;
+    }
+}
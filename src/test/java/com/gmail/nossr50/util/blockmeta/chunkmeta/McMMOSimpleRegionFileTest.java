@@ -0,0 +1,129 @@
+package com.gmail.nossr50.util.blockmeta.chunkmeta;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class McMMOSimpleRegionFileTest {
+    private File file;
+    private byte[][] chunks;
+
+    @Before
+    public void createFile() throws IOException {
+        file = File.createTempFile("mcmmo_0_0_", ".mcm");
+        file.delete();
+        chunks = new byte[1024][];
+    }
+
+    @After
+    public void deleteFile() {
+        file.delete();
+    }
+
+    @Test
+    public void reopenTest() throws IOException {
+        McMMOSimpleRegionFile regionFile = new McMMOSimpleRegionFile(file, 0, 0);
+
+        writeRandomChunks(regionFile, new Random(1), 3000);
+        regionFile.close();
+
+        // Closed files are reopened on use
+        checkChunks(regionFile);
+        regionFile.close();
+
+        checkChunks(new McMMOSimpleRegionFile(file, 0, 0));
+    }
+
+    @Test
+    public void interruptTest() throws IOException {
+        McMMOSimpleRegionFile regionFile = new McMMOSimpleRegionFile(file, 0, 0);
+
+        writeRandomChunks(regionFile, new Random(3), 100);
+
+        // Reading on an interrupted thread closes the channel
+        Thread.currentThread().interrupt();
+
+        try {
+            checkChunks(regionFile);
+            fail();
+        }
+        catch (ClosedByInterruptException e) {
+            // Expected
+        }
+        finally {
+            Thread.interrupted();
+        }
+
+        // The file is opened again on the next use
+        writeRandomChunks(regionFile, new Random(4), 100);
+        checkChunks(regionFile);
+        regionFile.close();
+
+        checkChunks(new McMMOSimpleRegionFile(file, 0, 0));
+    }
+
+    @Test
+    public void compactTest() throws IOException {
+        McMMOSimpleRegionFile regionFile = new McMMOSimpleRegionFile(file, 0, 0);
+
+        writeRandomChunks(regionFile, new Random(2), 3000);
+        regionFile.close();
+
+        long length = file.length();
+
+        assertTrue(McMMOSimpleRegionFile.compact(file));
+        assertTrue(file.length() < length);
+
+        regionFile = new McMMOSimpleRegionFile(file, 0, 0);
+        checkChunks(regionFile);
+        regionFile.close();
+
+        assertFalse(McMMOSimpleRegionFile.compact(file));
+    }
+
+    private void writeRandomChunks(McMMOSimpleRegionFile regionFile, Random random, int writes) throws IOException {
+        for (int i = 0; i < writes; i++) {
+            int index = random.nextInt(1024);
+            byte[] data = new byte[random.nextInt(8192)];
+
+            // Random data doesn't deflate, so chunks take a varying number of segments
+            random.nextBytes(data);
+
+            DataOutputStream out = regionFile.getOutputStream(index >> 5, index & 0x1F);
+            out.writeInt(data.length);
+            out.write(data);
+            out.close();
+
+            chunks[index] = data;
+        }
+    }
+
+    private void checkChunks(McMMOSimpleRegionFile regionFile) throws IOException {
+        for (int index = 0; index < 1024; index++) {
+            DataInputStream in = regionFile.getInputStream(index >> 5, index & 0x1F);
+
+            if (chunks[index] == null) {
+                assertNull(in);
+                continue;
+            }
+
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+
+            assertArrayEquals(chunks[index], data);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.gmail.nossr50.util.blockmeta.conversion;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.gmail.nossr50.util.blockmeta.ChunkletStore;
+import com.gmail.nossr50.util.blockmeta.PrimitiveChunkletStore;
+import com.gmail.nossr50.util.blockmeta.PrimitiveExChunkletStore;
+
+public class ChunkletReaderTest {
+    private File xDir;
+    private File czDir;
+
+    @Before
+    public void createDirectory() throws IOException {
+        xDir = File.createTempFile("mcmmo_data_", "");
+        xDir.delete();
+        czDir = new File(xDir, "-3");
+        czDir.mkdirs();
+    }
+
+    @After
+    public void deleteDirectory() {
+        ChunkletReader.deleteChunk(czDir);
+    }
+
+    @Test
+    public void readChunkTest() throws IOException {
+        Random random = new Random(19);
+        ChunkletStore[] chunklets = { new PrimitiveExChunkletStore(), null, new PrimitiveChunkletStore(), new PrimitiveExChunkletStore() };
+
+        for (int cy = 0; cy < chunklets.length; cy++) {
+            if (chunklets[cy] == null) {
+                continue;
+            }
+
+            for (int i = 0; i < 500; i++) {
+                chunklets[cy].setTrue(random.nextInt(16), random.nextInt(64), random.nextInt(16));
+            }
+
+            writeChunklet(chunklets[cy], new File(czDir, "" + cy));
+        }
+
+        long[] columns = ChunkletReader.readChunk(czDir);
+
+        for (int cy = 0; cy < chunklets.length; cy++) {
+            for (int x = 0; x < 16; x++) {
+                for (int z = 0; z < 16; z++) {
+                    for (int y = 0; y < 64; y++) {
+                        boolean expected = chunklets[cy] != null && chunklets[cy].isTrue(x, y, z);
+
+                        assertEquals(expected, (columns[(cy << 8) | (x << 4) | z] & (1L << y)) != 0);
+                    }
+                }
+            }
+        }
+
+        ChunkletReader.deleteChunk(czDir);
+
+        assertFalse(czDir.exists());
+        assertFalse(xDir.exists());
+    }
+
+    @Test
+    public void emptyChunkTest() throws IOException {
+        writeChunklet(new PrimitiveExChunkletStore(), new File(czDir, "0"));
+
+        // Corrupted chunklets are read as empty
+        new FileOutputStream(new File(czDir, "1")).close();
+
+        assertNull(ChunkletReader.readChunk(czDir));
+    }
+
+    private static void writeChunklet(ChunkletStore chunklet, File yFile) throws IOException {
+        ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(yFile));
+        out.writeObject(chunklet);
+        out.close();
+    }
+}
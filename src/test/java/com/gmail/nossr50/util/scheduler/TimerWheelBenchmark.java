@@ -0,0 +1,111 @@
+package com.gmail.nossr50.util.scheduler;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+
+/**
+ * Compares the wheel with one scheduled task per event, the way the Bukkit
+ * scheduler keeps them: a task object registered by id, in a priority queue.
+ * 200 players hit something every 10 ticks, each hit awarding xp on the next
+ * tick and restoring the health bar 3 seconds later.
+ * <p>
+ * Not part of the unit tests, run it by hand from the test classpath.
+ */
+public class TimerWheelBenchmark {
+    private static final int COMBATANTS = 200;
+    private static final int TICKS = 20 * 60 * 5;
+    private static final int ROUNDS = 3;
+
+    private static int runs;
+
+    public static void main(String[] args) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                runs++;
+            }
+        };
+
+        for (int round = 0; round < ROUNDS; round++) {
+            runs = 0;
+            long start = System.nanoTime();
+            TimerWheel wheel = new TimerWheel(Logger.getAnonymousLogger());
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int combatant = tick % 10; combatant < COMBATANTS; combatant += 10) {
+                    wheel.schedule(task, 0);
+                    wheel.schedule(task, 60);
+                }
+
+                wheel.tick();
+            }
+
+            long wheelTime = System.nanoTime() - start;
+            int wheelRuns = runs;
+
+            runs = 0;
+            start = System.nanoTime();
+            PriorityQueueScheduler scheduler = new PriorityQueueScheduler();
+
+            for (int tick = 0; tick < TICKS; tick++) {
+                for (int combatant = tick % 10; combatant < COMBATANTS; combatant += 10) {
+                    scheduler.schedule(task, 1);
+                    scheduler.schedule(task, 60);
+                }
+
+                scheduler.tick();
+            }
+
+            long queueTime = System.nanoTime() - start;
+
+            if (runs != wheelRuns) {
+                throw new IllegalStateException("The wheel ran " + wheelRuns + " tasks, the queue " + runs);
+            }
+
+            System.out.println("Timer wheel: " + (wheelTime / TICKS) + " ns/tick, task per event: " + (queueTime / TICKS) + " ns/tick (" + wheelRuns + " tasks)");
+        }
+    }
+
+    private static class PriorityQueueScheduler {
+        private final PriorityQueue<ScheduledTask> pending = new PriorityQueue<ScheduledTask>();
+        private final ConcurrentHashMap<Integer, ScheduledTask> runners = new ConcurrentHashMap<Integer, ScheduledTask>();
+        private long currentTick;
+        private int ids;
+
+        private void schedule(Runnable task, long delay) {
+            ScheduledTask scheduledTask = new ScheduledTask(task, ++ids, currentTick + delay);
+
+            runners.put(scheduledTask.id, scheduledTask);
+            pending.add(scheduledTask);
+        }
+
+        private void tick() {
+            currentTick++;
+
+            while (!pending.isEmpty() && pending.peek().deadline <= currentTick) {
+                ScheduledTask scheduledTask = pending.poll();
+
+                scheduledTask.task.run();
+                runners.remove(scheduledTask.id);
+            }
+        }
+    }
+
+    private static class ScheduledTask implements Comparable<ScheduledTask> {
+        private final Runnable task;
+        private final int id;
+        private final long deadline;
+
+        private ScheduledTask(Runnable task, int id, long deadline) {
+            this.task = task;
+            this.id = id;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public int compareTo(ScheduledTask other) {
+            return deadline < other.deadline ? -1 : deadline == other.deadline ? (id < other.id ? -1 : id == other.id ? 0 : 1) : 1;
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.gmail.nossr50.util.scheduler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class TimerWheelTest {
+    private TimerWheel timerWheel;
+
+    @Before
+    public void createWheel() {
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        timerWheel = new TimerWheel(logger);
+    }
+
+    @Test
+    public void deadlineTest() {
+        Random random = new Random(21);
+        long[] ranges = { 300, 20000, 2000000, 1L << 27 };
+        List<CheckedTask> tasks = new ArrayList<CheckedTask>();
+
+        for (long range : ranges) {
+            for (int i = 0; i < 200; i++) {
+                long delay = (long) (random.nextDouble() * range);
+                CheckedTask task = new CheckedTask(timerWheel.getCurrentTick() + Math.max(delay, 1));
+
+                timerWheel.schedule(task, delay);
+                tasks.add(task);
+
+                // Schedule from different points of the wheel
+                for (int j = random.nextInt(400); j > 0; j--) {
+                    timerWheel.tick();
+                }
+            }
+        }
+
+        do {
+            timerWheel.tick();
+        }
+        while (timerWheel.getTaskCount() > 0);
+
+        for (CheckedTask task : tasks) {
+            assertEquals(1, task.runs);
+            assertEquals(task.expectedTick, task.ranAt);
+        }
+    }
+
+    @Test
+    public void cancelTest() {
+        CheckedTask cancelled = new CheckedTask(5);
+        CheckedTask kept = new CheckedTask(5);
+        TimerHandle handle = timerWheel.schedule(cancelled, 5);
+
+        timerWheel.schedule(kept, 5);
+        timerWheel.tick();
+        handle.cancel();
+
+        for (int i = 0; i < 10; i++) {
+            timerWheel.tick();
+        }
+
+        assertTrue(handle.isCancelled());
+        assertEquals(0, cancelled.runs);
+        assertEquals(1, kept.runs);
+        assertEquals(0, timerWheel.getTaskCount());
+    }
+
+    @Test
+    public void repeatingTest() {
+        final List<Long> runs = new ArrayList<Long>();
+        final TimerHandle[] handle = new TimerHandle[1];
+
+        handle[0] = timerWheel.scheduleRepeating(new Runnable() {
+            @Override
+            public void run() {
+                runs.add(timerWheel.getCurrentTick());
+
+                if (runs.size() == 5) {
+                    handle[0].cancel();
+                }
+            }
+        }, 3, 300);
+
+        for (int i = 0; i < 3000; i++) {
+            timerWheel.tick();
+        }
+
+        assertEquals(5, runs.size());
+
+        for (int i = 0; i < runs.size(); i++) {
+            assertEquals(3 + i * 300L, (long) runs.get(i));
+        }
+
+        assertEquals(0, timerWheel.getTaskCount());
+    }
+
+    @Test
+    public void exceptionTest() {
+        CheckedTask task = new CheckedTask(1);
+
+        timerWheel.schedule(new Runnable() {
+            @Override
+            public void run() {
+                throw new IllegalStateException();
+            }
+        }, 0);
+        timerWheel.schedule(task, 0);
+        timerWheel.tick();
+
+        assertEquals(1, task.runs);
+        assertFalse(timerWheel.getTaskCount() > 0);
+    }
+
+    private class CheckedTask implements Runnable {
+        private final long expectedTick;
+        private long ranAt = -1;
+        private int runs;
+
+        private CheckedTask(long expectedTick) {
+            this.expectedTick = expectedTick;
+        }
+
+        @Override
+        public void run() {
+            ranAt = timerWheel.getCurrentTick();
+            runs++;
+        }
+    }
+}